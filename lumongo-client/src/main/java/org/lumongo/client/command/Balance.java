@@ -0,0 +1,47 @@
+package org.lumongo.client.command;
+
+import org.lumongo.client.command.base.SimpleCommand;
+import org.lumongo.client.pool.LumongoConnection;
+import org.lumongo.client.result.BalanceResult;
+import org.lumongo.cluster.message.ExternalServiceGrpc;
+import org.lumongo.cluster.message.Lumongo.BalanceRequest;
+import org.lumongo.cluster.message.Lumongo.BalanceResponse;
+
+/**
+ * Proposes segment moves balancing the segments of every index across the cluster members and, unless a dry run, moves them
+ */
+public class Balance extends SimpleCommand<BalanceRequest, BalanceResult> {
+
+	private boolean dryRun;
+
+	public Balance() {
+		this.dryRun = true;
+	}
+
+	public boolean isDryRun() {
+		return dryRun;
+	}
+
+	/**
+	 * @param dryRun - true to only return the proposed moves, the default, false to move the segments
+	 */
+	public Balance setDryRun(boolean dryRun) {
+		this.dryRun = dryRun;
+		return this;
+	}
+
+	@Override
+	public BalanceRequest getRequest() {
+		return BalanceRequest.newBuilder().setDryRun(dryRun).build();
+	}
+
+	@Override
+	public BalanceResult execute(LumongoConnection lumongoConnection) {
+		ExternalServiceGrpc.ExternalServiceBlockingStub service = lumongoConnection.getService();
+
+		BalanceResponse balanceResponse = service.balance(getRequest());
+
+		return new BalanceResult(balanceResponse);
+	}
+
+}
@@ -0,0 +1,120 @@
+package org.lumongo.client.command;
+
+import io.grpc.stub.ClientCallStreamObserver;
+import io.grpc.stub.ClientResponseObserver;
+import io.grpc.stub.StreamObserver;
+import org.lumongo.client.command.base.Command;
+import org.lumongo.client.pool.LumongoConnection;
+import org.lumongo.client.result.BatchStoreResult;
+import org.lumongo.cluster.message.ExternalServiceGrpc;
+import org.lumongo.cluster.message.Lumongo.BatchStoreResponse;
+import org.lumongo.cluster.message.Lumongo.StoreRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Streams many stores to the server over a single call.  The server stores the documents in batches and the stream only sends
+ * while the server is ready to receive more.
+ */
+public class BatchStore extends Command<BatchStoreResult> {
+
+	private List<Store> stores;
+
+	public BatchStore() {
+		stores = new ArrayList<Store>();
+	}
+
+	public BatchStore addStore(Store store) {
+		stores.add(store);
+		return this;
+	}
+
+	public List<Store> getStores() {
+		return stores;
+	}
+
+	@Override
+	public BatchStoreResult execute(LumongoConnection lumongoConnection) throws Exception {
+		ExternalServiceGrpc.ExternalServiceStub service = lumongoConnection.getAsyncService();
+
+		BatchStoreObserver batchStoreObserver = new BatchStoreObserver();
+		StreamObserver<StoreRequest> requestObserver = service.batchStore(batchStoreObserver);
+
+		try {
+			for (Store store : stores) {
+				if (!batchStoreObserver.awaitReady()) {
+					break;
+				}
+				requestObserver.onNext(store.getRequest());
+			}
+		}
+		catch (RuntimeException | InterruptedException e) {
+			requestObserver.onError(e);
+			throw e;
+		}
+		requestObserver.onCompleted();
+
+		return new BatchStoreResult(batchStoreObserver.getResponse());
+	}
+
+	private static class BatchStoreObserver implements ClientResponseObserver<StoreRequest, BatchStoreResponse> {
+
+		private final CountDownLatch finished = new CountDownLatch(1);
+
+		private ClientCallStreamObserver<StoreRequest> requestStream;
+		private BatchStoreResponse response;
+		private Throwable error;
+
+		@Override
+		public void beforeStart(ClientCallStreamObserver<StoreRequest> requestStream) {
+			this.requestStream = requestStream;
+			requestStream.setOnReadyHandler(this::signal);
+		}
+
+		private synchronized void signal() {
+			notifyAll();
+		}
+
+		/**
+		 * @return true when the stream is ready for the next request, false if the call already finished
+		 */
+		public synchronized boolean awaitReady() throws InterruptedException {
+			while (!requestStream.isReady() && finished.getCount() > 0) {
+				wait();
+			}
+			return finished.getCount() > 0;
+		}
+
+		@Override
+		public void onNext(BatchStoreResponse response) {
+			this.response = response;
+		}
+
+		@Override
+		public void onError(Throwable t) {
+			this.error = t;
+			finished.countDown();
+			signal();
+		}
+
+		@Override
+		public void onCompleted() {
+			finished.countDown();
+			signal();
+		}
+
+		public BatchStoreResponse getResponse() throws Exception {
+			finished.await();
+			if (error != null) {
+				if (error instanceof Exception) {
+					throw (Exception) error;
+				}
+				throw new Exception(error);
+			}
+			return response;
+		}
+	}
+
+}
@@ -0,0 +1,116 @@
+package org.lumongo.client.command;
+
+import org.lumongo.client.command.base.SimpleCommand;
+import org.lumongo.client.pool.LumongoConnection;
+import org.lumongo.client.result.DeleteByQueryResult;
+import org.lumongo.cluster.message.ExternalServiceGrpc;
+import org.lumongo.cluster.message.Lumongo;
+import org.lumongo.cluster.message.Lumongo.DeleteByQueryRequest;
+import org.lumongo.cluster.message.Lumongo.DeleteByQueryResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Removes all documents matching a query from a given index
+ */
+public class DeleteByQuery extends SimpleCommand<DeleteByQueryRequest, DeleteByQueryResult> {
+
+	private String indexName;
+	private String query;
+	private List<String> queryFields;
+	private List<String> filterQueries;
+	private Lumongo.Query.Operator defaultOperator;
+	private Integer minimumShouldMatch;
+	private Boolean deleteAllAssociated;
+
+	public DeleteByQuery(String indexName, String query) {
+		this.indexName = indexName;
+		this.query = query;
+		this.queryFields = new ArrayList<>();
+		this.filterQueries = new ArrayList<>();
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public String getQuery() {
+		return query;
+	}
+
+	public DeleteByQuery addQueryField(String queryField) {
+		queryFields.add(queryField);
+		return this;
+	}
+
+	public DeleteByQuery addFilterQuery(String filterQuery) {
+		filterQueries.add(filterQuery);
+		return this;
+	}
+
+	public Lumongo.Query.Operator getDefaultOperator() {
+		return defaultOperator;
+	}
+
+	public DeleteByQuery setDefaultOperator(Lumongo.Query.Operator defaultOperator) {
+		this.defaultOperator = defaultOperator;
+		return this;
+	}
+
+	public Integer getMinimumShouldMatch() {
+		return minimumShouldMatch;
+	}
+
+	public DeleteByQuery setMinimumShouldMatch(Integer minimumShouldMatch) {
+		this.minimumShouldMatch = minimumShouldMatch;
+		return this;
+	}
+
+	public Boolean getDeleteAllAssociated() {
+		return deleteAllAssociated;
+	}
+
+	public DeleteByQuery setDeleteAllAssociated(Boolean deleteAllAssociated) {
+		this.deleteAllAssociated = deleteAllAssociated;
+		return this;
+	}
+
+	@Override
+	public DeleteByQueryRequest getRequest() {
+		DeleteByQueryRequest.Builder requestBuilder = DeleteByQueryRequest.newBuilder().setIndexName(indexName);
+
+		Lumongo.Query.Builder queryBuilder = Lumongo.Query.newBuilder();
+		if (query != null) {
+			queryBuilder.setQ(query);
+		}
+		queryBuilder.addAllQf(queryFields);
+		if (defaultOperator != null) {
+			queryBuilder.setDefaultOp(defaultOperator);
+		}
+		if (minimumShouldMatch != null) {
+			queryBuilder.setMm(minimumShouldMatch);
+		}
+		requestBuilder.setQuery(queryBuilder);
+
+		for (String filterQuery : filterQueries) {
+			requestBuilder.addFilterQuery(Lumongo.Query.newBuilder().setQ(filterQuery));
+		}
+
+		if (deleteAllAssociated != null) {
+			requestBuilder.setDeleteAllAssociated(deleteAllAssociated);
+		}
+
+		return requestBuilder.build();
+	}
+
+	@Override
+	public DeleteByQueryResult execute(LumongoConnection lumongoConnection) {
+		ExternalServiceGrpc.ExternalServiceBlockingStub service = lumongoConnection.getService();
+
+		DeleteByQueryResponse deleteByQueryResponse = service.deleteByQuery(getRequest());
+
+		return new DeleteByQueryResult(deleteByQueryResponse);
+	}
+
+}
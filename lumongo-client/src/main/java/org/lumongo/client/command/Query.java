@@ -16,7 +16,9 @@ import org.lumongo.cluster.message.Lumongo.LastResult;
 import org.lumongo.cluster.message.Lumongo.Query.Operator;
 import org.lumongo.cluster.message.Lumongo.QueryRequest;
 import org.lumongo.cluster.message.Lumongo.QueryResponse;
+import org.lumongo.cluster.message.Lumongo.RangeRequest;
 import org.lumongo.cluster.message.Lumongo.SortRequest;
+import org.lumongo.cluster.message.Lumongo.StatRequest;
 import org.lumongo.cluster.message.LumongoIndex;
 
 import java.util.ArrayList;
@@ -42,6 +44,8 @@ public class Query extends SimpleCommand<QueryRequest, QueryResult> {
 	private LastResult lastResult;
 	private List<CountRequest> countRequests = Collections.emptyList();
 	private List<LMFacet> drillDowns = Collections.emptyList();
+	private List<StatRequest> statRequests = Collections.emptyList();
+	private List<RangeRequest> rangeRequests = Collections.emptyList();
 	private List<FieldSort> fieldSorts = Collections.emptyList();
 	private Set<String> queryFields = Collections.emptySet();
 	private List<Lumongo.Query> filterQueries = Collections.emptyList();
@@ -401,6 +405,13 @@ public class Query extends SimpleCommand<QueryRequest, QueryResult> {
 	}
 
 	public Query addCountRequest(String label, Integer maxFacets, Integer segmentFacets) {
+		return (addCountRequest(label, maxFacets, segmentFacets, null));
+	}
+
+	/**
+	 * @param refine - count the facets that could be in the top facets exactly on the segments that did not return them
+	 */
+	public Query addCountRequest(String label, Integer maxFacets, Integer segmentFacets, Boolean refine) {
 
 		CountRequest.Builder countRequest = CountRequest.newBuilder().setFacetField(LMFacet.newBuilder().setLabel(label).build());
 		if (maxFacets != null) {
@@ -409,6 +420,9 @@ public class Query extends SimpleCommand<QueryRequest, QueryResult> {
 		if (segmentFacets != null) {
 			countRequest.setSegmentFacets(segmentFacets);
 		}
+		if (refine != null) {
+			countRequest.setRefine(refine);
+		}
 		if (countRequests.isEmpty()) {
 			this.countRequests = new ArrayList<>();
 		}
@@ -420,6 +434,40 @@ public class Query extends SimpleCommand<QueryRequest, QueryResult> {
 		return countRequests;
 	}
 
+	/**
+	 * @param sortField - numeric or date sort field to compute min, max, sum and avg of
+	 */
+	public Query addStatRequest(String sortField) {
+		if (statRequests.isEmpty()) {
+			this.statRequests = new ArrayList<>();
+		}
+		statRequests.add(StatRequest.newBuilder().setSortField(sortField).build());
+		return this;
+	}
+
+	public List<StatRequest> getStatRequests() {
+		return statRequests;
+	}
+
+	/**
+	 * @param rangeRequest - ranges and/or a histogram over a numeric or date sort field, dates are given as epoch milliseconds
+	 */
+	public Query addRangeRequest(RangeRequest rangeRequest) {
+		if (rangeRequests.isEmpty()) {
+			this.rangeRequests = new ArrayList<>();
+		}
+		rangeRequests.add(rangeRequest);
+		return this;
+	}
+
+	public Query addHistogramRequest(String sortField, double from, double to, double interval) {
+		return addRangeRequest(RangeRequest.newBuilder().setSortField(sortField).setHistogramFrom(from).setHistogramTo(to).setHistogramInterval(interval).build());
+	}
+
+	public List<RangeRequest> getRangeRequests() {
+		return rangeRequests;
+	}
+
 	public Query addFieldSort(String sort) {
 		if (fieldSorts.isEmpty()) {
 			this.fieldSorts = new ArrayList<>();
@@ -540,13 +588,17 @@ public class Query extends SimpleCommand<QueryRequest, QueryResult> {
 			requestBuilder.addIndex(index);
 		}
 
-		if (!drillDowns.isEmpty() || !countRequests.isEmpty()) {
+		if (!drillDowns.isEmpty() || !countRequests.isEmpty() || !statRequests.isEmpty() || !rangeRequests.isEmpty()) {
 			FacetRequest.Builder facetRequestBuilder = FacetRequest.newBuilder();
 
 			facetRequestBuilder.addAllDrillDown(drillDowns);
 
 			facetRequestBuilder.addAllCountRequest(countRequests);
 
+			facetRequestBuilder.addAllStatRequest(statRequests);
+
+			facetRequestBuilder.addAllRangeRequest(rangeRequests);
+
 			requestBuilder.setFacetRequest(facetRequestBuilder.build());
 
 		}
@@ -0,0 +1,69 @@
+package org.lumongo.client.command;
+
+import io.grpc.Context;
+import org.lumongo.client.command.base.Command;
+import org.lumongo.client.pool.LumongoConnection;
+import org.lumongo.client.result.QueryStreamResult;
+import org.lumongo.cluster.message.ExternalServiceGrpc;
+import org.lumongo.cluster.message.Lumongo.QueryStreamResponse;
+import org.lumongo.cluster.message.Lumongo.ScoredResult;
+
+import java.util.Iterator;
+
+/**
+ * Streams all the results of a query (or the first amount results if an amount is set) in order.  The server only reads ahead
+ * as fast as the handler consumes the results.  Facets, highlighting, analysis and start are ignored when streaming.
+ * If the pool retries a failed stream it starts again from the first result.
+ */
+public class QueryStream extends Command<QueryStreamResult> {
+
+	public interface ResultHandler {
+		void handleResult(ScoredResult scoredResult) throws Exception;
+	}
+
+	private Query query;
+	private ResultHandler resultHandler;
+
+	public QueryStream(Query query, ResultHandler resultHandler) {
+		this.query = query;
+		this.resultHandler = resultHandler;
+	}
+
+	public Query getQuery() {
+		return query;
+	}
+
+	public ResultHandler getResultHandler() {
+		return resultHandler;
+	}
+
+	@Override
+	public QueryStreamResult execute(LumongoConnection lumongoConnection) throws Exception {
+		ExternalServiceGrpc.ExternalServiceBlockingStub service = lumongoConnection.getService();
+
+		long totalHits = 0;
+		long streamed = 0;
+
+		//cancelling the context stops the server if the handler fails before the stream is finished
+		Context.CancellableContext context = Context.current().withCancellation();
+		Context previous = context.attach();
+		try {
+			Iterator<QueryStreamResponse> responses = service.queryStream(query.getRequest());
+			while (responses.hasNext()) {
+				QueryStreamResponse response = responses.next();
+				totalHits = response.getTotalHits();
+				for (ScoredResult scoredResult : response.getResultsList()) {
+					resultHandler.handleResult(scoredResult);
+					streamed++;
+				}
+			}
+		}
+		finally {
+			context.detach(previous);
+			context.cancel(null);
+		}
+
+		return new QueryStreamResult(totalHits, streamed);
+	}
+
+}
@@ -0,0 +1,40 @@
+package org.lumongo.client.command;
+
+import org.lumongo.client.command.base.SimpleCommand;
+import org.lumongo.client.pool.LumongoConnection;
+import org.lumongo.client.result.ReshardResult;
+import org.lumongo.cluster.message.ExternalServiceGrpc;
+import org.lumongo.cluster.message.Lumongo.ReshardRequest;
+import org.lumongo.cluster.message.Lumongo.ReshardResponse;
+
+/**
+ * Splits the segments of an index into a multiple of its current number of segments while the index keeps serving requests
+ */
+public class Reshard extends SimpleCommand<ReshardRequest, ReshardResult> {
+
+	private String indexName;
+	private int numberOfSegments;
+
+	/**
+	 * @param numberOfSegments - new number of segments, a multiple of the current number of segments of the index
+	 */
+	public Reshard(String indexName, int numberOfSegments) {
+		this.indexName = indexName;
+		this.numberOfSegments = numberOfSegments;
+	}
+
+	@Override
+	public ReshardRequest getRequest() {
+		return ReshardRequest.newBuilder().setIndexName(indexName).setNumberOfSegments(numberOfSegments).build();
+	}
+
+	@Override
+	public ReshardResult execute(LumongoConnection lumongoConnection) {
+		ExternalServiceGrpc.ExternalServiceBlockingStub service = lumongoConnection.getService();
+
+		ReshardResponse reshardResponse = service.reshard(getRequest());
+
+		return new ReshardResult(reshardResponse);
+	}
+
+}
@@ -24,6 +24,10 @@ public class IndexConfig {
 	private Boolean storeDocumentInMongo;
 	private Boolean storeDocumentInIndex;
 	private Boolean storeIndexOnDisk;
+	private Boolean cacheIndexOnDisk;
+	private IndexSettings.FacetMode facetMode;
+	private Boolean parallelLeafSearch;
+	private Integer parsedQueryCacheSize;
 
 	private TreeMap<String, FieldConfig> fieldMap;
 	private TreeMap<String, AnalyzerSettings> analyzerSettingsMap;
@@ -199,6 +203,55 @@ public class IndexConfig {
 		this.storeIndexOnDisk = storeIndexOnDisk;
 	}
 
+	public Boolean getCacheIndexOnDisk() {
+		return cacheIndexOnDisk;
+	}
+
+	/**
+	 * Keeps the index in mongo but mirrors the committed index files to local disk and reads them from there
+	 * @param cacheIndexOnDisk
+	 */
+	public void setCacheIndexOnDisk(Boolean cacheIndexOnDisk) {
+		this.cacheIndexOnDisk = cacheIndexOnDisk;
+	}
+
+	public IndexSettings.FacetMode getFacetMode() {
+		return facetMode;
+	}
+
+	/**
+	 * Facets with sorted set doc values in the index instead of a taxonomy index per segment, documents indexed before a change are not counted
+	 * until they are reindexed
+	 * @param facetMode
+	 */
+	public void setFacetMode(IndexSettings.FacetMode facetMode) {
+		this.facetMode = facetMode;
+	}
+
+	public Boolean getParallelLeafSearch() {
+		return parallelLeafSearch;
+	}
+
+	/**
+	 * Searches the leaves of each segment concurrently on the idle cores of the node
+	 * @param parallelLeafSearch
+	 */
+	public void setParallelLeafSearch(Boolean parallelLeafSearch) {
+		this.parallelLeafSearch = parallelLeafSearch;
+	}
+
+	public Integer getParsedQueryCacheSize() {
+		return parsedQueryCacheSize;
+	}
+
+	/**
+	 * Maximum number of parsed queries cached per index on each node, 0 disables the cache
+	 * @param parsedQueryCacheSize
+	 */
+	public void setParsedQueryCacheSize(Integer parsedQueryCacheSize) {
+		this.parsedQueryCacheSize = parsedQueryCacheSize;
+	}
+
 	public IndexSettings getIndexSettings() {
 		IndexSettings.Builder isb = IndexSettings.newBuilder();
 		if (defaultSearchField != null) {
@@ -243,6 +296,22 @@ public class IndexConfig {
 			isb.setStoreIndexOnDisk(storeIndexOnDisk);
 		}
 
+		if (cacheIndexOnDisk != null) {
+			isb.setCacheIndexOnDisk(cacheIndexOnDisk);
+		}
+
+		if (facetMode != null) {
+			isb.setFacetMode(facetMode);
+		}
+
+		if (parallelLeafSearch != null) {
+			isb.setParallelLeafSearch(parallelLeafSearch);
+		}
+
+		if (parsedQueryCacheSize != null) {
+			isb.setParsedQueryCacheSize(parsedQueryCacheSize);
+		}
+
 		for (String fieldName : fieldMap.keySet()) {
 			FieldConfig fieldConfig = fieldMap.get(fieldName);
 			isb.addFieldConfig(fieldConfig);
@@ -268,6 +337,10 @@ public class IndexConfig {
 		this.storeDocumentInIndex = indexSettings.getStoreDocumentInIndex();
 		this.storeDocumentInMongo = indexSettings.getStoreDocumentInMongo();
 		this.storeIndexOnDisk = indexSettings.getStoreIndexOnDisk();
+		this.cacheIndexOnDisk = indexSettings.getCacheIndexOnDisk();
+		this.facetMode = indexSettings.getFacetMode();
+		this.parallelLeafSearch = indexSettings.getParallelLeafSearch();
+		this.parsedQueryCacheSize = indexSettings.getParsedQueryCacheSize();
 		this.fieldMap = new TreeMap<>();
 
 		for (FieldConfig fc : indexSettings.getFieldConfigList()) {
@@ -52,6 +52,14 @@ public class LumongoWorkPool extends LumongoBaseWorkPool {
 		return executeAsync(createOrUpdateIndex);
 	}
 
+	public BatchStoreResult batchStore(BatchStore batchStore) throws Exception {
+		return execute(batchStore);
+	}
+
+	public ListenableFuture<BatchStoreResult> batchStoreAsync(BatchStore batchStore) throws Exception {
+		return executeAsync(batchStore);
+	}
+
 	public DeleteResult delete(Delete delete) throws Exception {
 		return execute(delete);
 	}
@@ -68,6 +76,14 @@ public class LumongoWorkPool extends LumongoBaseWorkPool {
 		return executeAsync(batchDelete);
 	}
 
+	public DeleteByQueryResult deleteByQuery(DeleteByQuery deleteByQuery) throws Exception {
+		return execute(deleteByQuery);
+	}
+
+	public ListenableFuture<DeleteByQueryResult> deleteByQueryAsync(DeleteByQuery deleteByQuery) throws Exception {
+		return executeAsync(deleteByQuery);
+	}
+
 	public DeleteIndexResult deleteIndex(String indexName) throws Exception {
 		return execute(new DeleteIndex(indexName));
 	}
@@ -124,6 +140,14 @@ public class LumongoWorkPool extends LumongoBaseWorkPool {
 		return executeAsync(new GetMembers());
 	}
 
+	public BalanceResult balance(Balance balance) throws Exception {
+		return execute(balance);
+	}
+
+	public ListenableFuture<BalanceResult> balanceAsync(Balance balance) throws Exception {
+		return executeAsync(balance);
+	}
+
 	public GetNumberOfDocsResult getNumberOfDocs(String indexName) throws Exception {
 		return getNumberOfDocs(new GetNumberOfDocs(indexName));
 	}
@@ -156,6 +180,14 @@ public class LumongoWorkPool extends LumongoBaseWorkPool {
 		return executeAsync(optimizeIndex);
 	}
 
+	public ReshardResult reshard(Reshard reshard) throws Exception {
+		return execute(reshard);
+	}
+
+	public ListenableFuture<ReshardResult> reshardAsync(Reshard reshard) throws Exception {
+		return executeAsync(reshard);
+	}
+
 	public QueryResult query(Query query) throws Exception {
 		return execute(query);
 	}
@@ -164,6 +196,14 @@ public class LumongoWorkPool extends LumongoBaseWorkPool {
 		return executeAsync(query);
 	}
 
+	public QueryStreamResult queryStream(QueryStream queryStream) throws Exception {
+		return execute(queryStream);
+	}
+
+	public ListenableFuture<QueryStreamResult> queryStreamAsync(QueryStream queryStream) throws Exception {
+		return executeAsync(queryStream);
+	}
+
 	public StoreResult store(Store store) throws Exception {
 		return execute(store);
 	}
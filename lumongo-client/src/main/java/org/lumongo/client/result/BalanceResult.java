@@ -0,0 +1,25 @@
+package org.lumongo.client.result;
+
+import org.lumongo.cluster.message.Lumongo.BalanceMove;
+import org.lumongo.cluster.message.Lumongo.BalanceResponse;
+
+import java.util.List;
+
+public class BalanceResult extends Result {
+
+	private BalanceResponse balanceResponse;
+
+	public BalanceResult(BalanceResponse balanceResponse) {
+		this.balanceResponse = balanceResponse;
+	}
+
+	public List<BalanceMove> getBalanceMoves() {
+		return balanceResponse.getBalanceMoveList();
+	}
+
+	@Override
+	public String toString() {
+		return balanceResponse.toString();
+	}
+
+}
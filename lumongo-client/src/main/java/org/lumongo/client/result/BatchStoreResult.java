@@ -0,0 +1,17 @@
+package org.lumongo.client.result;
+
+import org.lumongo.cluster.message.Lumongo.BatchStoreResponse;
+
+public class BatchStoreResult extends Result {
+
+	private BatchStoreResponse batchStoreResponse;
+
+	public BatchStoreResult(BatchStoreResponse batchStoreResponse) {
+		this.batchStoreResponse = batchStoreResponse;
+	}
+
+	public long getStored() {
+		return batchStoreResponse.getStored();
+	}
+
+}
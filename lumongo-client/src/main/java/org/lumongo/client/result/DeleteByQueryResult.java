@@ -0,0 +1,17 @@
+package org.lumongo.client.result;
+
+import org.lumongo.cluster.message.Lumongo.DeleteByQueryResponse;
+
+public class DeleteByQueryResult extends Result {
+
+	private DeleteByQueryResponse deleteByQueryResponse;
+
+	public DeleteByQueryResult(DeleteByQueryResponse deleteByQueryResponse) {
+		this.deleteByQueryResponse = deleteByQueryResponse;
+	}
+
+	public long getDeleted() {
+		return deleteByQueryResponse.getDeleted();
+	}
+
+}
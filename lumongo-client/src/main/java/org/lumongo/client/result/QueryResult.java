@@ -6,7 +6,9 @@ import org.lumongo.cluster.message.Lumongo.FacetCount;
 import org.lumongo.cluster.message.Lumongo.FacetGroup;
 import org.lumongo.cluster.message.Lumongo.LastResult;
 import org.lumongo.cluster.message.Lumongo.QueryResponse;
+import org.lumongo.cluster.message.Lumongo.RangeResult;
 import org.lumongo.cluster.message.Lumongo.ScoredResult;
+import org.lumongo.cluster.message.Lumongo.StatResult;
 import org.lumongo.util.ResultHelper;
 
 import java.util.ArrayList;
@@ -86,6 +88,23 @@ public class QueryResult extends Result {
 		return queryResponse.getFacetGroupCount();
 	}
 
+	public List<StatResult> getStatResults() {
+		return queryResponse.getStatResultList();
+	}
+
+	public StatResult getStatResult(String sortField) {
+		for (StatResult statResult : queryResponse.getStatResultList()) {
+			if (sortField.equals(statResult.getStatRequest().getSortField())) {
+				return statResult;
+			}
+		}
+		return null;
+	}
+
+	public List<RangeResult> getRangeResults() {
+		return queryResponse.getRangeResultList();
+	}
+
 	public List<AnalysisResult> getSummaryAnalysisResults() {
 		return queryResponse.getAnalysisResultList();
 	}
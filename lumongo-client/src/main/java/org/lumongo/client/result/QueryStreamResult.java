@@ -0,0 +1,21 @@
+package org.lumongo.client.result;
+
+public class QueryStreamResult extends Result {
+
+	private long totalHits;
+	private long streamed;
+
+	public QueryStreamResult(long totalHits, long streamed) {
+		this.totalHits = totalHits;
+		this.streamed = streamed;
+	}
+
+	public long getTotalHits() {
+		return totalHits;
+	}
+
+	public long getStreamed() {
+		return streamed;
+	}
+
+}
@@ -0,0 +1,22 @@
+package org.lumongo.client.result;
+
+import org.lumongo.cluster.message.Lumongo.ReshardResponse;
+
+public class ReshardResult extends Result {
+
+	private ReshardResponse reshardResponse;
+
+	public ReshardResult(ReshardResponse reshardResponse) {
+		this.reshardResponse = reshardResponse;
+	}
+
+	public int getNumberOfSegments() {
+		return reshardResponse.getNumberOfSegments();
+	}
+
+	@Override
+	public String toString() {
+		return reshardResponse.toString();
+	}
+
+}
@@ -142,6 +142,10 @@ public class Mapper<T> {
 		indexConfig.setStoreDocumentInIndex(settings.storeDocumentInIndex());
 		indexConfig.setStoreDocumentInMongo(settings.storeDocumentInMongo());
 		indexConfig.setStoreIndexOnDisk(settings.storeIndexOnDisk());
+		indexConfig.setCacheIndexOnDisk(settings.cacheIndexOnDisk());
+		indexConfig.setFacetMode(settings.facetMode());
+		indexConfig.setParallelLeafSearch(settings.parallelLeafSearch());
+		indexConfig.setParsedQueryCacheSize(settings.parsedQueryCacheSize());
 
 		for (FieldConfig fieldConfig : fieldConfigMapper.getFieldConfigs()) {
 			indexConfig.addFieldConfig(fieldConfig);
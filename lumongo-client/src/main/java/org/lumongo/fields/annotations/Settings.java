@@ -1,5 +1,7 @@
 package org.lumongo.fields.annotations;
 
+import org.lumongo.cluster.message.LumongoIndex.IndexSettings.FacetMode;
+
 import java.lang.annotation.Documented;
 import java.lang.annotation.ElementType;
 import java.lang.annotation.Inherited;
@@ -37,5 +39,13 @@ public @interface Settings {
 	boolean storeDocumentInMongo() default false;
 
 	boolean storeIndexOnDisk() default false;
+
+	boolean cacheIndexOnDisk() default false;
+
+	FacetMode facetMode() default FacetMode.TAXONOMY;
+
+	boolean parallelLeafSearch() default false;
+
+	int parsedQueryCacheSize() default 1024;
 	
 }
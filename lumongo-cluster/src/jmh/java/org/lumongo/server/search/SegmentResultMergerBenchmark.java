@@ -0,0 +1,120 @@
+package org.lumongo.server.search;
+
+import org.lumongo.cluster.message.Lumongo.FieldSort;
+import org.lumongo.cluster.message.Lumongo.ScoredResult;
+import org.lumongo.cluster.message.Lumongo.SortValue;
+import org.lumongo.cluster.message.Lumongo.SortValues;
+import org.lumongo.cluster.message.LumongoIndex.FieldConfig.FieldType;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares merging the ordered results of each segment with {@link SegmentResultMerger} against collecting every result into one list and
+ * sorting it, as {@link QueryCombiner} did before, for results sorted by score and by several sort fields.  Run with gradle jmh.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SegmentResultMergerBenchmark {
+
+	public enum SortMode {
+		SCORE,
+		FIELDS
+	}
+
+	@Param({ "32" })
+	public int segments;
+
+	@Param({ "1000" })
+	public int resultsPerSegment;
+
+	@Param({ "10", "1000" })
+	public int amount;
+
+	@Param({ "SCORE", "FIELDS" })
+	public SortMode sortMode;
+
+	private List<FieldSort> fieldSortList;
+	private Map<String, FieldType> sortTypeMap;
+	private Comparator<ScoredResult> comparator;
+	private List<List<ScoredResult>> segmentResults;
+
+	@Setup
+	public void setup() {
+		if (SortMode.SCORE.equals(sortMode)) {
+			fieldSortList = Collections.emptyList();
+			sortTypeMap = Collections.emptyMap();
+			comparator = new ScoreCompare();
+		}
+		else {
+			fieldSortList = Arrays.asList(FieldSort.newBuilder().setSortField("an").setDirection(FieldSort.Direction.DESCENDING).build(),
+					FieldSort.newBuilder().setSortField("title").setDirection(FieldSort.Direction.ASCENDING).build(),
+					FieldSort.newBuilder().setSortField("date").setDirection(FieldSort.Direction.ASCENDING).build());
+			sortTypeMap = new HashMap<>();
+			sortTypeMap.put("an", FieldType.NUMERIC_INT);
+			sortTypeMap.put("title", FieldType.STRING);
+			sortTypeMap.put("date", FieldType.DATE);
+			comparator = QueryCombiner.getComparator(fieldSortList, sortTypeMap);
+		}
+
+		Random random = new Random(1234);
+		segmentResults = new ArrayList<>(segments);
+		int resultIndex = 0;
+		for (int s = 0; s < segments; s++) {
+			List<ScoredResult> results = new ArrayList<>(resultsPerSegment);
+			for (int i = 0; i < resultsPerSegment; i++) {
+				ScoredResult.Builder scoredResult = ScoredResult.newBuilder().setUniqueId("id-" + resultIndex).setIndexName("benchmarkIndex")
+						.setSegment(s).setResultIndex(resultIndex++).setScore(random.nextFloat());
+				if (SortMode.FIELDS.equals(sortMode)) {
+					//few distinct values so the later sort fields break ties
+					SortValues sortValues = SortValues.newBuilder().addSortValue(SortValue.newBuilder().setExists(true).setIntegerValue(random.nextInt(100)))
+							.addSortValue(SortValue.newBuilder().setExists(true).setStringValue("title-" + random.nextInt(100)))
+							.addSortValue(SortValue.newBuilder().setExists(true).setDateValue(random.nextInt(1000000))).build();
+					scoredResult.setSortValues(sortValues);
+				}
+				results.add(scoredResult.build());
+			}
+			//each segment returns its results in order
+			results.sort(comparator);
+			segmentResults.add(results);
+		}
+	}
+
+	@Benchmark
+	public List<ScoredResult> segmentResultMerger() {
+		return new SegmentResultMerger(fieldSortList, sortTypeMap).merge(segmentResults, amount);
+	}
+
+	@Benchmark
+	public List<ScoredResult> collectAndSort() {
+		List<ScoredResult> mergedResults = new ArrayList<>(segments * resultsPerSegment);
+		for (List<ScoredResult> results : segmentResults) {
+			mergedResults.addAll(results);
+		}
+		Collections.sort(mergedResults, comparator);
+		return mergedResults.subList(0, Math.min(amount, mergedResults.size()));
+	}
+
+}
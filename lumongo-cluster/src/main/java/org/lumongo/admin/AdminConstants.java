@@ -17,6 +17,7 @@ public class AdminConstants {
 	public static final String OUTPUT_FILE = "outputFile";
 	public static final String PORT = "port";
 	public static final String INDEX = "index";
+	public static final String NUMBER_OF_SEGMENTS = "numberOfSegments";
 	public static final String FIELD = "field";
 	public static final String MIN_DOC_FREQ = "minDocFreq";
 	public static final String MIN_TERM_FREQ = "minTermFreq";
@@ -6,6 +6,7 @@ import joptsimple.OptionParser;
 import joptsimple.OptionSet;
 import joptsimple.OptionSpec;
 import org.lumongo.admin.help.LumongoHelpFormatter;
+import org.lumongo.client.command.Balance;
 import org.lumongo.client.command.ClearIndex;
 import org.lumongo.client.command.DeleteIndex;
 import org.lumongo.client.command.GetFields;
@@ -13,8 +14,10 @@ import org.lumongo.client.command.GetIndexes;
 import org.lumongo.client.command.GetMembers;
 import org.lumongo.client.command.GetNumberOfDocs;
 import org.lumongo.client.command.OptimizeIndex;
+import org.lumongo.client.command.Reshard;
 import org.lumongo.client.config.LumongoPoolConfig;
 import org.lumongo.client.pool.LumongoWorkPool;
+import org.lumongo.client.result.BalanceResult;
 import org.lumongo.client.result.ClearIndexResult;
 import org.lumongo.client.result.DeleteIndexResult;
 import org.lumongo.client.result.GetFieldsResult;
@@ -22,6 +25,8 @@ import org.lumongo.client.result.GetIndexesResult;
 import org.lumongo.client.result.GetMembersResult;
 import org.lumongo.client.result.GetNumberOfDocsResult;
 import org.lumongo.client.result.OptimizeIndexResult;
+import org.lumongo.client.result.ReshardResult;
+import org.lumongo.cluster.message.Lumongo.BalanceMove;
 import org.lumongo.cluster.message.Lumongo.LMMember;
 import org.lumongo.cluster.message.Lumongo.SegmentCountResponse;
 import org.lumongo.util.LogUtil;
@@ -39,6 +44,8 @@ public class IndexAdmin {
 		OptionSpec<Integer> portArg = parser.accepts(AdminConstants.PORT).withRequiredArg().ofType(Integer.class).defaultsTo(32191)
 				.describedAs("Lumongo external port");
 		OptionSpec<String> indexArg = parser.accepts(AdminConstants.INDEX).withRequiredArg().describedAs("Index to perform action");
+		OptionSpec<Integer> numberOfSegmentsArg = parser.accepts(AdminConstants.NUMBER_OF_SEGMENTS).withRequiredArg().ofType(Integer.class)
+				.describedAs("New number of segments for reshard, a multiple of the current number of segments");
 		OptionSpec<Command> commandArg = parser.accepts(AdminConstants.COMMAND).withRequiredArg().ofType(Command.class).required()
 				.describedAs("Command to run " + Arrays.toString(Command.values()));
 
@@ -108,6 +115,30 @@ public class IndexAdmin {
 					System.out.println(val.getServerAddress() + "\t" + val.getHazelcastPort() + "\t" + val.getInternalPort() + "\t" + val.getExternalPort());
 				}
 			}
+			else if (Command.proposeBalance.equals(command) || Command.balance.equals(command)) {
+
+				BalanceResult response = lumongoWorkPool.execute(new Balance().setDryRun(Command.proposeBalance.equals(command)));
+
+				System.out.println("indexName\tsegmentNumber\tfromMember\ttoMember\tweight");
+				for (BalanceMove val : response.getBalanceMoves()) {
+					System.out.println(val.getIndexName() + "\t" + val.getSegmentNumber() + "\t" + getMemberName(val.getFromMember()) + "\t" + getMemberName(
+							val.getToMember()) + "\t" + val.getWeight());
+				}
+				System.out.println("Moves:\n" + response.getBalanceMoves().size());
+			}
+			else if (Command.reshard.equals(command)) {
+				if (index == null) {
+					throw new IllegalArgumentException(AdminConstants.INDEX + " is required for " + command.toString());
+				}
+				Integer numberOfSegments = options.valueOf(numberOfSegmentsArg);
+				if (numberOfSegments == null) {
+					throw new IllegalArgumentException(AdminConstants.NUMBER_OF_SEGMENTS + " is required for " + command.toString());
+				}
+
+				System.out.println("Resharding Index:\n" + index);
+				ReshardResult response = lumongoWorkPool.execute(new Reshard(index, numberOfSegments));
+				System.out.println("Segments:\n" + response.getNumberOfSegments());
+			}
 			else if (Command.deleteIndex.equals(command)) {
 				if (index == null) {
 					throw new IllegalArgumentException(AdminConstants.INDEX + " is required for " + command.toString());
@@ -143,6 +174,10 @@ public class IndexAdmin {
 		System.exit(exitCode);
 	}
 
+	private static String getMemberName(LMMember member) {
+		return member.getServerAddress() + ":" + member.getHazelcastPort();
+	}
+
 	public enum Command {
 		clear,
 		optimize,
@@ -150,6 +185,9 @@ public class IndexAdmin {
 		getFields,
 		getIndexes,
 		getCurrentMembers,
-		deleteIndex
+		deleteIndex,
+		proposeBalance,
+		balance,
+		reshard
 	}
 }
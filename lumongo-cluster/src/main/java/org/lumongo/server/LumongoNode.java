@@ -12,6 +12,8 @@ import org.lumongo.server.connection.InternalServiceServer;
 import org.lumongo.server.hazelcast.HazelcastManager;
 import org.lumongo.server.index.LumongoIndexManager;
 import org.lumongo.server.rest.RestServiceManager;
+import org.lumongo.server.search.LeafSearchExecutor;
+import org.lumongo.server.search.LumongoQueryCache;
 import org.lumongo.storage.lucene.MongoDirectory;
 import org.lumongo.util.ClusterHelper;
 import org.lumongo.util.LogUtil;
@@ -50,7 +52,15 @@ public class LumongoNode {
 
 		log.info("Loaded cluster config: <" + clusterConfig + ">");
 
-		MongoDirectory.setMaxIndexBlocks(clusterConfig.getMaxIndexBlocks());
+		if (clusterConfig.getOffHeapIndexCacheMB() > 0) {
+			MongoDirectory.setOffHeapCacheSize(clusterConfig.getOffHeapIndexCacheMB() * 1024L * 1024L);
+		}
+		else {
+			MongoDirectory.setMaxIndexBlocks(clusterConfig.getMaxIndexBlocks());
+		}
+
+		LumongoQueryCache.configure(clusterConfig.getFilterQueryCacheSize(), clusterConfig.getFilterQueryCacheMB());
+		LeafSearchExecutor.configure(clusterConfig.getLeafSearchThreads());
 
 		this.indexManager = new LumongoIndexManager(mongo, mongoConfig, clusterConfig);
 
@@ -88,6 +98,10 @@ public class LumongoNode {
 		});
 	}
 
+	public LumongoIndexManager getIndexManager() {
+		return indexManager;
+	}
+
 	public void shutdown() {
 
 		externalServiceServer.shutdown();
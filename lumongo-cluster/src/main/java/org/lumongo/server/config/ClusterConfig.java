@@ -1,6 +1,10 @@
 package org.lumongo.server.config;
 
 import org.bson.Document;
+import org.lumongo.server.index.balance.WeightedBalanceStrategy;
+import org.lumongo.server.search.LeafSearchExecutor;
+import org.lumongo.server.search.LumongoQueryCache;
+import org.lumongo.storage.lucene.DistributedDirectory;
 import org.lumongo.util.properties.PropertiesReader;
 import org.lumongo.util.properties.PropertiesReader.PropertyException;
 
@@ -12,12 +16,71 @@ public class ClusterConfig {
 	public static final String SHARDED = "sharded";
 	public static final String INDEX_BLOCK_SIZE = "indexBlockSize";
 	public static final String MAX_INDEX_BLOCKS = "maxIndexBlocks";
+	public static final String INDEX_READ_AHEAD_BLOCKS = "indexReadAheadBlocks";
+	public static final String OFF_HEAP_INDEX_CACHE_MB = "offHeapIndexCacheMB";
+	public static final String FILTER_QUERY_CACHE_SIZE = "filterQueryCacheSize";
+	public static final String FILTER_QUERY_CACHE_MB = "filterQueryCacheMB";
+	public static final String LEAF_SEARCH_THREADS = "leafSearchThreads";
+	public static final String QUERY_LANE_THREADS = "queryLaneThreads";
+	public static final String QUERY_LANE_QUEUE_SIZE = "queryLaneQueueSize";
+	public static final String FETCH_LANE_THREADS = "fetchLaneThreads";
+	public static final String FETCH_LANE_QUEUE_SIZE = "fetchLaneQueueSize";
+	public static final String INDEX_LANE_THREADS = "indexLaneThreads";
+	public static final String INDEX_LANE_QUEUE_SIZE = "indexLaneQueueSize";
+	public static final String SEGMENT_LOAD_THREADS = "segmentLoadThreads";
+	public static final String SEGMENT_WARM_MB = "segmentWarmMB";
+	public static final String BALANCE_STRATEGY = "balanceStrategy";
 	public static final String MAX_INTERNAL_CLIENT_CONNECTIONS = "maxInternalClientConnections";
 	public static final String INTERNAL_WORKERS = "internalWorkers";
 	public static final String EXTERNAL_WORKERS = "externalWorkers";
 	public static final String INTERNAL_SHUTDOWN_TIMEOUT = "internalShutdownTimeout";
 	public static final String EXTERNAL_SHUTDOWN_TIMEOUT = "externalShutdownTimeout";
 	
+	public static final int DEFAULT_LANE_QUEUE_SIZE = 1024;
+	public static final int DEFAULT_SEGMENT_WARM_MB = 128;
+	
+	/**
+	 * Opening a segment mostly waits on the segment lock and reading index files from mongo so loads use at least 4 threads
+	 */
+	public static int getDefaultSegmentLoadThreads() {
+		return Math.max(4, Runtime.getRuntime().availableProcessors());
+	}
+	
+	/**
+	 * Lane threads mostly wait on reading index blocks and documents from mongo so a lane defaults to twice the cores of the node
+	 */
+	public static int getDefaultLaneThreads() {
+		return Runtime.getRuntime().availableProcessors() * 2;
+	}
+	
+	private static int getInteger(PropertiesReader propertiesReader, String key, int defaultValue) throws PropertyException {
+		if (propertiesReader.hasKey(key)) {
+			return propertiesReader.getInteger(key);
+		}
+		return defaultValue;
+	}
+	
+	private static String getString(PropertiesReader propertiesReader, String key, String defaultValue) throws PropertyException {
+		if (propertiesReader.hasKey(key)) {
+			return propertiesReader.getString(key);
+		}
+		return defaultValue;
+	}
+	
+	private static String getString(Document settings, String key, String defaultValue) {
+		if (settings.containsKey(key)) {
+			return (String) settings.get(key);
+		}
+		return defaultValue;
+	}
+	
+	private static int getInteger(Document settings, String key, int defaultValue) {
+		if (settings.containsKey(key)) {
+			return (int) settings.get(key);
+		}
+		return defaultValue;
+	}
+	
 	public static ClusterConfig getClusterConfig(File propertiesFile) throws IOException, PropertyException {
 		PropertiesReader propertiesReader = new PropertiesReader(propertiesFile);
 		return new ClusterConfig(propertiesReader);
@@ -34,6 +97,22 @@ public class ClusterConfig {
 	// general
 	private int indexBlockSize;
 	private int maxIndexBlocks;
+	private int indexReadAheadBlocks;
+	private int offHeapIndexCacheMB;
+	private int filterQueryCacheSize;
+	private int filterQueryCacheMB;
+	private int leafSearchThreads;
+	
+	// index lanes
+	private int queryLaneThreads;
+	private int queryLaneQueueSize;
+	private int fetchLaneThreads;
+	private int fetchLaneQueueSize;
+	private int indexLaneThreads;
+	private int indexLaneQueueSize;
+	private int segmentLoadThreads;
+	private int segmentWarmMB;
+	private String balanceStrategy;
 	
 	// sockets
 	private int maxInternalClientConnections;
@@ -55,6 +134,41 @@ public class ClusterConfig {
 		indexBlockSize = propertiesReader.getInteger(INDEX_BLOCK_SIZE);
 		maxIndexBlocks = propertiesReader.getInteger(MAX_INDEX_BLOCKS);
 		
+		indexReadAheadBlocks = DistributedDirectory.DEFAULT_READ_AHEAD_BLOCKS;
+		if (propertiesReader.hasKey(INDEX_READ_AHEAD_BLOCKS)) {
+			indexReadAheadBlocks = propertiesReader.getInteger(INDEX_READ_AHEAD_BLOCKS);
+		}
+		
+		offHeapIndexCacheMB = 0;
+		if (propertiesReader.hasKey(OFF_HEAP_INDEX_CACHE_MB)) {
+			offHeapIndexCacheMB = propertiesReader.getInteger(OFF_HEAP_INDEX_CACHE_MB);
+		}
+		
+		filterQueryCacheSize = LumongoQueryCache.DEFAULT_MAX_QUERIES;
+		if (propertiesReader.hasKey(FILTER_QUERY_CACHE_SIZE)) {
+			filterQueryCacheSize = propertiesReader.getInteger(FILTER_QUERY_CACHE_SIZE);
+		}
+		
+		filterQueryCacheMB = LumongoQueryCache.DEFAULT_MAX_MB;
+		if (propertiesReader.hasKey(FILTER_QUERY_CACHE_MB)) {
+			filterQueryCacheMB = propertiesReader.getInteger(FILTER_QUERY_CACHE_MB);
+		}
+		
+		leafSearchThreads = LeafSearchExecutor.getDefaultThreads();
+		if (propertiesReader.hasKey(LEAF_SEARCH_THREADS)) {
+			leafSearchThreads = propertiesReader.getInteger(LEAF_SEARCH_THREADS);
+		}
+		
+		queryLaneThreads = getInteger(propertiesReader, QUERY_LANE_THREADS, getDefaultLaneThreads());
+		queryLaneQueueSize = getInteger(propertiesReader, QUERY_LANE_QUEUE_SIZE, DEFAULT_LANE_QUEUE_SIZE);
+		fetchLaneThreads = getInteger(propertiesReader, FETCH_LANE_THREADS, getDefaultLaneThreads());
+		fetchLaneQueueSize = getInteger(propertiesReader, FETCH_LANE_QUEUE_SIZE, DEFAULT_LANE_QUEUE_SIZE);
+		indexLaneThreads = getInteger(propertiesReader, INDEX_LANE_THREADS, getDefaultLaneThreads());
+		indexLaneQueueSize = getInteger(propertiesReader, INDEX_LANE_QUEUE_SIZE, DEFAULT_LANE_QUEUE_SIZE);
+		segmentLoadThreads = getInteger(propertiesReader, SEGMENT_LOAD_THREADS, getDefaultSegmentLoadThreads());
+		segmentWarmMB = getInteger(propertiesReader, SEGMENT_WARM_MB, DEFAULT_SEGMENT_WARM_MB);
+		balanceStrategy = getString(propertiesReader, BALANCE_STRATEGY, WeightedBalanceStrategy.class.getName());
+		
 		maxInternalClientConnections = propertiesReader.getInteger(MAX_INTERNAL_CLIENT_CONNECTIONS);
 		internalWorkers = propertiesReader.getInteger(INTERNAL_WORKERS);
 		externalWorkers = propertiesReader.getInteger(EXTERNAL_WORKERS);
@@ -76,6 +190,83 @@ public class ClusterConfig {
 		return maxIndexBlocks;
 	}
 	
+	public int getIndexReadAheadBlocks() {
+		return indexReadAheadBlocks;
+	}
+	
+	/**
+	 * @return size of the off heap index block cache in MB, 0 when blocks are cached on heap limited by {@link #getMaxIndexBlocks()}
+	 */
+	public int getOffHeapIndexCacheMB() {
+		return offHeapIndexCacheMB;
+	}
+	
+	/**
+	 * @return maximum number of filter queries cached per node, 0 disables the filter query cache
+	 */
+	public int getFilterQueryCacheSize() {
+		return filterQueryCacheSize;
+	}
+	
+	public int getFilterQueryCacheMB() {
+		return filterQueryCacheMB;
+	}
+	
+	/**
+	 * @return number of threads per node searching the leaves of segments concurrently for indexes with parallel leaf search, 0 disables it
+	 */
+	public int getLeafSearchThreads() {
+		return leafSearchThreads;
+	}
+	
+	public int getQueryLaneThreads() {
+		return queryLaneThreads;
+	}
+	
+	/**
+	 * @return maximum number of segment searches waiting per index before queries are rejected with resource exhausted
+	 */
+	public int getQueryLaneQueueSize() {
+		return queryLaneQueueSize;
+	}
+	
+	public int getFetchLaneThreads() {
+		return fetchLaneThreads;
+	}
+	
+	public int getFetchLaneQueueSize() {
+		return fetchLaneQueueSize;
+	}
+	
+	public int getIndexLaneThreads() {
+		return indexLaneThreads;
+	}
+	
+	public int getIndexLaneQueueSize() {
+		return indexLaneQueueSize;
+	}
+	
+	/**
+	 * @return number of threads per node opening segments concurrently
+	 */
+	public int getSegmentLoadThreads() {
+		return segmentLoadThreads;
+	}
+	
+	/**
+	 * @return maximum MB of hot index files read into the block cache for a segment handed to this node before it takes the segment over
+	 */
+	public int getSegmentWarmMB() {
+		return segmentWarmMB;
+	}
+	
+	/**
+	 * @return class name of the {@link org.lumongo.server.index.balance.BalanceStrategy} choosing the segments moved between members
+	 */
+	public String getBalanceStrategy() {
+		return balanceStrategy;
+	}
+	
 	public int getMaxInternalClientConnections() {
 		return maxInternalClientConnections;
 	}
@@ -101,6 +292,20 @@ public class ClusterConfig {
 		document.put(SHARDED, sharded);
 		document.put(INDEX_BLOCK_SIZE, indexBlockSize);
 		document.put(MAX_INDEX_BLOCKS, maxIndexBlocks);
+		document.put(INDEX_READ_AHEAD_BLOCKS, indexReadAheadBlocks);
+		document.put(OFF_HEAP_INDEX_CACHE_MB, offHeapIndexCacheMB);
+		document.put(FILTER_QUERY_CACHE_SIZE, filterQueryCacheSize);
+		document.put(FILTER_QUERY_CACHE_MB, filterQueryCacheMB);
+		document.put(LEAF_SEARCH_THREADS, leafSearchThreads);
+		document.put(QUERY_LANE_THREADS, queryLaneThreads);
+		document.put(QUERY_LANE_QUEUE_SIZE, queryLaneQueueSize);
+		document.put(FETCH_LANE_THREADS, fetchLaneThreads);
+		document.put(FETCH_LANE_QUEUE_SIZE, fetchLaneQueueSize);
+		document.put(INDEX_LANE_THREADS, indexLaneThreads);
+		document.put(INDEX_LANE_QUEUE_SIZE, indexLaneQueueSize);
+		document.put(SEGMENT_LOAD_THREADS, segmentLoadThreads);
+		document.put(SEGMENT_WARM_MB, segmentWarmMB);
+		document.put(BALANCE_STRATEGY, balanceStrategy);
 		document.put(MAX_INTERNAL_CLIENT_CONNECTIONS, maxInternalClientConnections);
 		document.put(INTERNAL_WORKERS, internalWorkers);
 		document.put(EXTERNAL_WORKERS, externalWorkers);
@@ -115,6 +320,34 @@ public class ClusterConfig {
 		clusterConfig.sharded = (boolean) settings.get(SHARDED);
 		clusterConfig.indexBlockSize = (int) settings.get(INDEX_BLOCK_SIZE);
 		clusterConfig.maxIndexBlocks = (int) settings.get(MAX_INDEX_BLOCKS);
+		clusterConfig.indexReadAheadBlocks = DistributedDirectory.DEFAULT_READ_AHEAD_BLOCKS;
+		if (settings.containsKey(INDEX_READ_AHEAD_BLOCKS)) {
+			clusterConfig.indexReadAheadBlocks = (int) settings.get(INDEX_READ_AHEAD_BLOCKS);
+		}
+		if (settings.containsKey(OFF_HEAP_INDEX_CACHE_MB)) {
+			clusterConfig.offHeapIndexCacheMB = (int) settings.get(OFF_HEAP_INDEX_CACHE_MB);
+		}
+		clusterConfig.filterQueryCacheSize = LumongoQueryCache.DEFAULT_MAX_QUERIES;
+		if (settings.containsKey(FILTER_QUERY_CACHE_SIZE)) {
+			clusterConfig.filterQueryCacheSize = (int) settings.get(FILTER_QUERY_CACHE_SIZE);
+		}
+		clusterConfig.filterQueryCacheMB = LumongoQueryCache.DEFAULT_MAX_MB;
+		if (settings.containsKey(FILTER_QUERY_CACHE_MB)) {
+			clusterConfig.filterQueryCacheMB = (int) settings.get(FILTER_QUERY_CACHE_MB);
+		}
+		clusterConfig.leafSearchThreads = LeafSearchExecutor.getDefaultThreads();
+		if (settings.containsKey(LEAF_SEARCH_THREADS)) {
+			clusterConfig.leafSearchThreads = (int) settings.get(LEAF_SEARCH_THREADS);
+		}
+		clusterConfig.queryLaneThreads = getInteger(settings, QUERY_LANE_THREADS, getDefaultLaneThreads());
+		clusterConfig.queryLaneQueueSize = getInteger(settings, QUERY_LANE_QUEUE_SIZE, DEFAULT_LANE_QUEUE_SIZE);
+		clusterConfig.fetchLaneThreads = getInteger(settings, FETCH_LANE_THREADS, getDefaultLaneThreads());
+		clusterConfig.fetchLaneQueueSize = getInteger(settings, FETCH_LANE_QUEUE_SIZE, DEFAULT_LANE_QUEUE_SIZE);
+		clusterConfig.indexLaneThreads = getInteger(settings, INDEX_LANE_THREADS, getDefaultLaneThreads());
+		clusterConfig.indexLaneQueueSize = getInteger(settings, INDEX_LANE_QUEUE_SIZE, DEFAULT_LANE_QUEUE_SIZE);
+		clusterConfig.segmentLoadThreads = getInteger(settings, SEGMENT_LOAD_THREADS, getDefaultSegmentLoadThreads());
+		clusterConfig.segmentWarmMB = getInteger(settings, SEGMENT_WARM_MB, DEFAULT_SEGMENT_WARM_MB);
+		clusterConfig.balanceStrategy = getString(settings, BALANCE_STRATEGY, WeightedBalanceStrategy.class.getName());
 		clusterConfig.maxInternalClientConnections = (int) settings.get(MAX_INTERNAL_CLIENT_CONNECTIONS);
 		clusterConfig.internalWorkers = (int) settings.get(INTERNAL_WORKERS);
 		clusterConfig.externalWorkers = (int) settings.get(EXTERNAL_WORKERS);
@@ -126,8 +359,10 @@ public class ClusterConfig {
 	@Override
 	public String toString() {
 		return "ClusterConfig [sharded=" + sharded + ", indexBlockSize=" + indexBlockSize + ", maxIndexBlocks=" + maxIndexBlocks
-						+ ", maxInternalClientConnections=" + maxInternalClientConnections + ", internalWorkers=" + internalWorkers + ", externalWorkers="
-						+ externalWorkers + ", internalShutdownTimeout=" + internalShutdownTimeout + ", externalShutdownTimeout=" + externalShutdownTimeout
-						+ "]";
+						+ ", indexReadAheadBlocks=" + indexReadAheadBlocks + ", offHeapIndexCacheMB=" + offHeapIndexCacheMB + ", filterQueryCacheSize="
+						+ filterQueryCacheSize + ", filterQueryCacheMB=" + filterQueryCacheMB + ", leafSearchThreads=" + leafSearchThreads + ", queryLaneThreads=" + queryLaneThreads
+						+ ", queryLaneQueueSize=" + queryLaneQueueSize + ", fetchLaneThreads=" + fetchLaneThreads + ", fetchLaneQueueSize=" + fetchLaneQueueSize
+						+ ", indexLaneThreads=" + indexLaneThreads + ", indexLaneQueueSize=" + indexLaneQueueSize + ", segmentLoadThreads=" + segmentLoadThreads + ", segmentWarmMB=" + segmentWarmMB + ", balanceStrategy=" + balanceStrategy + ", maxInternalClientConnections=" + maxInternalClientConnections + ", internalWorkers=" + internalWorkers + ", externalWorkers=" + externalWorkers
+						+ ", internalShutdownTimeout=" + internalShutdownTimeout + ", externalShutdownTimeout=" + externalShutdownTimeout + "]";
 	}
 }
@@ -23,7 +23,7 @@ import static org.lumongo.cluster.message.LumongoIndex.*;
 
 public class IndexConfig {
 
-	private int numberOfSegments;
+	private volatile int numberOfSegments;
 	private String indexName;
 	private IndexSettings indexSettings;
 
@@ -199,6 +199,10 @@ public class IndexConfig {
 		return numberOfSegments;
 	}
 
+	public void setNumberOfSegments(int numberOfSegments) {
+		this.numberOfSegments = numberOfSegments;
+	}
+
 	public String getIndexName() {
 		return indexName;
 	}
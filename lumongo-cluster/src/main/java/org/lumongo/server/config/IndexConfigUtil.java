@@ -34,6 +34,10 @@ public class IndexConfigUtil {
 	private static final String STORE_DOCUMENT_IN_MONGO = "storeDocumentInMongo";
 	private static final String STORE_DOCUMENT_IN_INDEX = "storeDocumentInIndex";
 	private static final String STORE_INDEX_ON_DISK = "storeIndexOnDisk";
+	private static final String CACHE_INDEX_ON_DISK = "cacheIndexOnDisk";
+	private static final String FACET_MODE = "facetMode";
+	private static final String PARALLEL_LEAF_SEARCH = "parallelLeafSearch";
+	private static final String PARSED_QUERY_CACHE_SIZE = "parsedQueryCacheSize";
 	private static final String SEGMENT_TOLERANCE = "segmentTolerance";
 	private static final String FIELD_CONFIGS = "fieldConfigs";
 	private static final String STORED_FIELD_NAME = "storedFieldName";
@@ -105,6 +109,18 @@ public class IndexConfigUtil {
 		indexSettings.setSegmentQueryCacheSize(settings.getInteger(SEGMENT_QUERY_CACHE_SIZE));
 		indexSettings.setSegmentQueryCacheMaxAmount(settings.getInteger(SEGMENT_QUERY_CACHE_MAX_AMOUNT));
 		indexSettings.setStoreIndexOnDisk(settings.getBoolean(STORE_INDEX_ON_DISK));
+		if (settings.containsKey(CACHE_INDEX_ON_DISK)) {
+			indexSettings.setCacheIndexOnDisk(settings.getBoolean(CACHE_INDEX_ON_DISK));
+		}
+		if (settings.containsKey(FACET_MODE)) {
+			indexSettings.setFacetMode(IndexSettings.FacetMode.valueOf(settings.getString(FACET_MODE)));
+		}
+		if (settings.containsKey(PARALLEL_LEAF_SEARCH)) {
+			indexSettings.setParallelLeafSearch(settings.getBoolean(PARALLEL_LEAF_SEARCH));
+		}
+		if (settings.containsKey(PARSED_QUERY_CACHE_SIZE)) {
+			indexSettings.setParsedQueryCacheSize(settings.getInteger(PARSED_QUERY_CACHE_SIZE));
+		}
 
 		Document analyzerSettings = settings.get(ANALYZER_SETTINGS, Document.class);
 		for (String key : analyzerSettings.keySet()) {
@@ -241,6 +257,10 @@ public class IndexConfigUtil {
 		document.put(STORE_DOCUMENT_IN_MONGO, indexSettings.getStoreDocumentInMongo());
 		document.put(STORE_DOCUMENT_IN_INDEX, indexSettings.getStoreDocumentInIndex());
 		document.put(STORE_INDEX_ON_DISK, indexSettings.getStoreIndexOnDisk());
+		document.put(CACHE_INDEX_ON_DISK, indexSettings.getCacheIndexOnDisk());
+		document.put(FACET_MODE, indexSettings.getFacetMode().name());
+		document.put(PARALLEL_LEAF_SEARCH, indexSettings.getParallelLeafSearch());
+		document.put(PARSED_QUERY_CACHE_SIZE, indexSettings.getParsedQueryCacheSize());
 		document.put(APPLY_UNCOMMITTED_DELETES, indexSettings.getApplyUncommittedDeletes());
 		document.put(REQUEST_FACTOR, indexSettings.getRequestFactor());
 		document.put(MIN_SEGMENT_REQUEST, indexSettings.getMinSegmentRequest());
@@ -1,5 +1,11 @@
 package org.lumongo.server.connection;
 
+import io.grpc.Metadata;
+import io.grpc.Status;
+import io.grpc.StatusRuntimeException;
+import org.lumongo.server.exceptions.ResourceExhausted;
+import org.lumongo.util.cache.MetaKeys;
+
 import java.net.InetAddress;
 import java.net.UnknownHostException;
 
@@ -20,4 +26,35 @@ public class ConnectionHelper {
 	public static String getHostName() {
 		return myHostName;
 	}
+
+	/**
+	 * @return the status for a failed request, RESOURCE_EXHAUSTED when the request was rejected by a full lane so the client can back off
+	 */
+	public static Status getStatus(Throwable t) {
+		if (ResourceExhausted.isResourceExhausted(t)) {
+			return Status.RESOURCE_EXHAUSTED.withDescription(t.getMessage());
+		}
+		return Status.UNKNOWN;
+	}
+
+	/**
+	 * Throws a request rejected by a full lane on another member as a resource exhausted exception so the rejection reaches the client
+	 */
+	public static void rethrowResourceExhausted(StatusRuntimeException e) {
+		if (Status.Code.RESOURCE_EXHAUSTED.equals(e.getStatus().getCode())) {
+			throw new ResourceExhausted(e.getStatus().getDescription());
+		}
+	}
+
+	/**
+	 * @return the error to send for a failed request, requests rejected by a full lane are sent with a RESOURCE_EXHAUSTED status
+	 */
+	public static Throwable getResponseError(Exception e) {
+		if (ResourceExhausted.isResourceExhausted(e)) {
+			Metadata m = new Metadata();
+			m.put(MetaKeys.ERROR_KEY, e.getMessage());
+			return new StatusRuntimeException(getStatus(e), m);
+		}
+		return e;
+	}
 }
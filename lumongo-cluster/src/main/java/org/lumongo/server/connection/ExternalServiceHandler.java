@@ -1,8 +1,8 @@
 package org.lumongo.server.connection;
 
 import io.grpc.Metadata;
-import io.grpc.Status;
 import io.grpc.StatusRuntimeException;
+import io.grpc.stub.ServerCallStreamObserver;
 import io.grpc.stub.StreamObserver;
 import org.apache.log4j.Logger;
 import org.bson.BSON;
@@ -12,17 +12,31 @@ import org.lumongo.cluster.message.Lumongo;
 import org.lumongo.cluster.message.Lumongo.*;
 import org.lumongo.server.config.IndexConfig;
 import org.lumongo.server.index.LumongoIndexManager;
+import org.lumongo.util.LumongoThreadFactory;
 import org.lumongo.util.cache.MetaKeys;
 
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceImplBase {
 	private final static Logger log = Logger.getLogger(ExternalServiceHandler.class);
 
+	/**
+	 * maximum number of documents or serialized bytes buffered from a batch store stream before they are stored
+	 */
+	public static final int BATCH_STORE_MAX_DOCUMENTS = 500;
+	public static final int BATCH_STORE_MAX_BYTES = 16 * 1024 * 1024;
+
 	private final LumongoIndexManager indexManger;
 
+	private final ExecutorService queryStreamPool;
+
 	public ExternalServiceHandler(LumongoIndexManager indexManger) throws UnknownHostException {
 		this.indexManger = indexManger;
+		this.queryStreamPool = Executors.newCachedThreadPool(new LumongoThreadFactory("queryStream"));
 	}
 
 	@Override
@@ -35,11 +49,60 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 			log.error("Failed to run query: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
 			Metadata m = new Metadata();
 			m.put(MetaKeys.ERROR_KEY, e.getMessage());
-			responseObserver.onError(new StatusRuntimeException(Status.UNKNOWN, m));
+			responseObserver.onError(new StatusRuntimeException(ConnectionHelper.getStatus(e), m));
 		}
 
 	}
 
+	/**
+	 * Streams the results in batches from its own thread.  A batch is only sent when the transport is ready for it so a slow client
+	 * pauses the merge and the segment cursors instead of buffering the results on the server.
+	 */
+	@Override
+	public void queryStream(QueryRequest request, StreamObserver<QueryStreamResponse> responseObserver) {
+		ServerCallStreamObserver<QueryStreamResponse> serverCallStreamObserver = (ServerCallStreamObserver<QueryStreamResponse>) responseObserver;
+
+		final Object readyLock = new Object();
+		Runnable notifyReady = () -> {
+			synchronized (readyLock) {
+				readyLock.notifyAll();
+			}
+		};
+		serverCallStreamObserver.setOnReadyHandler(notifyReady);
+		serverCallStreamObserver.setOnCancelHandler(notifyReady);
+
+		queryStreamPool.execute(() -> {
+			try {
+				indexManger.queryStream(request, (totalHits, results) -> {
+					synchronized (readyLock) {
+						while (!serverCallStreamObserver.isReady() && !serverCallStreamObserver.isCancelled()) {
+							readyLock.wait(1000);
+						}
+					}
+
+					if (serverCallStreamObserver.isCancelled()) {
+						return false;
+					}
+
+					responseObserver.onNext(QueryStreamResponse.newBuilder().setTotalHits(totalHits).addAllResults(results).build());
+					return true;
+				});
+
+				if (!serverCallStreamObserver.isCancelled()) {
+					responseObserver.onCompleted();
+				}
+			}
+			catch (Exception e) {
+				log.error("Failed to run query stream: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
+				if (!serverCallStreamObserver.isCancelled()) {
+					Metadata m = new Metadata();
+					m.put(MetaKeys.ERROR_KEY, e.getMessage());
+					responseObserver.onError(new StatusRuntimeException(ConnectionHelper.getStatus(e), m));
+				}
+			}
+		});
+	}
+
 	@Override
 	public void store(StoreRequest request, StreamObserver<StoreResponse> responseObserver) {
 		try {
@@ -50,7 +113,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 			log.error("Failed to store: <" + request.getUniqueId() + "> in index <" + request.getIndexName() + ">: " + e.getClass().getSimpleName() + ": ", e);
 			Metadata m = new Metadata();
 			m.put(MetaKeys.ERROR_KEY, e.getMessage());
-			responseObserver.onError(new StatusRuntimeException(Status.UNKNOWN, m));
+			responseObserver.onError(new StatusRuntimeException(ConnectionHelper.getStatus(e), m));
 
 			if (request.hasResultDocument()) {
 				try {
@@ -67,6 +130,82 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 	}
 
+	/**
+	 * Buffers the streamed documents and stores them in batches.  Inbound flow control is manual and the next document is only
+	 * requested after the previous one is buffered or its batch stored, so a slow index pushes back on the client.
+	 */
+	@Override
+	public StreamObserver<StoreRequest> batchStore(StreamObserver<BatchStoreResponse> responseObserver) {
+		ServerCallStreamObserver<BatchStoreResponse> serverCallStreamObserver = (ServerCallStreamObserver<BatchStoreResponse>) responseObserver;
+		serverCallStreamObserver.disableAutoInboundFlowControl();
+		serverCallStreamObserver.request(1);
+
+		return new StreamObserver<StoreRequest>() {
+
+			private final List<StoreRequest> batch = new ArrayList<>();
+			private int batchBytes = 0;
+			private long stored = 0;
+			private boolean failed = false;
+
+			@Override
+			public void onNext(StoreRequest request) {
+				if (failed) {
+					return;
+				}
+
+				batch.add(request);
+				batchBytes += request.getSerializedSize();
+
+				if (batch.size() >= BATCH_STORE_MAX_DOCUMENTS || batchBytes >= BATCH_STORE_MAX_BYTES) {
+					storeBatch();
+				}
+
+				if (!failed) {
+					serverCallStreamObserver.request(1);
+				}
+			}
+
+			@Override
+			public void onError(Throwable t) {
+				log.error("Batch store stream failed after <" + stored + "> documents: " + t.getClass().getSimpleName() + ": ", t);
+			}
+
+			@Override
+			public void onCompleted() {
+				if (failed) {
+					return;
+				}
+
+				storeBatch();
+
+				if (!failed) {
+					responseObserver.onNext(BatchStoreResponse.newBuilder().setStored(stored).build());
+					responseObserver.onCompleted();
+				}
+			}
+
+			private void storeBatch() {
+				if (batch.isEmpty()) {
+					return;
+				}
+
+				try {
+					stored += indexManger.batchStore(batch).getStored();
+					batch.clear();
+					batchBytes = 0;
+				}
+				catch (Exception e) {
+					failed = true;
+					log.error("Failed to batch store <" + batch.size() + "> documents after <" + stored + "> documents: " + e.getClass().getSimpleName() + ": ",
+							e);
+					Metadata m = new Metadata();
+					m.put(MetaKeys.ERROR_KEY, e.getMessage());
+					responseObserver.onError(new StatusRuntimeException(ConnectionHelper.getStatus(e), m));
+				}
+			}
+		};
+	}
+
 	@Override
 	public void delete(DeleteRequest request, StreamObserver<DeleteResponse> responseObserver) {
 		try {
@@ -75,7 +214,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to delete: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -87,7 +226,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to fetch: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -99,7 +238,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to create index: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 
 	}
@@ -113,7 +252,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to change index: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 
 	}
@@ -127,7 +266,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to delete index: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -140,7 +279,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to get indexes: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -153,7 +292,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to get number of docs: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -166,7 +305,20 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to clear index: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
+		}
+	}
+
+	@Override
+	public void deleteByQuery(DeleteByQueryRequest request, StreamObserver<DeleteByQueryResponse> responseObserver) {
+		try {
+			DeleteByQueryResponse r = indexManger.deleteByQuery(request);
+			responseObserver.onNext(r);
+			responseObserver.onCompleted();
+		}
+		catch (Exception e) {
+			log.error("Failed to delete by query: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -179,7 +331,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to optimize index: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -192,7 +344,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to get field names: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -205,7 +357,7 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to get terms: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -218,7 +370,33 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to get members: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
+		}
+	}
+
+	@Override
+	public void balance(BalanceRequest request, StreamObserver<BalanceResponse> responseObserver) {
+		try {
+			BalanceResponse r = indexManger.balance(request);
+			responseObserver.onNext(r);
+			responseObserver.onCompleted();
+		}
+		catch (Exception e) {
+			log.error("Failed to balance: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
+		}
+	}
+
+	@Override
+	public void reshard(ReshardRequest request, StreamObserver<ReshardResponse> responseObserver) {
+		try {
+			ReshardResponse r = indexManger.reshard(request);
+			responseObserver.onNext(r);
+			responseObserver.onCompleted();
+		}
+		catch (Exception e) {
+			log.error("Failed to reshard: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -232,42 +410,33 @@ public class ExternalServiceHandler extends ExternalServiceGrpc.ExternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to get get index config: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
 	@Override
 	public void batchFetch(BatchFetchRequest request, StreamObserver<BatchFetchResponse> responseObserver) {
 		try {
-			BatchFetchResponse.Builder gfrb = BatchFetchResponse.newBuilder();
-			for (FetchRequest fr : request.getFetchRequestList()) {
-				FetchResponse res = indexManger.fetch(fr);
-				gfrb.addFetchResponse(res);
-			}
-			BatchFetchResponse r = gfrb.build();
+			BatchFetchResponse r = indexManger.batchFetch(request);
 			responseObserver.onNext(r);
 			responseObserver.onCompleted();
 		}
 		catch (Exception e) {
 			log.error("Failed to group fetch: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
 	@Override
 	public void batchDelete(BatchDeleteRequest request, StreamObserver<BatchDeleteResponse> responseObserver) {
 		try {
-
-			for (DeleteRequest dr : request.getRequestList()) {
-				@SuppressWarnings("unused") DeleteResponse res = indexManger.deleteDocument(dr);
-			}
-			BatchDeleteResponse r = BatchDeleteResponse.newBuilder().build();
+			BatchDeleteResponse r = indexManger.batchDelete(request);
 			responseObserver.onNext(r);
 			responseObserver.onCompleted();
 		}
 		catch (Exception e) {
 			log.error("Failed to batch delete: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -151,6 +151,7 @@ public class InternalClient {
 			return response;
 		}
 		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
 			Metadata trailers = e.getTrailers();
 			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
 				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
@@ -184,6 +185,177 @@ public class InternalClient {
 			return response;
 		}
 		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
+			Metadata trailers = e.getTrailers();
+			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
+				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
+			}
+			else {
+				throw e;
+			}
+		}
+		catch (Exception e) {
+			returnInternalBlockingConnection(m, rpcConnection, false);
+			throw e;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+
+	}
+
+	public BatchStoreResponse executeBatchStore(Member m, BatchStoreRequest request) throws Exception {
+
+		ReadWriteLock lock = getLockForMember(m);
+		lock.readLock().lock();
+
+		InternalRpcConnection rpcConnection = null;
+		try {
+			rpcConnection = getInternalRpcConnection(m);
+			BatchStoreResponse response = rpcConnection.getService().batchStore(request);
+
+			returnInternalBlockingConnection(m, rpcConnection, true);
+
+			return response;
+		}
+		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
+			Metadata trailers = e.getTrailers();
+			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
+				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
+			}
+			else {
+				throw e;
+			}
+		}
+		catch (Exception e) {
+			returnInternalBlockingConnection(m, rpcConnection, false);
+			throw e;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+
+	}
+
+	public BatchFetchResponse executeBatchFetch(Member m, BatchFetchRequest request) throws Exception {
+
+		ReadWriteLock lock = getLockForMember(m);
+		lock.readLock().lock();
+
+		InternalRpcConnection rpcConnection = null;
+		try {
+			rpcConnection = getInternalRpcConnection(m);
+			BatchFetchResponse response = rpcConnection.getService().batchFetch(request);
+
+			returnInternalBlockingConnection(m, rpcConnection, true);
+
+			return response;
+		}
+		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
+			Metadata trailers = e.getTrailers();
+			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
+				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
+			}
+			else {
+				throw e;
+			}
+		}
+		catch (Exception e) {
+			returnInternalBlockingConnection(m, rpcConnection, false);
+			throw e;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+
+	}
+
+	public BatchDeleteResponse executeBatchDelete(Member m, BatchDeleteRequest request) throws Exception {
+
+		ReadWriteLock lock = getLockForMember(m);
+		lock.readLock().lock();
+
+		InternalRpcConnection rpcConnection = null;
+		try {
+			rpcConnection = getInternalRpcConnection(m);
+			BatchDeleteResponse response = rpcConnection.getService().batchDelete(request);
+
+			returnInternalBlockingConnection(m, rpcConnection, true);
+
+			return response;
+		}
+		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
+			Metadata trailers = e.getTrailers();
+			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
+				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
+			}
+			else {
+				throw e;
+			}
+		}
+		catch (Exception e) {
+			returnInternalBlockingConnection(m, rpcConnection, false);
+			throw e;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+
+	}
+
+	public FacetRefinementResponse executeRefineFacets(Member m, FacetRefinementRequest request) throws Exception {
+
+		ReadWriteLock lock = getLockForMember(m);
+		lock.readLock().lock();
+
+		InternalRpcConnection rpcConnection = null;
+		try {
+			rpcConnection = getInternalRpcConnection(m);
+			FacetRefinementResponse response = rpcConnection.getService().refineFacets(request);
+
+			returnInternalBlockingConnection(m, rpcConnection, true);
+
+			return response;
+		}
+		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
+			Metadata trailers = e.getTrailers();
+			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
+				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
+			}
+			else {
+				throw e;
+			}
+		}
+		catch (Exception e) {
+			returnInternalBlockingConnection(m, rpcConnection, false);
+			throw e;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+
+	}
+
+	public SegmentResponse executeQueryStreamSegment(Member m, QueryStreamSegmentRequest request) throws Exception {
+
+		ReadWriteLock lock = getLockForMember(m);
+		lock.readLock().lock();
+
+		InternalRpcConnection rpcConnection = null;
+		try {
+			rpcConnection = getInternalRpcConnection(m);
+			SegmentResponse response = rpcConnection.getService().queryStreamSegment(request);
+
+			returnInternalBlockingConnection(m, rpcConnection, true);
+
+			return response;
+		}
+		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
 			Metadata trailers = e.getTrailers();
 			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
 				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
@@ -217,6 +389,7 @@ public class InternalClient {
 			return response;
 		}
 		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
 			Metadata trailers = e.getTrailers();
 			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
 				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
@@ -250,6 +423,7 @@ public class InternalClient {
 			return response;
 		}
 		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
 			Metadata trailers = e.getTrailers();
 			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
 				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
@@ -305,6 +479,7 @@ public class InternalClient {
 			return response;
 		}
 		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
 			Metadata trailers = e.getTrailers();
 			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
 				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
@@ -337,6 +512,7 @@ public class InternalClient {
 			return response;
 		}
 		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
 			Metadata trailers = e.getTrailers();
 			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
 				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
@@ -377,6 +553,29 @@ public class InternalClient {
 		}
 	}
 
+	public DeleteByQueryResponse deleteByQuery(Member m, DeleteByQueryRequest request) throws Exception {
+		ReadWriteLock lock = getLockForMember(m);
+		lock.readLock().lock();
+
+		InternalRpcConnection rpcConnection = null;
+		try {
+			rpcConnection = getInternalRpcConnection(m);
+
+			DeleteByQueryResponse response = rpcConnection.getService().deleteByQuery(request);
+
+			returnInternalBlockingConnection(m, rpcConnection, true);
+
+			return response;
+		}
+		catch (Exception e) {
+			returnInternalBlockingConnection(m, rpcConnection, false);
+			throw e;
+		}
+		finally {
+			lock.readLock().unlock();
+		}
+	}
+
 	public Lumongo.GetTermsResponseInternal getTerms(Member m, GetTermsRequest request) throws Exception {
 		ReadWriteLock lock = getLockForMember(m);
 		lock.readLock().lock();
@@ -392,6 +591,7 @@ public class InternalClient {
 			return response;
 		}
 		catch (StatusRuntimeException e) {
+			ConnectionHelper.rethrowResourceExhausted(e);
 			Metadata trailers = e.getTrailers();
 			if (trailers.containsKey(MetaKeys.ERROR_KEY)) {
 				throw new Exception(trailers.get(MetaKeys.ERROR_KEY));
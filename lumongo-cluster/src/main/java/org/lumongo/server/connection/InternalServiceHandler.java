@@ -26,7 +26,7 @@ public class InternalServiceHandler extends InternalServiceGrpc.InternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to run internal query: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -39,7 +39,48 @@ public class InternalServiceHandler extends InternalServiceGrpc.InternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to run internal store: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
+		}
+	}
+
+	@Override
+	public void queryStreamSegment(QueryStreamSegmentRequest request, StreamObserver<SegmentResponse> responseObserver) {
+		try {
+			SegmentResponse r = indexManager.queryStreamSegment(request);
+			responseObserver.onNext(r);
+			responseObserver.onCompleted();
+		}
+		catch (Exception e) {
+			log.error("Failed to run internal query stream <" + request.getStreamId() + "> for index <" + request.getIndexName() + "> segment <" + request
+					.getSegmentNumber() + ">: " + e.getClass().getSimpleName() + ": ", e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
+		}
+	}
+
+	@Override
+	public void refineFacets(Lumongo.FacetRefinementRequest request, StreamObserver<Lumongo.FacetRefinementResponse> responseObserver) {
+		try {
+			Lumongo.FacetRefinementResponse r = indexManager.refineFacetsInternal(request);
+			responseObserver.onNext(r);
+			responseObserver.onCompleted();
+		}
+		catch (Exception e) {
+			log.error("Failed to run internal facet refinement for <" + request.getSegmentFacetRefinementCount() + "> segments: " + e.getClass()
+					.getSimpleName() + ": ", e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
+		}
+	}
+
+	@Override
+	public void batchStore(BatchStoreRequest request, StreamObserver<BatchStoreResponse> responseObserver) {
+		try {
+			BatchStoreResponse r = indexManager.batchStoreInternal(request);
+			responseObserver.onNext(r);
+			responseObserver.onCompleted();
+		}
+		catch (Exception e) {
+			log.error("Failed to run internal batch store of <" + request.getStoreRequestCount() + "> documents: " + e.getClass().getSimpleName() + ": ", e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -52,7 +93,20 @@ public class InternalServiceHandler extends InternalServiceGrpc.InternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to run internal fetch: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
+		}
+	}
+
+	@Override
+	public void batchFetch(Lumongo.BatchFetchRequest request, StreamObserver<Lumongo.BatchFetchResponse> responseObserver) {
+		try {
+			Lumongo.BatchFetchResponse r = indexManager.batchFetchInternal(request);
+			responseObserver.onNext(r);
+			responseObserver.onCompleted();
+		}
+		catch (Exception e) {
+			log.error("Failed to run internal batch fetch of <" + request.getFetchRequestCount() + "> documents: " + e.getClass().getSimpleName() + ": ", e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -65,7 +119,20 @@ public class InternalServiceHandler extends InternalServiceGrpc.InternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to run internal delete: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
+		}
+	}
+
+	@Override
+	public void batchDelete(BatchDeleteRequest request, StreamObserver<BatchDeleteResponse> responseObserver) {
+		try {
+			BatchDeleteResponse r = indexManager.batchDeleteInternal(request);
+			responseObserver.onNext(r);
+			responseObserver.onCompleted();
+		}
+		catch (Exception e) {
+			log.error("Failed to run internal batch delete of <" + request.getRequestCount() + "> documents: " + e.getClass().getSimpleName() + ": ", e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -78,7 +145,7 @@ public class InternalServiceHandler extends InternalServiceGrpc.InternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to run get number of docs: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -91,7 +158,20 @@ public class InternalServiceHandler extends InternalServiceGrpc.InternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to clear index: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
+		}
+	}
+
+	@Override
+	public void deleteByQuery(DeleteByQueryRequest request, StreamObserver<DeleteByQueryResponse> responseObserver) {
+		try {
+			DeleteByQueryResponse r = indexManager.deleteByQueryInternal(request);
+			responseObserver.onNext(r);
+			responseObserver.onCompleted();
+		}
+		catch (Exception e) {
+			log.error("Failed to delete by query: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -104,7 +184,7 @@ public class InternalServiceHandler extends InternalServiceGrpc.InternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to optimized index: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -117,7 +197,7 @@ public class InternalServiceHandler extends InternalServiceGrpc.InternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to get field names: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
@@ -130,7 +210,7 @@ public class InternalServiceHandler extends InternalServiceGrpc.InternalServiceI
 		}
 		catch (Exception e) {
 			log.error("Failed to get terms: <" + request + ">: " + e.getClass().getSimpleName() + ": ", e);
-			responseObserver.onError(e);
+			responseObserver.onError(ConnectionHelper.getResponseError(e));
 		}
 	}
 
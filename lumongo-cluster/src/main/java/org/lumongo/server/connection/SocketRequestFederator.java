@@ -4,6 +4,7 @@ import com.hazelcast.core.Member;
 import org.lumongo.server.hazelcast.HazelcastManager;
 
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
@@ -22,6 +23,17 @@ public abstract class SocketRequestFederator<I, O> {
 	
 	public List<O> send(final I request) throws Exception {
 		Set<Member> members = hazelcastManager.getMembers();
+		return send(request, members);
+	}
+	
+	/**
+	 * Sends the request only to the given members instead of the whole cluster
+	 * @param request - request to send
+	 * @param members - members to send the request to
+	 * @return responses in the same order as the members
+	 * @throws Exception
+	 */
+	public List<O> send(final I request, Collection<Member> members) throws Exception {
 		
 		List<Future<O>> futureResponses = new ArrayList<Future<O>>();
 		
@@ -0,0 +1,29 @@
+package org.lumongo.server.exceptions;
+
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Thrown when work is rejected because the lane it was sent to is full.  Sent to clients with a RESOURCE_EXHAUSTED status so they can back off.
+ */
+public class ResourceExhausted extends RejectedExecutionException {
+
+	private static final long serialVersionUID = 1L;
+
+	public ResourceExhausted(String message) {
+		super(message);
+	}
+
+	/**
+	 * @return true if the exception or one of its causes is a resource exhausted exception
+	 */
+	public static boolean isResourceExhausted(Throwable t) {
+		while (t != null) {
+			if (t instanceof ResourceExhausted) {
+				return true;
+			}
+			t = t.getCause();
+		}
+		return false;
+	}
+
+}
@@ -0,0 +1,24 @@
+package org.lumongo.server.exceptions;
+
+import java.io.IOException;
+
+public class SegmentNotLoaded extends IOException {
+
+	private static final long serialVersionUID = 1L;
+	private String indexName;
+	private int segmentNumber;
+
+	public SegmentNotLoaded(String indexName, int segmentNumber, long waitedMs) {
+		super("Segment <" + segmentNumber + "> of index <" + indexName + "> did not finish loading within <" + waitedMs + "ms>");
+		this.indexName = indexName;
+		this.segmentNumber = segmentNumber;
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public int getSegmentNumber() {
+		return segmentNumber;
+	}
+}
@@ -0,0 +1,28 @@
+package org.lumongo.server.hazelcast;
+
+import org.lumongo.cluster.message.Lumongo.BalanceRequest;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+/**
+ * Runs a balance request on the master so it never runs concurrently with the balancing the master does when members join or leave
+ */
+public class BalanceTask implements Callable<byte[]>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int hazelcastPort;
+
+	private final byte[] balanceRequest;
+
+	public BalanceTask(int hazelcastPort, BalanceRequest balanceRequest) {
+		this.hazelcastPort = hazelcastPort;
+		this.balanceRequest = balanceRequest.toByteArray();
+	}
+
+	@Override
+	public byte[] call() throws Exception {
+		return HazelcastManager.getHazelcastManager(hazelcastPort).balance(BalanceRequest.parseFrom(balanceRequest)).toByteArray();
+	}
+}
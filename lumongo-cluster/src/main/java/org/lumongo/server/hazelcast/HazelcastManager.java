@@ -15,11 +15,15 @@ import com.hazelcast.core.MembershipEvent;
 import com.hazelcast.core.MembershipListener;
 import com.hazelcast.spi.properties.GroupProperty;
 import org.apache.log4j.Logger;
+import org.lumongo.cluster.message.Lumongo.BalanceRequest;
+import org.lumongo.cluster.message.Lumongo.BalanceResponse;
 import org.lumongo.server.config.LocalNodeConfig;
 import org.lumongo.server.config.Nodes.HazelcastNode;
 import org.lumongo.server.index.LumongoIndexManager;
+import org.lumongo.server.index.balance.SegmentLoad;
 
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Set;
@@ -168,6 +172,17 @@ public class HazelcastManager implements MembershipListener, LifecycleListener {
 		log.info("Hazelcast has new state: " + event);
 	}
 
+	public void prepareSegmentMap(String indexName, Map<Member, Set<Integer>> newMemberToSegmentMap) throws Exception {
+		initLock.readLock().lock();
+		try {
+			log.info("Preparing segment map for index <" + indexName + ">: new segments: " + newMemberToSegmentMap);
+			indexManager.prepareSegmentMap(indexName, newMemberToSegmentMap);
+		}
+		finally {
+			initLock.readLock().unlock();
+		}
+	}
+
 	public void updateSegmentMap(String indexName, Map<Member, Set<Integer>> newMemberToSegmentMap) throws Exception {
 		initLock.readLock().lock();
 		try {
@@ -179,6 +194,27 @@ public class HazelcastManager implements MembershipListener, LifecycleListener {
 		}
 	}
 
+	public void reshard(String indexName, int numberOfSegments, ReshardTask.Phase phase) throws Exception {
+		initLock.readLock().lock();
+		try {
+			log.info("Resharding index <" + indexName + "> to <" + numberOfSegments + "> segments: phase <" + phase + ">");
+			indexManager.reshard(indexName, numberOfSegments, phase);
+		}
+		finally {
+			initLock.readLock().unlock();
+		}
+	}
+
+	public BalanceResponse balance(BalanceRequest request) throws Exception {
+		initLock.readLock().lock();
+		try {
+			return indexManager.balanceOnMaster(request);
+		}
+		finally {
+			initLock.readLock().unlock();
+		}
+	}
+
 	public Set<Member> getMembers() {
 		return hazelcastInstance.getCluster().getMembers();
 	}
@@ -191,6 +227,16 @@ public class HazelcastManager implements MembershipListener, LifecycleListener {
 		indexManager.reloadIndexSettings(indexName);
 	}
 
+	public ArrayList<SegmentLoad> getSegmentLoads() throws Exception {
+		initLock.readLock().lock();
+		try {
+			return indexManager.getSegmentLoads();
+		}
+		finally {
+			initLock.readLock().unlock();
+		}
+	}
+
 	public IExecutorService getExecutorService() {
 		return hazelcastInstance.getExecutorService("default");
 	}
@@ -0,0 +1,47 @@
+package org.lumongo.server.hazelcast;
+
+import java.io.Serializable;
+import java.util.concurrent.Callable;
+
+public class ReshardTask implements Callable<Void>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	public enum Phase {
+		/**
+		 * split the segments of the member into the new segments and mirror changes to them
+		 */
+		PREPARE,
+		/**
+		 * switch the member to the new number of segments
+		 */
+		CUT_OVER,
+		/**
+		 * roll the member back to the number of segments before the reshard
+		 */
+		ABORT
+	}
+
+	private final int hazelcastPort;
+
+	private final String indexName;
+
+	private final int numberOfSegments;
+
+	private final Phase phase;
+
+	public ReshardTask(int hazelcastPort, String indexName, int numberOfSegments, Phase phase) {
+		this.hazelcastPort = hazelcastPort;
+		this.indexName = indexName;
+		this.numberOfSegments = numberOfSegments;
+		this.phase = phase;
+	}
+
+	@Override
+	public Void call() throws Exception {
+
+		HazelcastManager.getHazelcastManager(hazelcastPort).reshard(indexName, numberOfSegments, phase);
+
+		return null;
+	}
+}
@@ -0,0 +1,23 @@
+package org.lumongo.server.hazelcast;
+
+import org.lumongo.server.index.balance.SegmentLoad;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+
+public class SegmentLoadsTask implements Callable<ArrayList<SegmentLoad>>, Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final int hazelcastPort;
+
+	public SegmentLoadsTask(int hazelcastPort) {
+		this.hazelcastPort = hazelcastPort;
+	}
+
+	@Override
+	public ArrayList<SegmentLoad> call() throws Exception {
+		return HazelcastManager.getHazelcastManager(hazelcastPort).getSegmentLoads();
+	}
+}
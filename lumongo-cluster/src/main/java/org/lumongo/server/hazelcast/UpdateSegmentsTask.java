@@ -22,22 +22,32 @@ public class UpdateSegmentsTask implements Callable<Void>, DataSerializable {
 	
 	private String indexName;
 	private Map<Member, Set<Integer>> newMemberToSegmentMap;
+	private boolean prepare;
 
 	public UpdateSegmentsTask() {
 
 	}
 
-	public UpdateSegmentsTask(int hazelcastPort, String indexName, Map<Member, Set<Integer>> newMemberToSegmentMap) {
+	/**
+	 * @param prepare - true to only warm the segments each member gains, false to switch to the new segment map
+	 */
+	public UpdateSegmentsTask(int hazelcastPort, String indexName, Map<Member, Set<Integer>> newMemberToSegmentMap, boolean prepare) {
 		this.hazelcastPort = hazelcastPort;
 		this.indexName = indexName;
 		this.newMemberToSegmentMap = newMemberToSegmentMap;
+		this.prepare = prepare;
 	}
 	
 	@Override
 	public Void call() throws Exception {
 		try {
 			HazelcastManager hazelcastManger = HazelcastManager.getHazelcastManager(hazelcastPort);
-			hazelcastManger.updateSegmentMap(indexName, newMemberToSegmentMap);
+			if (prepare) {
+				hazelcastManger.prepareSegmentMap(indexName, newMemberToSegmentMap);
+			}
+			else {
+				hazelcastManger.updateSegmentMap(indexName, newMemberToSegmentMap);
+			}
 		}
 		catch (Exception e) {
 			log.error(e.getClass().getSimpleName() + ": ", e);
@@ -50,6 +60,7 @@ public class UpdateSegmentsTask implements Callable<Void>, DataSerializable {
 	public void writeData(ObjectDataOutput out) throws IOException {
 		out.writeInt(hazelcastPort);
 		out.writeUTF(indexName);
+		out.writeBoolean(prepare);
 		out.writeInt(newMemberToSegmentMap.size());
 
 		for (Map.Entry<Member, Set<Integer>> e : newMemberToSegmentMap.entrySet()) {
@@ -66,6 +77,7 @@ public class UpdateSegmentsTask implements Callable<Void>, DataSerializable {
 	public void readData(ObjectDataInput in) throws IOException {
 		hazelcastPort = in.readInt();
 		indexName = in.readUTF();
+		prepare = in.readBoolean();
 		newMemberToSegmentMap = new HashMap<>();
 		int count = in.readInt();
 
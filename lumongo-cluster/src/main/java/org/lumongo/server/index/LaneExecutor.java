@@ -0,0 +1,161 @@
+package org.lumongo.server.index;
+
+import org.lumongo.server.exceptions.ResourceExhausted;
+import org.lumongo.util.LumongoThreadFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Thread pool for one kind of work (a lane) that records how long tasks wait in its queue.  A bounded lane rejects work with
+ * {@link ResourceExhausted} once its threads are busy and its queue is full instead of queueing without limit.  Tasks run on a lane must
+ * not wait on tasks of the same lane and must not take the index lock, callers take it before submitting.
+ */
+public class LaneExecutor extends ThreadPoolExecutor {
+
+	public static final String QUERY = "query";
+	public static final String FETCH = "fetch";
+	public static final String INDEX = "index";
+	public static final String COORDINATOR = "coordinator";
+
+	private static final long KEEP_ALIVE_SECONDS = 60;
+
+	private final String indexName;
+	private final String lane;
+	private final int queueCapacity;
+
+	private final AtomicLong submitted;
+	private final AtomicLong rejected;
+	private final AtomicLong completed;
+	private final AtomicLong totalWaitNanos;
+	private final AtomicLong maxWaitNanos;
+
+	/**
+	 * Creates a bounded lane
+	 * @param indexName - index of the lane
+	 * @param lane - name of the lane
+	 * @param threads - maximum number of threads, idle threads are stopped
+	 * @param queueCapacity - maximum number of tasks waiting for a thread, 0 rejects tasks when all threads are busy
+	 */
+	public LaneExecutor(String indexName, String lane, int threads, int queueCapacity) {
+		this(indexName, lane, threads, threads, queueCapacity > 0 ? new ArrayBlockingQueue<>(queueCapacity) : new SynchronousQueue<>(), queueCapacity);
+		allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Creates an unbounded lane that starts a thread for every task when its threads are busy, used where tasks wait on other members
+	 * @param name - name of the lane
+	 */
+	public LaneExecutor(String name) {
+		this(null, name, 0, Integer.MAX_VALUE, new SynchronousQueue<>(), 0);
+	}
+
+	private LaneExecutor(String indexName, String lane, int coreThreads, int maxThreads, BlockingQueue<Runnable> queue, int queueCapacity) {
+		super(coreThreads, maxThreads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, queue, new LumongoThreadFactory(indexName != null ? indexName + "-" + lane : lane));
+		this.indexName = indexName;
+		this.lane = lane;
+		this.queueCapacity = queueCapacity;
+		this.submitted = new AtomicLong();
+		this.rejected = new AtomicLong();
+		this.completed = new AtomicLong();
+		this.totalWaitNanos = new AtomicLong();
+		this.maxWaitNanos = new AtomicLong();
+
+		setRejectedExecutionHandler((r, executor) -> {
+			if (executor.isShutdown()) {
+				throw new RejectedExecutionException(getName() + " lane is shutdown");
+			}
+			rejected.incrementAndGet();
+			throw new ResourceExhausted(
+					getName() + " lane is full with <" + executor.getActiveCount() + "> running and <" + executor.getQueue().size() + "> waiting");
+		});
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		super.execute(new QueuedTask(command));
+		submitted.incrementAndGet();
+	}
+
+	@Override
+	protected void beforeExecute(Thread t, Runnable r) {
+		super.beforeExecute(t, r);
+		if (r instanceof QueuedTask) {
+			long waitNanos = System.nanoTime() - ((QueuedTask) r).queuedNanos;
+			totalWaitNanos.addAndGet(waitNanos);
+			maxWaitNanos.accumulateAndGet(waitNanos, Math::max);
+		}
+	}
+
+	@Override
+	protected void afterExecute(Runnable r, Throwable t) {
+		super.afterExecute(r, t);
+		completed.incrementAndGet();
+	}
+
+	public String getName() {
+		return indexName != null ? "Index <" + indexName + "> " + lane : lane;
+	}
+
+	/**
+	 * @return index of the lane, null for lanes shared by all indexes
+	 */
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public String getLane() {
+		return lane;
+	}
+
+	/**
+	 * @return maximum number of waiting tasks, 0 if tasks do not wait
+	 */
+	public int getQueueCapacity() {
+		return queueCapacity;
+	}
+
+	public int getQueueDepth() {
+		return getQueue().size();
+	}
+
+	public long getSubmittedCount() {
+		return submitted.get();
+	}
+
+	public long getRejectedCount() {
+		return rejected.get();
+	}
+
+	public long getCompletedCount() {
+		return completed.get();
+	}
+
+	public long getTotalWaitNanos() {
+		return totalWaitNanos.get();
+	}
+
+	public long getMaxWaitNanos() {
+		return maxWaitNanos.get();
+	}
+
+	private static class QueuedTask implements Runnable {
+		private final Runnable task;
+		private final long queuedNanos;
+
+		private QueuedTask(Runnable task) {
+			this.task = task;
+			this.queuedNanos = System.nanoTime();
+		}
+
+		@Override
+		public void run() {
+			task.run();
+		}
+	}
+}
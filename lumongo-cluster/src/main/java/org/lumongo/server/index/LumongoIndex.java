@@ -43,19 +43,22 @@ import org.lumongo.server.config.IndexConfigUtil;
 import org.lumongo.server.config.MongoConfig;
 import org.lumongo.server.exceptions.InvalidIndexConfig;
 import org.lumongo.server.exceptions.SegmentDoesNotExist;
+import org.lumongo.server.exceptions.SegmentNotLoaded;
 import org.lumongo.server.hazelcast.HazelcastManager;
 import org.lumongo.server.hazelcast.UpdateSegmentsTask;
+import org.lumongo.server.index.balance.SegmentLoad;
 import org.lumongo.server.search.LumongoMultiFieldQueryParser;
-import org.lumongo.server.search.QueryCacheKey;
+import org.lumongo.server.search.ParsedQueryCache;
+import org.lumongo.server.search.QueryCursor;
 import org.lumongo.server.search.QueryWithFilters;
 import org.lumongo.storage.constants.MongoConstants;
 import org.lumongo.storage.lucene.DistributedDirectory;
 import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.TieredDirectory;
 import org.lumongo.storage.rawfiles.DocumentStorage;
 import org.lumongo.storage.rawfiles.MongoDocumentStorage;
 import org.lumongo.util.DeletingFileVisitor;
 import org.lumongo.util.LockHandler;
-import org.lumongo.util.LumongoThreadFactory;
 import org.lumongo.util.LumongoUtil;
 import org.lumongo.util.SegmentUtil;
 
@@ -66,6 +69,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
@@ -76,13 +80,17 @@ import java.util.Map;
 import java.util.Set;
 import java.util.Timer;
 import java.util.TimerTask;
+import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import static org.lumongo.cluster.message.LumongoIndex.AnalyzerSettings.Similarity;
@@ -97,6 +105,17 @@ public class LumongoIndex implements IndexSegmentInterface {
 
 	private final static Logger log = Logger.getLogger(LumongoIndex.class);
 	private static final String SETTINGS_ID = "settings";
+	private static final String RESHARD_ID = "reshard";
+	private static final String FROM_SEGMENTS = "fromSegments";
+	private static final String TO_SEGMENTS = "toSegments";
+	private static final String CUT_OVER = "cutOver";
+
+	//maximum time requests on a segment handed off to another member are waited for before it is closed
+	private static final long HANDOFF_DRAIN_MS = 60000;
+	//maximum time a request waits for segments this member is opening, a segment gained in a handoff opens only after its previous owner drains it
+	private static final long PENDING_SEGMENT_WAIT_MS = HANDOFF_DRAIN_MS + 30000;
+	//number of unique ids locked and deleted at a time when deleting by query
+	private static final int DELETE_BY_QUERY_BATCH_SIZE = 1000;
 
 	private final IndexConfig indexConfig;
 	private final MongoConfig mongoConfig;
@@ -106,21 +125,28 @@ public class LumongoIndex implements IndexSegmentInterface {
 	private final GenericObjectPool<LumongoMultiFieldQueryParser> parsers;
 	private final ConcurrentHashMap<Integer, LumongoSegment> segmentMap;
 	private final ConcurrentHashMap<Integer, ILock> hazelLockMap;
+	private final ConcurrentHashMap<Integer, SegmentLoadTime> segmentLoadTimes;
+	private final ConcurrentHashMap<Integer, SegmentWarmer> segmentWarmers;
+	private final ConcurrentHashMap<Integer, CountDownLatch> pendingSegments;
+	private final ReentrantLock segmentLoadLock;
+	private final ReentrantLock balanceLock;
 	private final ReadWriteLock indexLock;
-	private final ExecutorService segmentPool;
-	private final int numberOfSegments;
+	private final LaneExecutor queryLane;
+	private final LaneExecutor fetchLane;
+	private final LaneExecutor indexLane;
+	private volatile ParsedQueryCache parsedQueryCache;
+	private volatile int numberOfSegments;
 	private final String indexName;
 	private final HazelcastManager hazelcastManager;
 	private final DocumentStorage documentStorage;
 
-	private Map<Member, Set<Integer>> memberToSegmentMap;
-	private Map<Integer, Member> segmentToMemberMap;
+	private volatile Map<Member, Set<Integer>> memberToSegmentMap;
+	private volatile Map<Integer, Member> segmentToMemberMap;
 	private Timer commitTimer;
 	private TimerTask commitTask;
 	private LumongoAnalyzerFactory lumongoAnalyzerFactory;
 
 	private LockHandler documentLockHandler;
-	private FacetsConfig facetsConfig;
 
 	private LumongoIndex(HazelcastManager hazelcastManger, MongoConfig mongoConfig, ClusterConfig clusterConfig, IndexConfig indexConfig) throws Exception {
 
@@ -143,7 +169,9 @@ public class LumongoIndex implements IndexSegmentInterface {
 
 		this.documentStorage = new MongoDocumentStorage(storageMongoClient, indexName, rawStorageDb, RESULT_STORAGE_COLLECTION, clusterConfig.isSharded());
 
-		this.segmentPool = Executors.newCachedThreadPool(new LumongoThreadFactory(indexName + "-segments"));
+		this.queryLane = new LaneExecutor(indexName, LaneExecutor.QUERY, clusterConfig.getQueryLaneThreads(), clusterConfig.getQueryLaneQueueSize());
+		this.fetchLane = new LaneExecutor(indexName, LaneExecutor.FETCH, clusterConfig.getFetchLaneThreads(), clusterConfig.getFetchLaneQueueSize());
+		this.indexLane = new LaneExecutor(indexName, LaneExecutor.INDEX, clusterConfig.getIndexLaneThreads(), clusterConfig.getIndexLaneQueueSize());
 
 		this.parsers = new GenericObjectPool<>(new BasePoolableObjectFactory<LumongoMultiFieldQueryParser>() {
 
@@ -157,6 +185,13 @@ public class LumongoIndex implements IndexSegmentInterface {
 		this.indexLock = new ReentrantReadWriteLock(true);
 		this.segmentMap = new ConcurrentHashMap<>();
 		this.hazelLockMap = new ConcurrentHashMap<>();
+		this.segmentLoadTimes = new ConcurrentHashMap<>();
+		this.segmentWarmers = new ConcurrentHashMap<>();
+		this.pendingSegments = new ConcurrentHashMap<>();
+		this.segmentLoadLock = new ReentrantLock();
+		this.balanceLock = new ReentrantLock();
+
+		setupParsedQueryCache();
 
 		commitTimer = new Timer(indexName + "-CommitTimer", true);
 
@@ -247,6 +282,7 @@ public class LumongoIndex implements IndexSegmentInterface {
 
 			indexConfig.configure(request);
 			storeIndexSettings();
+			setupParsedQueryCache();
 		}
 		finally {
 			indexLock.writeLock().unlock();
@@ -262,6 +298,10 @@ public class LumongoIndex implements IndexSegmentInterface {
 		try {
 			Collection<LumongoSegment> segments = segmentMap.values();
 			for (LumongoSegment segment : segments) {
+				if (!segment.acquire()) {
+					//committed when it is closed
+					continue;
+				}
 				try {
 					if (force) {
 						segment.forceCommit();
@@ -274,6 +314,9 @@ public class LumongoIndex implements IndexSegmentInterface {
 					log.error("Failed to flush segment <" + segment.getSegmentNumber() + "> for index <" + indexName + ">: " + e.getClass().getSimpleName()
 							+ ": ", e);
 				}
+				finally {
+					segment.release();
+				}
 			}
 		}
 		finally {
@@ -282,77 +325,138 @@ public class LumongoIndex implements IndexSegmentInterface {
 
 	}
 
-	public void updateSegmentMap(Map<Member, Set<Integer>> newMemberToSegmentMap) {
-		indexLock.writeLock().lock();
+	/**
+	 * First phase of a segment handoff.  Warms the segments this member gains in the new segment map while their current owners keep serving them.
+	 * @param segmentLoadPool - pool the segments are warmed on
+	 */
+	public void prepareSegmentMap(Map<Member, Set<Integer>> newMemberToSegmentMap, ExecutorService segmentLoadPool) {
+		if (indexConfig.getIndexSettings().getStoreIndexOnDisk()) {
+			//segments stored on the disk of a node are not shared with the new owner
+			return;
+		}
+
+		segmentLoadLock.lock();
 		try {
-			log.info("Updating segments map");
+			Set<Integer> newSegments = newMemberToSegmentMap.getOrDefault(hazelcastManager.getSelf(), Collections.emptySet());
 
-			this.memberToSegmentMap = newMemberToSegmentMap;
-			this.segmentToMemberMap = new HashMap<>();
+			Map<Integer, Future<SegmentWarmer>> warming = new TreeMap<>();
+			for (int segmentNumber : newSegments) {
+				if (!segmentMap.containsKey(segmentNumber) && !segmentWarmers.containsKey(segmentNumber)) {
+					warming.put(segmentNumber, segmentLoadPool.submit(() -> warmSegment(segmentNumber)));
+				}
+			}
 
-			for (Member m : memberToSegmentMap.keySet()) {
-				for (int i : memberToSegmentMap.get(m)) {
-					segmentToMemberMap.put(i, m);
+			for (Integer segmentNumber : warming.keySet()) {
+				try {
+					SegmentWarmer segmentWarmer = warming.get(segmentNumber).get();
+					segmentWarmers.put(segmentNumber, segmentWarmer);
+					log.info("Warmed segment <" + segmentNumber + "> for index <" + indexName + "> with <" + segmentWarmer.getWarmedBytes() / (1024 * 1024)
+							+ "MB> in <" + segmentWarmer.getWarmMs() + "ms>");
+				}
+				catch (Exception e) {
+					Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+					log.error("Failed to warm segment <" + segmentNumber + "> for index <" + indexName + ">, it will be opened cold: " + cause.getClass()
+							.getSimpleName() + ": ", cause);
 				}
 			}
+		}
+		finally {
+			segmentLoadLock.unlock();
+		}
+	}
 
-			Member self = hazelcastManager.getSelf();
+	/**
+	 * Second phase of a segment handoff.  Routing flips to the new segment map, the segments this member loses are drained of in-flight requests and
+	 * closed so their new owners can take the segment locks, and the segments it gains are opened concurrently on the load pool from their warmed
+	 * blocks.  Requests never wait on the index lock, requests for a gained segment wait only until it opens.
+	 * @param segmentLoadPool - pool the segments are opened on
+	 */
+	public void updateSegmentMap(Map<Member, Set<Integer>> newMemberToSegmentMap, ExecutorService segmentLoadPool) {
+		segmentLoadLock.lock();
+		try {
+			log.info("Updating segments map");
 
-			Set<Integer> newSegments = memberToSegmentMap.get(self);
+			Member self = hazelcastManager.getSelf();
+			Set<Integer> newSegments = newMemberToSegmentMap.getOrDefault(self, Collections.emptySet());
 
 			log.info("Settings segments for this node <" + self + "> to <" + newSegments + ">");
 
-			segmentMap.keySet().stream().filter(segmentNumber -> !newSegments.contains(segmentNumber)).forEach(segmentNumber -> {
-				try {
-					unloadSegment(segmentNumber, false);
-				}
-				catch (Exception e) {
-					log.error("Error unloading segment <" + segmentNumber + "> for index <" + indexName + ">");
-					log.error(e.getClass().getSimpleName() + ": ", e);
-				}
-			});
+			//requests routed here by the new map wait for the gained segments to open instead of finding them missing
+			addPendingSegments(newSegments);
 
-			newSegments.stream().filter(segmentNumber -> !segmentMap.containsKey(segmentNumber)).forEach(segmentNumber -> {
-				try {
-					loadSegment(segmentNumber);
-				}
-				catch (Exception e) {
-					log.error("Error loading segment <" + segmentNumber + "> for index <" + indexName + ">");
-					log.error(e.getClass().getSimpleName() + ": ", e);
+			setSegmentMaps(newMemberToSegmentMap);
+
+			//closed on this thread before any segment is opened so segments handed off never wait on the load pool
+			for (Integer segmentNumber : new TreeSet<>(segmentMap.keySet())) {
+				if (!newSegments.contains(segmentNumber)) {
+					try {
+						handOffSegment(segmentNumber);
+					}
+					catch (Exception e) {
+						log.error("Error unloading segment <" + segmentNumber + "> for index <" + indexName + ">");
+						log.error(e.getClass().getSimpleName() + ": ", e);
+					}
 				}
-			});
+			}
+
+			//failures are logged for each segment
+			loadSegments(newSegments, segmentLoadPool);
 
+			for (Integer segmentNumber : new TreeSet<>(segmentWarmers.keySet())) {
+				if (!newSegments.contains(segmentNumber)) {
+					segmentWarmers.remove(segmentNumber).discard();
+				}
+			}
 		}
 		finally {
-			indexLock.writeLock().unlock();
+			segmentLoadLock.unlock();
 		}
 
 	}
 
-	public void loadAllSegments() throws Exception {
-		indexLock.writeLock().lock();
+	/**
+	 * Opens every segment of the index on this node concurrently on the load pool
+	 * @param segmentLoadPool - pool the segments are opened on
+	 */
+	public void loadAllSegments(ExecutorService segmentLoadPool) throws Exception {
+		segmentLoadLock.lock();
 		try {
-			Member self = hazelcastManager.getSelf();
-			this.memberToSegmentMap = new HashMap<>();
-			this.memberToSegmentMap.put(self, new HashSet<>());
+			Set<Integer> allSegments = new TreeSet<>();
 			for (int segmentNumber = 0; segmentNumber < numberOfSegments; segmentNumber++) {
-				loadSegment(segmentNumber);
-				this.memberToSegmentMap.get(self).add(segmentNumber);
+				allSegments.add(segmentNumber);
 			}
 
-			this.segmentToMemberMap = new HashMap<>();
-
-			for (Member m : memberToSegmentMap.keySet()) {
-				for (int i : memberToSegmentMap.get(m)) {
-					segmentToMemberMap.put(i, m);
-				}
+			Exception exception = loadSegments(allSegments, segmentLoadPool);
+			if (exception != null) {
+				throw exception;
 			}
+
+			recoverReshard();
+
+			Map<Member, Set<Integer>> newMemberToSegmentMap = new HashMap<>();
+			newMemberToSegmentMap.put(hazelcastManager.getSelf(), allSegments);
+			setSegmentMaps(newMemberToSegmentMap);
 		}
 		finally {
-			indexLock.writeLock().unlock();
+			segmentLoadLock.unlock();
 		}
 	}
 
+	/**
+	 * Publishes new segment maps.  The maps are built before they are published and never changed after so readers do not need the index lock.
+	 */
+	private void setSegmentMaps(Map<Member, Set<Integer>> newMemberToSegmentMap) {
+		Map<Integer, Member> newSegmentToMemberMap = new HashMap<>();
+		for (Member m : newMemberToSegmentMap.keySet()) {
+			for (int i : newMemberToSegmentMap.get(m)) {
+				newSegmentToMemberMap.put(i, m);
+			}
+		}
+
+		this.segmentToMemberMap = newSegmentToMemberMap;
+		this.memberToSegmentMap = newMemberToSegmentMap;
+	}
+
 	public void unload(boolean terminate) throws IOException {
 		indexLock.writeLock().lock();
 		try {
@@ -365,63 +469,217 @@ public class LumongoIndex implements IndexSegmentInterface {
 				doCommit(true);
 			}
 
-			log.info("Shutting segment pool for <" + indexName + ">");
-			segmentPool.shutdownNow();
+			log.info("Shutting lanes for <" + indexName + ">");
+			queryLane.shutdownNow();
+			fetchLane.shutdownNow();
+			indexLane.shutdownNow();
 
 			for (Integer segmentNumber : segmentMap.keySet()) {
 				unloadSegment(segmentNumber, terminate);
 			}
+
+			for (Integer segmentNumber : segmentWarmers.keySet()) {
+				segmentWarmers.remove(segmentNumber).discard();
+			}
 		}
 		finally {
 			indexLock.writeLock().unlock();
 		}
 	}
 
-	private void loadSegment(int segmentNumber) throws Exception {
-		indexLock.writeLock().lock();
-		try {
+	/**
+	 * Marks the segments that are not loaded as opening so requests for them wait for them to open
+	 */
+	private void addPendingSegments(Collection<Integer> segmentNumbers) {
+		for (int segmentNumber : segmentNumbers) {
 			if (!segmentMap.containsKey(segmentNumber)) {
-				String lockName = indexName + "-" + segmentNumber;
-				ILock hzLock = hazelcastManager.getLock(lockName);
-				hazelLockMap.put(segmentNumber, hzLock);
-				log.info("Waiting for lock for index <" + indexName + "> segment <" + segmentNumber + ">");
-				hzLock.lock();
-				log.info("Obtained lock for index <" + indexName + "> segment <" + segmentNumber + ">");
+				pendingSegments.putIfAbsent(segmentNumber, new CountDownLatch(1));
+			}
+		}
+	}
 
-				//Just for clarity
-				IndexSegmentInterface indexSegmentInterface = this;
+	/**
+	 * Opens the segments that are not loaded concurrently and adds each segment to the segment map as it opens.  Requests for a segment that is
+	 * opening wait for it to open.
+	 * @return the first failure opening a segment, null if all segments opened
+	 */
+	private Exception loadSegments(Collection<Integer> segmentNumbers, ExecutorService segmentLoadPool) {
+		addPendingSegments(segmentNumbers);
 
-				//doesnt need to be done each time and it is done in StartNode but helps with test cases that take different paths
-				FacetsConfig.DEFAULT_DIM_CONFIG.multiValued = true;
-				facetsConfig = new FacetsConfig();
+		Map<Integer, Future<LumongoSegment>> openSegments = new TreeMap<>();
+		for (int segmentNumber : segmentNumbers) {
+			if (!segmentMap.containsKey(segmentNumber)) {
+				openSegments.put(segmentNumber, segmentLoadPool.submit(() -> openSegment(segmentNumber)));
+			}
+		}
 
-				LumongoSegment s = new LumongoSegment(segmentNumber, indexSegmentInterface, indexConfig, facetsConfig, documentStorage);
-				segmentMap.put(segmentNumber, s);
+		if (openSegments.isEmpty()) {
+			return null;
+		}
 
-				log.info("Loaded segment <" + segmentNumber + "> for index <" + indexName + ">");
-				log.info("Current segments <" + (new TreeSet<>(segmentMap.keySet())) + "> for index <" + indexName + ">");
+		long start = System.currentTimeMillis();
 
+		Set<Integer> opened = new TreeSet<>();
+		Exception exception = null;
+		for (Integer segmentNumber : openSegments.keySet()) {
+			try {
+				segmentMap.put(segmentNumber, openSegments.get(segmentNumber).get());
+				opened.add(segmentNumber);
+			}
+			catch (Exception e) {
+				Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+				log.error("Error loading segment <" + segmentNumber + "> for index <" + indexName + ">");
+				log.error(cause.getClass().getSimpleName() + ": ", cause);
+				if (exception == null) {
+					exception = cause instanceof Exception ? (Exception) cause : new Exception(cause);
+				}
+			}
+			finally {
+				pendingSegments.remove(segmentNumber).countDown();
 			}
 		}
-		finally {
-			indexLock.writeLock().unlock();
+
+		log.info("Loaded segments <" + opened + "> for index <" + indexName + "> in <" + (System.currentTimeMillis() - start) + "ms>");
+		log.info("Current segments <" + (new TreeSet<>(segmentMap.keySet())) + "> for index <" + indexName + ">");
+
+		return exception;
+	}
+
+	/**
+	 * Waits for the lock of the segment to be released by its previous owner and opens the segment, called without the index lock.  The warmed blocks
+	 * of the segment are used unless the previous owner changed the files they belong to after the warm.
+	 */
+	private LumongoSegment openSegment(int segmentNumber) throws Exception {
+		long start = System.currentTimeMillis();
+
+		lockSegment(segmentNumber);
+
+		long locked = System.currentTimeMillis();
+
+		SegmentWarmer segmentWarmer = segmentWarmers.remove(segmentNumber);
+		if (segmentWarmer != null && !segmentWarmer.isCurrent()) {
+			log.info("Segment <" + segmentNumber + "> for index <" + indexName + "> changed after it was warmed, opening it cold");
+			segmentWarmer.discard();
+			segmentWarmer = null;
 		}
+
+		LumongoSegment s = newSegment(segmentNumber);
+
+		SegmentLoadTime segmentLoadTime = new SegmentLoadTime(segmentNumber, segmentWarmer != null ? segmentWarmer.getWarmMs() : 0,
+				segmentWarmer != null ? segmentWarmer.getWarmedBytes() : 0, locked - start, System.currentTimeMillis() - locked);
+		segmentLoadTimes.put(segmentNumber, segmentLoadTime);
+
+		log.info("Loaded segment <" + segmentNumber + "> for index <" + indexName + "> in <" + segmentLoadTime.getOpenMs() + "ms> after waiting <"
+				+ segmentLoadTime.getLockWaitMs() + "ms> for its lock" + (segmentWarmer != null ? " from warmed blocks" : ""));
+		return s;
 	}
 
-	public IndexWriter getIndexWriter(int segmentNumber) throws Exception {
+	/**
+	 * Takes the lock of the segment so no other member opens it, the lock is released when the segment is closed
+	 */
+	private void lockSegment(int segmentNumber) {
+		String lockName = indexName + "-" + segmentNumber;
+		ILock hzLock = hazelcastManager.getLock(lockName);
+		hazelLockMap.put(segmentNumber, hzLock);
+		log.info("Waiting for lock for index <" + indexName + "> segment <" + segmentNumber + ">");
+		hzLock.lock();
+		log.info("Obtained lock for index <" + indexName + "> segment <" + segmentNumber + ">");
+	}
 
-		Directory d;
-		if (indexConfig.getIndexSettings().getStoreIndexOnDisk()) {
-			d = MMapDirectory.open(getPathForIndex(segmentNumber));
+	private void unlockSegment(int segmentNumber) {
+		ILock hzLock = hazelLockMap.remove(segmentNumber);
+		if (hzLock != null) {
+			hzLock.forceUnlock();
+			log.info("Unlocked lock for index <" + indexName + "> segment <" + segmentNumber + ">");
 		}
-		else {
-			String indexSegmentDbName = getIndexSegmentDbName(segmentNumber);
-			String indexSegmentCollectionName = getIndexSegmentCollectionName(segmentNumber) + "_index";
-			MongoDirectory mongoDirectory = new MongoDirectory(mongo, indexSegmentDbName, indexSegmentCollectionName, clusterConfig.isSharded(),
-					clusterConfig.getIndexBlockSize());
-			d = new DistributedDirectory(mongoDirectory);
+	}
+
+	private LumongoSegment newSegment(int segmentNumber) throws Exception {
+		//Just for clarity
+		IndexSegmentInterface indexSegmentInterface = this;
+
+		//doesnt need to be done each time and it is done in StartNode but helps with test cases that take different paths
+		FacetsConfig.DEFAULT_DIM_CONFIG.multiValued = true;
+		FacetsConfig facetsConfig = new FacetsConfig();
+
+		return new LumongoSegment(segmentNumber, indexSegmentInterface, indexConfig, facetsConfig, documentStorage);
+	}
+
+	private SegmentWarmer warmSegment(int segmentNumber) throws IOException {
+		String indexSegmentDbName = getIndexSegmentDbName(segmentNumber);
+		String indexSegmentCollectionName = getIndexSegmentCollectionName(segmentNumber) + "_index";
+		MongoDirectory mongoDirectory = new MongoDirectory(mongo, indexSegmentDbName, indexSegmentCollectionName, clusterConfig.isSharded(),
+				clusterConfig.getIndexBlockSize());
+		return SegmentWarmer.warm(segmentNumber, mongoDirectory, clusterConfig.getIndexReadAheadBlocks(), clusterConfig.getSegmentWarmMB() * 1024L * 1024L);
+	}
+
+	/**
+	 * @return time taken to load each segment loaded on this node by segment number
+	 */
+	public Map<Integer, SegmentLoadTime> getSegmentLoadTimes() {
+		return new TreeMap<>(segmentLoadTimes);
+	}
+
+	/**
+	 * Acquires the loaded segments for a request after waiting for segments this member is opening.  Segments being handed off are skipped.
+	 * Release with {@link #releaseSegments(Collection)} when the request finishes so segments handed off are closed once their requests finish.
+	 * @throws SegmentNotLoaded if a segment this member is opening does not open in time
+	 */
+	private List<LumongoSegment> acquireSegments() throws SegmentNotLoaded {
+		long end = System.currentTimeMillis() + PENDING_SEGMENT_WAIT_MS;
+		for (Integer segmentNumber : pendingSegments.keySet()) {
+			awaitPendingSegment(segmentNumber, end);
 		}
 
+		List<LumongoSegment> segments = new ArrayList<>();
+		for (LumongoSegment segment : segmentMap.values()) {
+			if (segment.acquire()) {
+				segments.add(segment);
+			}
+		}
+		return segments;
+	}
+
+	private static void releaseSegments(Collection<LumongoSegment> segments) {
+		for (LumongoSegment segment : segments) {
+			segment.release();
+		}
+	}
+
+	/**
+	 * Acquires a segment for a request after waiting for it to open if this member is opening it, release with {@link LumongoSegment#release()}
+	 */
+	private LumongoSegment acquireSegment(int segmentNumber) throws SegmentDoesNotExist, SegmentNotLoaded {
+		awaitPendingSegment(segmentNumber, System.currentTimeMillis() + PENDING_SEGMENT_WAIT_MS);
+
+		LumongoSegment s = segmentMap.get(segmentNumber);
+		if (s == null || !s.acquire()) {
+			throw new SegmentDoesNotExist(indexName, segmentNumber);
+		}
+		return s;
+	}
+
+	private void awaitPendingSegment(int segmentNumber, long end) throws SegmentNotLoaded {
+		CountDownLatch pending = pendingSegments.get(segmentNumber);
+		if (pending != null) {
+			boolean opened;
+			try {
+				opened = pending.await(end - System.currentTimeMillis(), TimeUnit.MILLISECONDS);
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				opened = false;
+			}
+			if (!opened) {
+				throw new SegmentNotLoaded(indexName, segmentNumber, PENDING_SEGMENT_WAIT_MS);
+			}
+		}
+	}
+
+	public IndexWriter getIndexWriter(int segmentNumber) throws Exception {
+
+		Directory d = getIndexDirectory(segmentNumber);
+
 		IndexWriterConfig config = new IndexWriterConfig(getPerFieldAnalyzer());
 
 		config.setMaxBufferedDocs(Integer.MAX_VALUE);
@@ -458,6 +716,24 @@ public class LumongoIndex implements IndexSegmentInterface {
 		return new IndexWriter(nrtCachingDirectory, config);
 	}
 
+	private Directory getIndexDirectory(int segmentNumber) throws IOException {
+		Directory d;
+		if (indexConfig.getIndexSettings().getStoreIndexOnDisk()) {
+			d = MMapDirectory.open(getPathForIndex(segmentNumber));
+		}
+		else {
+			String indexSegmentDbName = getIndexSegmentDbName(segmentNumber);
+			String indexSegmentCollectionName = getIndexSegmentCollectionName(segmentNumber) + "_index";
+			MongoDirectory mongoDirectory = new MongoDirectory(mongo, indexSegmentDbName, indexSegmentCollectionName, clusterConfig.isSharded(),
+					clusterConfig.getIndexBlockSize());
+			d = new DistributedDirectory(mongoDirectory, clusterConfig.getIndexReadAheadBlocks());
+			if (indexConfig.getIndexSettings().getCacheIndexOnDisk()) {
+				d = new TieredDirectory(d, MMapDirectory.open(getPathForIndexCache(segmentNumber)));
+			}
+		}
+		return d;
+	}
+
 	private Path getPathForIndex(int segmentNumber) {
 		return Paths.get("indexes", indexName + "_" + segmentNumber + "_idx");
 	}
@@ -466,8 +742,23 @@ public class LumongoIndex implements IndexSegmentInterface {
 		return Paths.get("indexes", indexName + "_" + segmentNumber + "_facets");
 	}
 
+	private Path getPathForIndexCache(int segmentNumber) {
+		return Paths.get("indexes", indexName + "_" + segmentNumber + "_idx_cache");
+	}
+
+	private Path getPathForFacetsIndexCache(int segmentNumber) {
+		return Paths.get("indexes", indexName + "_" + segmentNumber + "_facets_cache");
+	}
+
 	public DirectoryTaxonomyWriter getTaxoWriter(int segmentNumber) throws IOException {
 
+		NRTCachingDirectory nrtCachingDirectory = new NRTCachingDirectory(getTaxoDirectory(segmentNumber), 2, 10);
+
+		return new DirectoryTaxonomyWriter(nrtCachingDirectory);
+	}
+
+	private Directory getTaxoDirectory(int segmentNumber) throws IOException {
+
 		Directory d;
 
 		if (indexConfig.getIndexSettings().getStoreIndexOnDisk()) {
@@ -478,12 +769,13 @@ public class LumongoIndex implements IndexSegmentInterface {
 			String indexSegmentCollectionName = getIndexSegmentCollectionName(segmentNumber) + "_facets";
 			MongoDirectory mongoDirectory = new MongoDirectory(mongo, indexSegmentDbName, indexSegmentCollectionName, clusterConfig.isSharded(),
 					clusterConfig.getIndexBlockSize());
-			d = new DistributedDirectory(mongoDirectory);
+			d = new DistributedDirectory(mongoDirectory, clusterConfig.getIndexReadAheadBlocks());
+			if (indexConfig.getIndexSettings().getCacheIndexOnDisk()) {
+				d = new TieredDirectory(d, MMapDirectory.open(getPathForFacetsIndexCache(segmentNumber)));
+			}
 		}
 
-		NRTCachingDirectory nrtCachingDirectory = new NRTCachingDirectory(d, 2, 10);
-
-		return new DirectoryTaxonomyWriter(nrtCachingDirectory);
+		return d;
 	}
 
 	public PerFieldAnalyzerWrapper getPerFieldAnalyzer() throws Exception {
@@ -501,279 +793,619 @@ public class LumongoIndex implements IndexSegmentInterface {
 	public void unloadSegment(int segmentNumber, boolean terminate) throws IOException {
 		indexLock.writeLock().lock();
 		try {
-			ILock hzLock = hazelLockMap.get(segmentNumber);
+			closeSegment(segmentNumber, terminate);
+		}
+		finally {
+			indexLock.writeLock().unlock();
+		}
+
+	}
+
+	/**
+	 * Stops handing out the segment, waits for the requests and query cursors using it to finish and closes it so its new owner can take the segment
+	 * lock
+	 */
+	private void handOffSegment(int segmentNumber) throws IOException {
+		LumongoSegment s = segmentMap.get(segmentNumber);
+		if (s != null) {
+			long start = System.currentTimeMillis();
 			try {
-				if (segmentMap.containsKey(segmentNumber)) {
-					LumongoSegment s = segmentMap.remove(segmentNumber);
-					if (s != null) {
-						log.info("Closing segment <" + segmentNumber + "> for index <" + indexName + ">");
-						s.close(terminate);
-						log.info("Removed segment <" + segmentNumber + "> for index <" + indexName + ">");
-						log.info("Current segments <" + (new TreeSet<>(segmentMap.keySet())) + "> for index <" + indexName + ">");
-					}
+				if (!s.drain(HANDOFF_DRAIN_MS)) {
+					log.error("Requests on segment <" + segmentNumber + "> for index <" + indexName + "> did not finish within <" + HANDOFF_DRAIN_MS
+							+ "ms>, closing it and its open query cursors");
 				}
-
 			}
-			finally {
-				try {
-					hzLock.forceUnlock();
-					log.info("Unlocked lock for index <" + indexName + "> segment <" + segmentNumber + ">");
-				}
-				catch (Exception e) {
-					log.error("Failed to unlock <" + segmentNumber + ">: ", e);
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+			log.info("Drained segment <" + segmentNumber + "> for index <" + indexName + "> in <" + (System.currentTimeMillis() - start) + "ms>");
+		}
+		closeSegment(segmentNumber, false);
+	}
+
+	private void closeSegment(int segmentNumber, boolean terminate) throws IOException {
+		ILock hzLock = hazelLockMap.get(segmentNumber);
+		try {
+			if (segmentMap.containsKey(segmentNumber)) {
+				LumongoSegment s = segmentMap.remove(segmentNumber);
+				segmentLoadTimes.remove(segmentNumber);
+				if (s != null) {
+					log.info("Closing segment <" + segmentNumber + "> for index <" + indexName + ">");
+					s.close(terminate);
+					log.info("Removed segment <" + segmentNumber + "> for index <" + indexName + ">");
+					log.info("Current segments <" + (new TreeSet<>(segmentMap.keySet())) + "> for index <" + indexName + ">");
 				}
 			}
+
 		}
 		finally {
-			indexLock.writeLock().unlock();
+			try {
+				hzLock.forceUnlock();
+				log.info("Unlocked lock for index <" + indexName + "> segment <" + segmentNumber + ">");
+			}
+			catch (Exception e) {
+				log.error("Failed to unlock <" + segmentNumber + ">: ", e);
+			}
 		}
-
 	}
 
 	/**
-	 * called on older cluster node when a new member is added
+	 * Copies the segment map for the balance strategy with the segments of a removed member and any missing segments given to a current member
 	 *
 	 * @param currentMembers
 	 *            - current cluster members
-	 * @param memberAdded
-	 *            - member that is being added
+	 * @param memberRemoved
+	 *            - member that was removed, null if no member was removed
 	 */
-	public void handleServerAdded(Set<Member> currentMembers, Member memberAdded) {
-		indexLock.writeLock().lock();
+	public Map<Member, Set<Integer>> getSegmentMapForBalance(Set<Member> currentMembers, Member memberRemoved) {
+		Map<Member, Set<Integer>> newMemberToSegmentMap = new HashMap<>();
+		Map<Member, Set<Integer>> currentMemberToSegmentMap = memberToSegmentMap;
+		if (currentMemberToSegmentMap != null) {
+			for (Member m : currentMemberToSegmentMap.keySet()) {
+				newMemberToSegmentMap.put(m, new HashSet<>(currentMemberToSegmentMap.get(m)));
+			}
+		}
+
+		if (memberRemoved != null) {
+			Set<Integer> segmentsToRedist = newMemberToSegmentMap.remove(memberRemoved);
+			if (segmentsToRedist != null) {
+				Member first = currentMembers.iterator().next();
+				newMemberToSegmentMap.computeIfAbsent(first, k -> new HashSet<>()).addAll(segmentsToRedist);
+			}
+		}
+
+		mapSanityCheck(newMemberToSegmentMap, currentMembers);
+		return newMemberToSegmentMap;
+	}
+
+	/**
+	 * @return true if the segment map differs from the map this member is serving
+	 */
+	public boolean isSegmentMapChanged(Map<Member, Set<Integer>> newMemberToSegmentMap) {
+		return !newMemberToSegmentMap.equals(memberToSegmentMap);
+	}
+
+	/**
+	 * Hands the moved segments of a balanced segment map off in two phases.  The new owners first warm the segments they gain while the current
+	 * owners keep serving them, then every member flips to the new map, the old owners drain and close the segments they lose and the new owners
+	 * open them.  The index lock is not held so requests on this member keep running during the handoff.
+	 */
+	public void handOffSegments(Set<Member> currentMembers, Map<Member, Set<Integer>> newMemberToSegmentMap) {
+		balanceLock.lock();
 		try {
-			forceBalance(currentMembers);
+			runUpdateSegmentsTask(currentMembers, newMemberToSegmentMap, true);
+			runUpdateSegmentsTask(currentMembers, newMemberToSegmentMap, false);
 		}
 		finally {
-			indexLock.writeLock().unlock();
+			balanceLock.unlock();
 		}
-
 	}
 
-	public void forceBalance(Set<Member> currentMembers) {
-		indexLock.writeLock().lock();
+	/**
+	 * @return the load of each segment loaded on this node
+	 */
+	public List<SegmentLoad> getSegmentLoads() throws Exception {
+		List<SegmentLoad> segmentLoads = new ArrayList<>();
+		List<LumongoSegment> segments = acquireSegments();
 		try {
-			mapSanityCheck(currentMembers);
-			balance(currentMembers);
+			for (LumongoSegment segment : segments) {
+				segmentLoads.add(segment.getSegmentLoad());
+			}
+		}
+		finally {
+			releaseSegments(segments);
+		}
+		return segmentLoads;
+	}
 
-			IExecutorService executorService = hazelcastManager.getExecutorService();
+	/**
+	 * Records a reshard to the new number of segments so a reshard interrupted before it completes is rolled back when the index is next loaded
+	 */
+	public void storeReshard(int newNumberOfSegments) {
+		Document reshard = new Document();
+		reshard.put(MongoConstants.StandardFields._ID, RESHARD_ID);
+		reshard.put(FROM_SEGMENTS, numberOfSegments);
+		reshard.put(TO_SEGMENTS, newNumberOfSegments);
+		reshard.put(CUT_OVER, new ArrayList<Integer>());
+
+		getConfigCollection().replaceOne(new Document(MongoConstants.StandardFields._ID, RESHARD_ID), reshard, new UpdateOptions().upsert(true));
+	}
 
-			List<Future<Void>> results = new ArrayList<>();
+	/**
+	 * Stores the new number of segments of a reshard every member cut over to and removes the record of the reshard
+	 */
+	public void completeReshard() {
+		storeIndexSettings();
+		deleteReshard();
+	}
 
-			for (Member m : currentMembers) {
+	public void deleteReshard() {
+		getConfigCollection().deleteOne(new Document(MongoConstants.StandardFields._ID, RESHARD_ID));
+	}
 
-				try {
-					UpdateSegmentsTask ust = new UpdateSegmentsTask(m.getSocketAddress().getPort(), indexName, memberToSegmentMap);
-					if (!m.localMember()) {
-						Future<Void> dt = executorService.submitToMember(ust, m);
-						results.add(dt);
-					}
-				}
-				catch (Exception e) {
-					log.error(e.getClass().getSimpleName() + ": ", e);
-				}
+	private Document getReshard() {
+		return getConfigCollection().find(new Document(MongoConstants.StandardFields._ID, RESHARD_ID)).first();
+	}
 
+	private void setReshardCutOver(int segmentNumber, boolean cutOver) {
+		Document update = new Document(cutOver ? "$addToSet" : "$pull", new Document(CUT_OVER, segmentNumber));
+		getConfigCollection().updateOne(new Document(MongoConstants.StandardFields._ID, RESHARD_ID), update);
+	}
+
+	/**
+	 * @return the segment numbers of the reshard that cut over to their new segments, mongo returns the numbers as an untyped list
+	 */
+	private static Set<Integer> getReshardCutOver(Document reshard) {
+		Set<Integer> cutOver = new TreeSet<>();
+		List<?> segmentNumbers = reshard.get(CUT_OVER, List.class);
+		if (segmentNumbers != null) {
+			for (Object segmentNumber : segmentNumbers) {
+				cutOver.add(((Number) segmentNumber).intValue());
 			}
+		}
+		return cutOver;
+	}
+
+	private MongoCollection<Document> getConfigCollection() {
+		MongoDatabase db = mongo.getDatabase(mongoConfig.getDatabaseName());
+		return db.getCollection(indexName + CONFIG_SUFFIX);
+	}
+
+	/**
+	 * First phase of a reshard.  Under the write lock every segment on this member starts splitting into the new segments its documents route to,
+	 * then the segments are copied concurrently on the load pool while requests keep running and their changes are mirrored to the new segments.
+	 * @param segmentLoadPool - pool the segments are copied on
+	 */
+	public void prepareReshard(int newNumberOfSegments, ExecutorService segmentLoadPool) throws Exception {
+		List<LumongoSegment> splitting = new ArrayList<>();
+
+		indexLock.writeLock().lock();
+		try {
+			for (Integer segmentNumber : new TreeSet<>(segmentMap.keySet())) {
+				LumongoSegment segment = segmentMap.get(segmentNumber);
+				startSplit(segment, newNumberOfSegments);
+				splitting.add(segment);
+			}
+		}
+		finally {
+			indexLock.writeLock().unlock();
+		}
 
+		Map<Integer, Future<Void>> copies = new TreeMap<>();
+		for (LumongoSegment segment : splitting) {
+			copies.put(segment.getSegmentNumber(), segmentLoadPool.submit(() -> {
+				segment.copySplit();
+				return null;
+			}));
+		}
+
+		Exception exception = null;
+		for (Integer segmentNumber : copies.keySet()) {
 			try {
-				UpdateSegmentsTask ust = new UpdateSegmentsTask(hazelcastManager.getHazelcastPort(), indexName, memberToSegmentMap);
-				ust.call();
+				copies.get(segmentNumber).get();
 			}
 			catch (Exception e) {
-				log.error(e.getClass().getSimpleName() + ": ", e);
-			}
-			for (Future<Void> result : results) {
-				try {
-					result.get();
+				Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+				log.error("Failed to split segment <" + segmentNumber + "> for index <" + indexName + ">: " + cause.getClass().getSimpleName() + ": ", cause);
+				if (exception == null) {
+					exception = cause instanceof Exception ? (Exception) cause : new Exception(cause);
 				}
-				catch (Exception e) {
-					log.error(e.getClass().getSimpleName() + ": ", e);
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
+
+	/**
+	 * Locks and clears the segments the segment splits into and starts the split, the locks are held until the new segments are closed
+	 */
+	private void startSplit(LumongoSegment segment, int newNumberOfSegments) throws Exception {
+		boolean taxonomy = IndexSettings.FacetMode.TAXONOMY.equals(indexConfig.getIndexSettings().getFacetMode());
+
+		Map<Integer, IndexWriter> targetWriters = new TreeMap<>();
+		Map<Integer, Directory> targetTaxoDirectories = new TreeMap<>();
+		try {
+			for (int target : getSplitTargets(segment.getSegmentNumber(), numberOfSegments, newNumberOfSegments)) {
+				lockSegment(target);
+
+				//a previous reshard that did not complete may have left documents in the new segment
+				IndexWriter targetWriter = getIndexWriter(target);
+				targetWriters.put(target, targetWriter);
+				targetWriter.deleteAll();
+
+				if (taxonomy) {
+					targetTaxoDirectories.put(target, new NRTCachingDirectory(getTaxoDirectory(target), 2, 10));
 				}
 			}
+
+			segment.startSplit(newNumberOfSegments, targetWriters, targetTaxoDirectories);
 		}
-		finally {
-			indexLock.writeLock().unlock();
+		catch (Exception e) {
+			for (IndexWriter targetWriter : targetWriters.values()) {
+				Directory directory = targetWriter.getDirectory();
+				targetWriter.rollback();
+				directory.close();
+			}
+			for (Directory targetTaxoDirectory : targetTaxoDirectories.values()) {
+				targetTaxoDirectory.close();
+			}
+			throw e;
 		}
+	}
 
+	/**
+	 * @return the segments the documents of a segment route to when the number of segments is multiplied, other than the segment itself
+	 */
+	private static List<Integer> getSplitTargets(int segmentNumber, int fromSegments, int toSegments) {
+		List<Integer> targets = new ArrayList<>();
+		for (int target = segmentNumber + fromSegments; target < toSegments; target += fromSegments) {
+			targets.add(target);
+		}
+		return targets;
 	}
 
 	/**
-	 * Called on older cluster node when member is removed
-	 *
-	 * @param currentMembers
-	 *            - current cluster members
-	 * @param memberRemoved
-	 *            - member that is being removed
+	 * Second phase of a reshard.  Under the write lock the splits are committed, the documents that moved are deleted from the segments split and
+	 * the new segments are opened, then the index routes by the new number of segments.  The new segments are served by the member of the segment
+	 * they were split from so a request routed by either number of segments reaches the member holding its document.
 	 */
-	public void handleServerRemoved(Set<Member> currentMembers, Member memberRemoved) {
+	public void cutOverReshard(int newNumberOfSegments) throws Exception {
 		indexLock.writeLock().lock();
 		try {
-			Set<Integer> segmentsToRedist = memberToSegmentMap.remove(memberRemoved);
-			if (segmentsToRedist != null) {
-				Member first = currentMembers.iterator().next();
-				memberToSegmentMap.get(first).addAll(segmentsToRedist);
+			int fromSegments = numberOfSegments;
+
+			for (Integer segmentNumber : new TreeSet<>(segmentMap.keySet())) {
+				LumongoSegment segment = segmentMap.get(segmentNumber);
+				Set<Integer> targets = segment.finishSplit();
+
+				//recorded before the moved documents are deleted so a failure after is rolled back by merging the new segments back
+				setReshardCutOver(segmentNumber, true);
+				segment.deleteMovedDocuments(newNumberOfSegments);
+
+				for (Integer target : targets) {
+					segmentMap.put(target, newSegment(target));
+				}
 			}
 
-			forceBalance(currentMembers);
+			indexConfig.setNumberOfSegments(newNumberOfSegments);
+			this.numberOfSegments = newNumberOfSegments;
+
+			Map<Member, Set<Integer>> currentMemberToSegmentMap = memberToSegmentMap;
+			if (currentMemberToSegmentMap != null) {
+				Map<Member, Set<Integer>> newMemberToSegmentMap = new HashMap<>();
+				for (Member m : currentMemberToSegmentMap.keySet()) {
+					Set<Integer> segments = new HashSet<>();
+					for (Integer segmentNumber : currentMemberToSegmentMap.get(m)) {
+						segments.add(segmentNumber);
+						segments.addAll(getSplitTargets(segmentNumber, fromSegments, newNumberOfSegments));
+					}
+					newMemberToSegmentMap.put(m, segments);
+				}
+				setSegmentMaps(newMemberToSegmentMap);
+			}
+
+			log.info("Cut over index <" + indexName + "> from <" + fromSegments + "> to <" + newNumberOfSegments + "> segments, current segments <"
+					+ new TreeSet<>(segmentMap.keySet()) + ">");
 		}
 		finally {
 			indexLock.writeLock().unlock();
 		}
-
 	}
 
-	private void balance(Set<Member> currentMembers) {
+	/**
+	 * Rolls back a reshard that failed on any member.  Splits in progress are stopped and segments already cut over get the documents of their new
+	 * segments merged back, then the index routes by the number of segments before the reshard.
+	 */
+	public void abortReshard() throws Exception {
 		indexLock.writeLock().lock();
 		try {
-			boolean balanced = false;
-			do {
-				int minSegmentsForMember = Integer.MAX_VALUE;
-				int maxSegmentsForMember = Integer.MIN_VALUE;
-				Member minMember = null;
-				Member maxMember = null;
-				List<Member> shuffledMembers = new ArrayList<>(currentMembers);
-				Collections.shuffle(shuffledMembers);
-				for (Member m : shuffledMembers) {
-					int segmentsForMemberCount = 0;
-					Set<Integer> segmentsForMember = memberToSegmentMap.get(m);
-					if (segmentsForMember != null) {
-						segmentsForMemberCount = segmentsForMember.size();
-					}
-					if (segmentsForMemberCount < minSegmentsForMember) {
-						minSegmentsForMember = segmentsForMemberCount;
-						minMember = m;
-					}
-					if (segmentsForMemberCount > maxSegmentsForMember) {
-						maxSegmentsForMember = segmentsForMemberCount;
-						maxMember = m;
-					}
+			Document reshard = getReshard();
+			if (reshard == null) {
+				return;
+			}
+
+			int fromSegments = reshard.getInteger(FROM_SEGMENTS);
+			int toSegments = reshard.getInteger(TO_SEGMENTS);
+			Set<Integer> cutOver = getReshardCutOver(reshard);
+
+			for (Integer segmentNumber : new TreeSet<>(segmentMap.keySet())) {
+				if (segmentNumber >= fromSegments) {
+					continue;
 				}
 
-				if ((maxSegmentsForMember - minSegmentsForMember) > 1) {
-					moveSegment(maxMember, minMember);
+				LumongoSegment segment = segmentMap.get(segmentNumber);
+				segment.abortSplit();
+				if (cutOver.contains(segmentNumber)) {
+					rollBackSplit(segment, fromSegments, toSegments);
 				}
 				else {
-					if ((maxSegmentsForMember - minSegmentsForMember == 1)) {
-						boolean move = Math.random() >= 0.5;
-						if (move) {
-							moveSegment(maxMember, minMember);
-						}
+					for (int target : getSplitTargets(segmentNumber, fromSegments, toSegments)) {
+						unlockSegment(target);
 					}
-
-					balanced = true;
-
 				}
+			}
 
+			indexConfig.setNumberOfSegments(fromSegments);
+			this.numberOfSegments = fromSegments;
+
+			Map<Member, Set<Integer>> currentMemberToSegmentMap = memberToSegmentMap;
+			if (currentMemberToSegmentMap != null) {
+				Map<Member, Set<Integer>> newMemberToSegmentMap = new HashMap<>();
+				for (Member m : currentMemberToSegmentMap.keySet()) {
+					Set<Integer> segments = new HashSet<>();
+					for (Integer segmentNumber : currentMemberToSegmentMap.get(m)) {
+						if (segmentNumber < fromSegments) {
+							segments.add(segmentNumber);
+						}
+					}
+					newMemberToSegmentMap.put(m, segments);
+				}
+				setSegmentMaps(newMemberToSegmentMap);
 			}
-			while (!balanced);
+
+			log.info("Rolled back reshard of index <" + indexName + "> to <" + fromSegments + "> segments");
 		}
 		finally {
 			indexLock.writeLock().unlock();
 		}
+	}
 
+	/**
+	 * Rolls back a reshard recorded for the index that did not complete before the index was last unloaded
+	 */
+	private void recoverReshard() throws Exception {
+		Document reshard = getReshard();
+		if (reshard == null) {
+			return;
+		}
+
+		int fromSegments = reshard.getInteger(FROM_SEGMENTS);
+		int toSegments = reshard.getInteger(TO_SEGMENTS);
+		if (numberOfSegments == fromSegments) {
+			log.info("Rolling back reshard of index <" + indexName + "> from <" + fromSegments + "> to <" + toSegments + "> segments");
+			Set<Integer> cutOver = getReshardCutOver(reshard);
+			for (Integer segmentNumber : cutOver) {
+				LumongoSegment segment = segmentMap.get(segmentNumber);
+				if (segment != null) {
+					rollBackSplit(segment, fromSegments, toSegments);
+				}
+			}
+		}
+		deleteReshard();
 	}
 
-	private void moveSegment(Member fromMember, Member toMember) {
-		int valueToMove = memberToSegmentMap.get(fromMember).iterator().next();
+	/**
+	 * Closes the new segments split from a segment and merges their documents back into it
+	 */
+	private void rollBackSplit(LumongoSegment segment, int fromSegments, int toSegments) throws Exception {
+		boolean taxonomy = IndexSettings.FacetMode.TAXONOMY.equals(indexConfig.getIndexSettings().getFacetMode());
 
-		log.info("Moving segment <" + valueToMove + "> from <" + fromMember + "> to <" + toMember + "> of Index <" + indexName + ">");
-		memberToSegmentMap.get(fromMember).remove(valueToMove);
+		//documents that moved may not have been deleted before the failure
+		segment.deleteMovedDocuments(toSegments);
+
+		for (int target : getSplitTargets(segment.getSegmentNumber(), fromSegments, toSegments)) {
+			if (segmentMap.containsKey(target)) {
+				closeSegment(target, false);
+			}
 
-		if (!memberToSegmentMap.containsKey(toMember)) {
-			memberToSegmentMap.put(toMember, new HashSet<>());
+			Directory indexDirectory = getIndexDirectory(target);
+			Directory taxoDirectory = taxonomy ? getTaxoDirectory(target) : null;
+			try {
+				segment.mergeSegment(indexDirectory, taxoDirectory);
+			}
+			finally {
+				indexDirectory.close();
+				if (taxoDirectory != null) {
+					taxoDirectory.close();
+				}
+			}
+
+			unlockSegment(target);
 		}
 
-		memberToSegmentMap.get(toMember).add(valueToMove);
+		setReshardCutOver(segment.getSegmentNumber(), false);
+		log.info("Merged segments <" + getSplitTargets(segment.getSegmentNumber(), fromSegments, toSegments) + "> back into segment <" + segment
+				.getSegmentNumber() + "> for index <" + indexName + ">");
 	}
 
-	private void mapSanityCheck(Set<Member> currentMembers) {
-		indexLock.writeLock().lock();
-		try {
-			// add all segments to a set
-			Set<Integer> allSegments = new HashSet<>();
-			for (int segment = 0; segment < indexConfig.getNumberOfSegments(); segment++) {
-				allSegments.add(segment);
-			}
+	private void runUpdateSegmentsTask(Set<Member> currentMembers, Map<Member, Set<Integer>> newMemberToSegmentMap, boolean prepare) {
+		IExecutorService executorService = hazelcastManager.getExecutorService();
 
-			// ensure all members are in the map and contain an empty set
-			for (Member m : currentMembers) {
-				if (!memberToSegmentMap.containsKey(m)) {
-					memberToSegmentMap.put(m, new HashSet<>());
-				}
-				if (memberToSegmentMap.get(m) == null) {
-					memberToSegmentMap.put(m, new HashSet<>());
+		List<Future<Void>> results = new ArrayList<>();
+
+		for (Member m : currentMembers) {
+
+			try {
+				UpdateSegmentsTask ust = new UpdateSegmentsTask(m.getSocketAddress().getPort(), indexName, newMemberToSegmentMap, prepare);
+				if (!m.localMember()) {
+					Future<Void> dt = executorService.submitToMember(ust, m);
+					results.add(dt);
 				}
 			}
+			catch (Exception e) {
+				log.error(e.getClass().getSimpleName() + ": ", e);
+			}
 
-			// get all members of the map
-			Set<Member> mapMembers = memberToSegmentMap.keySet();
-			for (Member m : mapMembers) {
+		}
 
-				// get current segments
-				Set<Integer> segments = memberToSegmentMap.get(m);
+		try {
+			UpdateSegmentsTask ust = new UpdateSegmentsTask(hazelcastManager.getHazelcastPort(), indexName, newMemberToSegmentMap, prepare);
+			ust.call();
+		}
+		catch (Exception e) {
+			log.error(e.getClass().getSimpleName() + ": ", e);
+		}
+		for (Future<Void> result : results) {
+			try {
+				result.get();
+			}
+			catch (Exception e) {
+				log.error(e.getClass().getSimpleName() + ": ", e);
+			}
+		}
+	}
 
-				Set<Integer> invalidSegments = new HashSet<>();
-				// check if valid segment
-				segments.stream().filter(segment -> !allSegments.contains(segment)).forEach(segment -> {
-					if ((segment < 0) || (segment >= indexConfig.getNumberOfSegments())) {
-						log.error("Segment <" + segment + "> should not exist for cluster");
-					}
-					else {
-						log.error("Segment <" + segment + "> is duplicated in node <" + m + ">");
-					}
-					invalidSegments.add(segment);
+	private void mapSanityCheck(Map<Member, Set<Integer>> memberToSegmentMap, Set<Member> currentMembers) {
+		// add all segments to a set
+		Set<Integer> allSegments = new HashSet<>();
+		for (int segment = 0; segment < indexConfig.getNumberOfSegments(); segment++) {
+			allSegments.add(segment);
+		}
 
-				});
-				// remove any invalid segments for the cluster
-				segments.removeAll(invalidSegments);
-				// remove from all segments to keep track of segments already used
-				allSegments.removeAll(segments);
+		// ensure all members are in the map and contain an empty set
+		for (Member m : currentMembers) {
+			if (!memberToSegmentMap.containsKey(m)) {
+				memberToSegmentMap.put(m, new HashSet<>());
 			}
-
-			// adds any segments that are missing back to the first node
-			if (!allSegments.isEmpty()) {
-				log.error("Segments <" + allSegments + "> are missing from the cluster. Adding back in.");
-				memberToSegmentMap.values().iterator().next().addAll(allSegments);
+			if (memberToSegmentMap.get(m) == null) {
+				memberToSegmentMap.put(m, new HashSet<>());
 			}
 		}
-		finally {
-			indexLock.writeLock().unlock();
+
+		// get all members of the map
+		Set<Member> mapMembers = memberToSegmentMap.keySet();
+		for (Member m : mapMembers) {
+
+			// get current segments
+			Set<Integer> segments = memberToSegmentMap.get(m);
+
+			Set<Integer> invalidSegments = new HashSet<>();
+			// check if valid segment
+			segments.stream().filter(segment -> !allSegments.contains(segment)).forEach(segment -> {
+				if ((segment < 0) || (segment >= indexConfig.getNumberOfSegments())) {
+					log.error("Segment <" + segment + "> should not exist for cluster");
+				}
+				else {
+					log.error("Segment <" + segment + "> is duplicated in node <" + m + ">");
+				}
+				invalidSegments.add(segment);
+
+			});
+			// remove any invalid segments for the cluster
+			segments.removeAll(invalidSegments);
+			// remove from all segments to keep track of segments already used
+			allSegments.removeAll(segments);
+		}
+
+		// adds any segments that are missing back to the first node
+		if (!allSegments.isEmpty()) {
+			log.error("Segments <" + allSegments + "> are missing from the cluster. Adding back in.");
+			memberToSegmentMap.values().iterator().next().addAll(allSegments);
 		}
+	}
 
+	/**
+	 * Acquires the segment of the unique id for a request, release with {@link LumongoSegment#release()}
+	 */
+	private LumongoSegment acquireSegmentFromUniqueId(String uniqueId) throws SegmentDoesNotExist, SegmentNotLoaded {
+		return acquireSegment(getSegmentNumberForUniqueId(uniqueId));
 	}
 
-	public LumongoSegment findSegmentFromUniqueId(String uniqueId) throws SegmentDoesNotExist {
+	public Member findMember(String uniqueId) {
 		indexLock.readLock().lock();
 		try {
 			int segmentNumber = getSegmentNumberForUniqueId(uniqueId);
-			LumongoSegment s = segmentMap.get(segmentNumber);
-			if (s == null) {
-				throw new SegmentDoesNotExist(indexName, segmentNumber);
-			}
-			return s;
+			return segmentToMemberMap.get(segmentNumber);
 		}
 		finally {
 			indexLock.readLock().unlock();
 		}
 	}
 
-	public Member findMember(String uniqueId) {
+	public Map<Integer, Member> getSegmentToMemberMap() {
 		indexLock.readLock().lock();
 		try {
-			int segmentNumber = getSegmentNumberForUniqueId(uniqueId);
-			return segmentToMemberMap.get(segmentNumber);
+			return new HashMap<>(segmentToMemberMap);
+		}
+		finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Finds the members that own at least one segment of this index
+	 *
+	 * @param currentMembers
+	 *            - current cluster members
+	 * @return the owning members, or null if the segment map is incomplete or references a member no longer in the cluster
+	 */
+	public Set<Member> getSegmentOwners(Set<Member> currentMembers) {
+		indexLock.readLock().lock();
+		try {
+			if (segmentToMemberMap == null) {
+				return null;
+			}
+
+			Set<Member> owners = new HashSet<>();
+			for (int segmentNumber = 0; segmentNumber < numberOfSegments; segmentNumber++) {
+				Member m = segmentToMemberMap.get(segmentNumber);
+				if (m == null || !currentMembers.contains(m)) {
+					return null;
+				}
+				owners.add(m);
+			}
+			return owners;
+		}
+		finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+	private int getSegmentNumberForUniqueId(String uniqueId) {
+		int numSegments = indexConfig.getNumberOfSegments();
+		return SegmentUtil.findSegmentForUniqueId(uniqueId, numSegments);
+	}
+
+	/**
+	 * Runs the task on the lane and waits for it.  The caller holds the index lock for the task so lane threads never wait on the index lock.
+	 * @throws org.lumongo.server.exceptions.ResourceExhausted if the lane is full
+	 */
+	private <T> T runOnLane(LaneExecutor lane, Callable<T> task) throws Exception {
+		Future<T> future = lane.submit(task);
+		try {
+			return future.get();
 		}
-		finally {
-			indexLock.readLock().unlock();
+		catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			if (cause instanceof Exception) {
+				throw (Exception) cause;
+			}
+			throw new Exception(cause);
 		}
 	}
 
-	public Map<Integer, Member> getSegmentToMemberMap() {
-		return new HashMap<>(segmentToMemberMap);
+	/**
+	 * @return the query, fetch and index lanes of the index
+	 */
+	public List<LaneExecutor> getLanes() {
+		return Arrays.asList(queryLane, fetchLane, indexLane);
 	}
 
-	private int getSegmentNumberForUniqueId(String uniqueId) {
-		int numSegments = indexConfig.getNumberOfSegments();
-		return SegmentUtil.findSegmentForUniqueId(uniqueId, numSegments);
+	private void setupParsedQueryCache() {
+		int parsedQueryCacheSize = indexConfig.getIndexSettings().getParsedQueryCacheSize();
+		parsedQueryCache = parsedQueryCacheSize > 0 ? new ParsedQueryCache(parsedQueryCacheSize, 8) : null;
 	}
 
 	public void deleteIndex() throws Exception {
@@ -791,8 +1423,11 @@ public class LumongoIndex implements IndexSegmentInterface {
 					Files.walkFileTree(p, new DeletingFileVisitor());
 				}
 				{
+					//indexes faceting with sorted set doc values have no facets index
 					Path p = getPathForFacetsIndex(i);
-					Files.walkFileTree(p, new DeletingFileVisitor());
+					if (Files.exists(p)) {
+						Files.walkFileTree(p, new DeletingFileVisitor());
+					}
 				}
 			}
 		}
@@ -804,6 +1439,16 @@ public class LumongoIndex implements IndexSegmentInterface {
 				MongoDirectory.dropIndex(mongo, dbName, collectionName);
 
 			}
+
+			if (indexConfig.getIndexSettings().getCacheIndexOnDisk()) {
+				for (int i = 0; i < numberOfSegments; i++) {
+					for (Path p : new Path[] { getPathForIndexCache(i), getPathForFacetsIndexCache(i) }) {
+						if (Files.exists(p)) {
+							Files.walkFileTree(p, new DeletingFileVisitor());
+						}
+					}
+				}
+			}
 		}
 
 		documentStorage.drop();
@@ -820,45 +1465,133 @@ public class LumongoIndex implements IndexSegmentInterface {
 		indexLock.readLock().lock();
 
 		try {
+			runOnLane(indexLane, () -> {
+				long timestamp = hazelcastManager.getClusterTime();
 
-			long timestamp = hazelcastManager.getClusterTime();
+				String uniqueId = storeRequest.getUniqueId();
+				ReadWriteLock documentLock = documentLockHandler.getLock(uniqueId);
+				try {
+					documentLock.writeLock().lock();
 
-			String uniqueId = storeRequest.getUniqueId();
-			ReadWriteLock documentLock = documentLockHandler.getLock(uniqueId);
-			try {
-				documentLock.writeLock().lock();
+					if (storeRequest.hasResultDocument()) {
+						ResultDocument resultDocument = storeRequest.getResultDocument();
+						Document document;
+						if (resultDocument.hasDocument()) {
+							document = LumongoUtil.byteArrayToMongoDocument(resultDocument.getDocument().toByteArray());
+						}
+						else {
+							document = new Document();
+						}
 
-				if (storeRequest.hasResultDocument()) {
-					ResultDocument resultDocument = storeRequest.getResultDocument();
-					Document document;
-					if (resultDocument.hasDocument()) {
-						document = LumongoUtil.byteArrayToMongoDocument(resultDocument.getDocument().toByteArray());
-					}
-					else {
-						document = new Document();
+						LumongoSegment s = acquireSegmentFromUniqueId(uniqueId);
+						try {
+							s.index(uniqueId, timestamp, document, resultDocument.getMetadataList());
+						}
+						finally {
+							s.release();
+						}
+
+						if (indexConfig.getIndexSettings().getStoreDocumentInMongo()) {
+							documentStorage.storeSourceDocument(storeRequest.getUniqueId(), timestamp, document, resultDocument.getMetadataList());
+						}
 					}
 
-					LumongoSegment s = findSegmentFromUniqueId(uniqueId);
-					s.index(uniqueId, timestamp, document, resultDocument.getMetadataList());
+					if (storeRequest.getClearExistingAssociated()) {
+						documentStorage.deleteAssociatedDocuments(uniqueId);
+					}
 
-					if (indexConfig.getIndexSettings().getStoreDocumentInMongo()) {
-						documentStorage.storeSourceDocument(storeRequest.getUniqueId(), timestamp, document, resultDocument.getMetadataList());
+					for (AssociatedDocument ad : storeRequest.getAssociatedDocumentList()) {
+						ad = AssociatedDocument.newBuilder(ad).setTimestamp(timestamp).build();
+						documentStorage.storeAssociatedDocument(ad);
 					}
 				}
-
-				if (storeRequest.getClearExistingAssociated()) {
-					documentStorage.deleteAssociatedDocuments(uniqueId);
+				finally {
+					documentLock.writeLock().unlock();
 				}
+				return null;
+			});
+		}
+		finally {
+			indexLock.readLock().unlock();
+		}
+	}
 
-				for (AssociatedDocument ad : storeRequest.getAssociatedDocumentList()) {
-					ad = AssociatedDocument.newBuilder(ad).setTimestamp(timestamp).build();
-					documentStorage.storeAssociatedDocument(ad);
-				}
-			}
-			finally {
-				documentLock.writeLock().unlock();
-			}
+	/**
+	 * Stores a batch of documents for this index.  The document locks for the whole batch are taken once in a consistent order, documents are
+	 * indexed segment by segment with a single commit check per segment, and source documents are written to mongo with one bulk write.
+	 * @param storeRequests - store requests for documents that belong to segments on this node
+	 * @throws Exception
+	 */
+	public void storeInternal(List<StoreRequest> storeRequests) throws Exception {
+		indexLock.readLock().lock();
+
+		try {
+			runOnLane(indexLane, () -> {
+				long timestamp = hazelcastManager.getClusterTime();
+
+				List<LumongoSegment> acquired = new ArrayList<>();
+				try {
+					Map<LumongoSegment, List<StoreRequest>> segmentToRequests = new HashMap<>();
+					Set<String> uniqueIds = new HashSet<>();
+					for (StoreRequest storeRequest : storeRequests) {
+						uniqueIds.add(storeRequest.getUniqueId());
+						if (storeRequest.hasResultDocument()) {
+							LumongoSegment s = acquireSegmentFromUniqueId(storeRequest.getUniqueId());
+							acquired.add(s);
+							segmentToRequests.computeIfAbsent(s, k -> new ArrayList<>()).add(storeRequest);
+						}
+					}
+
+					List<ReadWriteLock> documentLocks = documentLockHandler.getLocks(uniqueIds);
+					int locked = 0;
+					try {
+						for (ReadWriteLock documentLock : documentLocks) {
+							documentLock.writeLock().lock();
+							locked++;
+						}
+
+						for (LumongoSegment s : segmentToRequests.keySet()) {
+							List<StoreRequest> segmentRequests = segmentToRequests.get(s);
+							for (StoreRequest storeRequest : segmentRequests) {
+								ResultDocument resultDocument = storeRequest.getResultDocument();
+								Document document;
+								if (resultDocument.hasDocument()) {
+									document = LumongoUtil.byteArrayToMongoDocument(resultDocument.getDocument().toByteArray());
+								}
+								else {
+									document = new Document();
+								}
+								s.indexDocument(storeRequest.getUniqueId(), timestamp, document, resultDocument.getMetadataList());
+							}
+							s.possibleCommit(segmentRequests.size());
+						}
+
+						if (indexConfig.getIndexSettings().getStoreDocumentInMongo()) {
+							documentStorage.storeSourceDocuments(storeRequests, timestamp);
+						}
 
+						for (StoreRequest storeRequest : storeRequests) {
+							if (storeRequest.getClearExistingAssociated()) {
+								documentStorage.deleteAssociatedDocuments(storeRequest.getUniqueId());
+							}
+
+							for (AssociatedDocument ad : storeRequest.getAssociatedDocumentList()) {
+								ad = AssociatedDocument.newBuilder(ad).setTimestamp(timestamp).build();
+								documentStorage.storeAssociatedDocument(ad);
+							}
+						}
+					}
+					finally {
+						for (int j = locked - 1; j >= 0; j--) {
+							documentLocks.get(j).writeLock().unlock();
+						}
+					}
+				}
+				finally {
+					releaseSegments(acquired);
+				}
+				return null;
+			});
 		}
 		finally {
 			indexLock.readLock().unlock();
@@ -872,36 +1605,237 @@ public class LumongoIndex implements IndexSegmentInterface {
 		indexLock.readLock().lock();
 
 		try {
+			runOnLane(indexLane, () -> {
+				String uniqueId = deleteRequest.getUniqueId();
 
-			String uniqueId = deleteRequest.getUniqueId();
+				ReadWriteLock documentLock = documentLockHandler.getLock(uniqueId);
 
-			ReadWriteLock documentLock = documentLockHandler.getLock(uniqueId);
+				try {
+					documentLock.writeLock().lock();
 
-			try {
-				documentLock.writeLock().lock();
+					if (deleteRequest.getDeleteDocument()) {
+						LumongoSegment s = acquireSegmentFromUniqueId(deleteRequest.getUniqueId());
+						try {
+							s.deleteDocument(uniqueId);
+						}
+						finally {
+							s.release();
+						}
+						if (indexConfig.getIndexSettings().getStoreDocumentInMongo()) {
+							documentStorage.deleteSourceDocument(uniqueId);
+						}
+					}
+
+					if (deleteRequest.getDeleteAllAssociated()) {
+						documentStorage.deleteAssociatedDocuments(uniqueId);
+					}
+					else if (deleteRequest.hasFilename()) {
+						String fileName = deleteRequest.getFilename();
+						documentStorage.deleteAssociatedDocument(uniqueId, fileName);
+					}
+				}
+				finally {
+					documentLock.writeLock().unlock();
+				}
+				return null;
+			});
+		}
+		finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Deletes the documents of many delete requests, documents are deleted from each segment and from mongo in one call per segment and collection
+	 */
+	public void deleteDocuments(List<DeleteRequest> deleteRequests) throws Exception {
+
+		indexLock.readLock().lock();
+
+		try {
+			runOnLane(indexLane, () -> {
+				Set<String> uniqueIds = new HashSet<>();
+				for (DeleteRequest deleteRequest : deleteRequests) {
+					uniqueIds.add(deleteRequest.getUniqueId());
+				}
+
+				List<ReadWriteLock> documentLocks = documentLockHandler.getLocks(uniqueIds);
+				int locked = 0;
+				try {
+					for (ReadWriteLock documentLock : documentLocks) {
+						documentLock.writeLock().lock();
+						locked++;
+					}
+
+					List<LumongoSegment> acquired = new ArrayList<>();
+					try {
+						Map<LumongoSegment, List<String>> segmentToUniqueIds = new HashMap<>();
+						Set<String> deleteDocumentIds = new HashSet<>();
+						Set<String> deleteAllAssociatedIds = new HashSet<>();
+						for (DeleteRequest deleteRequest : deleteRequests) {
+							String uniqueId = deleteRequest.getUniqueId();
+							if (deleteRequest.getDeleteDocument() && deleteDocumentIds.add(uniqueId)) {
+								LumongoSegment s = acquireSegmentFromUniqueId(uniqueId);
+								acquired.add(s);
+								segmentToUniqueIds.computeIfAbsent(s, k -> new ArrayList<>()).add(uniqueId);
+							}
+
+							if (deleteRequest.getDeleteAllAssociated()) {
+								deleteAllAssociatedIds.add(uniqueId);
+							}
+							else if (deleteRequest.hasFilename()) {
+								documentStorage.deleteAssociatedDocument(uniqueId, deleteRequest.getFilename());
+							}
+						}
+
+						for (LumongoSegment s : segmentToUniqueIds.keySet()) {
+							s.deleteDocuments(segmentToUniqueIds.get(s));
+						}
+
+						if (indexConfig.getIndexSettings().getStoreDocumentInMongo()) {
+							documentStorage.deleteSourceDocuments(deleteDocumentIds);
+						}
+
+						documentStorage.deleteAssociatedDocuments(deleteAllAssociatedIds);
+					}
+					finally {
+						releaseSegments(acquired);
+					}
+				}
+				finally {
+					for (int j = locked - 1; j >= 0; j--) {
+						documentLocks.get(j).writeLock().unlock();
+					}
+				}
+				return null;
+			});
+		}
+		finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Deletes the documents matching the query from every segment of the index on this node in parallel
+	 * @return the number of documents matched
+	 */
+	public long deleteByQuery(DeleteByQueryRequest request) throws Exception {
+		//an empty query parses to all documents, clearing the index is done with clear
+		String q = request.getQuery().getQ();
+		if (q == null || q.trim().isEmpty()) {
+			throw new IllegalArgumentException("Query is required to delete by query from index <" + indexName + ">");
+		}
+
+		List<LumongoSegment> segments = acquireSegments();
+		indexLock.readLock().lock();
+		try {
+			QueryWithFilters queryWithFilters = new QueryWithFilters(getQuery(request.getQuery()));
+			for (Lumongo.Query filterQuery : request.getFilterQueryList()) {
+				queryWithFilters.addFilterQuery(getQuery(filterQuery));
+			}
 
-				if (deleteRequest.getDeleteDocument()) {
-					LumongoSegment s = findSegmentFromUniqueId(deleteRequest.getUniqueId());
-					s.deleteDocument(uniqueId);
-					if (indexConfig.getIndexSettings().getStoreDocumentInMongo()) {
-						documentStorage.deleteSourceDocument(uniqueId);
+			List<Future<Integer>> responses = new ArrayList<>();
+			for (final LumongoSegment segment : segments) {
+				responses.add(indexLane.submit(() -> deleteByQuery(segment, queryWithFilters, request.getDeleteAllAssociated())));
+			}
+
+			long deleted = 0;
+			for (Future<Integer> response : responses) {
+				try {
+					deleted += response.get();
+				}
+				catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
 					}
+					throw new Exception(cause);
+				}
+			}
+			return deleted;
+		}
+		finally {
+			releaseSegments(segments);
+			indexLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Deletes the documents of a segment matching the query.  The matching unique ids are collected first and then deleted in batches
+	 * under their document locks, only the ids that still match once locked are deleted from the index and from mongo
+	 * @return the number of documents deleted
+	 */
+	private int deleteByQuery(LumongoSegment segment, QueryWithFilters queryWithFilters, boolean deleteAllAssociated) throws Exception {
+		List<String> uniqueIds = segment.getUniqueIds(queryWithFilters);
+
+		int deleted = 0;
+		for (int start = 0; start < uniqueIds.size(); start += DELETE_BY_QUERY_BATCH_SIZE) {
+			List<String> batch = uniqueIds.subList(start, Math.min(start + DELETE_BY_QUERY_BATCH_SIZE, uniqueIds.size()));
+
+			List<ReadWriteLock> documentLocks = documentLockHandler.getLocks(batch);
+			int locked = 0;
+			try {
+				for (ReadWriteLock documentLock : documentLocks) {
+					documentLock.writeLock().lock();
+					locked++;
 				}
 
-				if (deleteRequest.getDeleteAllAssociated()) {
-					documentStorage.deleteAssociatedDocuments(uniqueId);
+				//documents stored again since the ids were collected are only deleted if they still match
+				List<String> matching = segment.getUniqueIds(queryWithFilters, batch);
+				if (matching.isEmpty()) {
+					continue;
 				}
-				else if (deleteRequest.hasFilename()) {
-					String fileName = deleteRequest.getFilename();
-					documentStorage.deleteAssociatedDocument(uniqueId, fileName);
+
+				segment.deleteDocuments(matching);
+
+				if (indexConfig.getIndexSettings().getStoreDocumentInMongo()) {
+					documentStorage.deleteSourceDocuments(matching);
 				}
+				if (deleteAllAssociated) {
+					documentStorage.deleteAssociatedDocuments(matching);
+				}
+				deleted += matching.size();
 			}
 			finally {
-				documentLock.writeLock().unlock();
+				for (int j = locked - 1; j >= 0; j--) {
+					documentLocks.get(j).writeLock().unlock();
+				}
+			}
+		}
+		return deleted;
+	}
+
+	/**
+	 * Counts the facets of each refinement exactly on its segment, the segments are refined in parallel
+	 */
+	public List<SegmentFacetRefinement> refineFacets(QueryWithFilters queryWithFilters, List<SegmentFacetRefinement> refinements) throws Exception {
+		indexLock.readLock().lock();
+		List<LumongoSegment> acquired = new ArrayList<>();
+		try {
+			List<Future<List<FacetGroup>>> responses = new ArrayList<>(refinements.size());
+			for (SegmentFacetRefinement refinement : refinements) {
+				LumongoSegment segment = acquireSegment(refinement.getSegmentNumber());
+				acquired.add(segment);
+				responses.add(queryLane.submit(() -> segment.refineFacets(queryWithFilters, refinement.getFacetGroupList())));
 			}
 
+			List<SegmentFacetRefinement> refined = new ArrayList<>(refinements.size());
+			for (int r = 0; r < refinements.size(); r++) {
+				try {
+					refined.add(refinements.get(r).toBuilder().clearFacetGroup().addAllFacetGroup(responses.get(r).get()).build());
+				}
+				catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+					if (cause instanceof Exception) {
+						throw (Exception) cause;
+					}
+					throw new Exception(cause);
+				}
+			}
+			return refined;
 		}
 		finally {
+			releaseSegments(acquired);
 			indexLock.readLock().unlock();
 		}
 	}
@@ -938,92 +1872,109 @@ public class LumongoIndex implements IndexSegmentInterface {
 		}
 	}
 
+	/**
+	 * @return the parsed query, from the parsed query cache when the same query was parsed since the index settings last changed
+	 */
 	public Query getQuery(Lumongo.Query lumongoQuery) throws Exception {
 		indexLock.readLock().lock();
+		try {
+			//the cache is only replaced under the write lock so a query parsed with old settings is never stored in the new cache
+			ParsedQueryCache pqc = parsedQueryCache;
+			if (pqc == null) {
+				return parseQuery(lumongoQuery);
+			}
+
+			Lumongo.Query key = ParsedQueryCache.getCacheKey(lumongoQuery);
+			Query query = pqc.getQuery(key);
+			if (query == null) {
+				query = parseQuery(lumongoQuery);
+				pqc.storeInCache(key, query);
+			}
+			return query;
+		}
+		finally {
+			indexLock.readLock().unlock();
+		}
+	}
 
+	private Query parseQuery(Lumongo.Query lumongoQuery) throws Exception {
 		Lumongo.Query.Operator defaultOperator = lumongoQuery.getDefaultOp();
 		String queryText = lumongoQuery.getQ();
 		Integer minimumShouldMatchNumber = lumongoQuery.getMm();
 		List<String> queryFields = lumongoQuery.getQfList();
 
-		try {
+		Operator operator = null;
+		if (defaultOperator.equals(Lumongo.Query.Operator.OR)) {
+			operator = Operator.OR;
+		}
+		else if (defaultOperator.equals(Lumongo.Query.Operator.AND)) {
+			operator = Operator.AND;
+		}
+		else {
+			//this should never happen
+			log.error("Unknown operator type: <" + defaultOperator + ">");
+		}
 
-			Operator operator = null;
-			if (defaultOperator.equals(Lumongo.Query.Operator.OR)) {
-				operator = Operator.OR;
-			}
-			else if (defaultOperator.equals(Lumongo.Query.Operator.AND)) {
-				operator = Operator.AND;
+		LumongoMultiFieldQueryParser qp = null;
+		if (queryText == null || queryText.isEmpty()) {
+			if (queryFields.isEmpty()) {
+				return new MatchAllDocsQuery();
 			}
 			else {
-				//this should never happen
-				log.error("Unknown operator type: <" + defaultOperator + ">");
+				queryText = "*";
 			}
+		}
+		try {
+			qp = parsers.borrowObject();
+			qp.setMinimumNumberShouldMatch(minimumShouldMatchNumber);
+			qp.setDefaultOperator(operator);
 
-			LumongoMultiFieldQueryParser qp = null;
-			if (queryText == null || queryText.isEmpty()) {
-				if (queryFields.isEmpty()) {
-					return new MatchAllDocsQuery();
-				}
-				else {
-					queryText = "*";
-				}
+			if (lumongoQuery.getDismax()) {
+				qp.enableDismax(lumongoQuery.getDismaxTie());
+			}
+			else {
+				qp.disableDismax();
 			}
-			try {
-				qp = parsers.borrowObject();
-				qp.setMinimumNumberShouldMatch(minimumShouldMatchNumber);
-				qp.setDefaultOperator(operator);
-
-				if (lumongoQuery.getDismax()) {
-					qp.enableDismax(lumongoQuery.getDismaxTie());
-				}
-				else {
-					qp.disableDismax();
-				}
 
-				if (queryFields.isEmpty()) {
-					qp.setDefaultField(indexConfig.getIndexSettings().getDefaultSearchField());
-				}
-				else {
-					Set<String> fields = new LinkedHashSet<>();
+			if (queryFields.isEmpty()) {
+				qp.setDefaultField(indexConfig.getIndexSettings().getDefaultSearchField());
+			}
+			else {
+				Set<String> fields = new LinkedHashSet<>();
 
-					HashMap<String, Float> boostMap = new HashMap<>();
-					for (String queryField : queryFields) {
+				HashMap<String, Float> boostMap = new HashMap<>();
+				for (String queryField : queryFields) {
 
-						if (queryField.contains("^")) {
-							try {
-								float boost = Float.parseFloat(queryField.substring(queryField.indexOf("^") + 1));
-								queryField = queryField.substring(0, queryField.indexOf("^"));
-								boostMap.put(queryField, boost);
-							}
-							catch (Exception e) {
-								throw new IllegalArgumentException("Invalid queryText field boost <" + queryField + ">");
-							}
+					if (queryField.contains("^")) {
+						try {
+							float boost = Float.parseFloat(queryField.substring(queryField.indexOf("^") + 1));
+							queryField = queryField.substring(0, queryField.indexOf("^"));
+							boostMap.put(queryField, boost);
+						}
+						catch (Exception e) {
+							throw new IllegalArgumentException("Invalid queryText field boost <" + queryField + ">");
 						}
-						fields.add(queryField);
-
 					}
-					qp.setDefaultFields(fields, boostMap);
-				}
-				Query query = qp.parse(queryText);
-				boolean negative = isNegative(query);
-				if (negative) {
-					query = fixNegativeQuery(query);
-				}
-				return query;
+					fields.add(queryField);
 
+				}
+				qp.setDefaultFields(fields, boostMap);
 			}
-			finally {
-				parsers.returnObject(qp);
+			Query query = qp.parse(queryText);
+			boolean negative = isNegative(query);
+			if (negative) {
+				query = fixNegativeQuery(query);
 			}
+			return query;
 
 		}
 		finally {
-			indexLock.readLock().unlock();
+			parsers.returnObject(qp);
 		}
 	}
 
 	public IndexSegmentResponse queryInternal(final QueryWithFilters queryWithFilters, final QueryRequest queryRequest) throws Exception {
+		List<LumongoSegment> segments = acquireSegments();
 		indexLock.readLock().lock();
 		try {
 			int amount = queryRequest.getAmount() + queryRequest.getStart();
@@ -1108,19 +2059,13 @@ public class LumongoIndex implements IndexSegmentInterface {
 
 			List<Future<SegmentResponse>> responses = new ArrayList<>();
 
-			for (final LumongoSegment segment : segmentMap.values()) {
-
-				Future<SegmentResponse> response = segmentPool.submit(() -> {
-
-					QueryCacheKey queryCacheKey = null;
+			for (final LumongoSegment segment : segments) {
 
-					if (!queryRequest.getDontCache()) {
-						queryCacheKey = new QueryCacheKey(queryRequest);
-					}
+				Future<SegmentResponse> response = queryLane.submit(() -> {
 
 					return segment
 							.querySegment(queryWithFilters, requestedAmount, lastScoreDocMap.get(segment.getSegmentNumber()), queryRequest.getFacetRequest(),
-									queryRequest.getSortRequest(), queryCacheKey, queryRequest.getResultFetchType(), queryRequest.getDocumentFieldsList(),
+									queryRequest.getSortRequest(), !queryRequest.getDontCache(), queryRequest.getResultFetchType(), queryRequest.getDocumentFieldsList(),
 									queryRequest.getDocumentMaskedFieldsList(), queryRequest.getHighlightRequestList(), queryRequest.getAnalysisRequestList(),
 									queryRequest.getDebug());
 				});
@@ -1149,11 +2094,33 @@ public class LumongoIndex implements IndexSegmentInterface {
 			return builder.build();
 		}
 		finally {
+			releaseSegments(segments);
 			indexLock.readLock().unlock();
 		}
 
 	}
 
+	/**
+	 * Opens a cursor on the segment, the cursor holds the acquire of the segment until it is closed so the segment is not handed off under it
+	 */
+	public QueryCursor openQueryCursor(QueryWithFilters queryWithFilters, QueryRequest queryRequest, int segmentNumber) throws Exception {
+		indexLock.readLock().lock();
+		try {
+			LumongoSegment segment = acquireSegment(segmentNumber);
+			try {
+				return segment.openQueryCursor(queryWithFilters, queryRequest.getSortRequest(), queryRequest.getResultFetchType(),
+						queryRequest.getDocumentFieldsList(), queryRequest.getDocumentMaskedFieldsList());
+			}
+			catch (Exception e) {
+				segment.release();
+				throw e;
+			}
+		}
+		finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
 	public Integer getNumberOfSegments() {
 		return numberOfSegments;
 	}
@@ -1182,6 +2149,7 @@ public class LumongoIndex implements IndexSegmentInterface {
 	}
 
 	public void reloadIndexSettings() throws Exception {
+		List<LumongoSegment> segments = acquireSegments();
 		indexLock.writeLock().lock();
 		try {
 
@@ -1191,11 +2159,12 @@ public class LumongoIndex implements IndexSegmentInterface {
 			indexConfig.configure(indexSettings);
 
 			parsers.clear();
+			setupParsedQueryCache();
 
 			//force analyzer to be fetched first so it doesn't fail only on one segment below
 			getPerFieldAnalyzer();
 
-			for (LumongoSegment s : segmentMap.values()) {
+			for (LumongoSegment s : segments) {
 				try {
 					s.updateIndexSettings(indexSettings);
 				}
@@ -1205,32 +2174,36 @@ public class LumongoIndex implements IndexSegmentInterface {
 
 		}
 		finally {
+			releaseSegments(segments);
 			indexLock.writeLock().unlock();
 		}
 	}
 
 	public void optimize() throws Exception {
+		List<LumongoSegment> segments = acquireSegments();
 		indexLock.readLock().lock();
 		try {
-			for (final LumongoSegment segment : segmentMap.values()) {
+			for (final LumongoSegment segment : segments) {
 				segment.optimize();
 			}
 
 		}
 		finally {
+			releaseSegments(segments);
 			indexLock.readLock().unlock();
 		}
 		reloadIndexSettings();
 	}
 
 	public GetNumberOfDocsResponse getNumberOfDocs() throws Exception {
+		List<LumongoSegment> segments = acquireSegments();
 		indexLock.readLock().lock();
 		try {
 			List<Future<SegmentCountResponse>> responses = new ArrayList<>();
 
-			for (final LumongoSegment segment : segmentMap.values()) {
+			for (final LumongoSegment segment : segments) {
 
-				Future<SegmentCountResponse> response = segmentPool.submit(segment::getNumberOfDocs);
+				Future<SegmentCountResponse> response = queryLane.submit(segment::getNumberOfDocs);
 
 				responses.add(response);
 
@@ -1261,18 +2234,20 @@ public class LumongoIndex implements IndexSegmentInterface {
 			return responseBuilder.build();
 		}
 		finally {
+			releaseSegments(segments);
 			indexLock.readLock().unlock();
 		}
 	}
 
 	public GetFieldNamesResponse getFieldNames() throws Exception {
+		List<LumongoSegment> segments = acquireSegments();
 		indexLock.readLock().lock();
 		try {
 			List<Future<GetFieldNamesResponse>> responses = new ArrayList<>();
 
-			for (final LumongoSegment segment : segmentMap.values()) {
+			for (final LumongoSegment segment : segments) {
 
-				Future<GetFieldNamesResponse> response = segmentPool.submit(segment::getFieldNames);
+				Future<GetFieldNamesResponse> response = queryLane.submit(segment::getFieldNames);
 
 				responses.add(response);
 
@@ -1318,18 +2293,20 @@ public class LumongoIndex implements IndexSegmentInterface {
 			return responseBuilder.build();
 		}
 		finally {
+			releaseSegments(segments);
 			indexLock.readLock().unlock();
 		}
 	}
 
 	public void clear() throws Exception {
+		List<LumongoSegment> segments = acquireSegments();
 		indexLock.writeLock().lock();
 		try {
 			List<Future<Void>> responses = new ArrayList<>();
 
-			for (final LumongoSegment segment : segmentMap.values()) {
+			for (final LumongoSegment segment : segments) {
 
-				Future<Void> response = segmentPool.submit(() -> {
+				Future<Void> response = indexLane.submit(() -> {
 					segment.clear();
 					return null;
 				});
@@ -1357,18 +2334,20 @@ public class LumongoIndex implements IndexSegmentInterface {
 
 		}
 		finally {
+			releaseSegments(segments);
 			indexLock.writeLock().unlock();
 		}
 	}
 
 	public GetTermsResponseInternal getTerms(final GetTermsRequest request) throws Exception {
+		List<LumongoSegment> segments = acquireSegments();
 		indexLock.readLock().lock();
 		try {
 			List<Future<GetTermsResponse>> responses = new ArrayList<>();
 
-			for (final LumongoSegment segment : segmentMap.values()) {
+			for (final LumongoSegment segment : segments) {
 
-				Future<GetTermsResponse> response = segmentPool.submit(() -> segment.getTerms(request));
+				Future<GetTermsResponse> response = queryLane.submit(() -> segment.getTerms(request));
 
 				responses.add(response);
 
@@ -1394,6 +2373,7 @@ public class LumongoIndex implements IndexSegmentInterface {
 			return getTermsResponseInternalBuilder.build();
 		}
 		finally {
+			releaseSegments(segments);
 			indexLock.readLock().unlock();
 		}
 	}
@@ -1434,10 +2414,66 @@ public class LumongoIndex implements IndexSegmentInterface {
 			List<HighlightRequest> highlightRequests) throws Exception {
 		indexLock.readLock().lock();
 		try {
-			LumongoSegment s = findSegmentFromUniqueId(uniqueId);
-			return s.getSourceDocument(uniqueId, timestamp, resultFetchType, fieldsToReturn, fieldsToMask);
+			LumongoSegment s = acquireSegmentFromUniqueId(uniqueId);
+			try {
+				return s.getSourceDocument(uniqueId, timestamp, resultFetchType, fieldsToReturn, fieldsToMask);
+			}
+			finally {
+				s.release();
+			}
+		}
+		finally {
+			indexLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Groups the fetch requests by segment and fetches the documents of each segment in parallel
+	 * @return the documents in the order of the requests
+	 */
+	public List<ResultDocument> getSourceDocuments(List<FetchRequest> fetchRequests) throws Exception {
+		indexLock.readLock().lock();
+		List<LumongoSegment> acquired = new ArrayList<>();
+		try {
+			Map<LumongoSegment, List<Integer>> segmentToPositions = new HashMap<>();
+			for (int r = 0; r < fetchRequests.size(); r++) {
+				LumongoSegment s = acquireSegmentFromUniqueId(fetchRequests.get(r).getUniqueId());
+				acquired.add(s);
+				segmentToPositions.computeIfAbsent(s, k -> new ArrayList<>()).add(r);
+			}
+
+			Map<LumongoSegment, Future<List<ResultDocument>>> responses = new HashMap<>();
+			for (LumongoSegment s : segmentToPositions.keySet()) {
+				List<FetchRequest> segmentRequests = new ArrayList<>();
+				for (Integer r : segmentToPositions.get(s)) {
+					segmentRequests.add(fetchRequests.get(r));
+				}
+				responses.put(s, fetchLane.submit(() -> s.getSourceDocuments(segmentRequests)));
+			}
+
+			ResultDocument[] resultDocuments = new ResultDocument[fetchRequests.size()];
+			for (LumongoSegment s : responses.keySet()) {
+				List<ResultDocument> segmentDocuments;
+				try {
+					segmentDocuments = responses.get(s).get();
+				}
+				catch (ExecutionException e) {
+					Throwable t = e.getCause();
+					if (t instanceof Exception) {
+						throw (Exception) t;
+					}
+					throw e;
+				}
+
+				List<Integer> positions = segmentToPositions.get(s);
+				for (int p = 0; p < positions.size(); p++) {
+					resultDocuments[positions.get(p)] = segmentDocuments.get(p);
+				}
+			}
+			return Arrays.asList(resultDocuments);
 		}
 		finally {
+			releaseSegments(acquired);
 			indexLock.readLock().unlock();
 		}
 	}
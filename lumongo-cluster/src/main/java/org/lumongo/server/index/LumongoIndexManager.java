@@ -1,5 +1,8 @@
 package org.lumongo.server.index;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
 import com.google.protobuf.util.JsonFormat;
 import com.hazelcast.core.IExecutorService;
 import com.hazelcast.core.Member;
@@ -25,10 +28,19 @@ import org.lumongo.server.connection.InternalClient;
 import org.lumongo.server.connection.SocketRequestFederator;
 import org.lumongo.server.exceptions.IndexDoesNotExist;
 import org.lumongo.server.exceptions.InvalidIndexConfig;
+import org.lumongo.server.hazelcast.BalanceTask;
 import org.lumongo.server.hazelcast.HazelcastManager;
 import org.lumongo.server.hazelcast.ReloadIndexSettingsTask;
+import org.lumongo.server.hazelcast.ReshardTask;
+import org.lumongo.server.hazelcast.SegmentLoadsTask;
 import org.lumongo.server.hazelcast.UnloadIndexTask;
+import org.lumongo.server.index.balance.BalanceStrategy;
+import org.lumongo.server.index.balance.SegmentLoad;
+import org.lumongo.server.index.balance.SegmentMove;
+import org.lumongo.server.search.FacetRefiner;
 import org.lumongo.server.search.QueryCombiner;
+import org.lumongo.server.search.QueryCursor;
+import org.lumongo.server.search.QueryStreamMerger;
 import org.lumongo.server.search.QueryWithFilters;
 import org.lumongo.util.ClusterHelper;
 import org.lumongo.util.LumongoThreadFactory;
@@ -37,35 +49,60 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 public class LumongoIndexManager {
 	private final static Logger log = Logger.getLogger(LumongoIndexManager.class);
 
+	/**
+	 * number of results fetched from a segment at a time and sent to the client at a time when streaming a query
+	 */
+	public static final int QUERY_STREAM_PAGE_SIZE = 500;
+
+	/**
+	 * query stream cursors not read from for this long are closed to release the reader they pin
+	 */
+	public static final int QUERY_STREAM_IDLE_MINUTES = 10;
+
+	/**
+	 * members not reporting their segment loads within this long are balanced as if their segments had no load
+	 */
+	public static final int SEGMENT_LOADS_TIMEOUT_SECONDS = 30;
+
 	private final ReadWriteLock globalLock;
 
 	private final ConcurrentHashMap<String, LumongoIndex> indexMap;
 	private final InternalClient internalClient;
 
-	private final ExecutorService pool;
+	private final LaneExecutor pool;
+	private final ExecutorService segmentLoadPool;
 	private final ClusterHelper clusterHelper;
+	private final BalanceStrategy balanceStrategy;
+	private final ReentrantLock balanceLock;
 
 	private HazelcastManager hazelcastManager;
 
@@ -75,6 +112,9 @@ public class LumongoIndexManager {
 	private MongoClient mongo;
 
 	private AtomicLong queryNumber;
+	private AtomicLong queryMembersContacted;
+
+	private final Cache<String, QueryCursor> queryCursors;
 
 	public LumongoIndexManager(MongoClient mongo, MongoConfig mongoConfig, ClusterConfig clusterConfig) throws UnknownHostException {
 		this.globalLock = new ReentrantReadWriteLock(true);
@@ -88,16 +128,88 @@ public class LumongoIndexManager {
 		this.clusterHelper = new ClusterHelper(mongo, mongoConfig.getDatabaseName());
 		this.internalClient = new InternalClient(clusterHelper, clusterConfig);
 
-		this.pool = Executors.newCachedThreadPool(new LumongoThreadFactory("manager"));
+		//requests fanned out to members wait on the members so the coordinator lane is not bounded, the lanes of each index are
+		this.pool = new LaneExecutor(LaneExecutor.COORDINATOR);
+		this.segmentLoadPool = Executors.newFixedThreadPool(clusterConfig.getSegmentLoadThreads(), new LumongoThreadFactory("segmentLoad"));
+		this.balanceStrategy = createBalanceStrategy(clusterConfig.getBalanceStrategy());
+		this.balanceLock = new ReentrantLock();
 
 		queryNumber = new AtomicLong();
+		queryMembersContacted = new AtomicLong();
+
+		RemovalListener<String, QueryCursor> closeCursor = notification -> {
+			try {
+				notification.getValue().close();
+			}
+			catch (Exception e) {
+				log.error("Failed to close query cursor <" + notification.getKey() + ">: " + e.getClass().getSimpleName() + ": ", e);
+			}
+		};
+		this.queryCursors = CacheBuilder.newBuilder().expireAfterAccess(QUERY_STREAM_IDLE_MINUTES, TimeUnit.MINUTES).removalListener(closeCursor).build();
 
 	}
 
+	private static BalanceStrategy createBalanceStrategy(String className) {
+		try {
+			return Class.forName(className).asSubclass(BalanceStrategy.class).newInstance();
+		}
+		catch (Exception e) {
+			throw new IllegalArgumentException("Failed to create balance strategy <" + className + ">: " + e.getMessage(), e);
+		}
+	}
+
 	public ClusterConfig getClusterConfig() {
 		return clusterConfig;
 	}
 
+	public long getQueryCount() {
+		return queryNumber.get();
+	}
+
+	public long getQueryMembersContacted() {
+		return queryMembersContacted.get();
+	}
+
+	/**
+	 * @return the coordinator lane and the lanes of every index loaded on this node
+	 */
+	public List<LaneExecutor> getLanes() {
+		List<LaneExecutor> lanes = new ArrayList<>();
+		lanes.add(pool);
+		for (LumongoIndex i : indexMap.values()) {
+			lanes.addAll(i.getLanes());
+		}
+		return lanes;
+	}
+
+	/**
+	 * @return time taken to load each segment on this node by index name and segment number
+	 */
+	public Map<String, Map<Integer, SegmentLoadTime>> getSegmentLoadTimes() {
+		Map<String, Map<Integer, SegmentLoadTime>> segmentLoadTimes = new TreeMap<>();
+		for (String indexName : indexMap.keySet()) {
+			segmentLoadTimes.put(indexName, indexMap.get(indexName).getSegmentLoadTimes());
+		}
+		return segmentLoadTimes;
+	}
+
+	/**
+	 * @return the load of each segment loaded on this node for every index
+	 */
+	public ArrayList<SegmentLoad> getSegmentLoads() throws Exception {
+		globalLock.readLock().lock();
+		try {
+			ArrayList<SegmentLoad> segmentLoads = new ArrayList<>();
+			for (LumongoIndex i : indexMap.values()) {
+				segmentLoads.addAll(i.getSegmentLoads());
+			}
+			return segmentLoads;
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
 	public void init(HazelcastManager hazelcastManager) throws UnknownHostException, MongoException {
 		globalLock.writeLock().lock();
 		try {
@@ -110,7 +222,8 @@ public class LumongoIndexManager {
 	}
 
 	public void handleServerRemoved(Set<Member> currentMembers, Member memberRemoved, boolean master) {
-		globalLock.writeLock().lock();
+		//segments are handed off without the write lock so requests keep running during the rebalance
+		globalLock.readLock().lock();
 		try {
 			if (master) {
 				handleServerRemoved(currentMembers, memberRemoved);
@@ -119,13 +232,13 @@ public class LumongoIndexManager {
 			internalClient.removeMember(memberRemoved);
 		}
 		finally {
-			globalLock.writeLock().unlock();
+			globalLock.readLock().unlock();
 		}
 
 	}
 
 	public void handleServerAdded(Set<Member> currentMembers, Member memberAdded, boolean master) throws Exception {
-		globalLock.writeLock().lock();
+		globalLock.readLock().lock();
 		try {
 			if (master) {
 				// make sure we can resolve it before transferring segments
@@ -138,11 +251,18 @@ public class LumongoIndexManager {
 			internalClient.addMember(memberAdded);
 		}
 		finally {
-			globalLock.writeLock().unlock();
+			globalLock.readLock().unlock();
 		}
 
 	}
 
+	/**
+	 * @return the index loaded on this node, null if the index is not loaded
+	 */
+	public LumongoIndex getIndex(String indexName) {
+		return indexMap.get(indexName);
+	}
+
 	public List<String> getIndexNames() {
 		globalLock.writeLock().lock();
 
@@ -201,8 +321,8 @@ public class LumongoIndexManager {
 			}
 			LumongoIndex i = LumongoIndex.createIndex(hazelcastManager, mongoConfig, clusterConfig, indexConfig);
 			indexMap.put(indexConfig.getIndexName(), i);
-			i.loadAllSegments();
-			i.forceBalance(hazelcastManager.getMembers());
+			i.loadAllSegments(segmentLoadPool);
+			balance(hazelcastManager.getMembers(), null, false, Collections.singleton(indexName));
 
 			log.info("Created index: <" + request.getIndexName() + ">");
 
@@ -222,7 +342,7 @@ public class LumongoIndexManager {
 		try {
 			LumongoIndex i = LumongoIndex.loadIndex(hazelcastManager, mongoConfig, mongo, clusterConfig, indexName);
 			if (loadAllSegments) {
-				i.loadAllSegments();
+				i.loadAllSegments(segmentLoadPool);
 			}
 			indexMap.put(indexName, i);
 		}
@@ -232,46 +352,341 @@ public class LumongoIndexManager {
 	}
 
 	private void handleServerAdded(Set<Member> currentMembers, Member memberAdded) {
-		globalLock.writeLock().lock();
+		//every index is updated so the new member loads the indexes even if none of their segments move to it
+		balance(currentMembers, null, false, indexMap.keySet());
+	}
+
+	private void handleServerRemoved(Set<Member> currentMembers, Member memberRemoved) {
+		balance(currentMembers, memberRemoved, false, indexMap.keySet());
+	}
+
+	/**
+	 * Proposes segment moves balancing every index together with the balance strategy and, unless a dry run, hands the moved segments off.
+	 * The request is forwarded to the master, the only member that balances when members join or leave, so two balances never hand off at once.
+	 * The global lock is not held while forwarding because the master's handoff takes it on this member.
+	 */
+	public BalanceResponse balance(BalanceRequest request) throws Exception {
+		Member master = hazelcastManager.getMembers().iterator().next();
+		if (master.localMember()) {
+			return balanceOnMaster(request);
+		}
+
 		try {
-			for (String key : indexMap.keySet()) {
-				LumongoIndex i = indexMap.get(key);
-				i.handleServerAdded(currentMembers, memberAdded);
+			Future<byte[]> response = hazelcastManager.getExecutorService().submitToMember(new BalanceTask(master.getSocketAddress().getPort(), request),
+					master);
+			return BalanceResponse.parseFrom(response.get());
+		}
+		catch (ExecutionException e) {
+			throw e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+		}
+	}
+
+	/**
+	 * Balances on this member, called on the master only
+	 */
+	public BalanceResponse balanceOnMaster(BalanceRequest request) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			Set<Member> currentMembers = hazelcastManager.getMembers();
+			List<SegmentMove> segmentMoves = balance(currentMembers, null, request.getDryRun(), Collections.emptySet());
+
+			Map<Member, LMMember> memberMap = getLMMembers(currentMembers);
+			BalanceResponse.Builder responseBuilder = BalanceResponse.newBuilder();
+			for (SegmentMove segmentMove : segmentMoves) {
+				BalanceMove.Builder balanceMoveBuilder = BalanceMove.newBuilder();
+				balanceMoveBuilder.setIndexName(segmentMove.getIndexName());
+				balanceMoveBuilder.setSegmentNumber(segmentMove.getSegmentNumber());
+				//segments of members no longer current move from a member that is not in the member map
+				balanceMoveBuilder.setFromMember(getLMMember(memberMap, segmentMove.getFromMember()));
+				balanceMoveBuilder.setToMember(getLMMember(memberMap, segmentMove.getToMember()));
+				balanceMoveBuilder.setWeight(segmentMove.getWeight());
+				responseBuilder.addBalanceMove(balanceMoveBuilder);
 			}
+			return responseBuilder.build();
 		}
 		finally {
-			globalLock.writeLock().unlock();
+			globalLock.readLock().unlock();
 		}
 	}
 
-	private void handleServerRemoved(Set<Member> currentMembers, Member memberRemoved) {
-		globalLock.writeLock().lock();
+	/**
+	 * Balances the segments of every index loaded on this node together.  The segments of a removed member and missing segments are assigned
+	 * first, then the moves proposed by the balance strategy are applied and the indexes whose segment map changed are handed off.
+	 *
+	 * @param memberRemoved
+	 *            - member that was removed, null if no member was removed
+	 * @param updateIndexes
+	 *            - indexes handed off to every member even if their segment map did not change
+	 * @return the proposed moves
+	 */
+	private List<SegmentMove> balance(Set<Member> currentMembers, Member memberRemoved, boolean dryRun, Collection<String> updateIndexes) {
+		balanceLock.lock();
 		try {
-			for (String key : indexMap.keySet()) {
-				LumongoIndex i = indexMap.get(key);
-				i.handleServerRemoved(currentMembers, memberRemoved);
+			Map<String, Map<Member, Set<Integer>>> indexSegmentMaps = new TreeMap<>();
+			for (String indexName : indexMap.keySet()) {
+				indexSegmentMaps.put(indexName, indexMap.get(indexName).getSegmentMapForBalance(currentMembers, memberRemoved));
+			}
+
+			List<SegmentMove> segmentMoves = balanceStrategy.balance(currentMembers, indexSegmentMaps, getClusterSegmentLoads(indexSegmentMaps));
+			if (dryRun) {
+				return segmentMoves;
+			}
+
+			for (SegmentMove segmentMove : segmentMoves) {
+				log.info("Moving segment <" + segmentMove.getSegmentNumber() + "> from <" + segmentMove.getFromMember() + "> to <" + segmentMove.getToMember()
+						+ "> of Index <" + segmentMove.getIndexName() + "> with weight <" + segmentMove.getWeight() + ">");
+				Map<Member, Set<Integer>> newMemberToSegmentMap = indexSegmentMaps.get(segmentMove.getIndexName());
+				newMemberToSegmentMap.get(segmentMove.getFromMember()).remove(segmentMove.getSegmentNumber());
+				newMemberToSegmentMap.computeIfAbsent(segmentMove.getToMember(), k -> new HashSet<>()).add(segmentMove.getSegmentNumber());
 			}
+
+			for (String indexName : indexSegmentMaps.keySet()) {
+				LumongoIndex i = indexMap.get(indexName);
+				Map<Member, Set<Integer>> newMemberToSegmentMap = indexSegmentMaps.get(indexName);
+				if (updateIndexes.contains(indexName) || i.isSegmentMapChanged(newMemberToSegmentMap)) {
+					i.handOffSegments(currentMembers, newMemberToSegmentMap);
+				}
+			}
+
+			return segmentMoves;
 		}
 		finally {
-			globalLock.writeLock().unlock();
+			balanceLock.unlock();
 		}
 	}
 
-	public void updateSegmentMap(String indexName, Map<Member, Set<Integer>> newMemberToSegmentMap) throws Exception {
-		globalLock.writeLock().lock();
+	/**
+	 * Multiplies the number of segments of an index while it keeps serving requests.  Every member splits the segments it serves into the new
+	 * segments by the hash of the unique id, then every member cuts over to the new number of segments.  A reshard failing on any member is rolled
+	 * back on every member.  The new segments start on the members of the segments they were split from and are balanced after the cut over.
+	 */
+	public ReshardResponse reshard(ReshardRequest request) throws Exception {
+		globalLock.readLock().lock();
 		try {
-			if (!indexMap.containsKey(indexName)) {
-				loadIndex(indexName, false);
+			String indexName = request.getIndexName();
+			LumongoIndex i = indexMap.get(indexName);
+			if (i == null) {
+				throw new IndexDoesNotExist(indexName);
+			}
+
+			int newNumberOfSegments = request.getNumberOfSegments();
+			Set<Member> currentMembers = hazelcastManager.getMembers();
+
+			balanceLock.lock();
+			try {
+				int numberOfSegments = i.getNumberOfSegments();
+				if (newNumberOfSegments <= numberOfSegments || newNumberOfSegments % numberOfSegments != 0) {
+					throw new IllegalArgumentException(
+							"Number of segments <" + newNumberOfSegments + "> must be a multiple of the current number of segments <" + numberOfSegments
+									+ "> for index <" + indexName + ">");
+				}
+
+				log.info("Resharding index <" + indexName + "> from <" + numberOfSegments + "> to <" + newNumberOfSegments + "> segments");
+				long start = System.currentTimeMillis();
+
+				i.storeReshard(newNumberOfSegments);
+				try {
+					runReshardTask(currentMembers, indexName, newNumberOfSegments, ReshardTask.Phase.PREPARE);
+					runReshardTask(currentMembers, indexName, newNumberOfSegments, ReshardTask.Phase.CUT_OVER);
+				}
+				catch (Exception e) {
+					log.error("Failed to reshard index <" + indexName + ">, rolling back: " + e.getClass().getSimpleName() + ": ", e);
+					try {
+						runReshardTask(currentMembers, indexName, newNumberOfSegments, ReshardTask.Phase.ABORT);
+						i.deleteReshard();
+					}
+					catch (Exception abortException) {
+						log.error("Failed to roll back reshard of index <" + indexName + ">, it is rolled back when the index is next loaded: "
+								+ abortException.getClass().getSimpleName() + ": ", abortException);
+					}
+					throw e;
+				}
+				i.completeReshard();
+
+				log.info("Resharded index <" + indexName + "> to <" + newNumberOfSegments + "> segments in <" + (System.currentTimeMillis() - start) + "ms>");
+			}
+			finally {
+				balanceLock.unlock();
+			}
+
+			balance(currentMembers, null, false, Collections.singleton(indexName));
+
+			return ReshardResponse.newBuilder().setNumberOfSegments(newNumberOfSegments).build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Runs a phase of a reshard on every member concurrently
+	 * @throws Exception the first failure of a member after every member finished the phase
+	 */
+	private void runReshardTask(Set<Member> currentMembers, String indexName, int newNumberOfSegments, ReshardTask.Phase phase) throws Exception {
+		IExecutorService executorService = hazelcastManager.getExecutorService();
+
+		Map<Member, Future<Void>> results = new HashMap<>();
+		for (Member m : currentMembers) {
+			if (!m.localMember()) {
+				results.put(m, executorService.submitToMember(new ReshardTask(m.getSocketAddress().getPort(), indexName, newNumberOfSegments, phase), m));
 			}
+		}
+
+		Exception exception = null;
+		try {
+			new ReshardTask(hazelcastManager.getHazelcastPort(), indexName, newNumberOfSegments, phase).call();
+		}
+		catch (Exception e) {
+			log.error("Failed reshard phase <" + phase + "> of index <" + indexName + "> on <" + hazelcastManager.getSelf() + ">: " + e.getClass()
+					.getSimpleName() + ": ", e);
+			exception = e;
+		}
+
+		for (Member m : results.keySet()) {
+			try {
+				results.get(m).get();
+			}
+			catch (Exception e) {
+				Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+				log.error("Failed reshard phase <" + phase + "> of index <" + indexName + "> on <" + m + ">: " + cause.getClass().getSimpleName() + ": ",
+						cause);
+				if (exception == null) {
+					exception = cause instanceof Exception ? (Exception) cause : new Exception(cause);
+				}
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+	}
 
+	/**
+	 * Runs a phase of a reshard for the segments on this node, an index not loaded on this node has no segments to split and loads the new number of
+	 * segments when it is loaded
+	 */
+	public void reshard(String indexName, int newNumberOfSegments, ReshardTask.Phase phase) throws Exception {
+		globalLock.readLock().lock();
+		try {
 			LumongoIndex i = indexMap.get(indexName);
 			if (i == null) {
-				throw new IndexDoesNotExist(indexName);
+				return;
+			}
+
+			switch (phase) {
+				case PREPARE:
+					i.prepareReshard(newNumberOfSegments, segmentLoadPool);
+					break;
+				case CUT_OVER:
+					i.cutOverReshard(newNumberOfSegments);
+					break;
+				case ABORT:
+					i.abortReshard();
+					break;
 			}
-			i.updateSegmentMap(newMemberToSegmentMap);
 		}
 		finally {
-			globalLock.writeLock().unlock();
+			globalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Collects the segment loads from the members serving segments, members that fail to report are logged and balanced without loads
+	 */
+	private Map<String, Map<Integer, SegmentLoad>> getClusterSegmentLoads(Map<String, Map<Member, Set<Integer>>> indexSegmentMaps) {
+		Set<Member> owners = new HashSet<>();
+		for (Map<Member, Set<Integer>> memberToSegmentMap : indexSegmentMaps.values()) {
+			for (Member m : memberToSegmentMap.keySet()) {
+				if (!memberToSegmentMap.get(m).isEmpty()) {
+					owners.add(m);
+				}
+			}
+		}
+
+		IExecutorService executorService = hazelcastManager.getExecutorService();
+
+		Map<Member, Future<ArrayList<SegmentLoad>>> results = new HashMap<>();
+		for (Member m : owners) {
+			if (!m.localMember()) {
+				try {
+					results.put(m, executorService.submitToMember(new SegmentLoadsTask(m.getSocketAddress().getPort()), m));
+				}
+				catch (Exception e) {
+					log.error("Failed to request segment loads from <" + m + ">: " + e.getClass().getSimpleName() + ": ", e);
+				}
+			}
+		}
+
+		List<SegmentLoad> segmentLoads = new ArrayList<>();
+		try {
+			segmentLoads.addAll(getSegmentLoads());
+		}
+		catch (Exception e) {
+			log.error("Failed to get local segment loads: " + e.getClass().getSimpleName() + ": ", e);
+		}
+
+		for (Member m : results.keySet()) {
+			try {
+				segmentLoads.addAll(results.get(m).get(SEGMENT_LOADS_TIMEOUT_SECONDS, TimeUnit.SECONDS));
+			}
+			catch (Exception e) {
+				log.error("Failed to get segment loads from <" + m + ">: " + e.getClass().getSimpleName() + ": ", e);
+			}
+		}
+
+		Map<String, Map<Integer, SegmentLoad>> clusterSegmentLoads = new HashMap<>();
+		for (SegmentLoad segmentLoad : segmentLoads) {
+			clusterSegmentLoads.computeIfAbsent(segmentLoad.getIndexName(), k -> new HashMap<>()).put(segmentLoad.getSegmentNumber(), segmentLoad);
+		}
+		return clusterSegmentLoads;
+	}
+
+	/**
+	 * Warms the segments this node gains in the new segment map, an index not loaded on this node yet opens its segments cold
+	 */
+	public void prepareSegmentMap(String indexName, Map<Member, Set<Integer>> newMemberToSegmentMap) {
+		globalLock.readLock().lock();
+		try {
+			LumongoIndex i = indexMap.get(indexName);
+			if (i != null) {
+				i.prepareSegmentMap(newMemberToSegmentMap, segmentLoadPool);
+			}
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	public void updateSegmentMap(String indexName, Map<Member, Set<Integer>> newMemberToSegmentMap) throws Exception {
+		globalLock.readLock().lock();
+		LumongoIndex i = indexMap.get(indexName);
+		if (i == null) {
+			//the node balancing the index holds the read lock and always has the index loaded so only other nodes take the write lock
+			globalLock.readLock().unlock();
+			globalLock.writeLock().lock();
+			try {
+				if (!indexMap.containsKey(indexName)) {
+					loadIndex(indexName, false);
+				}
+
+				i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+
+				//downgrade so queries on other indexes and the loaded segments of this index run while the new segments open
+				globalLock.readLock().lock();
+			}
+			finally {
+				globalLock.writeLock().unlock();
+			}
+		}
+
+		try {
+			i.updateSegmentMap(newMemberToSegmentMap, segmentLoadPool);
+		}
+		finally {
+			globalLock.readLock().unlock();
 		}
 	}
 
@@ -364,6 +779,10 @@ public class LumongoIndexManager {
 		try {
 			log.info("Stopping manager pool");
 			pool.shutdownNow();
+			segmentLoadPool.shutdownNow();
+
+			log.info("Closing query stream cursors");
+			queryCursors.invalidateAll();
 
 			log.info("Shutting down indexes");
 			for (String indexName : indexMap.keySet()) {
@@ -476,56 +895,282 @@ public class LumongoIndexManager {
 		}
 	}
 
+	public BatchDeleteResponse batchDeleteInternal(BatchDeleteRequest batchDeleteRequest) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			Map<String, List<DeleteRequest>> indexToRequests = new HashMap<>();
+			for (DeleteRequest deleteRequest : batchDeleteRequest.getRequestList()) {
+				indexToRequests.computeIfAbsent(deleteRequest.getIndexName(), k -> new ArrayList<>()).add(deleteRequest);
+			}
+
+			for (String indexName : indexToRequests.keySet()) {
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+				i.deleteDocuments(indexToRequests.get(indexName));
+			}
+
+			return BatchDeleteResponse.newBuilder().build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Groups delete requests by the member that owns the segment of each document, deletes the local group directly
+	 * and sends the other groups to their members in parallel
+	 * @throws Exception
+	 */
+	public BatchDeleteResponse batchDelete(BatchDeleteRequest batchDeleteRequest) throws Exception {
+		globalLock.readLock().lock();
+		try {
+
+			Map<Member, BatchDeleteRequest.Builder> memberToRequests = new HashMap<>();
+			for (DeleteRequest deleteRequest : batchDeleteRequest.getRequestList()) {
+				String indexName = deleteRequest.getIndexName();
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+
+				Member m = i.findMember(deleteRequest.getUniqueId());
+				memberToRequests.computeIfAbsent(m, k -> BatchDeleteRequest.newBuilder()).addRequest(deleteRequest);
+			}
+
+			Member self = hazelcastManager.getSelf();
+
+			List<Future<BatchDeleteResponse>> responses = new ArrayList<>();
+			for (Member m : memberToRequests.keySet()) {
+				if (!self.equals(m)) {
+					BatchDeleteRequest request = memberToRequests.get(m).build();
+					responses.add(pool.submit(() -> internalClient.executeBatchDelete(m, request)));
+				}
+			}
+
+			Exception exception = null;
+
+			BatchDeleteRequest.Builder localRequests = memberToRequests.get(self);
+			if (localRequests != null) {
+				try {
+					batchDeleteInternal(localRequests.build());
+				}
+				catch (Exception e) {
+					exception = e;
+				}
+			}
+
+			for (Future<BatchDeleteResponse> response : responses) {
+				try {
+					response.get();
+				}
+				catch (ExecutionException e) {
+					if (exception == null) {
+						exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					}
+				}
+			}
+
+			if (exception != null) {
+				throw exception;
+			}
+
+			return BatchDeleteResponse.newBuilder().build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
 	public FetchResponse internalFetch(FetchRequest fetchRequest) throws Exception {
 		globalLock.readLock().lock();
 		try {
 
-			LumongoIndex i = indexMap.get(fetchRequest.getIndexName());
-			if (i == null) {
-				throw new IndexDoesNotExist(fetchRequest.getIndexName());
+			LumongoIndex i = indexMap.get(fetchRequest.getIndexName());
+			if (i == null) {
+				throw new IndexDoesNotExist(fetchRequest.getIndexName());
+			}
+
+			FetchResponse.Builder frBuilder = FetchResponse.newBuilder();
+
+			String uniqueId = fetchRequest.getUniqueId();
+
+			FetchType resultFetchType = fetchRequest.getResultFetchType();
+			if (!FetchType.NONE.equals(resultFetchType)) {
+
+				Long timestamp = null;
+				if (fetchRequest.hasTimestamp()) {
+					timestamp = fetchRequest.getTimestamp();
+				}
+
+				ResultDocument resultDoc = i.getSourceDocument(uniqueId, timestamp, resultFetchType, fetchRequest.getDocumentFieldsList(),
+						fetchRequest.getDocumentMaskedFieldsList(), Collections.emptyList());
+				if (null != resultDoc) {
+					frBuilder.setResultDocument(resultDoc);
+				}
+			}
+
+			addAssociatedDocuments(i, fetchRequest, frBuilder);
+			return frBuilder.build();
+
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	private void addAssociatedDocuments(LumongoIndex i, FetchRequest fetchRequest, FetchResponse.Builder frBuilder) throws Exception {
+		FetchType associatedFetchType = fetchRequest.getAssociatedFetchType();
+		if (!FetchType.NONE.equals(associatedFetchType)) {
+			if (fetchRequest.hasFilename()) {
+				AssociatedDocument ad = i.getAssociatedDocument(fetchRequest.getUniqueId(), fetchRequest.getFilename(), associatedFetchType);
+				if (ad != null) {
+					frBuilder.addAssociatedDocument(ad);
+				}
+			}
+			else {
+				for (AssociatedDocument ad : i.getAssociatedDocuments(fetchRequest.getUniqueId(), associatedFetchType)) {
+					frBuilder.addAssociatedDocument(ad);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Fetches the documents of fetch requests for documents owned by this member, the documents of each segment are read together
+	 * @return the fetch responses in the order of the requests
+	 */
+	public BatchFetchResponse batchFetchInternal(BatchFetchRequest batchFetchRequest) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			List<FetchRequest> fetchRequests = batchFetchRequest.getFetchRequestList();
+
+			Map<String, List<Integer>> indexToPositions = new HashMap<>();
+			for (int r = 0; r < fetchRequests.size(); r++) {
+				FetchRequest fetchRequest = fetchRequests.get(r);
+				if (!FetchType.NONE.equals(fetchRequest.getResultFetchType())) {
+					indexToPositions.computeIfAbsent(fetchRequest.getIndexName(), k -> new ArrayList<>()).add(r);
+				}
+			}
+
+			ResultDocument[] resultDocuments = new ResultDocument[fetchRequests.size()];
+			for (String indexName : indexToPositions.keySet()) {
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+
+				List<Integer> positions = indexToPositions.get(indexName);
+				List<FetchRequest> indexRequests = new ArrayList<>(positions.size());
+				for (Integer r : positions) {
+					indexRequests.add(fetchRequests.get(r));
+				}
+
+				List<ResultDocument> indexDocuments = i.getSourceDocuments(indexRequests);
+				for (int p = 0; p < positions.size(); p++) {
+					resultDocuments[positions.get(p)] = indexDocuments.get(p);
+				}
+			}
+
+			BatchFetchResponse.Builder builder = BatchFetchResponse.newBuilder();
+			for (int r = 0; r < fetchRequests.size(); r++) {
+				FetchRequest fetchRequest = fetchRequests.get(r);
+				LumongoIndex i = indexMap.get(fetchRequest.getIndexName());
+				if (i == null) {
+					throw new IndexDoesNotExist(fetchRequest.getIndexName());
+				}
+
+				FetchResponse.Builder frBuilder = FetchResponse.newBuilder();
+				if (resultDocuments[r] != null) {
+					frBuilder.setResultDocument(resultDocuments[r]);
+				}
+				addAssociatedDocuments(i, fetchRequest, frBuilder);
+				builder.addFetchResponse(frBuilder);
+			}
+			return builder.build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Groups fetch requests by the member that owns the segment of each document, fetches the local group directly
+	 * and sends the other groups to their members in parallel
+	 * @return the fetch responses in the order of the requests
+	 */
+	public BatchFetchResponse batchFetch(BatchFetchRequest batchFetchRequest) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			List<FetchRequest> fetchRequests = batchFetchRequest.getFetchRequestList();
+
+			Map<Member, List<Integer>> memberToPositions = new HashMap<>();
+			Map<Member, BatchFetchRequest.Builder> memberToRequests = new HashMap<>();
+			for (int r = 0; r < fetchRequests.size(); r++) {
+				FetchRequest fetchRequest = fetchRequests.get(r);
+				String indexName = fetchRequest.getIndexName();
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+
+				Member m = i.findMember(fetchRequest.getUniqueId());
+				memberToPositions.computeIfAbsent(m, k -> new ArrayList<>()).add(r);
+				memberToRequests.computeIfAbsent(m, k -> BatchFetchRequest.newBuilder()).addFetchRequest(fetchRequest);
 			}
 
-			FetchResponse.Builder frBuilder = FetchResponse.newBuilder();
+			Member self = hazelcastManager.getSelf();
 
-			String uniqueId = fetchRequest.getUniqueId();
+			Map<Member, Future<BatchFetchResponse>> responses = new HashMap<>();
+			for (Member m : memberToRequests.keySet()) {
+				BatchFetchRequest request = memberToRequests.get(m).build();
+				if (!self.equals(m)) {
+					responses.put(m, pool.submit(() -> internalClient.executeBatchFetch(m, request)));
+				}
+			}
 
-			FetchType resultFetchType = fetchRequest.getResultFetchType();
-			if (!FetchType.NONE.equals(resultFetchType)) {
+			FetchResponse[] fetchResponses = new FetchResponse[fetchRequests.size()];
+			Exception exception = null;
 
-				Long timestamp = null;
-				if (fetchRequest.hasTimestamp()) {
-					timestamp = fetchRequest.getTimestamp();
+			BatchFetchRequest.Builder localRequests = memberToRequests.get(self);
+			if (localRequests != null) {
+				try {
+					setFetchResponses(fetchResponses, memberToPositions.get(self), batchFetchInternal(localRequests.build()));
 				}
-
-				ResultDocument resultDoc = i.getSourceDocument(uniqueId, timestamp, resultFetchType, fetchRequest.getDocumentFieldsList(),
-						fetchRequest.getDocumentMaskedFieldsList(), Collections.emptyList());
-				if (null != resultDoc) {
-					frBuilder.setResultDocument(resultDoc);
+				catch (Exception e) {
+					exception = e;
 				}
 			}
 
-			FetchType associatedFetchType = fetchRequest.getAssociatedFetchType();
-			if (!FetchType.NONE.equals(associatedFetchType)) {
-				if (fetchRequest.hasFilename()) {
-					AssociatedDocument ad = i.getAssociatedDocument(uniqueId, fetchRequest.getFilename(), associatedFetchType);
-					if (ad != null) {
-						frBuilder.addAssociatedDocument(ad);
-					}
+			for (Member m : responses.keySet()) {
+				try {
+					setFetchResponses(fetchResponses, memberToPositions.get(m), responses.get(m).get());
 				}
-				else {
-					for (AssociatedDocument ad : i.getAssociatedDocuments(uniqueId, associatedFetchType)) {
-						frBuilder.addAssociatedDocument(ad);
+				catch (ExecutionException e) {
+					if (exception == null) {
+						exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
 					}
 				}
 			}
-			return frBuilder.build();
 
+			if (exception != null) {
+				throw exception;
+			}
+
+			return BatchFetchResponse.newBuilder().addAllFetchResponse(Arrays.asList(fetchResponses)).build();
 		}
 		finally {
 			globalLock.readLock().unlock();
 		}
 	}
 
+	private static void setFetchResponses(FetchResponse[] fetchResponses, List<Integer> positions, BatchFetchResponse batchFetchResponse) {
+		for (int p = 0; p < positions.size(); p++) {
+			fetchResponses[positions.get(p)] = batchFetchResponse.getFetchResponse(p);
+		}
+	}
+
 	public DeleteResponse deleteDocument(DeleteRequest deleteRequest) throws Exception {
 		globalLock.readLock().lock();
 		try {
@@ -603,6 +1248,97 @@ public class LumongoIndexManager {
 
 	}
 
+	public BatchStoreResponse batchStoreInternal(BatchStoreRequest batchStoreRequest) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			Map<String, List<StoreRequest>> indexToRequests = new HashMap<>();
+			for (StoreRequest storeRequest : batchStoreRequest.getStoreRequestList()) {
+				indexToRequests.computeIfAbsent(storeRequest.getIndexName(), k -> new ArrayList<>()).add(storeRequest);
+			}
+
+			for (String indexName : indexToRequests.keySet()) {
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+				i.storeInternal(indexToRequests.get(indexName));
+			}
+
+			return BatchStoreResponse.newBuilder().setStored(batchStoreRequest.getStoreRequestCount()).build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Groups store requests by the member that owns the segment of each document, stores the local group directly
+	 * and sends the other groups to their members in parallel
+	 * @param storeRequests - store requests for any index and member
+	 * @return the number of documents stored
+	 * @throws Exception
+	 */
+	public BatchStoreResponse batchStore(List<StoreRequest> storeRequests) throws Exception {
+		globalLock.readLock().lock();
+		try {
+
+			Map<Member, BatchStoreRequest.Builder> memberToRequests = new HashMap<>();
+			for (StoreRequest storeRequest : storeRequests) {
+				String indexName = storeRequest.getIndexName();
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+
+				Member m = i.findMember(storeRequest.getUniqueId());
+				memberToRequests.computeIfAbsent(m, k -> BatchStoreRequest.newBuilder()).addStoreRequest(storeRequest);
+			}
+
+			Member self = hazelcastManager.getSelf();
+
+			List<Future<BatchStoreResponse>> responses = new ArrayList<>();
+			for (Member m : memberToRequests.keySet()) {
+				if (!self.equals(m)) {
+					BatchStoreRequest request = memberToRequests.get(m).build();
+					responses.add(pool.submit(() -> internalClient.executeBatchStore(m, request)));
+				}
+			}
+
+			long stored = 0;
+			Exception exception = null;
+
+			BatchStoreRequest.Builder localRequests = memberToRequests.get(self);
+			if (localRequests != null) {
+				try {
+					stored += batchStoreInternal(localRequests.build()).getStored();
+				}
+				catch (Exception e) {
+					exception = e;
+				}
+			}
+
+			for (Future<BatchStoreResponse> response : responses) {
+				try {
+					stored += response.get().getStored();
+				}
+				catch (ExecutionException e) {
+					if (exception == null) {
+						exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+					}
+				}
+			}
+
+			if (exception != null) {
+				throw exception;
+			}
+
+			return BatchStoreResponse.newBuilder().setStored(stored).build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
 	public FetchResponse fetch(FetchRequest request) throws Exception {
 		globalLock.readLock().lock();
 		try {
@@ -709,6 +1445,8 @@ public class LumongoIndexManager {
 		globalLock.readLock().lock();
 		long start = System.currentTimeMillis();
 		long queryId = queryNumber.getAndIncrement();
+		int membersContacted = 0;
+		int clusterSize = 0;
 		try {
 			//log.info("Running query: <" + request.getQuery() + "> on indexes <" + request.getIndexList() + ">");
 
@@ -740,7 +1478,16 @@ public class LumongoIndexManager {
 				}
 			};
 
-			List<InternalQueryResponse> results = queryFederator.send(request);
+			Set<Member> currentMembers = hazelcastManager.getMembers();
+			Set<Member> queryMembers = getSegmentOwners(indexSegmentMap.values(), currentMembers);
+
+			clusterSize = currentMembers.size();
+			membersContacted = queryMembers.size();
+			queryMembersContacted.addAndGet(membersContacted);
+
+			List<InternalQueryResponse> results = queryFederator.send(request, queryMembers);
+
+			results = refineFacets(request, indexSegmentMap, results);
 
 			QueryCombiner queryCombiner = new QueryCombiner(indexSegmentMap, request, results);
 
@@ -762,12 +1509,280 @@ public class LumongoIndexManager {
 		}
 		finally {
 			long end = System.currentTimeMillis();
-			log.info("Finished query id <" + queryId + "> in " + (end - start) + "ms");
+			log.info("Finished query id <" + queryId + "> in " + (end - start) + "ms on <" + membersContacted + "> of <" + clusterSize + "> members");
+
+			globalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Sends the facets of refining count requests that could be in the top facets to the segments that did not return them to be counted
+	 * exactly.  The refinements are grouped by the member that owns each segment and the members are asked in parallel.
+	 * @return the responses with the refined counts added
+	 */
+	private List<InternalQueryResponse> refineFacets(QueryRequest request, Map<String, LumongoIndex> indexSegmentMap, List<InternalQueryResponse> results)
+			throws Exception {
+		Map<String, Integer> numberOfSegmentsMap = new HashMap<>();
+		for (String indexName : indexSegmentMap.keySet()) {
+			numberOfSegmentsMap.put(indexName, indexSegmentMap.get(indexName).getNumberOfSegments());
+		}
+
+		FacetRefiner facetRefiner = new FacetRefiner(request, numberOfSegmentsMap);
+		if (!facetRefiner.isRefining()) {
+			return results;
+		}
+
+		Map<String, Map<Integer, SegmentFacetRefinement.Builder>> refinements = facetRefiner.getRefinements(results);
+		if (refinements.isEmpty()) {
+			return results;
+		}
+
+		Map<Member, FacetRefinementRequest.Builder> memberToRequests = new HashMap<>();
+		for (String indexName : refinements.keySet()) {
+			Map<Integer, Member> segmentToMemberMap = indexSegmentMap.get(indexName).getSegmentToMemberMap();
+			for (Map.Entry<Integer, SegmentFacetRefinement.Builder> entry : refinements.get(indexName).entrySet()) {
+				Member m = segmentToMemberMap.get(entry.getKey());
+				if (m == null) {
+					throw new Exception("Segment <" + entry.getKey() + "> of index <" + indexName + "> is not loaded on any member");
+				}
+				memberToRequests.computeIfAbsent(m, k -> FacetRefinementRequest.newBuilder().setQueryRequest(request))
+						.addSegmentFacetRefinement(entry.getValue());
+			}
+		}
+
+		Member self = hazelcastManager.getSelf();
+
+		List<Future<FacetRefinementResponse>> futures = new ArrayList<>();
+		for (Member m : memberToRequests.keySet()) {
+			FacetRefinementRequest refinementRequest = memberToRequests.get(m).build();
+			if (self.equals(m)) {
+				futures.add(pool.submit(() -> refineFacetsInternal(refinementRequest)));
+			}
+			else {
+				futures.add(pool.submit(() -> internalClient.executeRefineFacets(m, refinementRequest)));
+			}
+		}
+
+		List<FacetRefinementResponse> refinementResponses = new ArrayList<>(futures.size());
+		Exception exception = null;
+		for (Future<FacetRefinementResponse> future : futures) {
+			try {
+				refinementResponses.add(future.get());
+			}
+			catch (ExecutionException e) {
+				if (exception == null) {
+					exception = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+				}
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+
+		return facetRefiner.applyRefinements(results, refinementResponses);
+	}
+
+	/**
+	 * Counts the refined facets of the local segments of a refinement request
+	 */
+	public FacetRefinementResponse refineFacetsInternal(FacetRefinementRequest request) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			Map<String, List<SegmentFacetRefinement>> indexToRefinements = new HashMap<>();
+			for (SegmentFacetRefinement refinement : request.getSegmentFacetRefinementList()) {
+				indexToRefinements.computeIfAbsent(refinement.getIndexName(), k -> new ArrayList<>()).add(refinement);
+			}
+
+			QueryRequest queryRequest = request.getQueryRequest().toBuilder().clearIndex().addAllIndex(indexToRefinements.keySet()).build();
+			Map<String, QueryWithFilters> queryMap = getQueryMap(queryRequest);
+
+			FacetRefinementResponse.Builder builder = FacetRefinementResponse.newBuilder();
+			for (String indexName : indexToRefinements.keySet()) {
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+				builder.addAllSegmentFacetRefinement(i.refineFacets(queryMap.get(indexName), indexToRefinements.get(indexName)));
+			}
+			return builder.build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	/**
+	 * Streams every result of the query (or the first amount results if amount is set) in order.  Each segment is read through a cursor
+	 * on the member that owns it so results are consistent with the point in time the stream started, and the pages from the segments
+	 * are merged as the consumer accepts batches.  Facets, highlighting, analysis, start and last result are not supported when streaming.
+	 *
+	 * @return number of results streamed
+	 */
+	public long queryStream(final QueryRequest request, QueryStreamMerger.ResultConsumer consumer) throws Exception {
+		long start = System.currentTimeMillis();
+		long queryId = queryNumber.getAndIncrement();
+		String streamId = hazelcastManager.getSelf().getUuid() + "_" + queryId;
+
+		List<QueryStreamMerger.SegmentSource> sources = new ArrayList<>();
+		Comparator<ScoredResult> comparator;
+
+		globalLock.readLock().lock();
+		try {
+			String queryJson = JsonFormat.printer().print(request);
+			log.info("Running id <" + queryId + "> query stream <" + queryJson + ">");
+
+			Map<String, LumongoIndex> indexSegmentMap = new HashMap<>();
+			for (String indexName : request.getIndexList()) {
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+				indexSegmentMap.put(indexName, i);
+			}
+
+			comparator = QueryCombiner.getComparator(request.getSortRequest(), indexSegmentMap);
+
+			Member self = hazelcastManager.getSelf();
+			for (String indexName : indexSegmentMap.keySet()) {
+				LumongoIndex i = indexSegmentMap.get(indexName);
+				Map<Integer, Member> segmentToMemberMap = i.getSegmentToMemberMap();
+				for (int segmentNumber = 0; segmentNumber < i.getNumberOfSegments(); segmentNumber++) {
+					Member m = segmentToMemberMap.get(segmentNumber);
+					if (m == null) {
+						throw new Exception("Segment <" + segmentNumber + "> of index <" + indexName + "> is not loaded on any member");
+					}
+
+					QueryStreamSegmentRequest.Builder segmentRequest = QueryStreamSegmentRequest.newBuilder().setStreamId(streamId).setIndexName(indexName)
+							.setSegmentNumber(segmentNumber);
+					sources.add(new QueryStreamSegmentSource(self.equals(m) ? null : m, segmentRequest, request));
+				}
+			}
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+
+		long streamed = 0;
+		try {
+			QueryStreamMerger queryStreamMerger = new QueryStreamMerger(sources, comparator, QUERY_STREAM_PAGE_SIZE, pool);
+			streamed = queryStreamMerger.merge(request.getAmount(), consumer);
+			return streamed;
+		}
+		finally {
+			long end = System.currentTimeMillis();
+			log.info("Finished query stream id <" + queryId + "> with <" + streamed + "> results in " + (end - start) + "ms from <" + sources.size()
+					+ "> segments");
+		}
+	}
+
+	/**
+	 * Returns the next page of a query stream from a local segment.  The cursor is opened on the request that carries the query
+	 * and is closed once the segment is read to the end or the stream is closed.
+	 */
+	public SegmentResponse queryStreamSegment(QueryStreamSegmentRequest request) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			String indexName = request.getIndexName();
+			int segmentNumber = request.getSegmentNumber();
+			String cursorKey = request.getStreamId() + "_" + indexName + "_" + segmentNumber;
+
+			if (request.getClose()) {
+				queryCursors.invalidate(cursorKey);
+				return SegmentResponse.newBuilder().setIndexName(indexName).setSegmentNumber(segmentNumber).setTotalHits(0).build();
+			}
+
+			QueryCursor cursor;
+			if (request.hasQueryRequest()) {
+				LumongoIndex i = indexMap.get(indexName);
+				if (i == null) {
+					throw new IndexDoesNotExist(indexName);
+				}
+
+				QueryRequest queryRequest = request.getQueryRequest().toBuilder().clearIndex().addIndex(indexName).build();
+				QueryWithFilters queryWithFilters = getQueryMap(queryRequest).get(indexName);
+
+				cursor = i.openQueryCursor(queryWithFilters, queryRequest, segmentNumber);
+				queryCursors.put(cursorKey, cursor);
+			}
+			else {
+				cursor = queryCursors.getIfPresent(cursorKey);
+				if (cursor == null) {
+					throw new Exception("Query stream <" + request.getStreamId() + "> for index <" + indexName + "> segment <" + segmentNumber
+							+ "> does not exist or expired after <" + QUERY_STREAM_IDLE_MINUTES + "> minutes idle");
+				}
+			}
 
+			SegmentResponse segmentResponse = cursor.next(request.getAmount());
+			if (!segmentResponse.hasNext()) {
+				queryCursors.invalidate(cursorKey);
+			}
+			return segmentResponse;
+		}
+		finally {
 			globalLock.readLock().unlock();
 		}
 	}
 
+	private class QueryStreamSegmentSource implements QueryStreamMerger.SegmentSource {
+
+		private final Member member;
+		private final QueryStreamSegmentRequest.Builder segmentRequest;
+		private QueryRequest queryRequest;
+
+		/**
+		 * @param member - member that owns the segment, null if the segment is local
+		 * @param segmentRequest - identifies the stream and segment
+		 * @param queryRequest - sent with the first page only to open the cursor
+		 */
+		private QueryStreamSegmentSource(Member member, QueryStreamSegmentRequest.Builder segmentRequest, QueryRequest queryRequest) {
+			this.member = member;
+			this.segmentRequest = segmentRequest;
+			this.queryRequest = queryRequest;
+		}
+
+		@Override
+		public SegmentResponse next(int amount) throws Exception {
+			segmentRequest.setAmount(amount);
+			if (queryRequest != null) {
+				segmentRequest.setQueryRequest(queryRequest);
+				queryRequest = null;
+			}
+			else {
+				segmentRequest.clearQueryRequest();
+			}
+			return send(segmentRequest.build());
+		}
+
+		@Override
+		public void close() throws Exception {
+			send(segmentRequest.clearQueryRequest().setClose(true).build());
+		}
+
+		private SegmentResponse send(QueryStreamSegmentRequest request) throws Exception {
+			if (member == null) {
+				return queryStreamSegment(request);
+			}
+			return internalClient.executeQueryStreamSegment(member, request);
+		}
+	}
+
+	/**
+	 * Finds the members that own segments of the given indexes so a query is only sent where it can match.
+	 * Falls back to all current members if any segment map is incomplete or stale (e.g. during a rebalance)
+	 */
+	private Set<Member> getSegmentOwners(Collection<LumongoIndex> indexes, Set<Member> currentMembers) {
+		Set<Member> owners = new HashSet<>();
+		for (LumongoIndex i : indexes) {
+			Set<Member> indexOwners = i.getSegmentOwners(currentMembers);
+			if (indexOwners == null) {
+				return currentMembers;
+			}
+			owners.addAll(indexOwners);
+		}
+		return owners;
+	}
+
 	public InternalQueryResponse internalQuery(QueryRequest request) throws Exception {
 		globalLock.readLock().lock();
 		try {
@@ -939,6 +1954,52 @@ public class LumongoIndexManager {
 		}
 	}
 
+	public DeleteByQueryResponse deleteByQuery(DeleteByQueryRequest request) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			SocketRequestFederator<DeleteByQueryRequest, DeleteByQueryResponse> federator = new SocketRequestFederator<DeleteByQueryRequest, DeleteByQueryResponse>(
+					hazelcastManager, pool) {
+
+				@Override
+				public DeleteByQueryResponse processExternal(Member m, DeleteByQueryRequest request) throws Exception {
+					return internalClient.deleteByQuery(m, request);
+				}
+
+				@Override
+				public DeleteByQueryResponse processInternal(DeleteByQueryRequest request) throws Exception {
+					return deleteByQueryInternal(request);
+				}
+
+			};
+
+			long deleted = 0;
+			for (DeleteByQueryResponse response : federator.send(request)) {
+				deleted += response.getDeleted();
+			}
+
+			return DeleteByQueryResponse.newBuilder().setDeleted(deleted).build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
+	public DeleteByQueryResponse deleteByQueryInternal(DeleteByQueryRequest request) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			String indexName = request.getIndexName();
+			LumongoIndex i = indexMap.get(indexName);
+			if (i == null) {
+				throw new IndexDoesNotExist(indexName);
+			}
+			long deleted = i.deleteByQuery(request);
+			return DeleteByQueryResponse.newBuilder().setDeleted(deleted).build();
+		}
+		finally {
+			globalLock.readLock().unlock();
+		}
+	}
+
 	public OptimizeResponse optimize(OptimizeRequest request) throws Exception {
 		globalLock.readLock().lock();
 		try {
@@ -1171,33 +2232,50 @@ public class LumongoIndexManager {
 		}
 	}
 
-	public GetMembersResponse getMembers(GetMembersRequest request) throws Exception {
-		globalLock.readLock().lock();
-		try {
-			Set<Member> members = hazelcastManager.getMembers();
-			GetMembersResponse.Builder responseBuilder = GetMembersResponse.newBuilder();
+	private Map<Member, LMMember> getLMMembers(Set<Member> members) throws Exception {
+		Nodes nodes = clusterHelper.getNodes();
 
-			Nodes nodes = clusterHelper.getNodes();
+		Map<Member, LMMember> memberMap = new LinkedHashMap<>();
 
-			HashMap<Member, LMMember> memberMap = new HashMap<>();
+		for (Member m : members) {
+			LocalNodeConfig localNodeConfig = nodes.find(m);
 
-			for (Member m : members) {
-				LocalNodeConfig localNodeConfig = nodes.find(m);
+			InetAddress inetAddress = m.getSocketAddress().getAddress();
 
-				InetAddress inetAddress = m.getSocketAddress().getAddress();
+			String fullHostName = inetAddress.getCanonicalHostName();
 
-				String fullHostName = inetAddress.getCanonicalHostName();
+			LMMember.Builder lmMemberBuilder = LMMember.newBuilder();
+			lmMemberBuilder.setServerAddress(fullHostName);
+			lmMemberBuilder.setExternalPort(localNodeConfig.getExternalServicePort());
+			lmMemberBuilder.setInternalPort(localNodeConfig.getInternalServicePort());
+			lmMemberBuilder.setHazelcastPort(localNodeConfig.getHazelcastPort());
+			lmMemberBuilder.setRestPort(localNodeConfig.getRestPort());
+			memberMap.put(m, lmMemberBuilder.build());
+		}
+		return memberMap;
+	}
 
-				LMMember.Builder lmMemberBuilder = LMMember.newBuilder();
-				lmMemberBuilder.setServerAddress(fullHostName);
-				lmMemberBuilder.setExternalPort(localNodeConfig.getExternalServicePort());
-				lmMemberBuilder.setInternalPort(localNodeConfig.getInternalServicePort());
-				lmMemberBuilder.setHazelcastPort(localNodeConfig.getHazelcastPort());
-				lmMemberBuilder.setRestPort(localNodeConfig.getRestPort());
-				LMMember lmMember = lmMemberBuilder.build();
-				responseBuilder.addMember(lmMember);
-				memberMap.put(m, lmMember);
-			}
+	/**
+	 * @return the member from the member map, or built from the address of the member if it is no longer current
+	 */
+	private static LMMember getLMMember(Map<Member, LMMember> memberMap, Member m) {
+		LMMember lmMember = memberMap.get(m);
+		if (lmMember == null) {
+			InetSocketAddress socketAddress = m.getSocketAddress();
+			lmMember = LMMember.newBuilder().setServerAddress(socketAddress.getAddress().getCanonicalHostName()).setExternalPort(0)
+					.setHazelcastPort(socketAddress.getPort()).build();
+		}
+		return lmMember;
+	}
+
+	public GetMembersResponse getMembers(GetMembersRequest request) throws Exception {
+		globalLock.readLock().lock();
+		try {
+			Set<Member> members = hazelcastManager.getMembers();
+			GetMembersResponse.Builder responseBuilder = GetMembersResponse.newBuilder();
+
+			Map<Member, LMMember> memberMap = getLMMembers(members);
+			responseBuilder.addAllMember(memberMap.values());
 
 			for (String indexName : indexMap.keySet()) {
 				LumongoIndex i = indexMap.get(indexName);
@@ -1,5 +1,7 @@
 package org.lumongo.server.index;
 
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.util.concurrent.UncheckedExecutionException;
 import com.google.protobuf.ByteString;
 import info.debatty.java.lsh.SuperBit;
@@ -21,16 +23,25 @@ import org.apache.lucene.facet.Facets;
 import org.apache.lucene.facet.FacetsCollector;
 import org.apache.lucene.facet.FacetsConfig;
 import org.apache.lucene.facet.LabelAndValue;
+import org.apache.lucene.facet.sortedset.DefaultSortedSetDocValuesReaderState;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetCounts;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesFacetField;
+import org.apache.lucene.facet.sortedset.SortedSetDocValuesReaderState;
 import org.apache.lucene.facet.taxonomy.FastTaxonomyFacetCounts;
+import org.apache.lucene.facet.taxonomy.TaxonomyMergeUtils;
 import org.apache.lucene.facet.taxonomy.TaxonomyReader;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyReader;
 import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
 import org.apache.lucene.index.DirectoryReader;
 import org.apache.lucene.index.FieldInfo;
 import org.apache.lucene.index.FieldInfos;
+import org.apache.lucene.index.IndexReader;
 import org.apache.lucene.index.IndexWriter;
 import org.apache.lucene.index.IndexableField;
+import org.apache.lucene.index.LeafReader;
 import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SegmentInfos;
 import org.apache.lucene.index.Term;
 import org.apache.lucene.index.Terms;
 import org.apache.lucene.index.TermsEnum;
@@ -48,7 +59,9 @@ import org.apache.lucene.search.similarities.PerFieldSimilarityWrapper;
 import org.apache.lucene.search.similarities.Similarity;
 import org.apache.lucene.store.AlreadyClosedException;
 import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.IOContext;
 import org.apache.lucene.util.AttributeSource;
+import org.apache.lucene.util.Bits;
 import org.apache.lucene.util.BytesRef;
 import org.apache.lucene.util.NumericUtils;
 import org.lumongo.LumongoConstants;
@@ -66,6 +79,8 @@ import org.lumongo.server.config.IndexConfig;
 import org.lumongo.server.config.IndexConfigUtil;
 import org.lumongo.server.highlighter.LumongoHighlighter;
 import org.lumongo.server.index.analysis.AnalysisHandler;
+import org.lumongo.server.index.balance.DecayingRate;
+import org.lumongo.server.index.balance.SegmentLoad;
 import org.lumongo.server.index.field.BooleanFieldIndexer;
 import org.lumongo.server.index.field.DateFieldIndexer;
 import org.lumongo.server.index.field.DoubleFieldIndexer;
@@ -73,9 +88,17 @@ import org.lumongo.server.index.field.FloatFieldIndexer;
 import org.lumongo.server.index.field.IntFieldIndexer;
 import org.lumongo.server.index.field.LongFieldIndexer;
 import org.lumongo.server.index.field.StringFieldIndexer;
+import org.lumongo.server.search.CachedSegmentResponse;
+import org.lumongo.server.search.FacetRefiner;
+import org.lumongo.server.search.LeafSearchExecutor;
+import org.lumongo.server.search.LumongoQueryCache;
+import org.lumongo.server.search.NumericFacetCollector;
 import org.lumongo.server.search.QueryCacheKey;
+import org.lumongo.server.search.QueryCursor;
 import org.lumongo.server.search.QueryResultCache;
 import org.lumongo.server.search.QueryWithFilters;
+import org.lumongo.server.search.SegmentCollectorManager;
+import org.lumongo.server.search.SegmentCollectorManager.SegmentCollectors;
 import org.lumongo.similarity.ConstantSimilarity;
 import org.lumongo.similarity.TFSimilarity;
 import org.lumongo.storage.rawfiles.DocumentStorage;
@@ -88,14 +111,19 @@ import java.time.ZoneId;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.SortedMap;
 import java.util.TreeMap;
 import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -106,18 +134,41 @@ public class LumongoSegment {
 	private final static DateTimeFormatter FORMATTER_YYYY_MM_DD = DateTimeFormatter.ISO_DATE;
 
 	private final static Logger log = Logger.getLogger(LumongoSegment.class);
+	private final static Similarity BM25_SIMILARITY = new BM25Similarity();
+	private final static Similarity TFIDF_SIMILARITY = new ClassicSimilarity();
+	private final static Similarity CONSTANT_SIMILARITY = new ConstantSimilarity();
+	private final static Similarity TF_SIMILARITY = new TFSimilarity();
+
+	/**
+	 * the similarities for distinct override sets are cached, the cache is cleared if a client sends more distinct overrides than this
+	 */
+	private final static int MAX_CACHED_SIMILARITIES = 64;
+
+	/**
+	 * number of unique ids whose location in the index is cached for fetches
+	 */
+	private final static int ID_LOCATION_CACHE_SIZE = 10000;
+
 	private static Pattern sortedDocValuesMessage = Pattern.compile(
 			"unexpected docvalues type NONE for field '(.*)' \\(expected one of \\[SORTED, SORTED_SET\\]\\)\\. Use UninvertingReader or index with docvalues\\.");
 	private final int segmentNumber;
 	private final IndexConfig indexConfig;
 	private final AtomicLong counter;
+	private final AtomicInteger inFlight;
+	private volatile boolean handingOff;
+	private final Set<QueryCursor> queryCursors;
+	private final DecayingRate queryRate;
+	private final DecayingRate indexRate;
+	private final Set<String> idFetchSet;
 	private final Set<String> fetchSet;
 	private final Set<String> fetchSetWithMeta;
 	private final Set<String> fetchSetWithDocument;
 	private final IndexSegmentInterface indexSegmentInterface;
 	private final DocumentStorage documentStorage;
+	private final ConcurrentHashMap<Map<String, AnalyzerSettings.Similarity>, PerFieldSimilarityWrapper> similarityCache;
+	private final Cache<String, IdLocation> idLocationCache;
 	private IndexWriter indexWriter;
-	private DirectoryReader directoryReader;
+	private SearcherManager searcherManager;
 	private Long lastCommit;
 	private Long lastChange;
 	private String indexName;
@@ -127,8 +178,11 @@ public class LumongoSegment {
 	private int segmentQueryCacheMaxAmount;
 	private PerFieldAnalyzerWrapper perFieldAnalyzer;
 
+	private volatile IndexSettings.FacetMode facetMode;
 	private DirectoryTaxonomyWriter taxoWriter;
 	private DirectoryTaxonomyReader taxoReader;
+	private volatile SortedSetDocValuesReaderState facetsReaderState;
+	private volatile SegmentSplit segmentSplit;
 
 	public LumongoSegment(int segmentNumber, IndexSegmentInterface indexSegmentInterface, IndexConfig indexConfig, FacetsConfig facetsConfig,
 			DocumentStorage documentStorage) throws Exception {
@@ -136,6 +190,8 @@ public class LumongoSegment {
 
 		this.segmentNumber = segmentNumber;
 		this.documentStorage = documentStorage;
+		this.similarityCache = new ConcurrentHashMap<>();
+		this.idLocationCache = CacheBuilder.newBuilder().concurrencyLevel(8).maximumSize(ID_LOCATION_CACHE_SIZE).build();
 
 		this.indexSegmentInterface = indexSegmentInterface;
 		this.indexConfig = indexConfig;
@@ -144,6 +200,8 @@ public class LumongoSegment {
 
 		this.facetsConfig = facetsConfig;
 
+		this.idFetchSet = Collections.singleton(LumongoConstants.ID_FIELD);
+
 		this.fetchSet = Collections.unmodifiableSet(new HashSet<>(Arrays.asList(LumongoConstants.ID_FIELD, LumongoConstants.TIMESTAMP_FIELD)));
 
 		this.fetchSetWithMeta = Collections
@@ -154,6 +212,10 @@ public class LumongoSegment {
 						LumongoConstants.STORED_DOC_FIELD)));
 
 		this.counter = new AtomicLong();
+		this.inFlight = new AtomicInteger();
+		this.queryCursors = ConcurrentHashMap.newKeySet();
+		this.queryRate = new DecayingRate();
+		this.indexRate = new DecayingRate();
 		this.lastCommit = null;
 		this.lastChange = null;
 		this.indexName = indexConfig.getIndexName();
@@ -173,19 +235,21 @@ public class LumongoSegment {
 			synchronized (this) {
 				if (!indexWriter.isOpen()) {
 					this.indexWriter = this.indexSegmentInterface.getIndexWriter(segmentNumber);
-					this.directoryReader = DirectoryReader.open(indexWriter, indexConfig.getIndexSettings().getApplyUncommittedDeletes(), false);
+					openSearcherManager();
 				}
 			}
 		}
 
 		//TODO: is this a real use case?
-		try {
-			taxoWriter.getSize();
-		}
-		catch (AlreadyClosedException e) {
-			synchronized (this) {
-				this.taxoWriter = this.indexSegmentInterface.getTaxoWriter(segmentNumber);
-				this.taxoReader = new DirectoryTaxonomyReader(taxoWriter);
+		if (taxoWriter != null) {
+			try {
+				taxoWriter.getSize();
+			}
+			catch (AlreadyClosedException e) {
+				synchronized (this) {
+					this.taxoWriter = this.indexSegmentInterface.getTaxoWriter(segmentNumber);
+					this.taxoReader = new DirectoryTaxonomyReader(taxoWriter);
+				}
 			}
 		}
 
@@ -202,16 +266,78 @@ public class LumongoSegment {
 		this.perFieldAnalyzer = this.indexSegmentInterface.getPerFieldAnalyzer();
 
 		this.indexWriter = this.indexSegmentInterface.getIndexWriter(segmentNumber);
-		if (this.directoryReader != null) {
-			this.directoryReader.close();
-		}
-		this.directoryReader = DirectoryReader.open(indexWriter, indexConfig.getIndexSettings().getApplyUncommittedDeletes(), false);
+		openSearcherManager();
 
-		this.taxoWriter = this.indexSegmentInterface.getTaxoWriter(segmentNumber);
 		if (this.taxoReader != null) {
 			this.taxoReader.close();
 		}
-		this.taxoReader = new DirectoryTaxonomyReader(taxoWriter);
+
+		//the sorted set doc values mode keeps facets in the index itself so no taxonomy directory is opened for the segment
+		this.facetMode = indexConfig.getIndexSettings().getFacetMode();
+		this.facetsReaderState = null;
+		if (IndexSettings.FacetMode.TAXONOMY.equals(facetMode)) {
+			this.taxoWriter = this.indexSegmentInterface.getTaxoWriter(segmentNumber);
+			this.taxoReader = new DirectoryTaxonomyReader(taxoWriter);
+		}
+		else {
+			this.taxoWriter = null;
+			this.taxoReader = null;
+		}
+	}
+
+	/**
+	 * Replaces the searcher manager with one on the current index writer.  Searchers acquired from the previous manager stay usable until
+	 * they are released.
+	 */
+	private void openSearcherManager() throws IOException {
+		if (this.searcherManager != null) {
+			this.searcherManager.close();
+		}
+
+		SearcherFactory searcherFactory = new SearcherFactory() {
+			@Override
+			public IndexSearcher newSearcher(IndexReader reader, IndexReader previousReader) {
+				return newIndexSearcher(reader, getSimilarity(Collections.emptyMap()));
+			}
+		};
+
+		SearcherManager newSearcherManager = new SearcherManager(indexWriter, indexConfig.getIndexSettings().getApplyUncommittedDeletes(), false,
+				searcherFactory);
+		this.searcherManager = newSearcherManager;
+	}
+
+	private IndexSearcher newIndexSearcher(IndexReader reader, Similarity similarity) {
+		IndexSearcher indexSearcher;
+		LeafSearchExecutor leafSearchExecutor = LeafSearchExecutor.getLeafSearchExecutor();
+		if (indexConfig.getIndexSettings().getParallelLeafSearch() && leafSearchExecutor != null && reader.leaves().size() > 1) {
+			indexSearcher = new IndexSearcher(reader, leafSearchExecutor) {
+				@Override
+				protected LeafSlice[] slices(List<LeafReaderContext> leaves) {
+					return LeafSearchExecutor.getSlices(leaves);
+				}
+			};
+		}
+		else {
+			indexSearcher = new IndexSearcher(reader);
+		}
+		indexSearcher.setQueryCache(LumongoQueryCache.getQueryCache());
+		indexSearcher.setQueryCachingPolicy(LumongoQueryCache.getQueryCachingPolicy());
+		indexSearcher.setSimilarity(similarity);
+		return indexSearcher;
+	}
+
+	/**
+	 * @param sharedSearcher - searcher acquired from the searcher manager
+	 * @return the shared searcher if the query does not override similarity, otherwise a searcher on the same reader with the override similarity
+	 */
+	private IndexSearcher getIndexSearcher(IndexSearcher sharedSearcher, QueryWithFilters queryWithFilters) {
+		Map<String, AnalyzerSettings.Similarity> similarityOverrideMap = queryWithFilters.getSimilarityOverrideMap();
+		if (similarityOverrideMap.isEmpty()) {
+			return sharedSearcher;
+		}
+
+		//similarity is only set query time, indexing time all these similarities are the same
+		return newIndexSearcher(sharedSearcher.getIndexReader(), getSimilarity(similarityOverrideMap));
 	}
 
 	private void setupCaches(IndexConfig indexConfig) {
@@ -240,120 +366,338 @@ public class LumongoSegment {
 		return segmentNumber;
 	}
 
+	/**
+	 * Registers a request using the segment, every successful acquire must be followed by a {@link #release()}
+	 * @return false if the segment is being handed off to another member and can no longer be used
+	 */
+	public boolean acquire() {
+		inFlight.incrementAndGet();
+		if (handingOff) {
+			release();
+			return false;
+		}
+		return true;
+	}
+
+	public void release() {
+		if (inFlight.decrementAndGet() == 0 && handingOff) {
+			synchronized (inFlight) {
+				inFlight.notifyAll();
+			}
+		}
+	}
+
+	/**
+	 * Stops new requests from acquiring the segment and waits for the requests already using it to finish
+	 * @return true if the requests finished within the timeout
+	 */
+	public boolean drain(long timeoutMs) throws InterruptedException {
+		handingOff = true;
+		long end = System.currentTimeMillis() + timeoutMs;
+		synchronized (inFlight) {
+			while (inFlight.get() > 0) {
+				long wait = end - System.currentTimeMillis();
+				if (wait <= 0) {
+					return false;
+				}
+				inFlight.wait(wait);
+			}
+		}
+		return true;
+	}
+
 	public SegmentResponse querySegment(QueryWithFilters queryWithFilters, int amount, FieldDoc after, FacetRequest facetRequest, SortRequest sortRequest,
-			QueryCacheKey queryCacheKey, FetchType resultFetchType, List<String> fieldsToReturn, List<String> fieldsToMask,
+			boolean useQueryCache, FetchType resultFetchType, List<String> fieldsToReturn, List<String> fieldsToMask,
 			List<HighlightRequest> highlightList, List<AnalysisRequest> analysisRequestList, boolean debug) throws Exception {
+		queryRate.add(1);
 		try {
 			reopenIndexWritersIfNecessary();
 
 			openReaderIfChanges();
 
-			QueryResultCache qrc = queryResultCache;
+			SearcherManager manager = searcherManager;
+			IndexSearcher sharedSearcher = manager.acquire();
+			try {
+				Query q = getFilteredQuery(queryWithFilters);
+
+				IndexSearcher indexSearcher = getIndexSearcher(sharedSearcher, queryWithFilters);
 
-			boolean useCache = (qrc != null) && ((segmentQueryCacheMaxAmount <= 0) || (segmentQueryCacheMaxAmount >= amount)) && queryCacheKey != null;
-			if (useCache) {
-				SegmentResponse cacheSegmentResponse = qrc.getCacheSegmentResponse(queryCacheKey);
-				if (cacheSegmentResponse != null) {
-					return cacheSegmentResponse;
+				if (debug) {
+					log.info("Lucene Query for index <" + indexName + "> segment <" + segmentNumber + ">: " + q);
+					log.info("Rewritten Query for index <" + indexName + "> segment <" + segmentNumber + ">: " + indexSearcher.rewrite(q));
 				}
-			}
 
-			Query q = queryWithFilters.getQuery();
+				boolean sorting = (sortRequest != null) && !sortRequest.getFieldSortList().isEmpty();
+				boolean faceting = (facetRequest != null) && (!facetRequest.getCountRequestList().isEmpty() || !facetRequest.getStatRequestList().isEmpty()
+						|| !facetRequest.getRangeRequestList().isEmpty());
 
-			if (!queryWithFilters.getFilterQueries().isEmpty() || !queryWithFilters.getScoredFilterQueries().isEmpty()) {
-				BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
+				QueryResultCache qrc = queryResultCache;
 
-				for (Query filterQuery : queryWithFilters.getFilterQueries()) {
-					booleanQuery.add(filterQuery, BooleanClause.Occur.FILTER);
+				QueryCacheKey queryCacheKey = null;
+				List<Object> leafKeys = null;
+				if (useQueryCache && (qrc != null) && ((segmentQueryCacheMaxAmount <= 0) || (segmentQueryCacheMaxAmount >= amount))) {
+					leafKeys = CachedSegmentResponse.getLeafKeys(indexSearcher.getIndexReader());
+					if (leafKeys != null) {
+						queryCacheKey = new QueryCacheKey(q, queryWithFilters.getSimilarityOverrideMap(), amount, after, facetRequest, sortRequest,
+								resultFetchType, fieldsToReturn, fieldsToMask, highlightList, analysisRequestList);
+					}
 				}
 
-				for (Query scoredFilterQuery : queryWithFilters.getScoredFilterQueries()) {
-					booleanQuery.add(scoredFilterQuery, BooleanClause.Occur.MUST);
+				if (queryCacheKey != null) {
+					CachedSegmentResponse cached = qrc.getCacheSegmentResponse(queryCacheKey);
+					if (cached != null) {
+						if (cached.isCurrent(leafKeys)) {
+							QueryResultCache.recordHit();
+							return cached.getSegmentResponse();
+						}
+						if (cached.isMergeable(leafKeys)) {
+							QueryResultCache.recordPartialHit();
+							CachedSegmentResponse merged = mergeNewLeaves(cached, indexSearcher, q, amount, after, sortRequest, resultFetchType, fieldsToReturn,
+									fieldsToMask, highlightList, leafKeys);
+							qrc.storeInCache(queryCacheKey, merged);
+							return merged.getSegmentResponse();
+						}
+					}
+					QueryResultCache.recordMiss();
 				}
 
-				booleanQuery.add(q, BooleanClause.Occur.MUST);
+				int hasMoreAmount = amount + 1;
 
-				q = booleanQuery.build();
-			}
+				Sort sort = sorting ? getSort(sortRequest) : null;
 
-			IndexSearcher indexSearcher = new IndexSearcher(directoryReader);
+				SegmentCollectorManager collectorManager = new SegmentCollectorManager(() -> {
+					if (sort != null) {
+						return TopFieldCollector.create(sort, hasMoreAmount, after, true, true, true);
+					}
+					return TopScoreDocCollector.create(hasMoreAmount, after);
+				}, sort, hasMoreAmount, faceting ? facetRequest : null, indexConfig);
 
-			//similarity is only set query time, indexing time all these similarities are the same
-			indexSearcher.setSimilarity(getSimilarity(queryWithFilters));
+				//leaf slices are searched concurrently when the searcher has an executor
+				SegmentCollectors segmentCollectors = indexSearcher.search(q, collectorManager);
 
-			if (debug) {
-				log.info("Lucene Query for index <" + indexName + "> segment <" + segmentNumber + ">: " + q);
-				log.info("Rewritten Query for index <" + indexName + "> segment <" + segmentNumber + ">: " + indexSearcher.rewrite(q));
-			}
+				SegmentResponse.Builder segmentReponseBuilder = SegmentResponse.newBuilder();
 
-			int hasMoreAmount = amount + 1;
+				if (faceting) {
+					addFacets(facetRequest, indexSearcher.getIndexReader(), segmentCollectors, segmentReponseBuilder);
+				}
 
-			TopDocsCollector<?> collector;
+				TopDocs topDocs = segmentCollectors.getTopDocs();
+				ScoreDoc[] results = topDocs.scoreDocs;
 
-			boolean sorting = (sortRequest != null) && !sortRequest.getFieldSortList().isEmpty();
-			if (sorting) {
+				int totalHits = (int) topDocs.totalHits;
 
-				collector = getSortingCollector(sortRequest, hasMoreAmount, after);
+				segmentReponseBuilder.setTotalHits(totalHits);
+
+				boolean moreAvailable = (results.length == hasMoreAmount);
+
+				int numResults = Math.min(results.length, amount);
+
+				List<LumongoHighlighter> highlighterList = getHighlighterList(highlightList, q);
+
+				List<AnalysisHandler> analysisHandlerList = getAnalysisHandlerList(indexSearcher.getIndexReader(), analysisRequestList);
+
+				for (int i = 0; i < numResults; i++) {
+					ScoredResult.Builder srBuilder = handleDocResult(indexSearcher, sortRequest, sorting, results, i, resultFetchType, fieldsToReturn, fieldsToMask,
+							highlighterList, analysisHandlerList);
+
+					segmentReponseBuilder.addScoredResult(srBuilder.build());
+				}
+
+				if (moreAvailable) {
+					ScoredResult.Builder srBuilder = handleDocResult(indexSearcher, sortRequest, sorting, results, numResults, FetchType.NONE,
+							Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+					segmentReponseBuilder.setNext(srBuilder);
+				}
+
+				segmentReponseBuilder.setIndexName(indexName);
+				segmentReponseBuilder.setSegmentNumber(segmentNumber);
+
+				if (!analysisHandlerList.isEmpty()) {
+					for (AnalysisHandler analysisHandler : analysisHandlerList) {
+						AnalysisResult segmentAnalysisResult = analysisHandler.getSegmentResult();
+						if (segmentAnalysisResult != null) {
+							segmentReponseBuilder.addAnalysisResult(segmentAnalysisResult);
+						}
+					}
+				}
+
+				SegmentResponse segmentResponse = segmentReponseBuilder.build();
+				if (queryCacheKey != null) {
+					//results from leaves added later can only be merged in for a field sort, scores change with the statistics of the new leaves
+					//and facet counts and analysis are not kept per document
+					boolean mergeable = sorting && !faceting && analysisHandlerList.isEmpty();
+					qrc.storeInCache(queryCacheKey, new CachedSegmentResponse(segmentResponse, leafKeys, indexSearcher.getIndexReader().maxDoc(),
+							mergeable ? (TopFieldDocs) topDocs : null));
+				}
+				return segmentResponse;
 			}
-			else {
-				collector = TopScoreDocCollector.create(hasMoreAmount, after);
+			finally {
+				manager.release(sharedSearcher);
+			}
+		}
+		catch (IllegalStateException e) {
+			Matcher m = sortedDocValuesMessage.matcher(e.getMessage());
+			if (m.matches()) {
+				String field = m.group(1);
+				throw new Exception("Field <" + field + "> must have sortAs defined to be sortable");
 			}
 
-			SegmentResponse.Builder segmentReponseBuilder = SegmentResponse.newBuilder();
+			throw e;
+		}
+	}
+
+	/**
+	 * Searches only the leaves added to the reader since the cached response was computed and merges their top docs with the cached top docs.
+	 * Cached results that are still in the top docs are reused as is.
+	 */
+	private CachedSegmentResponse mergeNewLeaves(CachedSegmentResponse cached, IndexSearcher indexSearcher, Query q, int amount, FieldDoc after,
+			SortRequest sortRequest, FetchType resultFetchType, List<String> fieldsToReturn, List<String> fieldsToMask, List<HighlightRequest> highlightList,
+			List<Object> leafKeys) throws Exception {
+		int hasMoreAmount = amount + 1;
+		int cachedMaxDoc = cached.getMaxDoc();
+
+		TopDocsCollector<?> collector = getSortingCollector(sortRequest, hasMoreAmount, after);
+		indexSearcher.search(q, new FilterCollector(collector) {
+			@Override
+			public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+				if (context.docBase < cachedMaxDoc) {
+					throw new CollectionTerminatedException();
+				}
+				return super.getLeafCollector(context);
+			}
+		});
+		TopFieldDocs newTopDocs = (TopFieldDocs) collector.topDocs();
+
+		//copy the cached docs so merging does not set the shard index on docs shared with other queries
+		TopFieldDocs cachedTopDocs = cached.getTopDocs();
+		ScoreDoc[] cachedScoreDocs = new ScoreDoc[cachedTopDocs.scoreDocs.length];
+		for (int i = 0; i < cachedScoreDocs.length; i++) {
+			FieldDoc fieldDoc = (FieldDoc) cachedTopDocs.scoreDocs[i];
+			cachedScoreDocs[i] = new FieldDoc(fieldDoc.doc, fieldDoc.score, fieldDoc.fields);
+		}
+		TopFieldDocs oldTopDocs = new TopFieldDocs(cachedTopDocs.totalHits, cachedScoreDocs, cachedTopDocs.fields, cachedTopDocs.getMaxScore());
 
-			if ((facetRequest != null) && !facetRequest.getCountRequestList().isEmpty()) {
+		//new leaves have higher doc ids so ties are kept in doc id order with the cached docs first
+		Sort sort = new Sort(newTopDocs.fields);
+		TopFieldDocs topDocs = TopDocs.merge(sort, hasMoreAmount, new TopFieldDocs[] { oldTopDocs, newTopDocs });
+		ScoreDoc[] results = topDocs.scoreDocs;
 
-				searchWithFacets(facetRequest, q, indexSearcher, collector, segmentReponseBuilder);
+		Map<Integer, ScoredResult> cachedResults = new HashMap<>();
+		for (ScoredResult scoredResult : cached.getSegmentResponse().getScoredResultList()) {
+			cachedResults.put(scoredResult.getDocId(), scoredResult);
+		}
+
+		SegmentResponse.Builder segmentReponseBuilder = SegmentResponse.newBuilder();
+		segmentReponseBuilder.setTotalHits((int) topDocs.totalHits);
+
+		boolean moreAvailable = (results.length == hasMoreAmount);
+		int numResults = Math.min(results.length, amount);
 
+		List<LumongoHighlighter> highlighterList = getHighlighterList(highlightList, q);
+
+		for (int i = 0; i < numResults; i++) {
+			ScoredResult cachedResult = cachedResults.get(results[i].doc);
+			if (cachedResult != null) {
+				segmentReponseBuilder.addScoredResult(cachedResult.toBuilder().setResultIndex(i));
 			}
 			else {
-				indexSearcher.search(q, collector);
+				segmentReponseBuilder.addScoredResult(
+						handleDocResult(indexSearcher, sortRequest, true, results, i, resultFetchType, fieldsToReturn, fieldsToMask, highlighterList,
+								Collections.emptyList()));
 			}
+		}
 
-			ScoreDoc[] results = collector.topDocs().scoreDocs;
+		if (moreAvailable) {
+			segmentReponseBuilder.setNext(handleDocResult(indexSearcher, sortRequest, true, results, numResults, FetchType.NONE, Collections.emptyList(),
+					Collections.emptyList(), Collections.emptyList(), Collections.emptyList()));
+		}
 
-			int totalHits = collector.getTotalHits();
+		segmentReponseBuilder.setIndexName(indexName);
+		segmentReponseBuilder.setSegmentNumber(segmentNumber);
 
-			segmentReponseBuilder.setTotalHits(totalHits);
+		return new CachedSegmentResponse(segmentReponseBuilder.build(), leafKeys, indexSearcher.getIndexReader().maxDoc(), topDocs);
+	}
 
-			boolean moreAvailable = (results.length == hasMoreAmount);
+	/**
+	 * Opens a cursor that pages through all results of the query on a pinned searcher.  The cursor takes over the caller's acquire of the segment
+	 * so the segment is not drained while the cursor is open, it must be closed to release the searcher and the segment.
+	 */
+	public QueryCursor openQueryCursor(QueryWithFilters queryWithFilters, SortRequest sortRequest, FetchType resultFetchType, List<String> fieldsToReturn,
+			List<String> fieldsToMask) throws Exception {
+		queryRate.add(1);
 
-			int numResults = Math.min(results.length, amount);
+		reopenIndexWritersIfNecessary();
 
-			List<LumongoHighlighter> highlighterList = getHighlighterList(highlightList, q);
+		openReaderIfChanges();
 
-			List<AnalysisHandler> analysisHandlerList = getAnalysisHandlerList(analysisRequestList);
+		SearcherManager manager = searcherManager;
+		IndexSearcher sharedSearcher = manager.acquire();
+		IndexSearcher indexSearcher = getIndexSearcher(sharedSearcher, queryWithFilters);
 
-			for (int i = 0; i < numResults; i++) {
-				ScoredResult.Builder srBuilder = handleDocResult(indexSearcher, sortRequest, sorting, results, i, resultFetchType, fieldsToReturn, fieldsToMask,
-						highlighterList, analysisHandlerList);
+		QueryCursor cursor = new QueryCursor(this, manager, sharedSearcher, indexSearcher, getFilteredQuery(queryWithFilters), sortRequest,
+				resultFetchType, fieldsToReturn, fieldsToMask);
+		queryCursors.add(cursor);
+		return cursor;
+	}
+
+	/**
+	 * Called by a cursor when it is closed, releases the acquire of the segment the cursor held
+	 */
+	public void queryCursorClosed(QueryCursor cursor) {
+		if (queryCursors.remove(cursor)) {
+			release();
+		}
+	}
+
+	/**
+	 * Returns the page of results after the last result returned by the cursor and advances the cursor
+	 */
+	public SegmentResponse queryCursor(QueryCursor cursor, int amount) throws Exception {
+		try {
+			IndexSearcher indexSearcher = cursor.getIndexSearcher();
+			SortRequest sortRequest = cursor.getSortRequest();
+
+			int hasMoreAmount = amount + 1;
+
+			TopDocsCollector<?> collector;
+
+			boolean sorting = (sortRequest != null) && !sortRequest.getFieldSortList().isEmpty();
+			if (sorting) {
+				collector = getSortingCollector(sortRequest, hasMoreAmount, (FieldDoc) cursor.getAfter());
+			}
+			else {
+				collector = TopScoreDocCollector.create(hasMoreAmount, cursor.getAfter());
+			}
+
+			indexSearcher.search(cursor.getQuery(), collector);
+
+			ScoreDoc[] results = collector.topDocs().scoreDocs;
+
+			SegmentResponse.Builder segmentReponseBuilder = SegmentResponse.newBuilder();
+			segmentReponseBuilder.setTotalHits(collector.getTotalHits());
 
+			int numResults = Math.min(results.length, amount);
+
+			for (int i = 0; i < numResults; i++) {
+				ScoredResult.Builder srBuilder = handleDocResult(indexSearcher, sortRequest, sorting, results, i, cursor.getResultFetchType(),
+						cursor.getFieldsToReturn(), cursor.getFieldsToMask(), Collections.emptyList(), Collections.emptyList());
 				segmentReponseBuilder.addScoredResult(srBuilder.build());
 			}
 
-			if (moreAvailable) {
+			if (results.length == hasMoreAmount) {
 				ScoredResult.Builder srBuilder = handleDocResult(indexSearcher, sortRequest, sorting, results, numResults, FetchType.NONE,
 						Collections.emptyList(), Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
 				segmentReponseBuilder.setNext(srBuilder);
 			}
 
+			if (numResults > 0) {
+				cursor.setAfter(results[numResults - 1]);
+			}
+
 			segmentReponseBuilder.setIndexName(indexName);
 			segmentReponseBuilder.setSegmentNumber(segmentNumber);
 
-			if (!analysisHandlerList.isEmpty()) {
-				for (AnalysisHandler analysisHandler : analysisHandlerList) {
-					AnalysisResult segmentAnalysisResult = analysisHandler.getSegmentResult();
-					if (segmentAnalysisResult != null) {
-						segmentReponseBuilder.addAnalysisResult(segmentAnalysisResult);
-					}
-				}
-			}
-
-			SegmentResponse segmentResponse = segmentReponseBuilder.build();
-			if (useCache) {
-				qrc.storeInCache(queryCacheKey, segmentResponse);
-			}
-			return segmentResponse;
+			return segmentReponseBuilder.build();
 		}
 		catch (IllegalStateException e) {
 			Matcher m = sortedDocValuesMessage.matcher(e.getMessage());
@@ -366,7 +710,28 @@ public class LumongoSegment {
 		}
 	}
 
-	private List<AnalysisHandler> getAnalysisHandlerList(List<AnalysisRequest> analysisRequests) throws Exception {
+	private Query getFilteredQuery(QueryWithFilters queryWithFilters) {
+		Query q = queryWithFilters.getQuery();
+
+		if (!queryWithFilters.getFilterQueries().isEmpty() || !queryWithFilters.getScoredFilterQueries().isEmpty()) {
+			BooleanQuery.Builder booleanQuery = new BooleanQuery.Builder();
+
+			for (Query filterQuery : queryWithFilters.getFilterQueries()) {
+				booleanQuery.add(filterQuery, BooleanClause.Occur.FILTER);
+			}
+
+			for (Query scoredFilterQuery : queryWithFilters.getScoredFilterQueries()) {
+				booleanQuery.add(scoredFilterQuery, BooleanClause.Occur.MUST);
+			}
+
+			booleanQuery.add(q, BooleanClause.Occur.MUST);
+
+			q = booleanQuery.build();
+		}
+		return q;
+	}
+
+	private List<AnalysisHandler> getAnalysisHandlerList(IndexReader indexReader, List<AnalysisRequest> analysisRequests) throws Exception {
 		if (analysisRequests.isEmpty()) {
 			return Collections.emptyList();
 		}
@@ -388,7 +753,7 @@ public class LumongoSegment {
 				}
 			}
 			System.out.println(analysisRequest.getAnalyzerOverride());
-			AnalysisHandler analysisHandler = new AnalysisHandler(directoryReader, analyzer, indexConfig, analysisRequest);
+			AnalysisHandler analysisHandler = new AnalysisHandler(indexReader, analyzer, indexConfig, analysisRequest);
 			analysisHandlerList.add(analysisHandler);
 		}
 		return analysisHandlerList;
@@ -415,7 +780,19 @@ public class LumongoSegment {
 		return highlighterList;
 	}
 
-	private PerFieldSimilarityWrapper getSimilarity(final QueryWithFilters queryWithFilters) {
+	private PerFieldSimilarityWrapper getSimilarity(Map<String, AnalyzerSettings.Similarity> similarityOverrideMap) {
+		PerFieldSimilarityWrapper similarity = similarityCache.get(similarityOverrideMap);
+		if (similarity == null) {
+			if (similarityCache.size() >= MAX_CACHED_SIMILARITIES) {
+				similarityCache.clear();
+			}
+			Map<String, AnalyzerSettings.Similarity> key = new HashMap<>(similarityOverrideMap);
+			similarity = similarityCache.computeIfAbsent(key, this::createSimilarity);
+		}
+		return similarity;
+	}
+
+	private PerFieldSimilarityWrapper createSimilarity(final Map<String, AnalyzerSettings.Similarity> similarityOverrideMap) {
 		return new PerFieldSimilarityWrapper() {
 			@Override
 			public Similarity get(String name) {
@@ -426,22 +803,25 @@ public class LumongoSegment {
 					similarity = analyzerSettings.getSimilarity();
 				}
 
-				AnalyzerSettings.Similarity fieldSimilarityOverride = queryWithFilters.getFieldSimilarityOverride(name);
+				AnalyzerSettings.Similarity fieldSimilarityOverride = similarityOverrideMap.get(name);
+				if (fieldSimilarityOverride == null) {
+					fieldSimilarityOverride = similarityOverrideMap.get("*");
+				}
 				if (fieldSimilarityOverride != null) {
 					similarity = fieldSimilarityOverride;
 				}
 
 				if (AnalyzerSettings.Similarity.TFIDF.equals(similarity)) {
-					return new ClassicSimilarity();
+					return TFIDF_SIMILARITY;
 				}
 				else if (AnalyzerSettings.Similarity.BM25.equals(similarity)) {
-					return new BM25Similarity();
+					return BM25_SIMILARITY;
 				}
 				else if (AnalyzerSettings.Similarity.CONSTANT.equals(similarity)) {
-					return new ConstantSimilarity();
+					return CONSTANT_SIMILARITY;
 				}
 				else if (AnalyzerSettings.Similarity.TF.equals(similarity)) {
-					return new TFSimilarity();
+					return TF_SIMILARITY;
 				}
 				else {
 					throw new RuntimeException("Unknown similarity type <" + similarity + ">");
@@ -450,12 +830,21 @@ public class LumongoSegment {
 		};
 	}
 
-	private void searchWithFacets(FacetRequest facetRequest, Query q, IndexSearcher indexSearcher, TopDocsCollector<?> collector,
+	private void addFacets(FacetRequest facetRequest, IndexReader indexReader, SegmentCollectors segmentCollectors,
 			SegmentResponse.Builder segmentReponseBuilder) throws Exception {
-		FacetsCollector facetsCollector = new FacetsCollector();
-		indexSearcher.search(q, MultiCollector.wrap(collector, facetsCollector));
 
-		Facets facets = new FastTaxonomyFacetCounts(taxoReader, facetsConfig, facetsCollector);
+		NumericFacetCollector numericFacetCollector = segmentCollectors.getNumericFacetCollector();
+		if (numericFacetCollector != null) {
+			segmentReponseBuilder.addAllStatResult(numericFacetCollector.getStatResults());
+			segmentReponseBuilder.addAllRangeResult(numericFacetCollector.getRangeResults());
+		}
+
+		FacetsCollector facetsCollector = segmentCollectors.getFacetsCollector();
+		if (facetsCollector == null) {
+			return;
+		}
+
+		Facets facets = getFacets(indexReader, facetsCollector);
 
 		for (CountRequest countRequest : facetRequest.getCountRequestList()) {
 
@@ -474,19 +863,7 @@ public class LumongoSegment {
 				}
 			}
 
-			int numOfFacets;
-			if (indexConfig.getNumberOfSegments() > 1) {
-				if (countRequest.getSegmentFacets() != 0) {
-					numOfFacets = countRequest.getSegmentFacets();
-				}
-				else {
-					numOfFacets = countRequest.getMaxFacets() * 8;
-				}
-
-			}
-			else {
-				numOfFacets = countRequest.getMaxFacets();
-			}
+			int numOfFacets = FacetRefiner.getSegmentFacets(countRequest, indexConfig.getNumberOfSegments());
 
 			FacetResult facetResult = null;
 
@@ -494,12 +871,19 @@ public class LumongoSegment {
 
 				if (indexConfig.getNumberOfSegments() > 1) {
 					if (countRequest.hasSegmentFacets() && countRequest.getSegmentFacets() == 0) {
-						//TODO: this not ideal
-						numOfFacets = taxoReader.getSize();
+						//TODO: this not ideal, use refine for exact top facets
+						numOfFacets = getFacetsSize(indexReader);
 					}
 				}
 
-				facetResult = facets.getTopChildren(numOfFacets, label);
+				if (facets != null) {
+					facetResult = facets.getTopChildren(numOfFacets, label);
+				}
+			}
+			catch (IllegalArgumentException e) {
+				if (!isFacetNotIndexed(facets, e)) {
+					throw e;
+				}
 			}
 			catch (UncheckedExecutionException e) {
 				Throwable cause = e.getCause();
@@ -526,9 +910,102 @@ public class LumongoSegment {
 		}
 	}
 
+	/**
+	 * Counts the given facet values exactly for the documents matching the query, used to refine the facets the segment did not return
+	 * in its top facets
+	 * @param facetGroups - count request and the facet values to count for each facet
+	 * @return the facet groups with the count of each value, zero for values not in the segment
+	 */
+	public List<FacetGroup> refineFacets(QueryWithFilters queryWithFilters, List<FacetGroup> facetGroups) throws Exception {
+		reopenIndexWritersIfNecessary();
+
+		openReaderIfChanges();
+
+		SearcherManager manager = searcherManager;
+		IndexSearcher indexSearcher = manager.acquire();
+		try {
+			Query q = getFilteredQuery(queryWithFilters);
+
+			FacetsCollector facetsCollector = new FacetsCollector();
+			indexSearcher.search(q, facetsCollector);
+
+			Facets facets = getFacets(indexSearcher.getIndexReader(), facetsCollector);
+
+			List<FacetGroup> refined = new ArrayList<>(facetGroups.size());
+			for (FacetGroup facetGroup : facetGroups) {
+				String label = facetGroup.getCountRequest().getFacetField().getLabel();
+
+				FacetGroup.Builder fg = FacetGroup.newBuilder().setCountRequest(facetGroup.getCountRequest());
+				for (FacetCount facetCount : facetGroup.getFacetCountList()) {
+					long count = 0;
+					if (facets != null) {
+						try {
+							//values missing from the segment are returned as -1
+							count = Math.max(0, facets.getSpecificValue(label, facetCount.getFacet()).longValue());
+						}
+						catch (IllegalArgumentException e) {
+							if (!isFacetNotIndexed(facets, e)) {
+								throw e;
+							}
+						}
+					}
+					fg.addFacetCount(FacetCount.newBuilder().setFacet(facetCount.getFacet()).setCount(count));
+				}
+				refined.add(fg.build());
+			}
+			return refined;
+		}
+		finally {
+			manager.release(indexSearcher);
+		}
+	}
+
+	/**
+	 * @return facet counts for the collected documents, null if no facets have been indexed into the segment
+	 */
+	private Facets getFacets(IndexReader indexReader, FacetsCollector facetsCollector) throws IOException {
+		if (IndexSettings.FacetMode.SORTED_SET_DOC_VALUES.equals(facetMode)) {
+			try {
+				return new SortedSetDocValuesFacetCounts(getFacetsReaderState(indexReader), facetsCollector);
+			}
+			catch (IllegalArgumentException e) {
+				//no facets have been indexed into the segment
+				return null;
+			}
+		}
+		return new FastTaxonomyFacetCounts(taxoReader, facetsConfig, facetsCollector);
+	}
+
+	private int getFacetsSize(IndexReader indexReader) throws IOException {
+		if (IndexSettings.FacetMode.SORTED_SET_DOC_VALUES.equals(facetMode)) {
+			return getFacetsReaderState(indexReader).getSize();
+		}
+		return taxoReader.getSize();
+	}
+
+	private static boolean isFacetNotIndexed(Facets facets, IllegalArgumentException e) {
+		//sorted set doc values facets fail for a facet that has no values in the segment
+		return facets instanceof SortedSetDocValuesFacetCounts && e.getMessage() != null && e.getMessage().contains("was not indexed");
+	}
+
+	/**
+	 * The facet ordinals of a reader are built once and reused until the searcher is refreshed to a new reader
+	 */
+	private SortedSetDocValuesReaderState getFacetsReaderState(IndexReader indexReader) throws IOException {
+		SortedSetDocValuesReaderState state = facetsReaderState;
+		if (state == null || state.getReader() != indexReader) {
+			state = new DefaultSortedSetDocValuesReaderState(indexReader);
+			facetsReaderState = state;
+		}
+		return state;
+	}
+
 	private TopDocsCollector<?> getSortingCollector(SortRequest sortRequest, int hasMoreAmount, FieldDoc after) throws Exception {
+		return TopFieldCollector.create(getSort(sortRequest), hasMoreAmount, after, true, true, true);
+	}
+
+	private Sort getSort(SortRequest sortRequest) throws Exception {
 		List<SortField> sortFields = new ArrayList<>();
-		TopDocsCollector<?> collector;
 		for (FieldSort fs : sortRequest.getFieldSortList()) {
 			boolean reverse = Direction.DESCENDING.equals(fs.getDirection());
 
@@ -576,26 +1053,18 @@ public class LumongoSegment {
 		}
 		Sort sort = new Sort();
 		sort.setSort(sortFields.toArray(new SortField[sortFields.size()]));
-
-		collector = TopFieldCollector.create(sort, hasMoreAmount, after, true, true, true);
-		return collector;
+		return sort;
 	}
 
 	private void openReaderIfChanges() throws IOException {
-		DirectoryReader newDirectoryReader = DirectoryReader
-				.openIfChanged(directoryReader, indexWriter, indexConfig.getIndexSettings().getApplyUncommittedDeletes());
-		if (newDirectoryReader != null) {
-			directoryReader = newDirectoryReader;
-			QueryResultCache qrc = queryResultCache;
-			if (qrc != null) {
-				qrc.clear();
-			}
+		//cached query results are checked against the leaves of the new searcher when they are used
+		searcherManager.maybeRefreshBlocking();
 
-		}
-
-		DirectoryTaxonomyReader newone = TaxonomyReader.openIfChanged(taxoReader);
-		if (newone != null) {
-			taxoReader = newone;
+		if (taxoReader != null) {
+			DirectoryTaxonomyReader newone = TaxonomyReader.openIfChanged(taxoReader);
+			if (newone != null) {
+				taxoReader = newone;
+			}
 		}
 	}
 
@@ -604,17 +1073,7 @@ public class LumongoSegment {
 			List<AnalysisHandler> analysisHandlerList) throws Exception {
 		int docId = results[i].doc;
 
-		Set<String> fieldsToFetch = fetchSet;
-		if (indexConfig.getIndexSettings().getStoreDocumentInIndex()) {
-			if (FetchType.FULL.equals(resultFetchType)) {
-				fieldsToFetch = fetchSetWithDocument;
-			}
-			else if (FetchType.META.equals(resultFetchType)) {
-				fieldsToFetch = fetchSetWithMeta;
-			}
-		}
-
-		Document d = is.doc(docId, fieldsToFetch);
+		Document d = is.doc(docId, getFieldsToFetch(resultFetchType));
 
 		IndexableField f = d.getField(LumongoConstants.TIMESTAMP_FIELD);
 		long timestamp = f.numericValue().longValue();
@@ -651,6 +1110,18 @@ public class LumongoSegment {
 		return srBuilder;
 	}
 
+	private Set<String> getFieldsToFetch(FetchType resultFetchType) {
+		if (indexConfig.getIndexSettings().getStoreDocumentInIndex()) {
+			if (FetchType.FULL.equals(resultFetchType)) {
+				return fetchSetWithDocument;
+			}
+			else if (FetchType.META.equals(resultFetchType)) {
+				return fetchSetWithMeta;
+			}
+		}
+		return fetchSet;
+	}
+
 	private void handleStoredDoc(ScoredResult.Builder srBuilder, String uniqueId, Document d, FetchType resultFetchType, List<String> fieldsToReturn,
 			List<String> fieldsToMask, List<LumongoHighlighter> highlighterList, List<AnalysisHandler> analysisHandlerList) throws Exception {
 
@@ -793,31 +1264,80 @@ public class LumongoSegment {
 	public ResultDocument getSourceDocument(String uniqueId, Long timestamp, FetchType resultFetchType, List<String> fieldsToReturn, List<String> fieldsToMask)
 			throws Exception {
 
-		ResultDocument rd = null;
+		ResultDocument rd;
 
 		if (indexConfig.getIndexSettings().getStoreDocumentInMongo()) {
 			rd = documentStorage.getSourceDocument(uniqueId, resultFetchType);
 		}
 		else {
+			rd = getStoredDocument(uniqueId, resultFetchType);
+		}
+
+		return filterSourceDocument(uniqueId, rd, fieldsToReturn, fieldsToMask);
+	}
+
+	/**
+	 * Fetches the documents of many fetch requests for this segment.  Documents stored in the index are read with a single searcher in doc id order
+	 * so the stored fields reader moves forward through the segment instead of seeking back and forth.
+	 * @return the documents in the order of the requests
+	 */
+	public List<ResultDocument> getSourceDocuments(List<FetchRequest> fetchRequests) throws Exception {
+		ResultDocument[] resultDocuments = new ResultDocument[fetchRequests.size()];
+
+		if (indexConfig.getIndexSettings().getStoreDocumentInMongo()) {
+			for (int r = 0; r < resultDocuments.length; r++) {
+				FetchRequest fetchRequest = fetchRequests.get(r);
+				resultDocuments[r] = documentStorage.getSourceDocument(fetchRequest.getUniqueId(), fetchRequest.getResultFetchType());
+			}
+		}
+		else {
+			reopenIndexWritersIfNecessary();
+
+			openReaderIfChanges();
 
-			Query query = new TermQuery(new org.apache.lucene.index.Term(LumongoConstants.ID_FIELD, uniqueId));
+			SearcherManager manager = searcherManager;
+			IndexSearcher sharedSearcher = manager.acquire();
+			try {
+				IndexReader indexReader = sharedSearcher.getIndexReader();
+
+				long[] docIdToRequest = new long[fetchRequests.size()];
+				int found = 0;
+				for (int r = 0; r < resultDocuments.length; r++) {
+					int docId = getDocId(indexReader, fetchRequests.get(r).getUniqueId());
+					if (docId >= 0) {
+						docIdToRequest[found++] = ((long) docId << 32) | r;
+					}
+				}
+				Arrays.sort(docIdToRequest, 0, found);
 
-			QueryWithFilters queryWithFilters = new QueryWithFilters(query);
+				for (int f = 0; f < found; f++) {
+					int docId = (int) (docIdToRequest[f] >>> 32);
+					int r = (int) docIdToRequest[f];
+					FetchRequest fetchRequest = fetchRequests.get(r);
 
-			SegmentResponse segmentResponse = this
-					.querySegment(queryWithFilters, 1, null, null, null, null, resultFetchType, fieldsToReturn, fieldsToMask, Collections.emptyList(),
-							Collections.emptyList(), false);
+					Document d = indexReader.document(docId, getFieldsToFetch(fetchRequest.getResultFetchType()));
 
-			List<ScoredResult> scoredResultList = segmentResponse.getScoredResultList();
-			if (!scoredResultList.isEmpty()) {
-				ScoredResult scoredResult = scoredResultList.iterator().next();
-				if (scoredResult.hasResultDocument()) {
-					rd = scoredResult.getResultDocument();
+					ScoredResult.Builder srBuilder = ScoredResult.newBuilder();
+					handleStoredDoc(srBuilder, fetchRequest.getUniqueId(), d, fetchRequest.getResultFetchType(), Collections.emptyList(),
+							Collections.emptyList(), Collections.emptyList(), Collections.emptyList());
+					resultDocuments[r] = srBuilder.getResultDocument();
 				}
 			}
+			finally {
+				manager.release(sharedSearcher);
+			}
+		}
 
+		List<ResultDocument> filtered = new ArrayList<>(resultDocuments.length);
+		for (int r = 0; r < resultDocuments.length; r++) {
+			FetchRequest fetchRequest = fetchRequests.get(r);
+			filtered.add(filterSourceDocument(fetchRequest.getUniqueId(), resultDocuments[r], fetchRequest.getDocumentFieldsList(),
+					fetchRequest.getDocumentMaskedFieldsList()));
 		}
+		return filtered;
+	}
 
+	private ResultDocument filterSourceDocument(String uniqueId, ResultDocument rd, List<String> fieldsToReturn, List<String> fieldsToMask) {
 		if (rd != null) {
 			if (!fieldsToMask.isEmpty() || !fieldsToReturn.isEmpty()) {
 				org.bson.Document mongoDocument = ResultHelper.getDocumentFromResultDocument(rd);
@@ -832,7 +1352,85 @@ public class LumongoSegment {
 		rdBuilder.setUniqueId(uniqueId);
 		rdBuilder.setIndexName(indexName);
 		return rdBuilder.build();
+	}
+
+	/**
+	 * Reads the document stored in the index for the unique id by looking the id up directly in the terms of each leaf instead of running a query
+	 * @return the stored document or null if the unique id is not in the segment
+	 */
+	private ResultDocument getStoredDocument(String uniqueId, FetchType resultFetchType) throws Exception {
+		reopenIndexWritersIfNecessary();
+
+		openReaderIfChanges();
+
+		SearcherManager manager = searcherManager;
+		IndexSearcher sharedSearcher = manager.acquire();
+		try {
+			IndexReader indexReader = sharedSearcher.getIndexReader();
+			int docId = getDocId(indexReader, uniqueId);
+			if (docId < 0) {
+				return null;
+			}
+
+			Document d = indexReader.document(docId, getFieldsToFetch(resultFetchType));
 
+			ScoredResult.Builder srBuilder = ScoredResult.newBuilder();
+			handleStoredDoc(srBuilder, uniqueId, d, resultFetchType, Collections.emptyList(), Collections.emptyList(), Collections.emptyList(),
+					Collections.emptyList());
+			return srBuilder.getResultDocument();
+		}
+		finally {
+			manager.release(sharedSearcher);
+		}
+	}
+
+	/**
+	 * @return the doc id of the live document with the unique id in the reader or -1 if there is none
+	 */
+	private int getDocId(IndexReader indexReader, String uniqueId) throws IOException {
+		List<LeafReaderContext> leaves = indexReader.leaves();
+
+		//a cached location is valid while the leaf it points to is unchanged, a leaf gets a new cache key when documents in it are deleted
+		IdLocation idLocation = idLocationCache.getIfPresent(uniqueId);
+		if (idLocation != null && idLocation.leafOrd < leaves.size()) {
+			LeafReaderContext leaf = leaves.get(idLocation.leafOrd);
+			LeafReader.CacheHelper cacheHelper = leaf.reader().getReaderCacheHelper();
+			if (cacheHelper != null && cacheHelper.getKey() == idLocation.leafKey) {
+				return leaf.docBase + idLocation.doc;
+			}
+		}
+
+		BytesRef id = new BytesRef(uniqueId);
+		PostingsEnum postingsEnum = null;
+
+		//newest leaves first, a recently updated document is in one of them
+		for (int i = leaves.size() - 1; i >= 0; i--) {
+			LeafReaderContext leaf = leaves.get(i);
+			LeafReader leafReader = leaf.reader();
+			Terms terms = leafReader.terms(LumongoConstants.ID_FIELD);
+			if (terms == null) {
+				continue;
+			}
+
+			TermsEnum termsEnum = terms.iterator();
+			if (!termsEnum.seekExact(id)) {
+				continue;
+			}
+
+			Bits liveDocs = leafReader.getLiveDocs();
+			postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+			for (int doc = postingsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postingsEnum.nextDoc()) {
+				if (liveDocs == null || liveDocs.get(doc)) {
+					LeafReader.CacheHelper cacheHelper = leafReader.getReaderCacheHelper();
+					if (cacheHelper != null) {
+						idLocationCache.put(uniqueId, new IdLocation(i, cacheHelper.getKey(), doc));
+					}
+					return leaf.docBase + doc;
+				}
+			}
+		}
+
+		return -1;
 	}
 
 	private ResultDocument filterDocument(ResultDocument rd, List<String> fieldsToReturn, List<String> fieldsToMask, org.bson.Document mongoDocument) {
@@ -860,10 +1458,21 @@ public class LumongoSegment {
 	}
 
 	private void possibleCommit() throws IOException {
+		possibleCommit(1);
+	}
+
+	/**
+	 * Records a number of changes and commits if the segment commit interval was reached by them
+	 * @param changes - number of documents changed
+	 * @throws IOException
+	 */
+	public void possibleCommit(int changes) throws IOException {
 		lastChange = System.currentTimeMillis();
+		indexRate.add(changes);
 
-		long count = counter.incrementAndGet();
-		if ((count % indexConfig.getIndexSettings().getSegmentCommitInterval()) == 0) {
+		int segmentCommitInterval = indexConfig.getIndexSettings().getSegmentCommitInterval();
+		long count = counter.addAndGet(changes);
+		if ((count / segmentCommitInterval) != ((count - changes) / segmentCommitInterval)) {
 			forceCommit();
 		}
 
@@ -873,7 +1482,9 @@ public class LumongoSegment {
 		log.info("Committing segment <" + segmentNumber + "> for index <" + indexName + ">");
 		long currentTime = System.currentTimeMillis();
 		indexWriter.commit();
-		taxoWriter.commit();
+		if (taxoWriter != null) {
+			taxoWriter.commit();
+		}
 
 		lastCommit = currentTime;
 
@@ -896,20 +1507,37 @@ public class LumongoSegment {
 	}
 
 	public void close(boolean terminate) throws IOException {
+		//cursors still open pin a reader on files the next owner of the segment may delete
+		for (QueryCursor cursor : queryCursors) {
+			cursor.close();
+		}
+
 		if (!terminate) {
 			forceCommit();
 		}
 
+		searcherManager.close();
+
 		Directory directory = indexWriter.getDirectory();
 		indexWriter.close();
 		directory.close();
 
-		directory = taxoWriter.getDirectory();
-		taxoWriter.close();
-		directory.close();
+		if (taxoWriter != null) {
+			directory = taxoWriter.getDirectory();
+			taxoWriter.close();
+			directory.close();
+		}
 	}
 
 	public void index(String uniqueId, long timestamp, org.bson.Document mongoDocument, List<Metadata> metadataList) throws Exception {
+		indexDocument(uniqueId, timestamp, mongoDocument, metadataList);
+		possibleCommit();
+	}
+
+	/**
+	 * Indexes a document without checking if a commit is due, used for batches that call {@link #possibleCommit(int)} once for the batch
+	 */
+	public void indexDocument(String uniqueId, long timestamp, org.bson.Document mongoDocument, List<Metadata> metadataList) throws Exception {
 
 		reopenIndexWritersIfNecessary();
 
@@ -935,13 +1563,24 @@ public class LumongoSegment {
 
 		}
 
-		luceneDocument = facetsConfig.build(taxoWriter, luceneDocument);
+		//kept so a split builds the facets of the document with the taxonomy of the segment it moves to
+		Document unbuiltDocument = luceneDocument;
+
+		if (IndexSettings.FacetMode.TAXONOMY.equals(facetMode)) {
+			luceneDocument = facetsConfig.build(taxoWriter, luceneDocument);
+		}
+		else {
+			luceneDocument = facetsConfig.build(luceneDocument);
+		}
 
 		Term term = new Term(LumongoConstants.ID_FIELD, uniqueId);
 
 		indexWriter.updateDocument(term, luceneDocument);
 
-		possibleCommit();
+		SegmentSplit split = segmentSplit;
+		if (split != null) {
+			split.updateDocument(uniqueId, unbuiltDocument);
+		}
 	}
 
 	private void addStoredFieldsForDocument(org.bson.Document mongoDocument, Document luceneDocument) throws Exception {
@@ -1179,7 +1818,12 @@ public class LumongoSegment {
 
 	private void addFacet(Document doc, String facetName, String value) {
 		if (!value.isEmpty()) {
-			doc.add(new FacetField(facetName, value));
+			if (IndexSettings.FacetMode.TAXONOMY.equals(facetMode)) {
+				doc.add(new FacetField(facetName, value));
+			}
+			else {
+				doc.add(new SortedSetDocValuesFacetField(facetName, value));
+			}
 			doc.add(new StringField(FacetsConfig.DEFAULT_INDEX_FIELD_NAME + "." + facetName, new BytesRef(value), Store.NO));
 		}
 	}
@@ -1187,10 +1831,92 @@ public class LumongoSegment {
 	public void deleteDocument(String uniqueId) throws Exception {
 		Term term = new Term(LumongoConstants.ID_FIELD, uniqueId);
 		indexWriter.deleteDocuments(term);
+
+		SegmentSplit split = segmentSplit;
+		if (split != null) {
+			split.deleteDocuments(Collections.singletonList(uniqueId));
+		}
 		possibleCommit();
 
 	}
 
+	/**
+	 * Deletes the documents with a single call to the index writer and checks if a commit is due once for all of them
+	 */
+	public void deleteDocuments(List<String> uniqueIds) throws Exception {
+		Term[] terms = new Term[uniqueIds.size()];
+		for (int t = 0; t < terms.length; t++) {
+			terms[t] = new Term(LumongoConstants.ID_FIELD, uniqueIds.get(t));
+		}
+		indexWriter.deleteDocuments(terms);
+
+		SegmentSplit split = segmentSplit;
+		if (split != null) {
+			split.deleteDocuments(uniqueIds);
+		}
+		possibleCommit(terms.length);
+	}
+
+	/**
+	 * Returns the unique ids of the documents in the segment matching the query
+	 */
+	public List<String> getUniqueIds(QueryWithFilters queryWithFilters) throws Exception {
+		reopenIndexWritersIfNecessary();
+
+		return getUniqueIds(getFilteredQuery(queryWithFilters));
+	}
+
+	/**
+	 * Returns the unique ids from the given unique ids of the documents that still match the query
+	 */
+	public List<String> getUniqueIds(QueryWithFilters queryWithFilters, Collection<String> uniqueIds) throws Exception {
+		List<BytesRef> terms = new ArrayList<>(uniqueIds.size());
+		for (String uniqueId : uniqueIds) {
+			terms.add(new BytesRef(uniqueId));
+		}
+
+		BooleanQuery.Builder builder = new BooleanQuery.Builder();
+		builder.add(getFilteredQuery(queryWithFilters), BooleanClause.Occur.MUST);
+		builder.add(new TermInSetQuery(LumongoConstants.ID_FIELD, terms), BooleanClause.Occur.FILTER);
+		return getUniqueIds(builder.build());
+	}
+
+	private List<String> getUniqueIds(Query q) throws Exception {
+		openReaderIfChanges();
+
+		UniqueIdCollector collector = new UniqueIdCollector();
+		SearcherManager manager = searcherManager;
+		IndexSearcher indexSearcher = manager.acquire();
+		try {
+			indexSearcher.search(q, collector);
+		}
+		finally {
+			manager.release(indexSearcher);
+		}
+		return collector.uniqueIds;
+	}
+
+	private class UniqueIdCollector extends SimpleCollector {
+
+		private final List<String> uniqueIds = new ArrayList<>();
+		private LeafReader leafReader;
+
+		@Override
+		protected void doSetNextReader(LeafReaderContext context) {
+			leafReader = context.reader();
+		}
+
+		@Override
+		public void collect(int doc) throws IOException {
+			uniqueIds.add(leafReader.document(doc, idFetchSet).get(LumongoConstants.ID_FIELD));
+		}
+
+		@Override
+		public boolean needsScores() {
+			return false;
+		}
+	}
+
 	public void optimize() throws IOException {
 		lastChange = System.currentTimeMillis();
 		indexWriter.forceMerge(1);
@@ -1205,13 +1931,20 @@ public class LumongoSegment {
 
 		Set<String> fields = new HashSet<>();
 
-		for (LeafReaderContext subReaderContext : directoryReader.leaves()) {
-			FieldInfos fieldInfos = subReaderContext.reader().getFieldInfos();
-			for (FieldInfo fi : fieldInfos) {
-				String fieldName = fi.name;
-				fields.add(fieldName);
+		SearcherManager manager = searcherManager;
+		IndexSearcher indexSearcher = manager.acquire();
+		try {
+			for (LeafReaderContext subReaderContext : indexSearcher.getIndexReader().leaves()) {
+				FieldInfos fieldInfos = subReaderContext.reader().getFieldInfos();
+				for (FieldInfo fi : fieldInfos) {
+					String fieldName = fi.name;
+					fields.add(fieldName);
+				}
 			}
 		}
+		finally {
+			manager.release(indexSearcher);
+		}
 
 		fields.forEach(builder::addFieldName);
 
@@ -1221,12 +1954,131 @@ public class LumongoSegment {
 	public void clear() throws IOException {
 		// index has write lock so none needed here
 		indexWriter.deleteAll();
+
+		SegmentSplit split = segmentSplit;
+		if (split != null) {
+			split.deleteAll();
+		}
+		forceCommit();
+	}
+
+	/**
+	 * Starts splitting the segment into the new segments of a reshard, called under the index write lock so no change is made between the point in
+	 * time reader copied to the targets and the start of the mirroring of changes to them
+	 * @param targetWriters - writers of the targets by segment number, cleared of any documents
+	 * @param targetTaxoDirectories - directories of the taxonomies of the targets by segment number, not used if the index does not facet with a
+	 *                              taxonomy
+	 */
+	public void startSplit(int newNumberOfSegments, Map<Integer, IndexWriter> targetWriters, Map<Integer, Directory> targetTaxoDirectories)
+			throws Exception {
+		reopenIndexWritersIfNecessary();
+
+		Map<Integer, DirectoryTaxonomyWriter> targetTaxoWriters = new HashMap<>();
+		if (taxoWriter != null) {
+			//the copied documents keep the ordinals of this taxonomy so every target starts from a copy of its last commit
+			taxoWriter.commit();
+			Directory taxoDirectory = taxoWriter.getDirectory();
+			Collection<String> files = SegmentInfos.readLatestCommit(taxoDirectory).files(true);
+			for (Map.Entry<Integer, Directory> entry : targetTaxoDirectories.entrySet()) {
+				Directory targetTaxoDirectory = entry.getValue();
+				for (String file : targetTaxoDirectory.listAll()) {
+					targetTaxoDirectory.deleteFile(file);
+				}
+				for (String file : files) {
+					targetTaxoDirectory.copyFrom(taxoDirectory, file, file, IOContext.DEFAULT);
+				}
+				targetTaxoWriters.put(entry.getKey(), new DirectoryTaxonomyWriter(targetTaxoDirectory));
+			}
+		}
+		else {
+			for (Directory targetTaxoDirectory : targetTaxoDirectories.values()) {
+				targetTaxoDirectory.close();
+			}
+		}
+
+		DirectoryReader reader = DirectoryReader.open(indexWriter);
+		this.segmentSplit = new SegmentSplit(segmentNumber, newNumberOfSegments, reader, facetsConfig, targetWriters, targetTaxoWriters);
+		log.info("Started splitting segment <" + segmentNumber + "> of index <" + indexName + "> into segments <" + segmentSplit.getTargetSegments() + ">");
+	}
+
+	/**
+	 * Copies the documents of the segment when the split started to the targets, called without the index lock
+	 */
+	public void copySplit() throws IOException {
+		SegmentSplit split = segmentSplit;
+		long start = System.currentTimeMillis();
+		long copied = split.copy();
+		log.info("Copied <" + copied + "> documents from segment <" + segmentNumber + "> of index <" + indexName + "> to segments <" + split
+				.getTargetSegments() + "> in <" + (System.currentTimeMillis() - start) + "ms>");
+	}
+
+	/**
+	 * Commits and closes the targets of the split and stops mirroring changes to them, called under the index write lock
+	 * @return the segments the segment was split into
+	 */
+	public Set<Integer> finishSplit() throws IOException {
+		SegmentSplit split = segmentSplit;
+		if (split == null) {
+			throw new IllegalStateException("Segment <" + segmentNumber + "> of index <" + indexName + "> is not splitting");
+		}
+		split.finish();
+		this.segmentSplit = null;
+		return split.getTargetSegments();
+	}
+
+	/**
+	 * Closes the targets of the split without committing the changes since the copy and stops mirroring changes to them
+	 */
+	public void abortSplit() {
+		SegmentSplit split = segmentSplit;
+		if (split != null) {
+			this.segmentSplit = null;
+			split.abort();
+			log.info("Aborted splitting segment <" + segmentNumber + "> of index <" + indexName + ">");
+		}
+	}
+
+	public boolean isSplitting() {
+		return segmentSplit != null;
+	}
+
+	/**
+	 * Deletes the documents that moved to other segments with the new number of segments and commits
+	 */
+	public void deleteMovedDocuments(int newNumberOfSegments) throws IOException {
+		int deleted = SegmentSplit.deleteMovedDocuments(indexWriter, segmentNumber, newNumberOfSegments);
+		forceCommit();
+		log.info("Deleted <" + deleted + "> documents moved from segment <" + segmentNumber + "> of index <" + indexName + ">");
+	}
+
+	/**
+	 * Adds the documents of a segment split from this segment back to it, the facet ordinals of the taxonomy of the split segment are mapped to this
+	 * segment's taxonomy.  Called under the index write lock after the documents that moved were deleted from this segment.
+	 */
+	public void mergeSegment(Directory indexDirectory, Directory taxoDirectory) throws IOException {
+		if (taxoWriter != null) {
+			TaxonomyMergeUtils.merge(indexDirectory, taxoDirectory, new DirectoryTaxonomyWriter.MemoryOrdinalMap(), indexWriter, taxoWriter, facetsConfig);
+		}
+		else {
+			indexWriter.addIndexes(indexDirectory);
+		}
 		forceCommit();
 	}
 
 	public GetTermsResponse getTerms(GetTermsRequest request) throws IOException {
 		openReaderIfChanges();
 
+		SearcherManager manager = searcherManager;
+		IndexSearcher indexSearcher = manager.acquire();
+		try {
+			return getTerms(request, indexSearcher.getIndexReader());
+		}
+		finally {
+			manager.release(indexSearcher);
+		}
+	}
+
+	private GetTermsResponse getTerms(GetTermsRequest request, IndexReader indexReader) throws IOException {
 		GetTermsResponse.Builder builder = GetTermsResponse.newBuilder();
 
 		String fieldName = request.getFieldName();
@@ -1242,7 +2094,7 @@ public class LumongoSegment {
 				termBytesList.add(termBytes);
 			}
 
-			for (LeafReaderContext subReaderContext : directoryReader.leaves()) {
+			for (LeafReaderContext subReaderContext : indexReader.leaves()) {
 				Terms terms = subReaderContext.reader().terms(fieldName);
 
 				if (terms != null) {
@@ -1292,7 +2144,7 @@ public class LumongoSegment {
 				termMatch = Pattern.compile(request.getTermMatch());
 			}
 
-			for (LeafReaderContext subReaderContext : directoryReader.leaves()) {
+			for (LeafReaderContext subReaderContext : indexReader.leaves()) {
 				Terms terms = subReaderContext.reader().terms(fieldName);
 
 				if (terms != null) {
@@ -1381,9 +2233,53 @@ public class LumongoSegment {
 	public SegmentCountResponse getNumberOfDocs() throws IOException {
 
 		openReaderIfChanges();
-		int count = directoryReader.numDocs();
+
+		int count;
+		SearcherManager manager = searcherManager;
+		IndexSearcher indexSearcher = manager.acquire();
+		try {
+			count = indexSearcher.getIndexReader().numDocs();
+		}
+		finally {
+			manager.release(indexSearcher);
+		}
 		return SegmentCountResponse.newBuilder().setNumberOfDocs(count).setSegmentNumber(segmentNumber).build();
 
 	}
 
+	/**
+	 * @return the documents, index bytes and recent query and index rates of the segment for balancing
+	 */
+	public SegmentLoad getSegmentLoad() throws IOException {
+		long sizeInBytes = getSizeInBytes(indexWriter.getDirectory());
+		if (taxoWriter != null) {
+			sizeInBytes += getSizeInBytes(taxoWriter.getDirectory());
+		}
+		return new SegmentLoad(indexName, segmentNumber, getNumberOfDocs().getNumberOfDocs(), sizeInBytes, queryRate.getRate(), indexRate.getRate());
+	}
+
+	private static long getSizeInBytes(Directory directory) throws IOException {
+		long sizeInBytes = 0;
+		for (String fileName : directory.listAll()) {
+			try {
+				sizeInBytes += directory.fileLength(fileName);
+			}
+			catch (IOException e) {
+				//file was deleted by a merge or commit since it was listed
+			}
+		}
+		return sizeInBytes;
+	}
+
+	private static class IdLocation {
+		private final int leafOrd;
+		private final Object leafKey;
+		private final int doc;
+
+		private IdLocation(int leafOrd, Object leafKey, int doc) {
+			this.leafOrd = leafOrd;
+			this.leafKey = leafKey;
+			this.doc = doc;
+		}
+	}
 }
@@ -0,0 +1,57 @@
+package org.lumongo.server.index;
+
+/**
+ * Time taken to load a segment on this node, split into warming the segment while the previous owner served it, waiting for the segment lock to be
+ * released by the previous owner and opening the segment
+ */
+public class SegmentLoadTime {
+
+	private final int segmentNumber;
+	private final long warmMs;
+	private final long warmedBytes;
+	private final long lockWaitMs;
+	private final long openMs;
+	private final long loadedAt;
+
+	public SegmentLoadTime(int segmentNumber, long warmMs, long warmedBytes, long lockWaitMs, long openMs) {
+		this.segmentNumber = segmentNumber;
+		this.warmMs = warmMs;
+		this.warmedBytes = warmedBytes;
+		this.lockWaitMs = lockWaitMs;
+		this.openMs = openMs;
+		this.loadedAt = System.currentTimeMillis();
+	}
+
+	public int getSegmentNumber() {
+		return segmentNumber;
+	}
+
+	/**
+	 * @return time spent warming the segment before the handoff, 0 if the segment was opened cold
+	 */
+	public long getWarmMs() {
+		return warmMs;
+	}
+
+	/**
+	 * @return bytes of hot index files read into the block cache before the handoff
+	 */
+	public long getWarmedBytes() {
+		return warmedBytes;
+	}
+
+	public long getLockWaitMs() {
+		return lockWaitMs;
+	}
+
+	public long getOpenMs() {
+		return openMs;
+	}
+
+	/**
+	 * @return time the segment finished loading in epoch milliseconds
+	 */
+	public long getLoadedAt() {
+		return loadedAt;
+	}
+}
@@ -0,0 +1,365 @@
+package org.lumongo.server.index;
+
+import org.apache.log4j.Logger;
+import org.apache.lucene.document.Document;
+import org.apache.lucene.facet.FacetsConfig;
+import org.apache.lucene.facet.taxonomy.directory.DirectoryTaxonomyWriter;
+import org.apache.lucene.index.CodecReader;
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.index.FilterCodecReader;
+import org.apache.lucene.index.IndexWriter;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.PostingsEnum;
+import org.apache.lucene.index.SlowCodecReaderWrapper;
+import org.apache.lucene.index.Term;
+import org.apache.lucene.index.Terms;
+import org.apache.lucene.index.TermsEnum;
+import org.apache.lucene.search.DocIdSetIterator;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.util.Bits;
+import org.apache.lucene.util.BytesRef;
+import org.apache.lucene.util.FixedBitSet;
+import org.lumongo.LumongoConstants;
+import org.lumongo.util.SegmentUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Splits a segment into the new segments of a reshard.  When the number of segments is multiplied every document of the segment routes to the
+ * segment itself or to one of its targets, the new segments with the same number modulo the old number of segments.  The documents of a point
+ * in time reader of the segment are copied to the targets with {@link IndexWriter#addIndexes(CodecReader...)} through readers that only keep the
+ * documents routing to each target.  Changes made to the segment after the point in time are mirrored to the targets until the cutover, queued
+ * while the copy runs so they apply after the copied documents.  The segment keeps every document until the cutover deletes the ones that moved.
+ */
+public class SegmentSplit {
+
+	private final static Logger log = Logger.getLogger(SegmentSplit.class);
+
+	private static final int DELETE_BATCH_SIZE = 1000;
+
+	@FunctionalInterface
+	private interface SplitOperation {
+		void apply() throws IOException;
+	}
+
+	/**
+	 * @return the segment the document routes to under the new number of segments
+	 */
+	public static int getTargetSegment(String uniqueId, int newNumberOfSegments) {
+		return SegmentUtil.findSegmentForUniqueId(uniqueId, newNumberOfSegments);
+	}
+
+	/**
+	 * Deletes the documents of the segment that route to another segment under the new number of segments
+	 * @return number of unique ids deleted
+	 */
+	public static int deleteMovedDocuments(IndexWriter indexWriter, int segmentNumber, int newNumberOfSegments) throws IOException {
+		List<Term> moved = new ArrayList<>();
+		try (DirectoryReader reader = DirectoryReader.open(indexWriter)) {
+			for (LeafReaderContext leaf : reader.leaves()) {
+				Terms terms = leaf.reader().terms(LumongoConstants.ID_FIELD);
+				if (terms != null) {
+					TermsEnum termsEnum = terms.iterator();
+					BytesRef term;
+					while ((term = termsEnum.next()) != null) {
+						if (getTargetSegment(term.utf8ToString(), newNumberOfSegments) != segmentNumber) {
+							moved.add(new Term(LumongoConstants.ID_FIELD, BytesRef.deepCopyOf(term)));
+						}
+					}
+				}
+			}
+		}
+
+		for (int start = 0; start < moved.size(); start += DELETE_BATCH_SIZE) {
+			List<Term> batch = moved.subList(start, Math.min(start + DELETE_BATCH_SIZE, moved.size()));
+			indexWriter.deleteDocuments(batch.toArray(new Term[batch.size()]));
+		}
+		return moved.size();
+	}
+
+	private final int segmentNumber;
+	private final int newNumberOfSegments;
+	private final DirectoryReader reader;
+	private final FacetsConfig facetsConfig;
+	private final Map<Integer, IndexWriter> targetWriters;
+	private final Map<Integer, DirectoryTaxonomyWriter> targetTaxoWriters;
+	private final ConcurrentLinkedQueue<SplitOperation> queuedOperations;
+	private final ReadWriteLock queueLock;
+	private volatile boolean copying;
+
+	/**
+	 * @param reader - point in time reader of the segment copied to the targets, closed by the split
+	 * @param targetWriters - empty writers of the targets by segment number
+	 * @param targetTaxoWriters - taxonomy writers of the targets holding a copy of the taxonomy of the segment, empty if the index does not facet
+	 *                          with a taxonomy
+	 */
+	public SegmentSplit(int segmentNumber, int newNumberOfSegments, DirectoryReader reader, FacetsConfig facetsConfig,
+			Map<Integer, IndexWriter> targetWriters, Map<Integer, DirectoryTaxonomyWriter> targetTaxoWriters) {
+		this.segmentNumber = segmentNumber;
+		this.newNumberOfSegments = newNumberOfSegments;
+		this.reader = reader;
+		this.facetsConfig = facetsConfig;
+		this.targetWriters = targetWriters;
+		this.targetTaxoWriters = targetTaxoWriters;
+		this.queuedOperations = new ConcurrentLinkedQueue<>();
+		this.queueLock = new ReentrantReadWriteLock();
+		this.copying = true;
+	}
+
+	public int getSegmentNumber() {
+		return segmentNumber;
+	}
+
+	public Set<Integer> getTargetSegments() {
+		return new TreeSet<>(targetWriters.keySet());
+	}
+
+	/**
+	 * Copies the documents of the point in time reader routing to each target, applies the changes queued during the copy and commits the targets.
+	 * Later changes are mirrored directly.
+	 * @return number of documents copied
+	 */
+	public long copy() throws IOException {
+		try {
+			long copied = copyReader();
+			applyQueuedOperations();
+			commit();
+			return copied;
+		}
+		finally {
+			reader.close();
+		}
+	}
+
+	private long copyReader() throws IOException {
+		Map<Integer, List<CodecReader>> targetReaders = new HashMap<>();
+		for (Integer targetSegment : targetWriters.keySet()) {
+			targetReaders.put(targetSegment, new ArrayList<>());
+		}
+
+		long copied = 0;
+		for (LeafReaderContext leaf : reader.leaves()) {
+			CodecReader codecReader = SlowCodecReaderWrapper.wrap(leaf.reader());
+			for (Map.Entry<Integer, FixedBitSet> entry : getTargetDocs(leaf.reader()).entrySet()) {
+				TargetCodecReader targetReader = new TargetCodecReader(codecReader, entry.getValue());
+				targetReaders.get(entry.getKey()).add(targetReader);
+				copied += targetReader.numDocs();
+			}
+		}
+
+		for (Integer targetSegment : targetWriters.keySet()) {
+			List<CodecReader> readers = targetReaders.get(targetSegment);
+			if (!readers.isEmpty()) {
+				targetWriters.get(targetSegment).addIndexes(readers.toArray(new CodecReader[readers.size()]));
+			}
+		}
+		return copied;
+	}
+
+	/**
+	 * @return the live documents of the leaf routing to each target by target segment number
+	 */
+	private Map<Integer, FixedBitSet> getTargetDocs(LeafReader leafReader) throws IOException {
+		Map<Integer, FixedBitSet> targetDocs = new HashMap<>();
+
+		Terms terms = leafReader.terms(LumongoConstants.ID_FIELD);
+		if (terms == null) {
+			return targetDocs;
+		}
+
+		Bits liveDocs = leafReader.getLiveDocs();
+		TermsEnum termsEnum = terms.iterator();
+		PostingsEnum postingsEnum = null;
+		BytesRef term;
+		while ((term = termsEnum.next()) != null) {
+			int targetSegment = getTargetSegment(term.utf8ToString(), newNumberOfSegments);
+			if (targetSegment != segmentNumber) {
+				FixedBitSet docs = targetDocs.computeIfAbsent(targetSegment, k -> new FixedBitSet(leafReader.maxDoc()));
+				postingsEnum = termsEnum.postings(postingsEnum, PostingsEnum.NONE);
+				for (int doc = postingsEnum.nextDoc(); doc != DocIdSetIterator.NO_MORE_DOCS; doc = postingsEnum.nextDoc()) {
+					if (liveDocs == null || liveDocs.get(doc)) {
+						docs.set(doc);
+					}
+				}
+			}
+		}
+		return targetDocs;
+	}
+
+	private void applyQueuedOperations() throws IOException {
+		SplitOperation operation;
+		while ((operation = queuedOperations.poll()) != null) {
+			operation.apply();
+		}
+
+		//changes still arriving are queued until the queue is drained under the lock so none apply out of order
+		queueLock.writeLock().lock();
+		try {
+			while ((operation = queuedOperations.poll()) != null) {
+				operation.apply();
+			}
+			copying = false;
+		}
+		finally {
+			queueLock.writeLock().unlock();
+		}
+	}
+
+	/**
+	 * Mirrors a document stored in the segment to the target it routes to
+	 * @param document - document before the facets are built, the facets are built for the taxonomy of the target
+	 */
+	public void updateDocument(String uniqueId, Document document) throws IOException {
+		int targetSegment = getTargetSegment(uniqueId, newNumberOfSegments);
+		IndexWriter targetWriter = targetWriters.get(targetSegment);
+		if (targetWriter == null) {
+			return;
+		}
+
+		DirectoryTaxonomyWriter targetTaxoWriter = targetTaxoWriters.get(targetSegment);
+		Term term = new Term(LumongoConstants.ID_FIELD, uniqueId);
+		submit(() -> targetWriter
+				.updateDocument(term, targetTaxoWriter != null ? facetsConfig.build(targetTaxoWriter, document) : facetsConfig.build(document)));
+	}
+
+	public void deleteDocuments(List<String> uniqueIds) throws IOException {
+		Map<Integer, List<Term>> targetTerms = new HashMap<>();
+		for (String uniqueId : uniqueIds) {
+			int targetSegment = getTargetSegment(uniqueId, newNumberOfSegments);
+			if (targetWriters.containsKey(targetSegment)) {
+				targetTerms.computeIfAbsent(targetSegment, k -> new ArrayList<>()).add(new Term(LumongoConstants.ID_FIELD, uniqueId));
+			}
+		}
+
+		for (Map.Entry<Integer, List<Term>> entry : targetTerms.entrySet()) {
+			IndexWriter targetWriter = targetWriters.get(entry.getKey());
+			Term[] terms = entry.getValue().toArray(new Term[entry.getValue().size()]);
+			submit(() -> targetWriter.deleteDocuments(terms));
+		}
+	}
+
+	public void deleteAll() throws IOException {
+		for (IndexWriter targetWriter : targetWriters.values()) {
+			submit(targetWriter::deleteAll);
+		}
+	}
+
+	private void submit(SplitOperation operation) throws IOException {
+		queueLock.readLock().lock();
+		try {
+			if (copying) {
+				queuedOperations.add(operation);
+				return;
+			}
+		}
+		finally {
+			queueLock.readLock().unlock();
+		}
+		operation.apply();
+	}
+
+	/**
+	 * Commits the targets, the taxonomies are committed first so the committed documents never reference missing ordinals
+	 */
+	private void commit() throws IOException {
+		for (DirectoryTaxonomyWriter targetTaxoWriter : targetTaxoWriters.values()) {
+			targetTaxoWriter.commit();
+		}
+		for (IndexWriter targetWriter : targetWriters.values()) {
+			targetWriter.commit();
+		}
+	}
+
+	/**
+	 * Commits the changes mirrored since the copy and closes the targets so they can be opened as segments
+	 */
+	public void finish() throws IOException {
+		commit();
+		for (DirectoryTaxonomyWriter targetTaxoWriter : targetTaxoWriters.values()) {
+			Directory directory = targetTaxoWriter.getDirectory();
+			targetTaxoWriter.close();
+			directory.close();
+		}
+		for (IndexWriter targetWriter : targetWriters.values()) {
+			Directory directory = targetWriter.getDirectory();
+			targetWriter.close();
+			directory.close();
+		}
+	}
+
+	/**
+	 * Closes the targets without committing the mirrored changes, the targets are cleared by the next reshard that opens them
+	 */
+	public void abort() {
+		try {
+			reader.close();
+		}
+		catch (Exception e) {
+			log.error("Failed to close split reader of segment <" + segmentNumber + ">: " + e.getClass().getSimpleName() + ": ", e);
+		}
+		for (DirectoryTaxonomyWriter targetTaxoWriter : targetTaxoWriters.values()) {
+			try {
+				Directory directory = targetTaxoWriter.getDirectory();
+				targetTaxoWriter.rollback();
+				directory.close();
+			}
+			catch (Exception e) {
+				log.error("Failed to close split taxonomy of segment <" + segmentNumber + ">: " + e.getClass().getSimpleName() + ": ", e);
+			}
+		}
+		for (IndexWriter targetWriter : targetWriters.values()) {
+			try {
+				Directory directory = targetWriter.getDirectory();
+				targetWriter.rollback();
+				directory.close();
+			}
+			catch (Exception e) {
+				log.error("Failed to close split of segment <" + segmentNumber + ">: " + e.getClass().getSimpleName() + ": ", e);
+			}
+		}
+	}
+
+	/**
+	 * Codec reader of a leaf that only keeps the documents routing to a target
+	 */
+	private static class TargetCodecReader extends FilterCodecReader {
+		private final FixedBitSet liveDocs;
+		private final int numDocs;
+
+		private TargetCodecReader(CodecReader in, FixedBitSet liveDocs) {
+			super(in);
+			this.liveDocs = liveDocs;
+			this.numDocs = liveDocs.cardinality();
+		}
+
+		@Override
+		public Bits getLiveDocs() {
+			return liveDocs;
+		}
+
+		@Override
+		public int numDocs() {
+			return numDocs;
+		}
+
+		@Override
+		public CacheHelper getCoreCacheHelper() {
+			return null;
+		}
+
+		@Override
+		public CacheHelper getReaderCacheHelper() {
+			return null;
+		}
+	}
+}
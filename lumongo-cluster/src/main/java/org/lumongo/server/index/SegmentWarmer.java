@@ -0,0 +1,132 @@
+package org.lumongo.server.index;
+
+import org.apache.lucene.index.DirectoryReader;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+import org.bson.Document;
+import org.lumongo.storage.lucene.DistributedDirectory;
+import org.lumongo.storage.lucene.MongoDirectory;
+import org.lumongo.storage.lucene.NosqlFile;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Warms a segment on the member it is handed off to while the current owner keeps serving it.  The last commit of the segment is opened read only
+ * and the files read by most queries are read into the node block cache.  The directory is left open so the segment opened after the handoff
+ * shares its block cache keys, unless the old owner reused a file number of a warmed file after the warm in which case the warm is discarded.
+ */
+public class SegmentWarmer {
+
+	/**
+	 * Extensions of the files read by most queries in the order they are read: the terms, points and stored fields indexes, live docs, norms, doc
+	 * values and the terms dictionary
+	 */
+	private static final List<String> HOT_EXTENSIONS = Arrays.asList("tip", "dii", "fdx", "liv", "nvd", "dvd", "tim");
+
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+
+	/**
+	 * Opens the last commit of the segment and reads its hot files until maxBytes are read
+	 * @param maxBytes - maximum bytes of hot files read, 0 only opens the commit
+	 */
+	public static SegmentWarmer warm(int segmentNumber, MongoDirectory mongoDirectory, int readAheadBlocks, long maxBytes) throws IOException {
+		long start = System.currentTimeMillis();
+
+		SegmentWarmer segmentWarmer = new SegmentWarmer(segmentNumber, mongoDirectory);
+
+		//the directory is not closed, closing it drops the block cache keys of the segment
+		DistributedDirectory directory = new DistributedDirectory(mongoDirectory, readAheadBlocks);
+		if (DirectoryReader.indexExists(directory)) {
+			Collection<String> fileNames;
+			try (DirectoryReader directoryReader = DirectoryReader.open(directory)) {
+				fileNames = directoryReader.getIndexCommit().getFileNames();
+			}
+
+			for (String fileName : fileNames) {
+				NosqlFile nosqlFile = mongoDirectory.getFileHandle(fileName);
+				segmentWarmer.warmedFiles.put(nosqlFile.getFileNumber(), fileName);
+				segmentWarmer.warmedLengths.put(fileName, nosqlFile.getFileLength());
+			}
+
+			byte[] buffer = new byte[READ_BUFFER_SIZE];
+			for (String extension : HOT_EXTENSIONS) {
+				for (String fileName : fileNames) {
+					if (segmentWarmer.warmedBytes >= maxBytes) {
+						break;
+					}
+					if (fileName.endsWith("." + extension)) {
+						try (IndexInput indexInput = directory.openInput(fileName, IOContext.READONCE)) {
+							long remaining = Math.min(indexInput.length(), maxBytes - segmentWarmer.warmedBytes);
+							while (remaining > 0) {
+								int length = (int) Math.min(buffer.length, remaining);
+								indexInput.readBytes(buffer, 0, length);
+								remaining -= length;
+								segmentWarmer.warmedBytes += length;
+							}
+						}
+					}
+				}
+			}
+		}
+
+		segmentWarmer.warmMs = System.currentTimeMillis() - start;
+		return segmentWarmer;
+	}
+
+	private final int segmentNumber;
+	private final MongoDirectory mongoDirectory;
+	private final Map<Short, String> warmedFiles;
+	private final Map<String, Long> warmedLengths;
+	private long warmedBytes;
+	private long warmMs;
+
+	private SegmentWarmer(int segmentNumber, MongoDirectory mongoDirectory) {
+		this.segmentNumber = segmentNumber;
+		this.mongoDirectory = mongoDirectory;
+		this.warmedFiles = new HashMap<>();
+		this.warmedLengths = new HashMap<>();
+	}
+
+	public int getSegmentNumber() {
+		return segmentNumber;
+	}
+
+	public long getWarmedBytes() {
+		return warmedBytes;
+	}
+
+	public long getWarmMs() {
+		return warmMs;
+	}
+
+	/**
+	 * Called once the segment lock is taken from the old owner
+	 * @return false if a file number of a warmed file now belongs to another file, the cached blocks of the file number are stale
+	 */
+	public boolean isCurrent() {
+		List<Document> files = mongoDirectory.getFilesCollection().find().into(new ArrayList<>());
+		for (Document file : files) {
+			String warmedFile = warmedFiles.get(((Number) file.get(MongoDirectory.FILE_NUMBER)).shortValue());
+			if (warmedFile != null) {
+				if (!warmedFile.equals(file.get(MongoDirectory.FILE_NAME)) || warmedLengths.get(warmedFile) != ((Number) file.get(MongoDirectory.LENGTH))
+						.longValue()) {
+					return false;
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Closes the directory so the blocks read by the warm are never used
+	 */
+	public void discard() {
+		mongoDirectory.close();
+	}
+}
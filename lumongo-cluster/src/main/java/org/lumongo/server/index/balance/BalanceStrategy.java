@@ -0,0 +1,24 @@
+package org.lumongo.server.index.balance;
+
+import com.hazelcast.core.Member;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Chooses the segments moved between members to balance every index of the cluster together.  Implementations need a no argument constructor
+ * and are set by class name with the balanceStrategy cluster setting.
+ */
+public interface BalanceStrategy {
+
+	/**
+	 * @param currentMembers - members the segments can be served by
+	 * @param indexSegmentMaps - segments served by each current member by index name, the maps are not modified
+	 * @param segmentLoads - load of each segment by index name and segment number, segments missing a load have not reported one
+	 * @return a move for each segment that should be served by another member
+	 */
+	List<SegmentMove> balance(Set<Member> currentMembers, Map<String, Map<Member, Set<Integer>>> indexSegmentMaps,
+			Map<String, Map<Integer, SegmentLoad>> segmentLoads);
+
+}
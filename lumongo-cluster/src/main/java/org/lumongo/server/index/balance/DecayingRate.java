@@ -0,0 +1,40 @@
+package org.lumongo.server.index.balance;
+
+/**
+ * Rate of events per second that decays exponentially so recent events count more than old ones.  An event counts half as much after
+ * {@link #HALF_LIFE_MS}, so a segment that stopped being queried stops weighing on its member after a few half lives.
+ */
+public class DecayingRate {
+
+	public static final long HALF_LIFE_MS = 5 * 60 * 1000;
+
+	private static final double DECAY_PER_MS = Math.log(2) / HALF_LIFE_MS;
+
+	private double value;
+	private long lastUpdate;
+
+	public DecayingRate() {
+		this.lastUpdate = System.currentTimeMillis();
+	}
+
+	public synchronized void add(long events) {
+		decay();
+		value += events;
+	}
+
+	/**
+	 * @return events per second, a constant rate r converges to r
+	 */
+	public synchronized double getRate() {
+		decay();
+		return value * DECAY_PER_MS * 1000;
+	}
+
+	private void decay() {
+		long now = System.currentTimeMillis();
+		if (now > lastUpdate) {
+			value *= Math.exp(-DECAY_PER_MS * (now - lastUpdate));
+			lastUpdate = now;
+		}
+	}
+}
@@ -0,0 +1,87 @@
+package org.lumongo.server.index.balance;
+
+import com.hazelcast.nio.ObjectDataInput;
+import com.hazelcast.nio.ObjectDataOutput;
+import com.hazelcast.nio.serialization.DataSerializable;
+
+import java.io.IOException;
+
+/**
+ * Size and recent activity of a segment reported by the member serving it
+ */
+public class SegmentLoad implements DataSerializable {
+
+	private String indexName;
+	private int segmentNumber;
+	private long numberOfDocs;
+	private long sizeInBytes;
+	private double queryRate;
+	private double indexRate;
+
+	public SegmentLoad() {
+
+	}
+
+	/**
+	 * @param queryRate - recent queries per second
+	 * @param indexRate - recent documents stored or deleted per second
+	 */
+	public SegmentLoad(String indexName, int segmentNumber, long numberOfDocs, long sizeInBytes, double queryRate, double indexRate) {
+		this.indexName = indexName;
+		this.segmentNumber = segmentNumber;
+		this.numberOfDocs = numberOfDocs;
+		this.sizeInBytes = sizeInBytes;
+		this.queryRate = queryRate;
+		this.indexRate = indexRate;
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public int getSegmentNumber() {
+		return segmentNumber;
+	}
+
+	public long getNumberOfDocs() {
+		return numberOfDocs;
+	}
+
+	public long getSizeInBytes() {
+		return sizeInBytes;
+	}
+
+	public double getQueryRate() {
+		return queryRate;
+	}
+
+	public double getIndexRate() {
+		return indexRate;
+	}
+
+	@Override
+	public void writeData(ObjectDataOutput out) throws IOException {
+		out.writeUTF(indexName);
+		out.writeInt(segmentNumber);
+		out.writeLong(numberOfDocs);
+		out.writeLong(sizeInBytes);
+		out.writeDouble(queryRate);
+		out.writeDouble(indexRate);
+	}
+
+	@Override
+	public void readData(ObjectDataInput in) throws IOException {
+		indexName = in.readUTF();
+		segmentNumber = in.readInt();
+		numberOfDocs = in.readLong();
+		sizeInBytes = in.readLong();
+		queryRate = in.readDouble();
+		indexRate = in.readDouble();
+	}
+
+	@Override
+	public String toString() {
+		return "SegmentLoad [indexName=" + indexName + ", segmentNumber=" + segmentNumber + ", numberOfDocs=" + numberOfDocs + ", sizeInBytes=" + sizeInBytes
+				+ ", queryRate=" + queryRate + ", indexRate=" + indexRate + "]";
+	}
+}
@@ -0,0 +1,52 @@
+package org.lumongo.server.index.balance;
+
+import com.hazelcast.core.Member;
+
+/**
+ * Segment of an index proposed to move from the member serving it to another member
+ */
+public class SegmentMove {
+
+	private final String indexName;
+	private final int segmentNumber;
+	private final Member fromMember;
+	private final Member toMember;
+	private final double weight;
+
+	/**
+	 * @param weight - share of the cluster load the segment carries as weighed by the strategy proposing the move
+	 */
+	public SegmentMove(String indexName, int segmentNumber, Member fromMember, Member toMember, double weight) {
+		this.indexName = indexName;
+		this.segmentNumber = segmentNumber;
+		this.fromMember = fromMember;
+		this.toMember = toMember;
+		this.weight = weight;
+	}
+
+	public String getIndexName() {
+		return indexName;
+	}
+
+	public int getSegmentNumber() {
+		return segmentNumber;
+	}
+
+	public Member getFromMember() {
+		return fromMember;
+	}
+
+	public Member getToMember() {
+		return toMember;
+	}
+
+	public double getWeight() {
+		return weight;
+	}
+
+	@Override
+	public String toString() {
+		return "SegmentMove [indexName=" + indexName + ", segmentNumber=" + segmentNumber + ", fromMember=" + fromMember + ", toMember=" + toMember + ", weight="
+				+ weight + "]";
+	}
+}
@@ -0,0 +1,311 @@
+package org.lumongo.server.index.balance;
+
+import com.hazelcast.core.Member;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Weighs every segment of every index by its share of the documents, index bytes, recent query rate and recent index rate of the cluster plus an
+ * equal share per segment so empty segments still spread, and moves segments from the most to the least loaded members until their loads are
+ * within {@link #IMBALANCE_TOLERANCE} of the average member load.  A member never serves more than its even share (rounded up) of the segments
+ * of an index so queries of every index still run on all members.  Segments of members that are no longer current are assigned to the least
+ * loaded members first.
+ */
+public class WeightedBalanceStrategy implements BalanceStrategy {
+
+	/**
+	 * fraction of the average member load members may differ by, a move must also lower the difference between its members by this much
+	 */
+	public static final double IMBALANCE_TOLERANCE = 0.05;
+
+	private final double docsWeight;
+	private final double bytesWeight;
+	private final double queryRateWeight;
+	private final double indexRateWeight;
+	private final double segmentWeight;
+
+	public WeightedBalanceStrategy() {
+		this(1, 1, 1, 1, 1);
+	}
+
+	/**
+	 * Each weight scales the share of the cluster total of a dimension, a weight of 0 ignores the dimension
+	 */
+	public WeightedBalanceStrategy(double docsWeight, double bytesWeight, double queryRateWeight, double indexRateWeight, double segmentWeight) {
+		this.docsWeight = docsWeight;
+		this.bytesWeight = bytesWeight;
+		this.queryRateWeight = queryRateWeight;
+		this.indexRateWeight = indexRateWeight;
+		this.segmentWeight = segmentWeight;
+	}
+
+	@Override
+	public List<SegmentMove> balance(Set<Member> currentMembers, Map<String, Map<Member, Set<Integer>>> indexSegmentMaps,
+			Map<String, Map<Integer, SegmentLoad>> segmentLoads) {
+		if (currentMembers.isEmpty()) {
+			return new ArrayList<>();
+		}
+
+		Assignment assignment = new Assignment(currentMembers, indexSegmentMaps);
+		assignment.weigh(segmentLoads);
+		assignment.assignUnowned();
+		assignment.spreadIndexes();
+
+		int maxMoves = assignment.getNumberOfSegments() * currentMembers.size();
+		for (int moves = 0; moves < maxMoves; moves++) {
+			if (!assignment.moveToLighterMember()) {
+				break;
+			}
+		}
+
+		return assignment.getMoves();
+	}
+
+	private class Assignment {
+		private final List<Member> members;
+		private final Map<String, Map<Integer, Member>> originalOwners;
+		private final Map<String, Map<Integer, Member>> owners;
+		private final Map<String, Map<Integer, Member>> unowned;
+		private final Map<String, Map<Integer, Double>> weights;
+		private final Map<String, Integer> maxSegmentsPerMember;
+		private final Map<Member, Map<String, Integer>> segmentCounts;
+		private final Map<Member, Double> memberLoads;
+		private double totalWeight;
+
+		private Assignment(Set<Member> currentMembers, Map<String, Map<Member, Set<Integer>>> indexSegmentMaps) {
+			//ordered so members with equal loads are always picked in the same order
+			this.members = new ArrayList<>(currentMembers);
+			members.sort(Comparator.comparing(Member::getUuid));
+
+			this.originalOwners = new TreeMap<>();
+			this.owners = new TreeMap<>();
+			this.unowned = new TreeMap<>();
+			this.weights = new HashMap<>();
+			this.maxSegmentsPerMember = new HashMap<>();
+			this.segmentCounts = new HashMap<>();
+			this.memberLoads = new HashMap<>();
+
+			for (Member m : members) {
+				segmentCounts.put(m, new HashMap<>());
+				memberLoads.put(m, 0.0);
+			}
+
+			for (String indexName : indexSegmentMaps.keySet()) {
+				Map<Integer, Member> indexOwners = new TreeMap<>();
+				Map<Integer, Member> indexUnowned = new TreeMap<>();
+				for (Map.Entry<Member, Set<Integer>> entry : indexSegmentMaps.get(indexName).entrySet()) {
+					Map<Integer, Member> segmentOwners = segmentCounts.containsKey(entry.getKey()) ? indexOwners : indexUnowned;
+					for (Integer segmentNumber : entry.getValue()) {
+						segmentOwners.put(segmentNumber, entry.getKey());
+					}
+				}
+				Map<Integer, Member> indexOriginalOwners = new TreeMap<>(indexOwners);
+				indexOriginalOwners.putAll(indexUnowned);
+				originalOwners.put(indexName, indexOriginalOwners);
+				owners.put(indexName, indexOwners);
+				unowned.put(indexName, indexUnowned);
+				maxSegmentsPerMember.put(indexName, (indexOriginalOwners.size() + members.size() - 1) / members.size());
+			}
+		}
+
+		private int getNumberOfSegments() {
+			int numberOfSegments = 0;
+			for (Map<Integer, Member> indexOwners : originalOwners.values()) {
+				numberOfSegments += indexOwners.size();
+			}
+			return numberOfSegments;
+		}
+
+		private void weigh(Map<String, Map<Integer, SegmentLoad>> segmentLoads) {
+			double totalDocs = 0;
+			double totalBytes = 0;
+			double totalQueryRate = 0;
+			double totalIndexRate = 0;
+			for (String indexName : originalOwners.keySet()) {
+				for (Integer segmentNumber : originalOwners.get(indexName).keySet()) {
+					SegmentLoad segmentLoad = getSegmentLoad(segmentLoads, indexName, segmentNumber);
+					if (segmentLoad != null) {
+						totalDocs += segmentLoad.getNumberOfDocs();
+						totalBytes += segmentLoad.getSizeInBytes();
+						totalQueryRate += segmentLoad.getQueryRate();
+						totalIndexRate += segmentLoad.getIndexRate();
+					}
+				}
+			}
+
+			int numberOfSegments = getNumberOfSegments();
+			for (String indexName : originalOwners.keySet()) {
+				Map<Integer, Double> indexWeights = new HashMap<>();
+				for (Map.Entry<Integer, Member> entry : originalOwners.get(indexName).entrySet()) {
+					double weight = segmentWeight / numberOfSegments;
+
+					SegmentLoad segmentLoad = getSegmentLoad(segmentLoads, indexName, entry.getKey());
+					if (segmentLoad != null) {
+						weight += share(docsWeight, segmentLoad.getNumberOfDocs(), totalDocs);
+						weight += share(bytesWeight, segmentLoad.getSizeInBytes(), totalBytes);
+						weight += share(queryRateWeight, segmentLoad.getQueryRate(), totalQueryRate);
+						weight += share(indexRateWeight, segmentLoad.getIndexRate(), totalIndexRate);
+					}
+
+					indexWeights.put(entry.getKey(), weight);
+					if (segmentCounts.containsKey(entry.getValue())) {
+						addSegment(indexName, entry.getValue(), 1, weight);
+					}
+					totalWeight += weight;
+				}
+				weights.put(indexName, indexWeights);
+			}
+		}
+
+		/**
+		 * Assigns the segments of members that are no longer current, heaviest first, to the least loaded members below their share of the index
+		 */
+		private void assignUnowned() {
+			for (String indexName : unowned.keySet()) {
+				List<Integer> segmentNumbers = new ArrayList<>(unowned.get(indexName).keySet());
+				segmentNumbers.sort(Comparator.comparing((Integer segmentNumber) -> getWeight(indexName, segmentNumber)).reversed());
+
+				int max = maxSegmentsPerMember.get(indexName);
+				for (Integer segmentNumber : segmentNumbers) {
+					Member lightest = null;
+					for (Member m : members) {
+						if (getSegmentCount(m, indexName) < max && (lightest == null || memberLoads.get(m) < memberLoads.get(lightest))) {
+							lightest = m;
+						}
+					}
+
+					owners.get(indexName).put(segmentNumber, lightest);
+					addSegment(indexName, lightest, 1, getWeight(indexName, segmentNumber));
+				}
+			}
+		}
+
+		/**
+		 * Moves the heaviest segments of an index off members serving more than their share of the index to the least loaded members below it
+		 */
+		private void spreadIndexes() {
+			for (String indexName : owners.keySet()) {
+				int max = maxSegmentsPerMember.get(indexName);
+				for (Member m : members) {
+					while (getSegmentCount(m, indexName) > max) {
+						Integer heaviest = null;
+						for (Map.Entry<Integer, Member> entry : owners.get(indexName).entrySet()) {
+							if (entry.getValue().equals(m) && (heaviest == null || getWeight(indexName, entry.getKey()) > getWeight(indexName, heaviest))) {
+								heaviest = entry.getKey();
+							}
+						}
+
+						Member lightest = null;
+						for (Member other : members) {
+							if (getSegmentCount(other, indexName) < max && (lightest == null || memberLoads.get(other) < memberLoads.get(lightest))) {
+								lightest = other;
+							}
+						}
+
+						moveSegment(indexName, heaviest, m, lightest);
+					}
+				}
+			}
+		}
+
+		/**
+		 * Moves the segment of the most loaded member that best evens its load with the least loaded member that can take one
+		 * @return false if the members are within the tolerance or no move lowers the difference by the tolerance
+		 */
+		private boolean moveToLighterMember() {
+			List<Member> byLoad = new ArrayList<>(members);
+			byLoad.sort(Comparator.comparing(memberLoads::get));
+
+			Member heaviest = byLoad.get(byLoad.size() - 1);
+			double tolerance = IMBALANCE_TOLERANCE * totalWeight / members.size();
+
+			for (Member lighter : byLoad) {
+				if (lighter.equals(heaviest)) {
+					break;
+				}
+
+				double difference = memberLoads.get(heaviest) - memberLoads.get(lighter);
+				if (difference <= tolerance) {
+					//members are ordered by load so the members after are closer still
+					return false;
+				}
+
+				String bestIndex = null;
+				Integer bestSegment = null;
+				double bestDifference = difference - tolerance;
+				for (String indexName : owners.keySet()) {
+					if (getSegmentCount(lighter, indexName) >= maxSegmentsPerMember.get(indexName)) {
+						continue;
+					}
+					for (Map.Entry<Integer, Member> entry : owners.get(indexName).entrySet()) {
+						if (entry.getValue().equals(heaviest)) {
+							double newDifference = Math.abs(difference - 2 * getWeight(indexName, entry.getKey()));
+							if (newDifference < bestDifference) {
+								bestIndex = indexName;
+								bestSegment = entry.getKey();
+								bestDifference = newDifference;
+							}
+						}
+					}
+				}
+
+				if (bestSegment != null) {
+					moveSegment(bestIndex, bestSegment, heaviest, lighter);
+					return true;
+				}
+			}
+			return false;
+		}
+
+		private void moveSegment(String indexName, int segmentNumber, Member fromMember, Member toMember) {
+			double weight = getWeight(indexName, segmentNumber);
+			owners.get(indexName).put(segmentNumber, toMember);
+			addSegment(indexName, fromMember, -1, -weight);
+			addSegment(indexName, toMember, 1, weight);
+		}
+
+		private void addSegment(String indexName, Member m, int segments, double weight) {
+			memberLoads.merge(m, weight, Double::sum);
+			segmentCounts.get(m).merge(indexName, segments, Integer::sum);
+		}
+
+		private int getSegmentCount(Member m, String indexName) {
+			return segmentCounts.get(m).getOrDefault(indexName, 0);
+		}
+
+		private double getWeight(String indexName, int segmentNumber) {
+			return weights.get(indexName).get(segmentNumber);
+		}
+
+		/**
+		 * @return a move from the original to the final member of each segment that changed members, ordered by index name and segment number
+		 */
+		private List<SegmentMove> getMoves() {
+			List<SegmentMove> moves = new ArrayList<>();
+			for (String indexName : owners.keySet()) {
+				for (Map.Entry<Integer, Member> entry : owners.get(indexName).entrySet()) {
+					Member originalOwner = originalOwners.get(indexName).get(entry.getKey());
+					if (!originalOwner.equals(entry.getValue())) {
+						moves.add(new SegmentMove(indexName, entry.getKey(), originalOwner, entry.getValue(), getWeight(indexName, entry.getKey())));
+					}
+				}
+			}
+			return moves;
+		}
+	}
+
+	private static SegmentLoad getSegmentLoad(Map<String, Map<Integer, SegmentLoad>> segmentLoads, String indexName, int segmentNumber) {
+		Map<Integer, SegmentLoad> indexLoads = segmentLoads.get(indexName);
+		return indexLoads != null ? indexLoads.get(segmentNumber) : null;
+	}
+
+	private static double share(double weight, double value, double total) {
+		return total > 0 ? weight * value / total : 0;
+	}
+}
@@ -0,0 +1,85 @@
+package org.lumongo.server.rest;
+
+import org.apache.log4j.Logger;
+import org.lumongo.LumongoConstants;
+import org.lumongo.cluster.message.Lumongo;
+import org.lumongo.cluster.message.Lumongo.DeleteByQueryRequest;
+import org.lumongo.cluster.message.Lumongo.DeleteByQueryResponse;
+import org.lumongo.server.index.LumongoIndexManager;
+
+import javax.ws.rs.DefaultValue;
+import javax.ws.rs.POST;
+import javax.ws.rs.Path;
+import javax.ws.rs.Produces;
+import javax.ws.rs.QueryParam;
+import javax.ws.rs.core.MediaType;
+import javax.ws.rs.core.Response;
+import java.util.List;
+
+@Path(LumongoConstants.DELETE_BY_QUERY_URL)
+public class DeleteByQueryResource {
+
+	private final static Logger log = Logger.getLogger(DeleteByQueryResource.class);
+
+	private LumongoIndexManager indexManager;
+
+	public DeleteByQueryResource(LumongoIndexManager indexManager) {
+		this.indexManager = indexManager;
+	}
+
+	@POST
+	@Produces({ MediaType.APPLICATION_JSON + ";charset=utf-8" })
+	public Response post(@QueryParam(LumongoConstants.INDEX) String indexName, @QueryParam(LumongoConstants.QUERY) String query,
+			@QueryParam(LumongoConstants.QUERY_FIELD) List<String> queryFields, @QueryParam(LumongoConstants.FILTER_QUERY) List<String> filterQueries,
+			@QueryParam(LumongoConstants.DEFAULT_OP) String defaultOperator, @QueryParam(LumongoConstants.MIN_MATCH) Integer mm,
+			@QueryParam(LumongoConstants.DELETE_ASSOCIATED) @DefaultValue("true") boolean deleteAssociated) {
+
+		if (indexName == null) {
+			return Response.status(LumongoConstants.BAD_REQUEST).entity(LumongoConstants.INDEX + " is required").build();
+		}
+
+		if (query == null || query.trim().isEmpty()) {
+			return Response.status(LumongoConstants.BAD_REQUEST).entity(LumongoConstants.QUERY + " is required").build();
+		}
+
+		Lumongo.Query.Builder queryBuilder = Lumongo.Query.newBuilder();
+		queryBuilder.setQ(query);
+		if (mm != null) {
+			queryBuilder.setMm(mm);
+		}
+		if (queryFields != null) {
+			queryBuilder.addAllQf(queryFields);
+		}
+		if (defaultOperator != null) {
+			if (defaultOperator.equalsIgnoreCase("AND")) {
+				queryBuilder.setDefaultOp(Lumongo.Query.Operator.AND);
+			}
+			else if (defaultOperator.equalsIgnoreCase("OR")) {
+				queryBuilder.setDefaultOp(Lumongo.Query.Operator.OR);
+			}
+			else {
+				return Response.status(LumongoConstants.BAD_REQUEST).entity("Invalid default operator <" + defaultOperator + ">").build();
+			}
+		}
+
+		DeleteByQueryRequest.Builder request = DeleteByQueryRequest.newBuilder().setIndexName(indexName).setQuery(queryBuilder)
+				.setDeleteAllAssociated(deleteAssociated);
+		if (filterQueries != null) {
+			for (String filterQuery : filterQueries) {
+				request.addFilterQuery(Lumongo.Query.newBuilder().setQ(filterQuery));
+			}
+		}
+
+		try {
+			DeleteByQueryResponse response = indexManager.deleteByQuery(request.build());
+			return Response.status(LumongoConstants.SUCCESS).entity("{\"deleted\": " + response.getDeleted() + "}").build();
+		}
+		catch (Exception e) {
+			log.error(e.getClass().getSimpleName() + ": ", e);
+			return Response.status(LumongoConstants.INTERNAL_ERROR)
+					.entity("Failed to delete by query for index <" + indexName + ">: " + e.getMessage()).build();
+		}
+
+	}
+
+}
@@ -1,11 +1,8 @@
 package org.lumongo.server.rest;
 
-import com.cedarsoftware.util.io.JsonWriter;
 import com.google.protobuf.InvalidProtocolBufferException;
 import com.google.protobuf.util.JsonFormat;
-import com.mongodb.util.JSONSerializers;
 import org.apache.log4j.Logger;
-import org.bson.Document;
 import org.lumongo.LumongoConstants;
 import org.lumongo.client.command.CursorHelper;
 import org.lumongo.cluster.message.Lumongo;
@@ -17,7 +14,6 @@ import org.lumongo.cluster.message.Lumongo.QueryRequest;
 import org.lumongo.cluster.message.Lumongo.QueryResponse;
 import org.lumongo.cluster.message.LumongoIndex.AnalyzerSettings.Similarity;
 import org.lumongo.server.index.LumongoIndexManager;
-import org.lumongo.util.ResultHelper;
 
 import javax.ws.rs.DefaultValue;
 import javax.ws.rs.GET;
@@ -27,10 +23,9 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
 import javax.ws.rs.core.StreamingOutput;
-import java.io.OutputStream;
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
-import java.util.Date;
 import java.util.List;
 
 @Path(LumongoConstants.QUERY_URL)
@@ -59,6 +54,7 @@ public class QueryResource {
 			@QueryParam(LumongoConstants.START) Integer start, @QueryParam(LumongoConstants.HIGHLIGHT) List<String> highlightList,
 			@QueryParam(LumongoConstants.HIGHLIGHT_JSON) List<String> highlightJsonList,
 			@QueryParam(LumongoConstants.ANALYZE_JSON) List<String> analyzeJsonList, @QueryParam(LumongoConstants.COS_SIM_JSON) List<String> cosineSimJsonList,
+			@QueryParam(LumongoConstants.STAT) List<String> statList, @QueryParam(LumongoConstants.RANGE_JSON) List<String> rangeJsonList,
 			@QueryParam(LumongoConstants.FORMAT) @DefaultValue("json") String format, @QueryParam(LumongoConstants.BATCH) boolean batch,
 			@QueryParam(LumongoConstants.BATCH_SIZE) @DefaultValue("500") Integer batchSize, @QueryParam(LumongoConstants.CURSOR) String cursor) {
 
@@ -274,6 +270,24 @@ public class QueryResource {
 				}
 			}
 		}
+		if (statList != null) {
+			for (String stat : statList) {
+				frBuilder.addStatRequest(Lumongo.StatRequest.newBuilder().setSortField(stat));
+			}
+		}
+		if (rangeJsonList != null) {
+			for (String rangeJson : rangeJsonList) {
+				try {
+					Lumongo.RangeRequest.Builder rangeRequestBuilder = Lumongo.RangeRequest.newBuilder();
+					JsonFormat.parser().merge(rangeJson, rangeRequestBuilder);
+					frBuilder.addRangeRequest(rangeRequestBuilder);
+				}
+				catch (InvalidProtocolBufferException e) {
+					return Response.status(LumongoConstants.INTERNAL_ERROR)
+							.entity("Failed to parse range json: " + e.getClass().getSimpleName() + ":" + e.getMessage()).build();
+				}
+			}
+		}
 
 		qrBuilder.setFacetRequest(frBuilder);
 
@@ -303,15 +317,35 @@ public class QueryResource {
 		qrBuilder.setAmount(rows);
 
 		try {
-			if (format.equals("json")) {
+			if (format.equals("ndjson")) {
+				QueryRequest queryRequest = qrBuilder.build();
+
+				StreamingOutput outputStream = output -> {
+					QueryResponseWriter responseWriter = new QueryResponseWriter(output, false);
+					try {
+						indexManager.queryStream(queryRequest, (totalHits, results) -> {
+							responseWriter.writeResultLines(results);
+							return true;
+						});
+					}
+					catch (IOException e) {
+						throw e;
+					}
+					catch (Exception e) {
+						log.error("Failed to stream query results: " + e.getClass().getSimpleName() + ":", e);
+						throw new IOException(e);
+					}
+				};
+
+				return Response.ok(outputStream, "application/x-ndjson;charset=utf-8").build();
+			}
+			else if (format.equals("json")) {
 				QueryResponse qr = indexManager.query(qrBuilder.build());
-				String response = getStandardResponse(qr, !pretty, outputCursor);
 
-				if (pretty) {
-					response = JsonWriter.formatJson(response);
-				}
+				boolean cursorOutput = outputCursor;
+				StreamingOutput outputStream = output -> new QueryResponseWriter(output, pretty).writeResponse(qr, cursorOutput);
 
-				return Response.status(LumongoConstants.SUCCESS).type(MediaType.APPLICATION_JSON + ";charset=utf-8").entity(response).build();
+				return Response.status(LumongoConstants.SUCCESS).type(MediaType.APPLICATION_JSON + ";charset=utf-8").entity(outputStream).build();
 			}
 			else {
 				if (fields != null && !fields.isEmpty() || (!facet.isEmpty() && rows == 0)) {
@@ -322,21 +356,19 @@ public class QueryResource {
 							try {
 								QueryResponse qr = indexManager.query(qrBuilder.build());
 
-								String header = buildHeaderForCSV(fields);
-								output.write(header.getBytes());
-								output.flush();
+								QueryResponseWriter responseWriter = new QueryResponseWriter(output, false);
+								responseWriter.writeCSVHeader(fields);
+								responseWriter.flush();
 
 								int count = 0;
 
 								while (qr.getResultsList().size() > 0) {
-									for (Lumongo.ScoredResult scoredResult : qr.getResultsList()) {
-										Document doc = ResultHelper.getDocumentFromScoredResult(scoredResult);
-										appendDocument(fields, null, output, doc);
-
-										count++;
-										if (count % 1000 == 0) {
-											log.info("Docs processed so far: " + count);
-										}
+									responseWriter.writeCSVResults(fields, qr.getResultsList());
+
+									int before = count;
+									count += qr.getResultsCount();
+									if (count / 1000 != before / 1000) {
+										log.info("Docs processed so far: " + count);
 									}
 
 									qrBuilder.setLastResult(qr.getLastResult());
@@ -377,8 +409,12 @@ public class QueryResource {
 							return Response.status(LumongoConstants.SUCCESS).type(MediaType.TEXT_PLAIN + ";charset=utf-8").entity(response.toString()).build();
 						}
 						else {
-							String response = getCSVDocumentResponse(fields, qr);
-							return Response.status(LumongoConstants.SUCCESS).type(MediaType.TEXT_PLAIN + ";charset=utf-8").entity(response).build();
+							StreamingOutput outputStream = output -> {
+								QueryResponseWriter responseWriter = new QueryResponseWriter(output, false);
+								responseWriter.writeCSVHeader(fields);
+								responseWriter.writeCSVResults(fields, qr.getResultsList());
+							};
+							return Response.status(LumongoConstants.SUCCESS).type(MediaType.TEXT_PLAIN + ";charset=utf-8").entity(outputStream).build();
 						}
 					}
 				}
@@ -396,306 +432,4 @@ public class QueryResource {
 
 	}
 
-	private String buildHeaderForCSV(@QueryParam(LumongoConstants.FIELDS) List<String> fields) throws Exception {
-
-		StringBuilder headerBuilder = new StringBuilder();
-		fields.stream().filter(field -> !field.startsWith("-")).forEach(field -> headerBuilder.append(field).append(","));
-		String headerOutput = headerBuilder.toString();
-		return headerOutput.substring(0, headerOutput.length() - 1) + "\n";
-
-	}
-
-	private String getStandardResponse(QueryResponse qr, boolean strict, boolean cursor) throws InvalidProtocolBufferException {
-		StringBuilder responseBuilder = new StringBuilder();
-		responseBuilder.append("{");
-		responseBuilder.append("\"totalHits\": ");
-		responseBuilder.append(qr.getTotalHits());
-		if (cursor) {
-			responseBuilder.append(",");
-			responseBuilder.append("\"cursor\": \"");
-			responseBuilder.append(CursorHelper.getUniqueSortedCursor(qr.getLastResult()));
-			responseBuilder.append("\"");
-		}
-
-		if (!qr.getAnalysisResultList().isEmpty()) {
-			responseBuilder.append(",");
-			responseBuilder.append("\"analysis\": [");
-			boolean first = true;
-			for (Lumongo.AnalysisResult analysisResult : qr.getAnalysisResultList()) {
-				if (first) {
-					first = false;
-				}
-				else {
-					responseBuilder.append(",");
-				}
-				responseBuilder.append("{");
-				responseBuilder.append("\"field\": \"");
-				responseBuilder.append(analysisResult.getAnalysisRequest().getField());
-				responseBuilder.append("\"");
-
-				responseBuilder.append(",");
-				responseBuilder.append("\"terms\": [");
-
-				JsonFormat.Printer printer = JsonFormat.printer();
-
-				boolean firstInner = true;
-				for (Lumongo.TermOrBuilder term : analysisResult.getTermsOrBuilderList()) {
-					if (firstInner) {
-						firstInner = false;
-					}
-					else {
-						responseBuilder.append(",");
-					}
-
-					responseBuilder.append(printer.print(term));
-				}
-				responseBuilder.append("]");
-
-				responseBuilder.append("}");
-			}
-			responseBuilder.append("]");
-		}
-
-		if (!qr.getResultsList().isEmpty()) {
-
-			JsonFormat.Printer printer = JsonFormat.printer();
-
-			responseBuilder.append(",");
-			responseBuilder.append("\"results\": [");
-			boolean first = true;
-			for (Lumongo.ScoredResult sr : qr.getResultsList()) {
-				if (first) {
-					first = false;
-				}
-				else {
-					responseBuilder.append(",");
-				}
-				responseBuilder.append("{");
-				responseBuilder.append("\"id\": ");
-				responseBuilder.append("\"").append(sr.getUniqueId()).append("\"");
-				responseBuilder.append(",");
-				responseBuilder.append("\"score\": ");
-				responseBuilder.append(sr.getScore());
-				responseBuilder.append(",");
-				responseBuilder.append("\"indexName\": ");
-				responseBuilder.append("\"").append(sr.getIndexName()).append("\"");
-
-				if (sr.hasResultDocument()) {
-					responseBuilder.append(",");
-
-					Document document = ResultHelper.getDocumentFromResultDocument(sr.getResultDocument());
-					responseBuilder.append("\"document\": ");
-
-					if (strict) {
-						responseBuilder.append(JSONSerializers.getStrict().serialize(document));
-					}
-					else {
-						responseBuilder.append(JSONSerializers.getLegacy().serialize(document));
-					}
-
-				}
-
-				if (sr.getHighlightResultCount() > 0) {
-					responseBuilder.append(",");
-
-					responseBuilder.append("\"highlights\": [");
-					boolean firstHighlightResult = true;
-					for (Lumongo.HighlightResult hr : sr.getHighlightResultList()) {
-						if (firstHighlightResult) {
-							firstHighlightResult = false;
-						}
-						else {
-							responseBuilder.append(",");
-						}
-						responseBuilder.append(printer.print(hr));
-					}
-					responseBuilder.append("]");
-
-				}
-
-				if (sr.getAnalysisResultCount() > 0) {
-					responseBuilder.append(",");
-
-					responseBuilder.append("\"analysis\": [");
-					boolean firstAnalysisResult = true;
-					for (Lumongo.AnalysisResult ar : sr.getAnalysisResultList()) {
-						if (firstAnalysisResult) {
-							firstAnalysisResult = false;
-						}
-						else {
-							responseBuilder.append(",");
-						}
-						responseBuilder.append(printer.print(ar));
-					}
-					responseBuilder.append("]");
-
-				}
-
-				responseBuilder.append("}");
-			}
-			responseBuilder.append("]");
-		}
-
-		if (!qr.getFacetGroupList().isEmpty()) {
-			responseBuilder.append(",");
-			responseBuilder.append("\"facets\": [");
-			boolean first = true;
-			for (Lumongo.FacetGroup facetGroup : qr.getFacetGroupList()) {
-				if (first) {
-					first = false;
-				}
-				else {
-					responseBuilder.append(",");
-				}
-				responseBuilder.append("{");
-				responseBuilder.append("\"field\": \"");
-				responseBuilder.append(facetGroup.getCountRequest().getFacetField().getLabel());
-				responseBuilder.append("\"");
-				if (facetGroup.hasPossibleMissing()) {
-					responseBuilder.append(",");
-					responseBuilder.append("\"maxPossibleMissing\": ");
-					responseBuilder.append(facetGroup.getMaxValuePossibleMissing());
-				}
-				responseBuilder.append(",");
-				responseBuilder.append("\"values\": [");
-
-				JsonFormat.Printer printer = JsonFormat.printer();
-
-				boolean firstInner = true;
-				for (Lumongo.FacetCount facetCount : facetGroup.getFacetCountList()) {
-					if (firstInner) {
-						firstInner = false;
-					}
-					else {
-						responseBuilder.append(",");
-					}
-
-					responseBuilder.append(printer.print(facetCount));
-				}
-				responseBuilder.append("]");
-
-				responseBuilder.append("}");
-			}
-			responseBuilder.append("]");
-		}
-
-		responseBuilder.append("}");
-
-		return responseBuilder.toString();
-	}
-
-	private String getCSVDocumentResponse(List<String> fields, QueryResponse qr) throws Exception {
-		StringBuilder responseBuilder = new StringBuilder();
-
-		// headersBuilder
-		String header = buildHeaderForCSV(fields);
-		responseBuilder.append(header);
-
-		// records
-		qr.getResultsList().stream().filter(Lumongo.ScoredResult::hasResultDocument).forEach(sr -> {
-			Document document = ResultHelper.getDocumentFromResultDocument(sr.getResultDocument());
-			try {
-				appendDocument(fields, responseBuilder, null, document);
-			}
-			catch (Exception e) {
-				log.error("Failed to get the CSV.", e);
-			}
-		});
-
-		return responseBuilder.toString();
-	}
-
-	private void appendDocument(List<String> fields, StringBuilder responseBuilder, OutputStream outputStream, Document document) throws Exception {
-		int i = 0;
-		if (responseBuilder == null) {
-			responseBuilder = new StringBuilder();
-		}
-		for (String field : fields) {
-			Object obj = ResultHelper.getValueFromMongoDocument(document, field);
-			if (obj != null) {
-				if (obj instanceof List) {
-					List value = (List) obj;
-
-					if (!value.isEmpty()) {
-						responseBuilder.append("\"");
-
-						boolean first = true;
-						for (Object o : value) {
-
-							if (first) {
-								first = false;
-							}
-							else {
-								responseBuilder.append(";");
-							}
-
-							if (o instanceof String) {
-
-								String item = (String) o;
-
-								if (item.contains("\"")) {
-									item = item.replace("\"", "\"\"");
-								}
-
-								responseBuilder.append(item);
-
-							}
-							else if (o instanceof Document) {
-
-								responseBuilder.append(JSONSerializers.getLegacy().serialize(o).replace("\"", "\"\""));
-							}
-							else {
-								responseBuilder.append(o.toString());
-							}
-						}
-						responseBuilder.append("\"");
-					}
-
-				}
-				else if (obj instanceof Date) {
-					Date value = (Date) obj;
-					responseBuilder.append(value.toString());
-				}
-				else if (obj instanceof Number) {
-					Number value = (Number) obj;
-					responseBuilder.append(value);
-				}
-				else if (obj instanceof Boolean) {
-					Boolean value = (Boolean) obj;
-					responseBuilder.append(value);
-				}
-				else if (obj instanceof Document) {
-					responseBuilder.append("\"");
-					responseBuilder.append(JSONSerializers.getLegacy().serialize(obj).replace("\"", "\"\""));
-					responseBuilder.append("\"");
-				}
-				else {
-					String value = (String) obj;
-					if (value.contains(",") || value.contains(" ") || value.contains("\"") || value.contains("\n")) {
-						responseBuilder.append("\"");
-						responseBuilder.append(value.replace("\"", "\"\""));
-						responseBuilder.append("\"");
-					}
-					else {
-						responseBuilder.append(value);
-					}
-				}
-
-			}
-
-			i++;
-
-			if (i < fields.size()) {
-				responseBuilder.append(",");
-			}
-
-		}
-		responseBuilder.append("\n");
-
-		if (outputStream != null) {
-			outputStream.write(responseBuilder.toString().getBytes());
-			outputStream.flush();
-		}
-	}
-
 }
@@ -0,0 +1,318 @@
+package org.lumongo.server.rest;
+
+import com.google.protobuf.MessageOrBuilder;
+import com.google.protobuf.util.JsonFormat;
+import org.bson.BsonArray;
+import org.bson.BsonBinaryReader;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.RawBsonDocument;
+import org.bson.json.JsonMode;
+import org.bson.json.JsonReader;
+import org.bson.json.JsonWriter;
+import org.bson.json.JsonWriterSettings;
+import org.lumongo.client.command.CursorHelper;
+import org.lumongo.cluster.message.Lumongo;
+import org.lumongo.cluster.message.Lumongo.QueryResponse;
+import org.lumongo.cluster.message.Lumongo.ScoredResult;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * Writes query responses as JSON or CSV directly to an output stream.  Documents are converted from their BSON bytes as they are written instead of
+ * being decoded into documents and serialized into strings first, and pretty printing is done in the same pass.
+ */
+public class QueryResponseWriter {
+
+	private static final JsonWriterSettings COMPACT_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).build();
+	private static final JsonWriterSettings PRETTY_SETTINGS = JsonWriterSettings.builder().outputMode(JsonMode.RELAXED).indent(true).build();
+
+	private final Writer writer;
+	private final JsonWriterSettings settings;
+	private final JsonFormat.Printer printer;
+
+	public QueryResponseWriter(OutputStream outputStream, boolean pretty) {
+		this.writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+		this.settings = pretty ? PRETTY_SETTINGS : COMPACT_SETTINGS;
+		this.printer = JsonFormat.printer();
+	}
+
+	/**
+	 * Writes the query response as a single JSON document
+	 * @param cursor - write a cursor for the last result of the response
+	 */
+	public void writeResponse(QueryResponse qr, boolean cursor) throws IOException {
+		JsonWriter json = new JsonWriter(writer, settings);
+		json.writeStartDocument();
+		json.writeInt64("totalHits", qr.getTotalHits());
+		if (cursor) {
+			json.writeString("cursor", CursorHelper.getUniqueSortedCursor(qr.getLastResult()));
+		}
+
+		if (!qr.getAnalysisResultList().isEmpty()) {
+			json.writeStartArray("analysis");
+			for (Lumongo.AnalysisResult analysisResult : qr.getAnalysisResultList()) {
+				json.writeStartDocument();
+				json.writeString("field", analysisResult.getAnalysisRequest().getField());
+				json.writeStartArray("terms");
+				for (Lumongo.TermOrBuilder term : analysisResult.getTermsOrBuilderList()) {
+					writeMessage(json, term);
+				}
+				json.writeEndArray();
+				json.writeEndDocument();
+			}
+			json.writeEndArray();
+		}
+
+		if (!qr.getResultsList().isEmpty()) {
+			json.writeStartArray("results");
+			for (ScoredResult sr : qr.getResultsList()) {
+				writeScoredResult(json, sr);
+			}
+			json.writeEndArray();
+		}
+
+		if (!qr.getFacetGroupList().isEmpty()) {
+			json.writeStartArray("facets");
+			for (Lumongo.FacetGroup facetGroup : qr.getFacetGroupList()) {
+				json.writeStartDocument();
+				json.writeString("field", facetGroup.getCountRequest().getFacetField().getLabel());
+				if (facetGroup.hasPossibleMissing()) {
+					json.writeInt64("maxPossibleMissing", facetGroup.getMaxValuePossibleMissing());
+				}
+				json.writeStartArray("values");
+				for (Lumongo.FacetCount facetCount : facetGroup.getFacetCountList()) {
+					writeMessage(json, facetCount);
+				}
+				json.writeEndArray();
+				json.writeEndDocument();
+			}
+			json.writeEndArray();
+		}
+
+		if (!qr.getStatResultList().isEmpty()) {
+			json.writeStartArray("stats");
+			for (Lumongo.StatResult statResult : qr.getStatResultList()) {
+				writeMessage(json, statResult);
+			}
+			json.writeEndArray();
+		}
+
+		if (!qr.getRangeResultList().isEmpty()) {
+			json.writeStartArray("ranges");
+			for (Lumongo.RangeResult rangeResult : qr.getRangeResultList()) {
+				json.writeStartDocument();
+				json.writeString("field", rangeResult.getRangeRequest().getSortField());
+				json.writeStartArray("values");
+				for (Lumongo.RangeCount rangeCount : rangeResult.getRangeCountList()) {
+					writeMessage(json, rangeCount);
+				}
+				json.writeEndArray();
+				json.writeEndDocument();
+			}
+			json.writeEndArray();
+		}
+
+		json.writeEndDocument();
+		writer.flush();
+	}
+
+	/**
+	 * Writes the results as newline delimited JSON, one line per result
+	 */
+	public void writeResultLines(List<ScoredResult> results) throws IOException {
+		for (ScoredResult sr : results) {
+			//a json writer only writes one top level document
+			writeScoredResult(new JsonWriter(writer, COMPACT_SETTINGS), sr);
+			writer.write('\n');
+		}
+		writer.flush();
+	}
+
+	private void writeScoredResult(JsonWriter json, ScoredResult sr) throws IOException {
+		json.writeStartDocument();
+		json.writeString("id", sr.getUniqueId());
+		//written through the float string so the score is not printed with the precision of a double
+		json.writeDouble("score", Double.parseDouble(Float.toString(sr.getScore())));
+		json.writeString("indexName", sr.getIndexName());
+
+		if (sr.hasResultDocument() && sr.getResultDocument().hasDocument()) {
+			json.writeName("document");
+			json.pipe(new BsonBinaryReader(sr.getResultDocument().getDocument().asReadOnlyByteBuffer()));
+		}
+
+		if (sr.getHighlightResultCount() > 0) {
+			json.writeStartArray("highlights");
+			for (Lumongo.HighlightResult hr : sr.getHighlightResultList()) {
+				writeMessage(json, hr);
+			}
+			json.writeEndArray();
+		}
+
+		if (sr.getAnalysisResultCount() > 0) {
+			json.writeStartArray("analysis");
+			for (Lumongo.AnalysisResult ar : sr.getAnalysisResultList()) {
+				writeMessage(json, ar);
+			}
+			json.writeEndArray();
+		}
+
+		json.writeEndDocument();
+	}
+
+	private void writeMessage(JsonWriter json, MessageOrBuilder message) throws IOException {
+		json.pipe(new JsonReader(printer.print(message)));
+	}
+
+	public void writeCSVHeader(List<String> fields) throws IOException {
+		boolean first = true;
+		for (String field : fields) {
+			if (!field.startsWith("-")) {
+				if (!first) {
+					writer.write(',');
+				}
+				writer.write(field);
+				first = false;
+			}
+		}
+		writer.write('\n');
+	}
+
+	/**
+	 * Writes a CSV line with the values of the fields for each result that has a document
+	 */
+	public void writeCSVResults(List<String> fields, List<ScoredResult> results) throws IOException {
+		for (ScoredResult sr : results) {
+			if (sr.hasResultDocument() && sr.getResultDocument().hasDocument()) {
+				writeCSVDocument(fields, new RawBsonDocument(sr.getResultDocument().getDocument().toByteArray()));
+			}
+		}
+		writer.flush();
+	}
+
+	private void writeCSVDocument(List<String> fields, BsonDocument document) throws IOException {
+		int i = 0;
+		for (String field : fields) {
+			BsonValue value = getValue(document, field);
+			if (value != null) {
+				if (value.isArray()) {
+					BsonArray array = value.asArray();
+					if (!array.isEmpty()) {
+						writer.write('"');
+						boolean first = true;
+						for (BsonValue item : array) {
+							if (!first) {
+								writer.write(';');
+							}
+							first = false;
+
+							if (item.isString()) {
+								writer.write(item.asString().getValue().replace("\"", "\"\""));
+							}
+							else {
+								writer.write(toCSVString(item).replace("\"", "\"\""));
+							}
+						}
+						writer.write('"');
+					}
+				}
+				else if (value.isString()) {
+					String s = value.asString().getValue();
+					if (s.contains(",") || s.contains(" ") || s.contains("\"") || s.contains("\n")) {
+						writer.write('"');
+						writer.write(s.replace("\"", "\"\""));
+						writer.write('"');
+					}
+					else {
+						writer.write(s);
+					}
+				}
+				else if (value.isDocument()) {
+					writer.write('"');
+					writer.write(toCSVString(value).replace("\"", "\"\""));
+					writer.write('"');
+				}
+				else {
+					writer.write(toCSVString(value));
+				}
+			}
+
+			i++;
+
+			if (i < fields.size()) {
+				writer.write(',');
+			}
+		}
+		writer.write('\n');
+	}
+
+	private String toCSVString(BsonValue value) {
+		switch (value.getBsonType()) {
+			case STRING:
+				return value.asString().getValue();
+			case INT32:
+				return String.valueOf(value.asInt32().getValue());
+			case INT64:
+				return String.valueOf(value.asInt64().getValue());
+			case DOUBLE:
+				return String.valueOf(value.asDouble().getValue());
+			case BOOLEAN:
+				return String.valueOf(value.asBoolean().getValue());
+			case DATE_TIME:
+				return new Date(value.asDateTime().getValue()).toString();
+			case OBJECT_ID:
+				return value.asObjectId().getValue().toHexString();
+			case DOCUMENT:
+				return value.asDocument().toJson(COMPACT_SETTINGS);
+			default:
+				String json = new BsonDocument("v", value).toJson(COMPACT_SETTINGS);
+				return json.substring(json.indexOf(':') + 1, json.lastIndexOf('}')).trim();
+		}
+	}
+
+	/**
+	 * Gets the value of a field that can be nested with dots, values of a nested field in an array of documents are collected into an array
+	 */
+	private static BsonValue getValue(BsonDocument document, String storedFieldName) {
+		if (!storedFieldName.contains(".")) {
+			return document.get(storedFieldName);
+		}
+
+		BsonValue o = document;
+		for (String field : storedFieldName.split("\\.")) {
+			if (o == null) {
+				break;
+			}
+			if (o.isArray()) {
+				BsonArray values = new BsonArray();
+				for (BsonValue item : o.asArray()) {
+					if (item.isDocument()) {
+						BsonValue value = item.asDocument().get(field);
+						if (value != null) {
+							values.add(value);
+						}
+					}
+				}
+				o = values.isEmpty() ? null : values;
+			}
+			else if (o.isDocument()) {
+				o = o.asDocument().get(field);
+			}
+			else {
+				o = null;
+			}
+		}
+		return o;
+	}
+
+	public void flush() throws IOException {
+		writer.flush();
+	}
+}
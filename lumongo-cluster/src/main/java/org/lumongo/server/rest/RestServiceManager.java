@@ -41,6 +41,7 @@ public class RestServiceManager {
 		config.register(new TermsResource(indexManager));
 		config.register(new MembersResource(indexManager));
 		config.register(new StatsResource(indexManager));
+		config.register(new DeleteByQueryResource(indexManager));
 		server = GrizzlyHttpServerFactory.createHttpServer(baseUri, config);
 		server.getListener("grizzly").setMaxHttpHeaderSize(128 * 1024);
 		
@@ -4,7 +4,13 @@ import com.cedarsoftware.util.io.JsonWriter;
 import com.mongodb.util.JSONSerializers;
 import org.bson.Document;
 import org.lumongo.LumongoConstants;
+import org.lumongo.server.index.LaneExecutor;
 import org.lumongo.server.index.LumongoIndexManager;
+import org.lumongo.server.index.SegmentLoadTime;
+import org.lumongo.server.search.LeafSearchExecutor;
+import org.lumongo.server.search.LumongoQueryCache;
+import org.lumongo.server.search.ParsedQueryCache;
+import org.lumongo.server.search.QueryResultCache;
 import org.lumongo.storage.lucene.MongoFile;
 
 import javax.ws.rs.GET;
@@ -14,6 +20,10 @@ import javax.ws.rs.QueryParam;
 import javax.ws.rs.core.Context;
 import javax.ws.rs.core.MediaType;
 import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
 
 @Path(LumongoConstants.STATS_URL)
 public class StatsResource {
@@ -37,6 +47,81 @@ public class StatsResource {
 			mongoDocument.put("indexBlockSize", indexManager.getClusterConfig().getIndexBlockSize());
 			mongoDocument.put("maxIndexBlockCount", indexManager.getClusterConfig().getMaxIndexBlocks());
 			mongoDocument.put("currentIndexBlockCount", MongoFile.getCacheSize());
+			mongoDocument.put("offHeapIndexCache", MongoFile.isOffHeap());
+			mongoDocument.put("offHeapIndexCacheMB", MongoFile.getMaxCacheBytes() / MB);
+
+			long flushCount = MongoFile.getFlushCount();
+			mongoDocument.put("indexFlushCount", flushCount);
+			mongoDocument.put("indexFlushedBlocks", MongoFile.getFlushedBlocks());
+			mongoDocument.put("indexFlushedMB", MongoFile.getFlushedBytes() / MB);
+			mongoDocument.put("indexFlushAvgBlocks", flushCount == 0 ? 0 : MongoFile.getFlushedBlocks() / flushCount);
+			mongoDocument.put("indexFlushAvgKB", flushCount == 0 ? 0 : MongoFile.getFlushedBytes() / flushCount / 1024);
+			mongoDocument.put("indexFlushAvgTimeMs", flushCount == 0 ? 0 : MongoFile.getFlushTimeMs() / flushCount);
+			mongoDocument.put("indexFlushMaxTimeMs", MongoFile.getMaxFlushTimeMs());
+
+			mongoDocument.put("filterQueryCache", LumongoQueryCache.isEnabled());
+			mongoDocument.put("filterQueryCacheHits", LumongoQueryCache.getHitCount());
+			mongoDocument.put("filterQueryCacheMisses", LumongoQueryCache.getMissCount());
+			mongoDocument.put("filterQueryCacheCount", LumongoQueryCache.getCacheCount());
+			mongoDocument.put("filterQueryCacheEvictions", LumongoQueryCache.getEvictionCount());
+			mongoDocument.put("filterQueryCacheMB", LumongoQueryCache.getRamBytesUsed() / MB);
+
+			mongoDocument.put("leafSearchThreads", indexManager.getClusterConfig().getLeafSearchThreads());
+			mongoDocument.put("leafSearchParallelSlices", LeafSearchExecutor.getParallelSlices());
+			mongoDocument.put("leafSearchCallerSlices", LeafSearchExecutor.getCallerSlices());
+
+			mongoDocument.put("queryResultCacheHits", QueryResultCache.getHitCount());
+			mongoDocument.put("queryResultCachePartialHits", QueryResultCache.getPartialHitCount());
+			mongoDocument.put("queryResultCacheMisses", QueryResultCache.getMissCount());
+			mongoDocument.put("queryResultCacheEvictions", QueryResultCache.getEvictionCount());
+
+			long parsedQueryCacheHits = ParsedQueryCache.getHitCount();
+			long parsedQueryCacheLookups = parsedQueryCacheHits + ParsedQueryCache.getMissCount();
+			mongoDocument.put("parsedQueryCacheHits", parsedQueryCacheHits);
+			mongoDocument.put("parsedQueryCacheMisses", ParsedQueryCache.getMissCount());
+			mongoDocument.put("parsedQueryCacheEvictions", ParsedQueryCache.getEvictionCount());
+			mongoDocument.put("parsedQueryCacheHitRate", parsedQueryCacheLookups == 0 ? 0 : (double) parsedQueryCacheHits / parsedQueryCacheLookups);
+
+			mongoDocument.put("queryCount", indexManager.getQueryCount());
+			mongoDocument.put("queryMembersContacted", indexManager.getQueryMembersContacted());
+
+			List<Document> lanes = new ArrayList<>();
+			for (LaneExecutor lane : indexManager.getLanes()) {
+				Document laneDocument = new Document();
+				if (lane.getIndexName() != null) {
+					laneDocument.put("indexName", lane.getIndexName());
+				}
+				laneDocument.put("lane", lane.getLane());
+				laneDocument.put("threads", lane.getPoolSize());
+				laneDocument.put("activeThreads", lane.getActiveCount());
+				laneDocument.put("queueDepth", lane.getQueueDepth());
+				laneDocument.put("queueCapacity", lane.getQueueCapacity());
+				laneDocument.put("submitted", lane.getSubmittedCount());
+				laneDocument.put("completed", lane.getCompletedCount());
+				laneDocument.put("rejected", lane.getRejectedCount());
+				long completed = lane.getCompletedCount();
+				laneDocument.put("avgWaitMs", completed == 0 ? 0 : lane.getTotalWaitNanos() / completed / 1000000);
+				laneDocument.put("maxWaitMs", lane.getMaxWaitNanos() / 1000000);
+				lanes.add(laneDocument);
+			}
+			mongoDocument.put("lanes", lanes);
+
+			List<Document> segmentLoads = new ArrayList<>();
+			Map<String, Map<Integer, SegmentLoadTime>> segmentLoadTimes = indexManager.getSegmentLoadTimes();
+			for (String indexName : segmentLoadTimes.keySet()) {
+				for (SegmentLoadTime segmentLoadTime : segmentLoadTimes.get(indexName).values()) {
+					Document segmentLoadDocument = new Document();
+					segmentLoadDocument.put("indexName", indexName);
+					segmentLoadDocument.put("segment", segmentLoadTime.getSegmentNumber());
+					segmentLoadDocument.put("warmMs", segmentLoadTime.getWarmMs());
+					segmentLoadDocument.put("warmedMB", segmentLoadTime.getWarmedBytes() / MB);
+					segmentLoadDocument.put("lockWaitMs", segmentLoadTime.getLockWaitMs());
+					segmentLoadDocument.put("openMs", segmentLoadTime.getOpenMs());
+					segmentLoadDocument.put("loadedAt", new Date(segmentLoadTime.getLoadedAt()));
+					segmentLoads.add(segmentLoadDocument);
+				}
+			}
+			mongoDocument.put("segmentLoads", segmentLoads);
 
 			Runtime runtime = Runtime.getRuntime();
 
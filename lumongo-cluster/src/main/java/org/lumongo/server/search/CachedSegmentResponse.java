@@ -0,0 +1,79 @@
+package org.lumongo.server.search;
+
+import org.apache.lucene.index.IndexReader;
+import org.apache.lucene.index.LeafReader;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.TopFieldDocs;
+import org.lumongo.cluster.message.Lumongo.SegmentResponse;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Segment query result along with the leaves of the reader it was computed on.  A leaf is identified by the cache key of its reader, which
+ * changes when the leaf has new deletes, so an entry can be checked against a newer reader leaf by leaf instead of being dropped whenever the
+ * reader is reopened.
+ */
+public class CachedSegmentResponse {
+
+	private final SegmentResponse segmentResponse;
+	private final List<Object> leafKeys;
+	private final int maxDoc;
+	private final TopFieldDocs topDocs;
+
+	/**
+	 * @param segmentResponse - response returned for the query
+	 * @param leafKeys - keys of the leaves of the reader the response was computed on
+	 * @param maxDoc - max doc of the reader the response was computed on
+	 * @param topDocs - top docs the response was built from if results from new leaves can be merged in, otherwise null
+	 */
+	public CachedSegmentResponse(SegmentResponse segmentResponse, List<Object> leafKeys, int maxDoc, TopFieldDocs topDocs) {
+		this.segmentResponse = segmentResponse;
+		this.leafKeys = leafKeys;
+		this.maxDoc = maxDoc;
+		this.topDocs = topDocs;
+	}
+
+	/**
+	 * @return the keys of the leaves of the reader, null if a leaf does not support caching
+	 */
+	public static List<Object> getLeafKeys(IndexReader indexReader) {
+		List<LeafReaderContext> leaves = indexReader.leaves();
+		List<Object> leafKeys = new ArrayList<>(leaves.size());
+		for (LeafReaderContext leaf : leaves) {
+			LeafReader.CacheHelper cacheHelper = leaf.reader().getReaderCacheHelper();
+			if (cacheHelper == null) {
+				return null;
+			}
+			leafKeys.add(cacheHelper.getKey());
+		}
+		return leafKeys;
+	}
+
+	public SegmentResponse getSegmentResponse() {
+		return segmentResponse;
+	}
+
+	public int getMaxDoc() {
+		return maxDoc;
+	}
+
+	public TopFieldDocs getTopDocs() {
+		return topDocs;
+	}
+
+	/**
+	 * @return true if the response was computed on exactly these leaves
+	 */
+	public boolean isCurrent(List<Object> currentLeafKeys) {
+		return leafKeys.equals(currentLeafKeys);
+	}
+
+	/**
+	 * @return true if the leaves the response was computed on are unchanged and only new leaves were added after them, the results from the new leaves
+	 * can then be merged in if top docs are available
+	 */
+	public boolean isMergeable(List<Object> currentLeafKeys) {
+		return topDocs != null && currentLeafKeys.size() > leafKeys.size() && leafKeys.equals(currentLeafKeys.subList(0, leafKeys.size()));
+	}
+}
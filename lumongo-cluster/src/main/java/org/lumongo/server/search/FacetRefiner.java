@@ -0,0 +1,213 @@
+package org.lumongo.server.search;
+
+import org.lumongo.cluster.message.Lumongo.CountRequest;
+import org.lumongo.cluster.message.Lumongo.FacetCount;
+import org.lumongo.cluster.message.Lumongo.FacetGroup;
+import org.lumongo.cluster.message.Lumongo.FacetRefinementResponse;
+import org.lumongo.cluster.message.Lumongo.IndexSegmentResponse;
+import org.lumongo.cluster.message.Lumongo.InternalQueryResponse;
+import org.lumongo.cluster.message.Lumongo.QueryRequest;
+import org.lumongo.cluster.message.Lumongo.SegmentFacetRefinement;
+import org.lumongo.cluster.message.Lumongo.SegmentResponse;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Second phase of faceting for count requests with refine set.  After the segments return their top facets, the facets that could still be
+ * in the top facets are counted exactly on only the segments that did not return them.  The exact counts are added to the segment responses
+ * as refined facet counts so {@link QueryCombiner} sums them without treating them as part of the top facets of the segment.
+ */
+public class FacetRefiner {
+
+	private final Map<String, Integer> numberOfSegmentsMap;
+	private final List<CountRequest> refineRequests;
+
+	/**
+	 * @param numberOfSegmentsMap - number of segments of each index queried by index name
+	 */
+	public FacetRefiner(QueryRequest request, Map<String, Integer> numberOfSegmentsMap) {
+		this.numberOfSegmentsMap = numberOfSegmentsMap;
+		this.refineRequests = new ArrayList<>();
+		if (request.hasFacetRequest()) {
+			for (CountRequest countRequest : request.getFacetRequest().getCountRequestList()) {
+				if (countRequest.getRefine()) {
+					refineRequests.add(countRequest);
+				}
+			}
+		}
+	}
+
+	/**
+	 * @return number of top facets a segment returns for the count request
+	 */
+	public static int getSegmentFacets(CountRequest countRequest, int numberOfSegments) {
+		if (numberOfSegments > 1) {
+			if (countRequest.getSegmentFacets() != 0) {
+				return countRequest.getSegmentFacets();
+			}
+			return countRequest.getMaxFacets() * 8;
+		}
+		return countRequest.getMaxFacets();
+	}
+
+	/**
+	 * @return true if the segment returned every facet it has for the count request
+	 */
+	public static boolean isComplete(CountRequest countRequest, int numberOfSegments, int facetCountCount) {
+		if (numberOfSegments > 1 && countRequest.hasSegmentFacets() && countRequest.getSegmentFacets() == 0) {
+			return true;
+		}
+		int segmentFacets = getSegmentFacets(countRequest, numberOfSegments);
+		return segmentFacets <= 0 || facetCountCount < segmentFacets;
+	}
+
+	public boolean isRefining() {
+		return !refineRequests.isEmpty();
+	}
+
+	/**
+	 * A facet is refined on the incomplete segments that did not return it if its count plus the smallest count returned by each of those
+	 * segments could reach the count of the last facet that would be returned
+	 * @return the facets to count for each segment by index name and segment number, empty if nothing needs refining
+	 */
+	public Map<String, Map<Integer, SegmentFacetRefinement.Builder>> getRefinements(List<InternalQueryResponse> responses) {
+		Map<String, Map<Integer, SegmentFacetRefinement.Builder>> refinements = new HashMap<>();
+
+		List<SegmentResponse> segmentResponses = new ArrayList<>();
+		List<Integer> segmentsForIndex = new ArrayList<>();
+		for (InternalQueryResponse iqr : responses) {
+			for (IndexSegmentResponse isr : iqr.getIndexSegmentResponseList()) {
+				int numberOfSegments = numberOfSegmentsMap.get(isr.getIndexName());
+				for (SegmentResponse sr : isr.getSegmentReponseList()) {
+					segmentResponses.add(sr);
+					segmentsForIndex.add(numberOfSegments);
+				}
+			}
+		}
+
+		for (CountRequest countRequest : refineRequests) {
+			Map<String, Long> facetCounts = new HashMap<>();
+			Map<String, BitSet> returnedBy = new HashMap<>();
+			long[] minForIncomplete = new long[segmentResponses.size()];
+			BitSet incomplete = new BitSet(segmentResponses.size());
+
+			for (int s = 0; s < segmentResponses.size(); s++) {
+				FacetGroup fg = getFacetGroup(segmentResponses.get(s), countRequest);
+				if (fg == null) {
+					continue;
+				}
+
+				for (FacetCount fc : fg.getFacetCountList()) {
+					facetCounts.merge(fc.getFacet(), fc.getCount(), Long::sum);
+					returnedBy.computeIfAbsent(fc.getFacet(), k -> new BitSet(segmentResponses.size())).set(s);
+				}
+
+				if (!isComplete(countRequest, segmentsForIndex.get(s), fg.getFacetCountCount())) {
+					incomplete.set(s);
+					//facets are returned by count descending
+					minForIncomplete[s] = fg.getFacetCount(fg.getFacetCountCount() - 1).getCount();
+				}
+			}
+
+			if (incomplete.isEmpty()) {
+				continue;
+			}
+
+			long threshold = 0;
+			int maxFacets = countRequest.getMaxFacets();
+			if (maxFacets > 0 && facetCounts.size() >= maxFacets) {
+				List<Long> counts = new ArrayList<>(facetCounts.values());
+				counts.sort(Collections.reverseOrder());
+				threshold = counts.get(maxFacets - 1);
+			}
+
+			for (String facet : facetCounts.keySet()) {
+				BitSet missing = (BitSet) incomplete.clone();
+				missing.andNot(returnedBy.get(facet));
+				if (missing.isEmpty()) {
+					continue;
+				}
+
+				long maxCount = facetCounts.get(facet);
+				for (int s = missing.nextSetBit(0); s >= 0; s = missing.nextSetBit(s + 1)) {
+					maxCount += minForIncomplete[s];
+				}
+
+				if (maxCount >= threshold) {
+					for (int s = missing.nextSetBit(0); s >= 0; s = missing.nextSetBit(s + 1)) {
+						SegmentResponse sr = segmentResponses.get(s);
+						SegmentFacetRefinement.Builder refinement = refinements.computeIfAbsent(sr.getIndexName(), k -> new HashMap<>())
+								.computeIfAbsent(sr.getSegmentNumber(),
+										k -> SegmentFacetRefinement.newBuilder().setIndexName(sr.getIndexName()).setSegmentNumber(sr.getSegmentNumber()));
+						getFacetGroupBuilder(refinement, countRequest).addFacetCount(FacetCount.newBuilder().setFacet(facet).setCount(0));
+					}
+				}
+			}
+		}
+
+		return refinements;
+	}
+
+	/**
+	 * @return the responses with the refined counts added to the facet groups of the segments
+	 */
+	public List<InternalQueryResponse> applyRefinements(List<InternalQueryResponse> responses, List<FacetRefinementResponse> refinementResponses) {
+		Map<String, Map<Integer, SegmentFacetRefinement>> refined = new HashMap<>();
+		for (FacetRefinementResponse refinementResponse : refinementResponses) {
+			for (SegmentFacetRefinement refinement : refinementResponse.getSegmentFacetRefinementList()) {
+				refined.computeIfAbsent(refinement.getIndexName(), k -> new HashMap<>()).put(refinement.getSegmentNumber(), refinement);
+			}
+		}
+
+		List<InternalQueryResponse> refinedResponses = new ArrayList<>(responses.size());
+		for (InternalQueryResponse iqr : responses) {
+			InternalQueryResponse.Builder iqrBuilder = iqr.toBuilder();
+			for (IndexSegmentResponse.Builder isr : iqrBuilder.getIndexSegmentResponseBuilderList()) {
+				Map<Integer, SegmentFacetRefinement> indexRefined = refined.get(isr.getIndexName());
+				if (indexRefined == null) {
+					continue;
+				}
+
+				for (SegmentResponse.Builder sr : isr.getSegmentReponseBuilderList()) {
+					SegmentFacetRefinement refinement = indexRefined.get(sr.getSegmentNumber());
+					if (refinement == null) {
+						continue;
+					}
+
+					for (FacetGroup refinedGroup : refinement.getFacetGroupList()) {
+						for (FacetGroup.Builder fg : sr.getFacetGroupBuilderList()) {
+							if (fg.getCountRequest().equals(refinedGroup.getCountRequest())) {
+								fg.addAllRefinedFacetCount(refinedGroup.getFacetCountList());
+							}
+						}
+					}
+				}
+			}
+			refinedResponses.add(iqrBuilder.build());
+		}
+		return refinedResponses;
+	}
+
+	private static FacetGroup getFacetGroup(SegmentResponse sr, CountRequest countRequest) {
+		for (FacetGroup fg : sr.getFacetGroupList()) {
+			if (fg.getCountRequest().equals(countRequest)) {
+				return fg;
+			}
+		}
+		return null;
+	}
+
+	private static FacetGroup.Builder getFacetGroupBuilder(SegmentFacetRefinement.Builder refinement, CountRequest countRequest) {
+		for (FacetGroup.Builder fg : refinement.getFacetGroupBuilderList()) {
+			if (fg.getCountRequest().equals(countRequest)) {
+				return fg;
+			}
+		}
+		return refinement.addFacetGroupBuilder().setCountRequest(countRequest);
+	}
+}
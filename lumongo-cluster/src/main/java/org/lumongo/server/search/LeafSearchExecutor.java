@@ -0,0 +1,148 @@
+package org.lumongo.server.search;
+
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.IndexSearcher.LeafSlice;
+import org.lumongo.util.LumongoThreadFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.AbstractExecutorService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Node wide executor for searching the leaf slices of a segment concurrently.  A slice only runs on the pool when one of the threads sized to
+ * the cores of the node is idle, otherwise it runs on the thread searching the segment.  When many segments are searched at once the leaves are
+ * searched in order on the segment threads and when few segments are searched the idle cores search their leaves, so segment and leaf parallelism
+ * together do not run more searches than the node has cores plus the segment threads.
+ */
+public class LeafSearchExecutor extends AbstractExecutorService {
+
+	public static final int SLICE_MIN_DOCS = 250000;
+	public static final int SLICE_MAX_LEAVES = 5;
+
+	private static final AtomicLong parallelSlices = new AtomicLong();
+	private static final AtomicLong callerSlices = new AtomicLong();
+
+	private static LeafSearchExecutor leafSearchExecutor;
+
+	/**
+	 * @param threads - number of threads searching leaf slices, 0 disables searching leaf slices concurrently
+	 */
+	public static synchronized void configure(int threads) {
+		if (leafSearchExecutor != null) {
+			leafSearchExecutor.shutdown();
+		}
+		leafSearchExecutor = threads > 0 ? new LeafSearchExecutor(threads) : null;
+	}
+
+	/**
+	 * @return the node leaf search executor, null if searching leaf slices concurrently is disabled
+	 */
+	public static LeafSearchExecutor getLeafSearchExecutor() {
+		return leafSearchExecutor;
+	}
+
+	public static int getDefaultThreads() {
+		return Runtime.getRuntime().availableProcessors();
+	}
+
+	public static long getParallelSlices() {
+		return parallelSlices.get();
+	}
+
+	public static long getCallerSlices() {
+		return callerSlices.get();
+	}
+
+	/**
+	 * Groups leaves in order into slices of at least {@link #SLICE_MIN_DOCS} documents or {@link #SLICE_MAX_LEAVES} leaves so small leaves do not
+	 * each become a task.  Keeping the leaves in order keeps ties of the merged slices in doc id order.
+	 */
+	public static LeafSlice[] getSlices(List<LeafReaderContext> leaves) {
+		List<LeafSlice> slices = new ArrayList<>();
+		List<LeafReaderContext> slice = new ArrayList<>();
+		int sliceDocs = 0;
+		for (LeafReaderContext leaf : leaves) {
+			slice.add(leaf);
+			sliceDocs += leaf.reader().maxDoc();
+			if (sliceDocs >= SLICE_MIN_DOCS || slice.size() == SLICE_MAX_LEAVES) {
+				slices.add(new LeafSlice(slice.toArray(new LeafReaderContext[slice.size()])));
+				slice.clear();
+				sliceDocs = 0;
+			}
+		}
+		if (!slice.isEmpty()) {
+			slices.add(new LeafSlice(slice.toArray(new LeafReaderContext[slice.size()])));
+		}
+		return slices.toArray(new LeafSlice[slices.size()]);
+	}
+
+	private final int threads;
+	private final Semaphore idleThreads;
+	private final ExecutorService pool;
+
+	private LeafSearchExecutor(int threads) {
+		this.threads = threads;
+		this.idleThreads = new Semaphore(threads);
+		this.pool = Executors.newFixedThreadPool(threads, new LumongoThreadFactory("leafSearch"));
+	}
+
+	public int getThreads() {
+		return threads;
+	}
+
+	@Override
+	public void execute(Runnable command) {
+		if (idleThreads.tryAcquire()) {
+			try {
+				pool.execute(() -> {
+					try {
+						command.run();
+					}
+					finally {
+						idleThreads.release();
+					}
+				});
+				parallelSlices.incrementAndGet();
+				return;
+			}
+			catch (RejectedExecutionException e) {
+				//pool was shutdown by a reconfigure, search the slice on the segment thread
+				idleThreads.release();
+			}
+		}
+
+		callerSlices.incrementAndGet();
+		command.run();
+	}
+
+	@Override
+	public void shutdown() {
+		pool.shutdown();
+	}
+
+	@Override
+	public List<Runnable> shutdownNow() {
+		return pool.shutdownNow();
+	}
+
+	@Override
+	public boolean isShutdown() {
+		return pool.isShutdown();
+	}
+
+	@Override
+	public boolean isTerminated() {
+		return pool.isTerminated();
+	}
+
+	@Override
+	public boolean awaitTermination(long timeout, TimeUnit unit) throws InterruptedException {
+		return pool.awaitTermination(timeout, unit);
+	}
+}
@@ -0,0 +1,74 @@
+package org.lumongo.server.search;
+
+import org.apache.lucene.search.LRUQueryCache;
+import org.apache.lucene.search.QueryCache;
+import org.apache.lucene.search.QueryCachingPolicy;
+import org.apache.lucene.search.UsageTrackingQueryCachingPolicy;
+
+/**
+ * Node wide cache of the matching documents of non scoring queries (i.e. filter queries) per index segment leaf.  Shared by the searchers of
+ * every segment on the node so a filter repeated across queries is only evaluated once per leaf until the leaf is merged away.
+ */
+public class LumongoQueryCache {
+
+	public static final int DEFAULT_MAX_QUERIES = 1000;
+	public static final int DEFAULT_MAX_MB = 64;
+
+	private static final QueryCachingPolicy queryCachingPolicy = new UsageTrackingQueryCachingPolicy();
+
+	private static LRUQueryCache queryCache = new LRUQueryCache(DEFAULT_MAX_QUERIES, DEFAULT_MAX_MB * 1024L * 1024L);
+
+	/**
+	 * @param maxQueries - maximum number of queries cached, 0 disables the cache
+	 * @param maxMB - maximum memory used by the cache in MB, 0 disables the cache
+	 */
+	public static void configure(int maxQueries, int maxMB) {
+		if (maxQueries > 0 && maxMB > 0) {
+			queryCache = new LRUQueryCache(maxQueries, maxMB * 1024L * 1024L);
+		}
+		else {
+			queryCache = null;
+		}
+	}
+
+	/**
+	 * @return the node query cache, null if caching is disabled
+	 */
+	public static QueryCache getQueryCache() {
+		return queryCache;
+	}
+
+	public static QueryCachingPolicy getQueryCachingPolicy() {
+		return queryCachingPolicy;
+	}
+
+	public static boolean isEnabled() {
+		return queryCache != null;
+	}
+
+	public static long getHitCount() {
+		LRUQueryCache qc = queryCache;
+		return qc == null ? 0 : qc.getHitCount();
+	}
+
+	public static long getMissCount() {
+		LRUQueryCache qc = queryCache;
+		return qc == null ? 0 : qc.getMissCount();
+	}
+
+	public static long getCacheCount() {
+		LRUQueryCache qc = queryCache;
+		return qc == null ? 0 : qc.getCacheCount();
+	}
+
+	public static long getEvictionCount() {
+		LRUQueryCache qc = queryCache;
+		return qc == null ? 0 : qc.getEvictionCount();
+	}
+
+	public static long getRamBytesUsed() {
+		LRUQueryCache qc = queryCache;
+		return qc == null ? 0 : qc.ramBytesUsed();
+	}
+
+}
@@ -0,0 +1,301 @@
+package org.lumongo.server.search;
+
+import org.apache.lucene.index.DocValues;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.index.SortedNumericDocValues;
+import org.apache.lucene.search.SimpleCollector;
+import org.apache.lucene.util.NumericUtils;
+import org.lumongo.cluster.message.Lumongo.Range;
+import org.lumongo.cluster.message.Lumongo.RangeCount;
+import org.lumongo.cluster.message.Lumongo.RangeRequest;
+import org.lumongo.cluster.message.Lumongo.RangeResult;
+import org.lumongo.cluster.message.Lumongo.StatRequest;
+import org.lumongo.cluster.message.Lumongo.StatResult;
+import org.lumongo.cluster.message.LumongoIndex.FieldConfig;
+import org.lumongo.server.config.IndexConfig;
+import org.lumongo.server.config.IndexConfigUtil;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Computes stats and range counts for numeric and date sort fields from their SortedNumericDocValues while collecting.  All state is allocated
+ * when the collector is created so nothing is allocated per document.  Dates are handled as epoch milliseconds.
+ */
+public class NumericFacetCollector extends SimpleCollector {
+
+	public static final int MAX_HISTOGRAM_BUCKETS = 10000;
+
+	private final StatAccumulator[] statAccumulators;
+	private final RangeAccumulator[] rangeAccumulators;
+
+	public NumericFacetCollector(List<StatRequest> statRequests, List<RangeRequest> rangeRequests, IndexConfig indexConfig) {
+		statAccumulators = new StatAccumulator[statRequests.size()];
+		for (int i = 0; i < statAccumulators.length; i++) {
+			StatRequest statRequest = statRequests.get(i);
+			statAccumulators[i] = new StatAccumulator(statRequest, getFieldType(statRequest.getSortField(), indexConfig));
+		}
+
+		rangeAccumulators = new RangeAccumulator[rangeRequests.size()];
+		for (int i = 0; i < rangeAccumulators.length; i++) {
+			RangeRequest rangeRequest = rangeRequests.get(i);
+			rangeAccumulators[i] = new RangeAccumulator(rangeRequest, getFieldType(rangeRequest.getSortField(), indexConfig));
+		}
+	}
+
+	private static FieldConfig.FieldType getFieldType(String sortField, IndexConfig indexConfig) {
+		FieldConfig.FieldType fieldType = indexConfig.getFieldTypeForSortField(sortField);
+		if (fieldType == null || !IndexConfigUtil.isNumericOrDateFieldType(fieldType)) {
+			throw new IllegalArgumentException("Field <" + sortField + "> must have sortAs defined on a numeric or date field for stats and ranges");
+		}
+		return fieldType;
+	}
+
+	@Override
+	protected void doSetNextReader(LeafReaderContext context) throws IOException {
+		for (StatAccumulator statAccumulator : statAccumulators) {
+			statAccumulator.setNextReader(context);
+		}
+		for (RangeAccumulator rangeAccumulator : rangeAccumulators) {
+			rangeAccumulator.setNextReader(context);
+		}
+	}
+
+	@Override
+	public void collect(int doc) throws IOException {
+		for (StatAccumulator statAccumulator : statAccumulators) {
+			statAccumulator.collect(doc);
+		}
+		for (RangeAccumulator rangeAccumulator : rangeAccumulators) {
+			rangeAccumulator.collect(doc);
+		}
+	}
+
+	@Override
+	public boolean needsScores() {
+		return false;
+	}
+
+	/**
+	 * Adds the stats and range counts of a collector for the same requests that collected other documents
+	 */
+	public void merge(NumericFacetCollector other) {
+		for (int i = 0; i < statAccumulators.length; i++) {
+			statAccumulators[i].merge(other.statAccumulators[i]);
+		}
+		for (int i = 0; i < rangeAccumulators.length; i++) {
+			rangeAccumulators[i].merge(other.rangeAccumulators[i]);
+		}
+	}
+
+	public List<StatResult> getStatResults() {
+		List<StatResult> statResults = new ArrayList<>(statAccumulators.length);
+		for (StatAccumulator statAccumulator : statAccumulators) {
+			statResults.add(statAccumulator.getResult());
+		}
+		return statResults;
+	}
+
+	public List<RangeResult> getRangeResults() {
+		List<RangeResult> rangeResults = new ArrayList<>(rangeAccumulators.length);
+		for (RangeAccumulator rangeAccumulator : rangeAccumulators) {
+			rangeResults.add(rangeAccumulator.getResult());
+		}
+		return rangeResults;
+	}
+
+	private static abstract class NumericAccumulator {
+		private final String sortField;
+		private final FieldConfig.FieldType fieldType;
+		protected SortedNumericDocValues values;
+
+		private NumericAccumulator(String sortField, FieldConfig.FieldType fieldType) {
+			this.sortField = sortField;
+			this.fieldType = fieldType;
+		}
+
+		protected void setNextReader(LeafReaderContext context) throws IOException {
+			values = DocValues.getSortedNumeric(context.reader(), sortField);
+		}
+
+		protected double toDouble(long value) {
+			if (FieldConfig.FieldType.NUMERIC_FLOAT.equals(fieldType)) {
+				return NumericUtils.sortableIntToFloat((int) value);
+			}
+			else if (FieldConfig.FieldType.NUMERIC_DOUBLE.equals(fieldType)) {
+				return NumericUtils.sortableLongToDouble(value);
+			}
+			return value;
+		}
+
+		protected abstract void collect(int doc) throws IOException;
+	}
+
+	private static class StatAccumulator extends NumericAccumulator {
+		private final StatRequest statRequest;
+		private long docCount;
+		private long valueCount;
+		private double min = Double.POSITIVE_INFINITY;
+		private double max = Double.NEGATIVE_INFINITY;
+		private double sum;
+
+		private StatAccumulator(StatRequest statRequest, FieldConfig.FieldType fieldType) {
+			super(statRequest.getSortField(), fieldType);
+			this.statRequest = statRequest;
+		}
+
+		@Override
+		protected void collect(int doc) throws IOException {
+			if (values.advanceExact(doc)) {
+				int count = values.docValueCount();
+				docCount++;
+				valueCount += count;
+				for (int i = 0; i < count; i++) {
+					double value = toDouble(values.nextValue());
+					if (value < min) {
+						min = value;
+					}
+					if (value > max) {
+						max = value;
+					}
+					sum += value;
+				}
+			}
+		}
+
+		private void merge(StatAccumulator other) {
+			docCount += other.docCount;
+			valueCount += other.valueCount;
+			min = Math.min(min, other.min);
+			max = Math.max(max, other.max);
+			sum += other.sum;
+		}
+
+		private StatResult getResult() {
+			StatResult.Builder statResult = StatResult.newBuilder().setStatRequest(statRequest).setDocCount(docCount).setValueCount(valueCount).setSum(sum);
+			if (valueCount > 0) {
+				statResult.setMin(min).setMax(max);
+			}
+			return statResult.build();
+		}
+	}
+
+	private static class RangeAccumulator extends NumericAccumulator {
+		private final RangeRequest rangeRequest;
+		private final List<Range> ranges;
+		private final double[] from;
+		private final double[] to;
+		private final long[] counts;
+		private final int[] lastDoc;
+
+		private final int histogramOffset;
+		private final int histogramBuckets;
+		private final double histogramFrom;
+		private final double histogramTo;
+		private final double histogramInterval;
+
+		private RangeAccumulator(RangeRequest rangeRequest, FieldConfig.FieldType fieldType) {
+			super(rangeRequest.getSortField(), fieldType);
+			this.rangeRequest = rangeRequest;
+
+			ranges = new ArrayList<>(rangeRequest.getRangeList());
+			histogramOffset = ranges.size();
+
+			if (rangeRequest.hasHistogramInterval()) {
+				if (!rangeRequest.hasHistogramFrom() || !rangeRequest.hasHistogramTo()) {
+					throw new IllegalArgumentException("Histogram for field <" + rangeRequest.getSortField() + "> requires histogram from and to");
+				}
+
+				histogramFrom = rangeRequest.getHistogramFrom();
+				histogramTo = rangeRequest.getHistogramTo();
+				histogramInterval = rangeRequest.getHistogramInterval();
+				if (histogramInterval <= 0 || histogramTo <= histogramFrom) {
+					throw new IllegalArgumentException(
+							"Histogram for field <" + rangeRequest.getSortField() + "> requires a positive interval and to greater than from");
+				}
+
+				double buckets = Math.ceil((histogramTo - histogramFrom) / histogramInterval);
+				if (buckets > MAX_HISTOGRAM_BUCKETS) {
+					throw new IllegalArgumentException(
+							"Histogram for field <" + rangeRequest.getSortField() + "> has <" + (long) buckets + "> buckets, the maximum is <"
+									+ MAX_HISTOGRAM_BUCKETS + ">");
+				}
+				histogramBuckets = (int) buckets;
+
+				for (int b = 0; b < histogramBuckets; b++) {
+					double bucketFrom = histogramFrom + (b * histogramInterval);
+					double bucketTo = Math.min(bucketFrom + histogramInterval, histogramTo);
+					ranges.add(Range.newBuilder().setFrom(bucketFrom).setTo(bucketTo).build());
+				}
+			}
+			else {
+				histogramBuckets = 0;
+				histogramFrom = 0;
+				histogramTo = 0;
+				histogramInterval = 0;
+			}
+
+			from = new double[histogramOffset];
+			to = new double[histogramOffset];
+			for (int r = 0; r < histogramOffset; r++) {
+				Range range = ranges.get(r);
+				from[r] = range.hasFrom() ? range.getFrom() : Double.NEGATIVE_INFINITY;
+				to[r] = range.hasTo() ? range.getTo() : Double.POSITIVE_INFINITY;
+			}
+
+			counts = new long[ranges.size()];
+			lastDoc = new int[ranges.size()];
+		}
+
+		@Override
+		protected void setNextReader(LeafReaderContext context) throws IOException {
+			super.setNextReader(context);
+			Arrays.fill(lastDoc, -1);
+		}
+
+		@Override
+		protected void collect(int doc) throws IOException {
+			if (values.advanceExact(doc)) {
+				int count = values.docValueCount();
+				for (int i = 0; i < count; i++) {
+					double value = toDouble(values.nextValue());
+
+					//ranges are from inclusive to exclusive, a document is counted once per range even if it has many values in the range
+					for (int r = 0; r < histogramOffset; r++) {
+						if (value >= from[r] && value < to[r]) {
+							countDoc(r, doc);
+						}
+					}
+
+					if (histogramBuckets > 0 && value >= histogramFrom && value < histogramTo) {
+						int bucket = Math.min((int) ((value - histogramFrom) / histogramInterval), histogramBuckets - 1);
+						countDoc(histogramOffset + bucket, doc);
+					}
+				}
+			}
+		}
+
+		private void countDoc(int r, int doc) {
+			if (lastDoc[r] != doc) {
+				lastDoc[r] = doc;
+				counts[r]++;
+			}
+		}
+
+		private void merge(RangeAccumulator other) {
+			for (int r = 0; r < counts.length; r++) {
+				counts[r] += other.counts[r];
+			}
+		}
+
+		private RangeResult getResult() {
+			RangeResult.Builder rangeResult = RangeResult.newBuilder().setRangeRequest(rangeRequest);
+			for (int r = 0; r < counts.length; r++) {
+				rangeResult.addRangeCount(RangeCount.newBuilder().setRange(ranges.get(r)).setCount(counts[r]));
+			}
+			return rangeResult.build();
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package org.lumongo.server.search;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import org.apache.lucene.search.Query;
+import org.lumongo.cluster.message.Lumongo;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the Lucene queries parsed for an index keyed by the query fields that change the parse.  Lucene queries are immutable so a cached
+ * query is shared by every search that uses it.  A new cache is created when the settings of the index change so queries are not parsed with
+ * the old analyzers.
+ */
+public class ParsedQueryCache {
+
+	private static final AtomicLong hitCount = new AtomicLong();
+	private static final AtomicLong missCount = new AtomicLong();
+	private static final AtomicLong evictionCount = new AtomicLong();
+
+	private Cache<Lumongo.Query, Query> parsedQueryCache;
+
+	public ParsedQueryCache(int maxSize, int concurrency) {
+		parsedQueryCache = CacheBuilder.newBuilder().concurrencyLevel(concurrency).maximumSize(maxSize).<Lumongo.Query, Query>removalListener(
+				notification -> {
+					if (notification.wasEvicted()) {
+						evictionCount.incrementAndGet();
+					}
+				}).build();
+	}
+
+	/**
+	 * @return the query with only the fields used to parse it set to the values they are parsed with so equivalent queries share an entry
+	 */
+	public static Lumongo.Query getCacheKey(Lumongo.Query lumongoQuery) {
+		Lumongo.Query.Builder key = Lumongo.Query.newBuilder();
+		key.setQ(lumongoQuery.getQ());
+		key.setDefaultOp(lumongoQuery.getDefaultOp());
+		key.addAllQf(lumongoQuery.getQfList());
+		key.setMm(lumongoQuery.getMm());
+		key.setDismax(lumongoQuery.getDismax());
+		if (lumongoQuery.getDismax()) {
+			key.setDismaxTie(lumongoQuery.getDismaxTie());
+		}
+		return key.build();
+	}
+
+	public Query getQuery(Lumongo.Query key) {
+		Query query = parsedQueryCache.getIfPresent(key);
+		if (query != null) {
+			hitCount.incrementAndGet();
+		}
+		else {
+			missCount.incrementAndGet();
+		}
+		return query;
+	}
+
+	public void storeInCache(Lumongo.Query key, Query query) {
+		parsedQueryCache.put(key, query);
+	}
+
+	public static long getHitCount() {
+		return hitCount.get();
+	}
+
+	public static long getMissCount() {
+		return missCount.get();
+	}
+
+	public static long getEvictionCount() {
+		return evictionCount.get();
+	}
+}
@@ -1,23 +1,67 @@
 package org.lumongo.server.search;
 
-import org.lumongo.cluster.message.Lumongo.QueryRequest;
+import org.apache.lucene.search.FieldDoc;
+import org.apache.lucene.search.Query;
+import org.lumongo.cluster.message.Lumongo.AnalysisRequest;
+import org.lumongo.cluster.message.Lumongo.FacetRequest;
+import org.lumongo.cluster.message.Lumongo.FetchType;
+import org.lumongo.cluster.message.Lumongo.HighlightRequest;
+import org.lumongo.cluster.message.Lumongo.SortRequest;
+import org.lumongo.cluster.message.LumongoIndex.AnalyzerSettings;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Key of a segment query result built from what the segment actually searches with instead of the query request it came from.  The lucene
+ * query with its filters is compared by its semantics, so requests that differ only in fields that do not change the results of the segment
+ * (e.g. debug, the order of the indexes searched or the query syntax used) share an entry.
+ */
 public class QueryCacheKey {
-	
-	private QueryRequest queryRequest;
-	
-	public QueryCacheKey(QueryRequest queryRequest) {
-		this.queryRequest = queryRequest;
+
+	private final Query query;
+	private final Map<String, AnalyzerSettings.Similarity> similarityOverrideMap;
+	private final int amount;
+	private final int afterDoc;
+	private final float afterScore;
+	private final List<Object> afterFields;
+	private final FacetRequest facetRequest;
+	private final SortRequest sortRequest;
+	private final FetchType resultFetchType;
+	private final List<String> fieldsToReturn;
+	private final List<String> fieldsToMask;
+	private final List<HighlightRequest> highlightList;
+	private final List<AnalysisRequest> analysisRequestList;
+	private final int hashCode;
+
+	public QueryCacheKey(Query query, Map<String, AnalyzerSettings.Similarity> similarityOverrideMap, int amount, FieldDoc after,
+			FacetRequest facetRequest, SortRequest sortRequest, FetchType resultFetchType, List<String> fieldsToReturn, List<String> fieldsToMask,
+			List<HighlightRequest> highlightList, List<AnalysisRequest> analysisRequestList) {
+		this.query = query;
+		this.similarityOverrideMap = similarityOverrideMap;
+		this.amount = amount;
+		this.afterDoc = after != null ? after.doc : -1;
+		this.afterScore = after != null ? after.score : 0;
+		this.afterFields = (after != null && after.fields != null) ? Arrays.asList(after.fields) : null;
+		this.facetRequest = facetRequest;
+		this.sortRequest = sortRequest;
+		this.resultFetchType = resultFetchType;
+		this.fieldsToReturn = fieldsToReturn;
+		this.fieldsToMask = fieldsToMask;
+		this.highlightList = highlightList;
+		this.analysisRequestList = analysisRequestList;
+		this.hashCode = Objects
+				.hash(query, similarityOverrideMap, amount, afterDoc, afterScore, afterFields, facetRequest, sortRequest, resultFetchType, fieldsToReturn,
+						fieldsToMask, highlightList, analysisRequestList);
 	}
-	
+
 	@Override
 	public int hashCode() {
-		final int prime = 31;
-		int result = 1;
-		result = prime * result + ((queryRequest == null) ? 0 : queryRequest.hashCode());
-		return result;
+		return hashCode;
 	}
-	
+
 	@Override
 	public boolean equals(Object obj) {
 		if (this == obj) {
@@ -30,15 +74,12 @@ public class QueryCacheKey {
 			return false;
 		}
 		QueryCacheKey other = (QueryCacheKey) obj;
-		if (queryRequest == null) {
-			if (other.queryRequest != null) {
-				return false;
-			}
-		}
-		else if (!queryRequest.equals(other.queryRequest)) {
-			return false;
-		}
-		return true;
+		return hashCode == other.hashCode && amount == other.amount && afterDoc == other.afterDoc && Float.compare(afterScore, other.afterScore) == 0
+				&& Objects.equals(query, other.query) && Objects.equals(similarityOverrideMap, other.similarityOverrideMap) && Objects
+				.equals(afterFields, other.afterFields) && Objects.equals(facetRequest, other.facetRequest) && Objects.equals(sortRequest, other.sortRequest)
+				&& Objects.equals(resultFetchType, other.resultFetchType) && Objects.equals(fieldsToReturn, other.fieldsToReturn) && Objects
+				.equals(fieldsToMask, other.fieldsToMask) && Objects.equals(highlightList, other.highlightList) && Objects
+				.equals(analysisRequestList, other.analysisRequestList);
 	}
-	
+
 }
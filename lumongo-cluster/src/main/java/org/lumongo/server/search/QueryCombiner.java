@@ -13,6 +13,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
@@ -109,6 +110,183 @@ public class QueryCombiner {
 		}
 	}
 
+	/**
+	 * @return comparator that orders results from the given indexes by the sort request or by score if the request does not sort
+	 * @throws Exception if a sort field is defined with different types in the indexes
+	 */
+	public static Comparator<ScoredResult> getComparator(SortRequest sortRequest, Map<String, LumongoIndex> usedIndexMap) throws Exception {
+		boolean sorting = (sortRequest != null && !sortRequest.getFieldSortList().isEmpty());
+		if (!sorting) {
+			return scoreCompare;
+		}
+
+		return getComparator(sortRequest.getFieldSortList(), getSortTypeMap(sortRequest.getFieldSortList(), usedIndexMap));
+	}
+
+	/**
+	 * @param sortTypeMap - type of each sort field
+	 * @return comparator that orders results by the field sorts, the sort values of each result are in the order of the field sorts
+	 */
+	public static Comparator<ScoredResult> getComparator(List<FieldSort> fieldSortList, Map<String, FieldConfig.FieldType> sortTypeMap) {
+		return (o1, o2) -> {
+			int compare = 0;
+
+			int sortValueIndex = 0;
+
+			Lumongo.SortValues sortValues1 = o1.getSortValues();
+			Lumongo.SortValues sortValues2 = o2.getSortValues();
+			for (FieldSort fs : fieldSortList) {
+				String sortField = fs.getSortField();
+
+				FieldConfig.FieldType sortType = sortTypeMap.get(sortField);
+
+				if (FieldConfig.FieldType.NUMERIC_INT.equals(sortType)) {
+					Integer a = null;
+					Integer b = null;
+					a = sortValues1.getSortValue(sortValueIndex).getIntegerValue();
+					b = sortValues2.getSortValue(sortValueIndex).getIntegerValue();
+
+					compare = Comparator.nullsLast(Integer::compareTo).compare(a, b);
+				}
+				else if (FieldConfig.FieldType.NUMERIC_LONG.equals(sortType)) {
+					Long a = null;
+					Long b = null;
+					a = sortValues1.getSortValue(sortValueIndex).getLongValue();
+					b = sortValues2.getSortValue(sortValueIndex).getLongValue();
+
+					compare = Comparator.nullsLast(Long::compareTo).compare(a, b);
+				}
+				else if (FieldConfig.FieldType.DATE.equals(sortType)) {
+					Long a = null;
+					Long b = null;
+					a = sortValues1.getSortValue(sortValueIndex).getDateValue();
+					b = sortValues2.getSortValue(sortValueIndex).getDateValue();
+
+					compare = Comparator.nullsLast(Long::compareTo).compare(a, b);
+				}
+				else if (FieldConfig.FieldType.NUMERIC_FLOAT.equals(sortType)) {
+					Float a = null;
+					Float b = null;
+					a = sortValues1.getSortValue(sortValueIndex).getFloatValue();
+					b = sortValues2.getSortValue(sortValueIndex).getFloatValue();
+
+					compare = Comparator.nullsLast(Float::compareTo).compare(a, b);
+				}
+				else if (FieldConfig.FieldType.NUMERIC_DOUBLE.equals(sortType)) {
+					Double a = null;
+					Double b = null;
+					a = sortValues1.getSortValue(sortValueIndex).getDoubleValue();
+					b = sortValues2.getSortValue(sortValueIndex).getDoubleValue();
+
+					compare = Comparator.nullsLast(Double::compareTo).compare(a, b);
+				}
+				else {
+					String a = null;
+					String b = null;
+					a = sortValues1.getSortValue(sortValueIndex).getStringValue();
+					b = sortValues2.getSortValue(sortValueIndex).getStringValue();
+
+					compare = Comparator.nullsLast(String::compareTo).compare(a, b);
+				}
+
+				if (FieldSort.Direction.DESCENDING.equals(fs.getDirection())) {
+					compare *= -1;
+				}
+
+				if (compare != 0) {
+					return compare;
+				}
+
+				sortValueIndex++;
+
+			}
+
+			return compare;
+		};
+	}
+
+	private static Map<String, FieldConfig.FieldType> getSortTypeMap(List<FieldSort> fieldSortList, Map<String, LumongoIndex> usedIndexMap) throws Exception {
+		HashMap<String, FieldConfig.FieldType> sortTypeMap = new HashMap<>();
+
+		for (FieldSort fieldSort : fieldSortList) {
+			String sortField = fieldSort.getSortField();
+
+			for (String indexName : usedIndexMap.keySet()) {
+				LumongoIndex index = usedIndexMap.get(indexName);
+				FieldConfig.FieldType currentSortType = sortTypeMap.get(sortField);
+
+				FieldConfig.FieldType indexSortType = index.getSortFieldType(sortField);
+				if (currentSortType == null) {
+					sortTypeMap.put(sortField, indexSortType);
+				}
+				else {
+					if (!currentSortType.equals(indexSortType)) {
+						log.error("Sort fields must be defined the same in all indexes searched in a single query");
+						String message =
+								"Cannot sort on field <" + sortField + ">: found type: <" + currentSortType + "> then type: <" + indexSortType + ">";
+						log.error(message);
+
+						throw new Exception(message);
+					}
+				}
+			}
+		}
+
+		return sortTypeMap;
+	}
+
+	/**
+	 * Sums the stats and range counts of the segments.  Every segment returns the ranges of a request in the same order.
+	 */
+	private void combineNumericFacets(QueryResponse.Builder builder) {
+		Map<StatRequest, StatResult.Builder> statResultMap = new LinkedHashMap<>();
+		Map<RangeRequest, RangeResult.Builder> rangeResultMap = new LinkedHashMap<>();
+
+		for (SegmentResponse sr : segmentResponses) {
+			for (StatResult segmentStat : sr.getStatResultList()) {
+				StatResult.Builder stat = statResultMap.get(segmentStat.getStatRequest());
+				if (stat == null) {
+					statResultMap.put(segmentStat.getStatRequest(), segmentStat.toBuilder());
+					continue;
+				}
+
+				stat.setDocCount(stat.getDocCount() + segmentStat.getDocCount());
+				stat.setValueCount(stat.getValueCount() + segmentStat.getValueCount());
+				stat.setSum(stat.getSum() + segmentStat.getSum());
+				if (segmentStat.hasMin() && (!stat.hasMin() || segmentStat.getMin() < stat.getMin())) {
+					stat.setMin(segmentStat.getMin());
+				}
+				if (segmentStat.hasMax() && (!stat.hasMax() || segmentStat.getMax() > stat.getMax())) {
+					stat.setMax(segmentStat.getMax());
+				}
+			}
+
+			for (RangeResult segmentRange : sr.getRangeResultList()) {
+				RangeResult.Builder range = rangeResultMap.get(segmentRange.getRangeRequest());
+				if (range == null) {
+					rangeResultMap.put(segmentRange.getRangeRequest(), segmentRange.toBuilder());
+					continue;
+				}
+
+				for (int r = 0; r < range.getRangeCountCount(); r++) {
+					RangeCount.Builder rangeCount = range.getRangeCountBuilder(r);
+					rangeCount.setCount(rangeCount.getCount() + segmentRange.getRangeCount(r).getCount());
+				}
+			}
+		}
+
+		for (StatResult.Builder stat : statResultMap.values()) {
+			if (stat.getValueCount() > 0) {
+				stat.setAvg(stat.getSum() / stat.getValueCount());
+			}
+			builder.addStatResult(stat);
+		}
+
+		for (RangeResult.Builder range : rangeResultMap.values()) {
+			builder.addRangeResult(range);
+		}
+	}
+
 	public QueryResponse getQueryResponse() throws Exception {
 
 		boolean sorting = (sortRequest != null && !sortRequest.getFieldSortList().isEmpty());
@@ -193,9 +371,32 @@ public class QueryCombiner {
 					minForSegment[segIndex] = count;
 				}
 
+				//exact counts from refinement are summed but do not change the smallest count of the top facets of the segment
+				for (FacetCount fc : fg.getRefinedFacetCountList()) {
+					String facet = fc.getFacet();
+					AtomicLong facetSum = facetCounts.get(facet);
+					FixedBitSet segmentSet = segmentsReturned.get(facet);
+
+					if (facetSum == null) {
+						facetSum = new AtomicLong();
+						facetCounts.put(facet, facetSum);
+						segmentSet = new FixedBitSet(segmentResponses.size());
+						segmentsReturned.put(facet, segmentSet);
+					}
+					facetSum.addAndGet(fc.getCount());
+					segmentSet.set(segIndex);
+				}
+
 				int segmentFacets = countRequest.getSegmentFacets();
 				int facetCountCount = fg.getFacetCountCount();
-				if (facetCountCount < segmentFacets || (segmentFacets == 0)) {
+				boolean complete;
+				if (countRequest.getRefine()) {
+					complete = FacetRefiner.isComplete(countRequest, usedIndexMap.get(sr.getIndexName()).getNumberOfSegments(), facetCountCount);
+				}
+				else {
+					complete = facetCountCount < segmentFacets || (segmentFacets == 0);
+				}
+				if (complete) {
 					fullResults.set(segIndex);
 					minForSegment[segIndex] = 0;
 				}
@@ -257,8 +458,9 @@ public class QueryCombiner {
 				maxValuePossibleMissing += minForSegment[i];
 			}
 
-			boolean computeError = countRequest.getSegmentFacets() != 0 && countRequest.getComputeError();
-			boolean computePossibleMissing = countRequest.getSegmentFacets() != 0 && countRequest.getComputePossibleMissed() && (maxValuePossibleMissing != 0);
+			boolean segmentLimited = countRequest.getSegmentFacets() != 0 || countRequest.getRefine();
+			boolean computeError = segmentLimited && countRequest.getComputeError();
+			boolean computePossibleMissing = segmentLimited && countRequest.getComputePossibleMissed() && (maxValuePossibleMissing != 0);
 
 			SortedSet<FacetCountResult> sortedFacetResults = facetCounts.keySet().stream()
 					.map(facet -> new FacetCountResult(facet, facetCounts.get(facet).get())).collect(Collectors.toCollection(TreeSet::new));
@@ -318,115 +520,20 @@ public class QueryCombiner {
 			builder.addFacetGroup(fg);
 		}
 
-		List<ScoredResult> mergedResults = new ArrayList<>((int) returnedHits);
-		for (SegmentResponse sr : segmentResponses) {
-			mergedResults.addAll(sr.getScoredResultList());
-		}
-
-		Comparator<ScoredResult> myCompare = scoreCompare;
-
-		if (sorting) {
-			final List<FieldSort> fieldSortList = sortRequest.getFieldSortList();
-
-			final HashMap<String, FieldConfig.FieldType> sortTypeMap = new HashMap<>();
-
-			for (FieldSort fieldSort : fieldSortList) {
-				String sortField = fieldSort.getSortField();
-
-				for (String indexName : usedIndexMap.keySet()) {
-					LumongoIndex index = usedIndexMap.get(indexName);
-					FieldConfig.FieldType currentSortType = sortTypeMap.get(sortField);
+		combineNumericFacets(builder);
 
-					FieldConfig.FieldType indexSortType = index.getSortFieldType(sortField);
-					if (currentSortType == null) {
-						sortTypeMap.put(sortField, indexSortType);
-					}
-					else {
-						if (!currentSortType.equals(indexSortType)) {
-							log.error("Sort fields must be defined the same in all indexes searched in a single query");
-							String message =
-									"Cannot sort on field <" + sortField + ">: found type: <" + currentSortType + "> then type: <" + indexSortType + ">";
-							log.error(message);
+		Comparator<ScoredResult> myCompare = getComparator(sortRequest, usedIndexMap);
 
-							throw new Exception(message);
-						}
-					}
-				}
+		if (returnedHits > 0) {
+			List<List<ScoredResult>> segmentResults = new ArrayList<>(segmentResponses.size());
+			for (SegmentResponse sr : segmentResponses) {
+				segmentResults.add(sr.getScoredResultList());
 			}
 
-			myCompare = (o1, o2) -> {
-				int compare = 0;
-
-				int sortValueIndex = 0;
-
-				Lumongo.SortValues sortValues1 = o1.getSortValues();
-				Lumongo.SortValues sortValues2 = o2.getSortValues();
-				for (FieldSort fs : fieldSortList) {
-					String sortField = fs.getSortField();
-
-					FieldConfig.FieldType sortType = sortTypeMap.get(sortField);
-
-					if (FieldConfig.FieldType.NUMERIC_INT.equals(sortType)) {
-						Integer a = null;
-						Integer b = null;
-						a = sortValues1.getSortValue(sortValueIndex).getIntegerValue();
-						b = sortValues2.getSortValue(sortValueIndex).getIntegerValue();
-
-						compare = Comparator.nullsLast(Integer::compareTo).compare(a, b);
-					}
-					else if (FieldConfig.FieldType.NUMERIC_LONG.equals(sortType) || FieldConfig.FieldType.DATE.equals(sortType)) {
-						Long a = null;
-						Long b = null;
-						a = sortValues1.getSortValue(sortValueIndex).getLongValue();
-						b = sortValues2.getSortValue(sortValueIndex).getLongValue();
-
-						compare = Comparator.nullsLast(Long::compareTo).compare(a, b);
-					}
-					else if (FieldConfig.FieldType.NUMERIC_FLOAT.equals(sortType)) {
-						Float a = null;
-						Float b = null;
-						a = sortValues1.getSortValue(sortValueIndex).getFloatValue();
-						b = sortValues2.getSortValue(sortValueIndex).getFloatValue();
-
-						compare = Comparator.nullsLast(Float::compareTo).compare(a, b);
-					}
-					else if (FieldConfig.FieldType.NUMERIC_DOUBLE.equals(sortType)) {
-						Double a = null;
-						Double b = null;
-						a = sortValues1.getSortValue(sortValueIndex).getDoubleValue();
-						b = sortValues2.getSortValue(sortValueIndex).getDoubleValue();
-
-						compare = Comparator.nullsLast(Double::compareTo).compare(a, b);
-					}
-					else {
-						String a = null;
-						String b = null;
-						a = sortValues1.getSortValue(sortValueIndex).getStringValue();
-						b = sortValues2.getSortValue(sortValueIndex).getStringValue();
-
-						compare = Comparator.nullsLast(String::compareTo).compare(a, b);
-					}
-
-					if (FieldSort.Direction.DESCENDING.equals(fs.getDirection())) {
-						compare *= -1;
-					}
-
-					if (compare != 0) {
-						return compare;
-					}
-
-					sortValueIndex++;
-
-				}
-
-				return compare;
-			};
-		}
-
-		if (!mergedResults.isEmpty()) {
-			Collections.sort(mergedResults, myCompare);
+			List<FieldSort> fieldSortList = sorting ? sortRequest.getFieldSortList() : Collections.emptyList();
+			Map<String, FieldConfig.FieldType> sortTypeMap = sorting ? getSortTypeMap(fieldSortList, usedIndexMap) : Collections.emptyMap();
 
-			results = mergedResults.subList(0, resultsSize);
+			results = new SegmentResultMerger(fieldSortList, sortTypeMap).merge(segmentResults, resultsSize);
 
 			for (ScoredResult sr : results) {
 				ScoredResult[] lastForSegmentArr = lastIndexResultMap.get(sr.getIndexName());
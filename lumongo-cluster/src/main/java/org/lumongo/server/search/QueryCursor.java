@@ -0,0 +1,112 @@
+package org.lumongo.server.search;
+
+import org.apache.lucene.search.IndexSearcher;
+import org.apache.lucene.search.Query;
+import org.apache.lucene.search.ScoreDoc;
+import org.apache.lucene.search.SearcherManager;
+import org.lumongo.cluster.message.Lumongo.FetchType;
+import org.lumongo.cluster.message.Lumongo.SegmentResponse;
+import org.lumongo.cluster.message.Lumongo.SortRequest;
+import org.lumongo.server.index.LumongoSegment;
+
+import java.io.IOException;
+import java.util.List;
+
+/**
+ * Pages through the results of a query on one segment.  The searcher the cursor was opened on is pinned until the cursor is closed
+ * so every page is read from the same point in time view of the segment regardless of commits that happen while streaming.  The cursor
+ * holds an acquire of the segment so a handoff drains the segment until the cursor is closed, or closes the cursor when the drain times out.
+ */
+public class QueryCursor {
+
+	private final LumongoSegment segment;
+	private final SearcherManager searcherManager;
+	private final IndexSearcher acquiredSearcher;
+	private final IndexSearcher indexSearcher;
+	private final Query query;
+	private final SortRequest sortRequest;
+	private final FetchType resultFetchType;
+	private final List<String> fieldsToReturn;
+	private final List<String> fieldsToMask;
+
+	private ScoreDoc after;
+	private boolean closed;
+
+	/**
+	 * @param searcherManager - manager the searcher was acquired from
+	 * @param acquiredSearcher - searcher acquired from the manager, released when the cursor is closed
+	 * @param indexSearcher - searcher the query is run with, on the same reader as the acquired searcher
+	 */
+	public QueryCursor(LumongoSegment segment, SearcherManager searcherManager, IndexSearcher acquiredSearcher, IndexSearcher indexSearcher, Query query,
+			SortRequest sortRequest, FetchType resultFetchType, List<String> fieldsToReturn, List<String> fieldsToMask) {
+		this.segment = segment;
+		this.searcherManager = searcherManager;
+		this.acquiredSearcher = acquiredSearcher;
+		this.indexSearcher = indexSearcher;
+		this.query = query;
+		this.sortRequest = sortRequest;
+		this.resultFetchType = resultFetchType;
+		this.fieldsToReturn = fieldsToReturn;
+		this.fieldsToMask = fieldsToMask;
+	}
+
+	/**
+	 * @param amount - maximum number of results to return
+	 * @return the next page of results, next is set on the response if there are results after this page
+	 * @throws Exception
+	 */
+	public synchronized SegmentResponse next(int amount) throws Exception {
+		if (closed) {
+			throw new IllegalStateException("Query cursor for segment <" + segment.getSegmentNumber() + "> is closed");
+		}
+		return segment.queryCursor(this, amount);
+	}
+
+	public IndexSearcher getIndexSearcher() {
+		return indexSearcher;
+	}
+
+	public Query getQuery() {
+		return query;
+	}
+
+	public SortRequest getSortRequest() {
+		return sortRequest;
+	}
+
+	public FetchType getResultFetchType() {
+		return resultFetchType;
+	}
+
+	public List<String> getFieldsToReturn() {
+		return fieldsToReturn;
+	}
+
+	public List<String> getFieldsToMask() {
+		return fieldsToMask;
+	}
+
+	public ScoreDoc getAfter() {
+		return after;
+	}
+
+	public void setAfter(ScoreDoc after) {
+		this.after = after;
+	}
+
+	/**
+	 * releases the searcher pinned by the cursor and the segment
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		if (!closed) {
+			closed = true;
+			try {
+				searcherManager.release(acquiredSearcher);
+			}
+			finally {
+				segment.queryCursorClosed(this);
+			}
+		}
+	}
+}
@@ -2,24 +2,70 @@ package org.lumongo.server.search;
 
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
-import org.lumongo.cluster.message.Lumongo.SegmentResponse;
+
+import java.util.concurrent.atomic.AtomicLong;
 
 public class QueryResultCache {
-	private Cache<QueryCacheKey, SegmentResponse> queryResultCache;
-	
+
+	private static final AtomicLong hitCount = new AtomicLong();
+	private static final AtomicLong partialHitCount = new AtomicLong();
+	private static final AtomicLong missCount = new AtomicLong();
+	private static final AtomicLong evictionCount = new AtomicLong();
+
+	private Cache<QueryCacheKey, CachedSegmentResponse> queryResultCache;
+
 	public QueryResultCache(int maxSize, int concurrency) {
-		queryResultCache = CacheBuilder.newBuilder().concurrencyLevel(concurrency).maximumSize(maxSize).build();
+		queryResultCache = CacheBuilder.newBuilder().concurrencyLevel(concurrency).maximumSize(maxSize).<QueryCacheKey, CachedSegmentResponse>removalListener(
+				notification -> {
+					if (notification.wasEvicted()) {
+						evictionCount.incrementAndGet();
+					}
+				}).build();
 	}
-	
-	public SegmentResponse getCacheSegmentResponse(QueryCacheKey queryCacheKey) {
+
+	public CachedSegmentResponse getCacheSegmentResponse(QueryCacheKey queryCacheKey) {
 		return queryResultCache.getIfPresent(queryCacheKey);
 	}
-	
-	public void storeInCache(QueryCacheKey queryCacheKey, SegmentResponse segmentResponse) {
-		queryResultCache.put(queryCacheKey, segmentResponse);
+
+	public void storeInCache(QueryCacheKey queryCacheKey, CachedSegmentResponse cachedSegmentResponse) {
+		queryResultCache.put(queryCacheKey, cachedSegmentResponse);
 	}
-	
+
 	public void clear() {
 		queryResultCache.invalidateAll();
 	}
+
+	public static void recordHit() {
+		hitCount.incrementAndGet();
+	}
+
+	public static void recordPartialHit() {
+		partialHitCount.incrementAndGet();
+	}
+
+	public static void recordMiss() {
+		missCount.incrementAndGet();
+	}
+
+	/**
+	 * @return number of queries answered from the cache on a node without searching
+	 */
+	public static long getHitCount() {
+		return hitCount.get();
+	}
+
+	/**
+	 * @return number of queries answered by merging a cached result with a search of only the leaves added since it was cached
+	 */
+	public static long getPartialHitCount() {
+		return partialHitCount.get();
+	}
+
+	public static long getMissCount() {
+		return missCount.get();
+	}
+
+	public static long getEvictionCount() {
+		return evictionCount.get();
+	}
 }
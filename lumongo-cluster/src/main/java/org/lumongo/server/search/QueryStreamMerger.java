@@ -0,0 +1,166 @@
+package org.lumongo.server.search;
+
+import org.apache.log4j.Logger;
+import org.lumongo.cluster.message.Lumongo.ScoredResult;
+import org.lumongo.cluster.message.Lumongo.SegmentResponse;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * Merges pages of already ordered results from each segment into a single ordered stream.  Only the head of each segment is compared so
+ * each result costs log(segments) and at most one page per segment is held in memory.
+ */
+public class QueryStreamMerger {
+
+	private final static Logger log = Logger.getLogger(QueryStreamMerger.class);
+
+	public interface SegmentSource {
+		/**
+		 * @param amount - maximum number of results to return
+		 * @return the next page of results from the segment, next is set on the response if more results are available
+		 */
+		SegmentResponse next(int amount) throws Exception;
+
+		/**
+		 * releases the resources held for the segment, only called if the segment was not read to the end
+		 */
+		void close() throws Exception;
+	}
+
+	public interface ResultConsumer {
+		/**
+		 * @param totalHits - total hits for the query over all segments
+		 * @param results - next batch of results in order
+		 * @return false to stop the stream
+		 */
+		boolean accept(long totalHits, List<ScoredResult> results) throws Exception;
+	}
+
+	private static class SegmentHead {
+		private final SegmentSource source;
+		private final ArrayDeque<ScoredResult> buffer;
+		private boolean moreAvailable;
+
+		private SegmentHead(SegmentSource source) {
+			this.source = source;
+			this.buffer = new ArrayDeque<>();
+			this.moreAvailable = true;
+		}
+
+		private long fill(SegmentResponse segmentResponse) {
+			buffer.addAll(segmentResponse.getScoredResultList());
+			moreAvailable = segmentResponse.hasNext();
+			return segmentResponse.getTotalHits();
+		}
+	}
+
+	private final List<SegmentSource> sources;
+	private final Comparator<ScoredResult> comparator;
+	private final int pageSize;
+	private final ExecutorService pool;
+
+	/**
+	 * @param sources - one source per segment queried
+	 * @param comparator - order the segments return their results in
+	 * @param pageSize - number of results requested from a segment at a time and the size of the batches passed to the consumer
+	 * @param pool - used to fetch the first page of every segment in parallel
+	 */
+	public QueryStreamMerger(List<SegmentSource> sources, Comparator<ScoredResult> comparator, int pageSize, ExecutorService pool) {
+		this.sources = sources;
+		this.comparator = comparator;
+		this.pageSize = pageSize;
+		this.pool = pool;
+	}
+
+	/**
+	 * @param limit - maximum number of results to stream, zero for all
+	 * @param consumer - receives the results in batches
+	 * @return number of results streamed
+	 * @throws Exception
+	 */
+	public long merge(long limit, ResultConsumer consumer) throws Exception {
+		List<SegmentHead> heads = new ArrayList<>(sources.size());
+		for (SegmentSource source : sources) {
+			heads.add(new SegmentHead(source));
+		}
+
+		try {
+			List<Future<SegmentResponse>> firstPages = new ArrayList<>(heads.size());
+			for (SegmentHead head : heads) {
+				firstPages.add(pool.submit(() -> head.source.next(pageSize)));
+			}
+
+			long totalHits = 0;
+			PriorityQueue<SegmentHead> queue = new PriorityQueue<>(Math.max(1, heads.size()),
+					(a, b) -> comparator.compare(a.buffer.peekFirst(), b.buffer.peekFirst()));
+
+			//wait for every first page even if one fails so no source is still being opened when the sources are closed
+			Exception firstPageException = null;
+			for (int i = 0; i < heads.size(); i++) {
+				SegmentHead head = heads.get(i);
+				try {
+					totalHits += head.fill(firstPages.get(i).get());
+				}
+				catch (ExecutionException e) {
+					if (firstPageException == null) {
+						firstPageException = (Exception) e.getCause();
+					}
+				}
+				if (!head.buffer.isEmpty()) {
+					queue.add(head);
+				}
+			}
+			if (firstPageException != null) {
+				throw firstPageException;
+			}
+
+			long streamed = 0;
+			List<ScoredResult> batch = new ArrayList<>(pageSize);
+			while (!queue.isEmpty() && (limit <= 0 || streamed < limit)) {
+				SegmentHead head = queue.poll();
+				batch.add(head.buffer.pollFirst());
+				streamed++;
+
+				if (head.buffer.isEmpty() && head.moreAvailable) {
+					head.fill(head.source.next(pageSize));
+				}
+				if (!head.buffer.isEmpty()) {
+					queue.add(head);
+				}
+
+				if (batch.size() >= pageSize) {
+					if (!consumer.accept(totalHits, batch)) {
+						return streamed;
+					}
+					batch = new ArrayList<>(pageSize);
+				}
+			}
+
+			if (!batch.isEmpty() || streamed == 0) {
+				consumer.accept(totalHits, batch);
+			}
+
+			return streamed;
+		}
+		finally {
+			for (SegmentHead head : heads) {
+				if (head.moreAvailable) {
+					try {
+						head.source.close();
+					}
+					catch (Exception e) {
+						log.error("Failed to close query stream segment: " + e.getClass().getSimpleName() + ": ", e);
+					}
+				}
+			}
+		}
+	}
+
+}
@@ -68,6 +68,10 @@ public class QueryWithFilters {
 		similarityOverrideMap.put(fieldSimilarity.getField(), fieldSimilarity.getSimilarity());
 	}
 
+	public Map<String, AnalyzerSettings.Similarity> getSimilarityOverrideMap() {
+		return similarityOverrideMap;
+	}
+
 	public AnalyzerSettings.Similarity getFieldSimilarityOverride(String field) {
 		AnalyzerSettings.Similarity similarity = similarityOverrideMap.get(field);
 		if (similarity == null) {
@@ -0,0 +1,175 @@
+package org.lumongo.server.search;
+
+import org.apache.lucene.facet.FacetsCollector;
+import org.apache.lucene.index.LeafReaderContext;
+import org.apache.lucene.search.Collector;
+import org.apache.lucene.search.CollectorManager;
+import org.apache.lucene.search.LeafCollector;
+import org.apache.lucene.search.MultiCollector;
+import org.apache.lucene.search.Sort;
+import org.apache.lucene.search.TopDocs;
+import org.apache.lucene.search.TopDocsCollector;
+import org.apache.lucene.search.TopFieldDocs;
+import org.lumongo.cluster.message.Lumongo.FacetRequest;
+import org.lumongo.server.config.IndexConfig;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+/**
+ * Collects the top docs, facets and numeric facets of a segment search.  When the searcher has an executor each leaf slice is collected by its
+ * own collectors and the slices are merged in {@link #reduce}, otherwise the whole segment is collected by a single collector.
+ */
+public class SegmentCollectorManager implements CollectorManager<SegmentCollectorManager.SliceCollector, SegmentCollectorManager.SegmentCollectors> {
+
+	private final Callable<TopDocsCollector<?>> topDocsCollectorFactory;
+	private final Sort sort;
+	private final int numHits;
+	private final FacetRequest facetRequest;
+	private final IndexConfig indexConfig;
+	private final boolean counting;
+	private final boolean numeric;
+
+	/**
+	 * @param topDocsCollectorFactory - creates the top docs collector of a slice
+	 * @param sort - sort of the top docs collector, null when sorting by score
+	 * @param numHits - number of hits collected by the top docs collector
+	 * @param facetRequest - facets to collect, null if not faceting
+	 */
+	public SegmentCollectorManager(Callable<TopDocsCollector<?>> topDocsCollectorFactory, Sort sort, int numHits, FacetRequest facetRequest,
+			IndexConfig indexConfig) {
+		this.topDocsCollectorFactory = topDocsCollectorFactory;
+		this.sort = sort;
+		this.numHits = numHits;
+		this.facetRequest = facetRequest;
+		this.indexConfig = indexConfig;
+		this.counting = facetRequest != null && !facetRequest.getCountRequestList().isEmpty();
+		this.numeric = facetRequest != null && (!facetRequest.getStatRequestList().isEmpty() || !facetRequest.getRangeRequestList().isEmpty());
+	}
+
+	@Override
+	public SliceCollector newCollector() throws IOException {
+		try {
+			TopDocsCollector<?> topDocsCollector = topDocsCollectorFactory.call();
+			FacetsCollector facetsCollector = counting ? new FacetsCollector() : null;
+			NumericFacetCollector numericFacetCollector =
+					numeric ? new NumericFacetCollector(facetRequest.getStatRequestList(), facetRequest.getRangeRequestList(), indexConfig) : null;
+			return new SliceCollector(topDocsCollector, facetsCollector, numericFacetCollector);
+		}
+		catch (IOException | RuntimeException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	@Override
+	public SegmentCollectors reduce(Collection<SliceCollector> collectors) throws IOException {
+		if (collectors.size() == 1) {
+			SliceCollector collector = collectors.iterator().next();
+			return new SegmentCollectors(collector.topDocsCollector.topDocs(), collector.facetsCollector, collector.numericFacetCollector);
+		}
+
+		List<TopDocs> sliceTopDocs = new ArrayList<>(collectors.size());
+		List<FacetsCollector.MatchingDocs> matchingDocs = new ArrayList<>();
+		NumericFacetCollector numericFacetCollector = null;
+		for (SliceCollector collector : collectors) {
+			sliceTopDocs.add(collector.topDocsCollector.topDocs());
+			if (counting) {
+				matchingDocs.addAll(collector.facetsCollector.getMatchingDocs());
+			}
+			if (numeric) {
+				if (numericFacetCollector == null) {
+					numericFacetCollector = collector.numericFacetCollector;
+				}
+				else {
+					numericFacetCollector.merge(collector.numericFacetCollector);
+				}
+			}
+		}
+
+		TopDocs topDocs;
+		if (sort != null) {
+			topDocs = TopDocs.merge(sort, numHits, sliceTopDocs.toArray(new TopFieldDocs[sliceTopDocs.size()]));
+		}
+		else {
+			topDocs = TopDocs.merge(numHits, sliceTopDocs.toArray(new TopDocs[sliceTopDocs.size()]));
+		}
+
+		return new SegmentCollectors(topDocs, counting ? new MergedFacetsCollector(matchingDocs) : null, numericFacetCollector);
+	}
+
+	public static class SliceCollector implements Collector {
+		private final TopDocsCollector<?> topDocsCollector;
+		private final FacetsCollector facetsCollector;
+		private final NumericFacetCollector numericFacetCollector;
+		private final Collector collector;
+
+		private SliceCollector(TopDocsCollector<?> topDocsCollector, FacetsCollector facetsCollector, NumericFacetCollector numericFacetCollector) {
+			this.topDocsCollector = topDocsCollector;
+			this.facetsCollector = facetsCollector;
+			this.numericFacetCollector = numericFacetCollector;
+			this.collector = MultiCollector.wrap(topDocsCollector, facetsCollector, numericFacetCollector);
+		}
+
+		@Override
+		public LeafCollector getLeafCollector(LeafReaderContext context) throws IOException {
+			return collector.getLeafCollector(context);
+		}
+
+		@Override
+		public boolean needsScores() {
+			return collector.needsScores();
+		}
+	}
+
+	public static class SegmentCollectors {
+		private final TopDocs topDocs;
+		private final FacetsCollector facetsCollector;
+		private final NumericFacetCollector numericFacetCollector;
+
+		private SegmentCollectors(TopDocs topDocs, FacetsCollector facetsCollector, NumericFacetCollector numericFacetCollector) {
+			this.topDocs = topDocs;
+			this.facetsCollector = facetsCollector;
+			this.numericFacetCollector = numericFacetCollector;
+		}
+
+		public TopDocs getTopDocs() {
+			return topDocs;
+		}
+
+		/**
+		 * @return the documents matched for counting facets, null if no count requests
+		 */
+		public FacetsCollector getFacetsCollector() {
+			return facetsCollector;
+		}
+
+		/**
+		 * @return the stats and ranges, null if no stat or range requests
+		 */
+		public NumericFacetCollector getNumericFacetCollector() {
+			return numericFacetCollector;
+		}
+	}
+
+	/**
+	 * Matching documents of every slice for counting facets over the whole segment
+	 */
+	private static class MergedFacetsCollector extends FacetsCollector {
+		private final List<MatchingDocs> matchingDocs;
+
+		private MergedFacetsCollector(List<MatchingDocs> matchingDocs) {
+			this.matchingDocs = matchingDocs;
+		}
+
+		@Override
+		public List<MatchingDocs> getMatchingDocs() {
+			return matchingDocs;
+		}
+	}
+}
@@ -0,0 +1,232 @@
+package org.lumongo.server.search;
+
+import org.lumongo.cluster.message.Lumongo.FieldSort;
+import org.lumongo.cluster.message.Lumongo.ScoredResult;
+import org.lumongo.cluster.message.Lumongo.SortValue;
+import org.lumongo.cluster.message.LumongoIndex.FieldConfig;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Merges the results of segments that are each already in order with a heap over the head of every segment, stopping once the requested
+ * amount is merged.  Sort values are copied out of the protobuf results into primitive arrays once per result so the comparisons made
+ * while merging do not allocate.  Orders the same way as {@link QueryCombiner#getComparator}.
+ */
+public class SegmentResultMerger {
+
+	private static final int LONG_KEY = 0;
+	private static final int DOUBLE_KEY = 1;
+	private static final int STRING_KEY = 2;
+
+	private final boolean sorting;
+	private final FieldConfig.FieldType[] sortTypes;
+	private final int[] keyTypes;
+	private final boolean[] descending;
+
+	private SegmentKeys[] segments;
+	private int[] positions;
+	private int[] heap;
+	private int heapSize;
+
+	/**
+	 * @param fieldSortList - fields to sort on, empty to sort by score
+	 * @param sortTypeMap - type of each sort field
+	 */
+	public SegmentResultMerger(List<FieldSort> fieldSortList, Map<String, FieldConfig.FieldType> sortTypeMap) {
+		this.sorting = !fieldSortList.isEmpty();
+		this.sortTypes = new FieldConfig.FieldType[fieldSortList.size()];
+		this.keyTypes = new int[fieldSortList.size()];
+		this.descending = new boolean[fieldSortList.size()];
+
+		int i = 0;
+		for (FieldSort fs : fieldSortList) {
+			FieldConfig.FieldType sortType = sortTypeMap.get(fs.getSortField());
+			sortTypes[i] = sortType;
+			if (FieldConfig.FieldType.NUMERIC_INT.equals(sortType) || FieldConfig.FieldType.NUMERIC_LONG.equals(sortType) || FieldConfig.FieldType.DATE
+					.equals(sortType)) {
+				keyTypes[i] = LONG_KEY;
+			}
+			else if (FieldConfig.FieldType.NUMERIC_FLOAT.equals(sortType) || FieldConfig.FieldType.NUMERIC_DOUBLE.equals(sortType)) {
+				keyTypes[i] = DOUBLE_KEY;
+			}
+			else {
+				keyTypes[i] = STRING_KEY;
+			}
+			descending[i] = FieldSort.Direction.DESCENDING.equals(fs.getDirection());
+			i++;
+		}
+	}
+
+	/**
+	 * @param segmentResults - the results of each segment in order
+	 * @param amount - maximum number of results to merge
+	 * @return the first amount results over all segments in order
+	 */
+	public List<ScoredResult> merge(List<List<ScoredResult>> segmentResults, int amount) {
+		if (amount <= 0) {
+			return Collections.emptyList();
+		}
+
+		segments = new SegmentKeys[segmentResults.size()];
+		positions = new int[segmentResults.size()];
+		heap = new int[segmentResults.size()];
+		heapSize = 0;
+
+		int total = 0;
+		for (int s = 0; s < segments.length; s++) {
+			List<ScoredResult> results = segmentResults.get(s);
+			//only the first amount results of a segment can be in the merged results
+			segments[s] = new SegmentKeys(results, Math.min(results.size(), amount));
+			total += segments[s].length;
+			if (segments[s].length > 0) {
+				heap[heapSize++] = s;
+			}
+		}
+
+		for (int i = (heapSize / 2) - 1; i >= 0; i--) {
+			siftDown(i);
+		}
+
+		List<ScoredResult> merged = new ArrayList<>(Math.min(total, amount));
+		while (heapSize > 0 && merged.size() < amount) {
+			int s = heap[0];
+			merged.add(segments[s].results.get(positions[s]));
+			positions[s]++;
+
+			if (positions[s] == segments[s].length) {
+				heap[0] = heap[--heapSize];
+			}
+			siftDown(0);
+		}
+		return merged;
+	}
+
+	private void siftDown(int i) {
+		int s = heap[i];
+		int half = heapSize / 2;
+		while (i < half) {
+			int child = 2 * i + 1;
+			int right = child + 1;
+			if (right < heapSize && compare(heap[right], heap[child]) < 0) {
+				child = right;
+			}
+			if (compare(s, heap[child]) <= 0) {
+				break;
+			}
+			heap[i] = heap[child];
+			i = child;
+		}
+		if (heapSize > 0) {
+			heap[i] = s;
+		}
+	}
+
+	private int compare(int segmentA, int segmentB) {
+		SegmentKeys a = segments[segmentA];
+		SegmentKeys b = segments[segmentB];
+		int posA = positions[segmentA];
+		int posB = positions[segmentB];
+
+		if (!sorting) {
+			int compare = Float.compare(b.scores[posB], a.scores[posA]);
+			if (compare == 0) {
+				return Integer.compare(a.resultIndexes[posA], b.resultIndexes[posB]);
+			}
+			return compare;
+		}
+
+		for (int f = 0; f < keyTypes.length; f++) {
+			int compare;
+			if (keyTypes[f] == LONG_KEY) {
+				compare = Long.compare(a.longKeys[f][posA], b.longKeys[f][posB]);
+			}
+			else if (keyTypes[f] == DOUBLE_KEY) {
+				compare = Double.compare(a.doubleKeys[f][posA], b.doubleKeys[f][posB]);
+			}
+			else {
+				compare = a.stringKeys[f][posA].compareTo(b.stringKeys[f][posB]);
+			}
+
+			if (compare != 0) {
+				return descending[f] ? -compare : compare;
+			}
+		}
+		return 0;
+	}
+
+	private class SegmentKeys {
+		private final List<ScoredResult> results;
+		private final int length;
+		private final float[] scores;
+		private final int[] resultIndexes;
+		private final long[][] longKeys;
+		private final double[][] doubleKeys;
+		private final String[][] stringKeys;
+
+		private SegmentKeys(List<ScoredResult> results, int length) {
+			this.results = results;
+			this.length = length;
+
+			if (!sorting) {
+				scores = new float[length];
+				resultIndexes = new int[length];
+				for (int i = 0; i < length; i++) {
+					ScoredResult sr = results.get(i);
+					scores[i] = sr.getScore();
+					resultIndexes[i] = sr.getResultIndex();
+				}
+				longKeys = null;
+				doubleKeys = null;
+				stringKeys = null;
+				return;
+			}
+
+			scores = null;
+			resultIndexes = null;
+			longKeys = new long[keyTypes.length][];
+			doubleKeys = new double[keyTypes.length][];
+			stringKeys = new String[keyTypes.length][];
+
+			for (int f = 0; f < keyTypes.length; f++) {
+				if (keyTypes[f] == LONG_KEY) {
+					longKeys[f] = new long[length];
+				}
+				else if (keyTypes[f] == DOUBLE_KEY) {
+					doubleKeys[f] = new double[length];
+				}
+				else {
+					stringKeys[f] = new String[length];
+				}
+			}
+
+			for (int i = 0; i < length; i++) {
+				List<SortValue> sortValues = results.get(i).getSortValues().getSortValueList();
+				for (int f = 0; f < keyTypes.length; f++) {
+					SortValue sortValue = sortValues.get(f);
+					FieldConfig.FieldType sortType = sortTypes[f];
+					if (FieldConfig.FieldType.NUMERIC_INT.equals(sortType)) {
+						longKeys[f][i] = sortValue.getIntegerValue();
+					}
+					else if (FieldConfig.FieldType.NUMERIC_LONG.equals(sortType)) {
+						longKeys[f][i] = sortValue.getLongValue();
+					}
+					else if (FieldConfig.FieldType.DATE.equals(sortType)) {
+						longKeys[f][i] = sortValue.getDateValue();
+					}
+					else if (FieldConfig.FieldType.NUMERIC_FLOAT.equals(sortType)) {
+						doubleKeys[f][i] = sortValue.getFloatValue();
+					}
+					else if (FieldConfig.FieldType.NUMERIC_DOUBLE.equals(sortType)) {
+						doubleKeys[f][i] = sortValue.getDoubleValue();
+					}
+					else {
+						stringKeys[f][i] = sortValue.getStringValue();
+					}
+				}
+			}
+		}
+	}
+}
@@ -5,15 +5,22 @@ import org.lumongo.cluster.message.Lumongo;
 import org.lumongo.cluster.message.Lumongo.AssociatedDocument;
 import org.lumongo.cluster.message.Lumongo.FetchType;
 import org.lumongo.cluster.message.Lumongo.Metadata;
+import org.lumongo.cluster.message.Lumongo.StoreRequest;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Collection;
 import java.util.List;
 import java.util.Map;
 
 public interface DocumentStorage {
 	void storeSourceDocument(String uniqueId, long timeStamp, Document document, List<Metadata> metaDataList) throws Exception;
+
+	/**
+	 * Stores the result documents of the store requests in a single batch, later requests for the same unique id replace earlier ones
+	 */
+	void storeSourceDocuments(List<StoreRequest> storeRequests, long timeStamp) throws Exception;
 	
 	void storeAssociatedDocument(AssociatedDocument docs) throws Exception;
 	
@@ -31,10 +38,20 @@ public interface DocumentStorage {
 	List<String> getAssociatedFilenames(String uniqueId) throws Exception;
 	
 	void deleteSourceDocument(String uniqueId) throws Exception;
+
+	/**
+	 * Deletes the source documents of the unique ids with a single delete
+	 */
+	void deleteSourceDocuments(Collection<String> uniqueIds) throws Exception;
 	
 	void deleteAssociatedDocument(String uniqueId, String fileName);
 	
 	void deleteAssociatedDocuments(String uniqueId);
+
+	/**
+	 * Deletes all associated documents of the unique ids, the files are found with a single query
+	 */
+	void deleteAssociatedDocuments(Collection<String> uniqueIds);
 	
 	void drop();
 	
@@ -11,7 +11,11 @@ import com.mongodb.client.gridfs.GridFSBuckets;
 import com.mongodb.client.gridfs.GridFSFindIterable;
 import com.mongodb.client.gridfs.model.GridFSFile;
 import com.mongodb.client.gridfs.model.GridFSUploadOptions;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.Filters;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import org.apache.log4j.Logger;
 import org.bson.BSON;
 import org.bson.Document;
@@ -20,8 +24,10 @@ import org.lumongo.cluster.message.Lumongo.AssociatedDocument;
 import org.lumongo.cluster.message.Lumongo.FetchType;
 import org.lumongo.cluster.message.Lumongo.Metadata;
 import org.lumongo.cluster.message.Lumongo.ResultDocument;
+import org.lumongo.cluster.message.Lumongo.StoreRequest;
 import org.lumongo.storage.constants.MongoConstants;
 import org.lumongo.util.CommonCompression;
+import org.lumongo.util.LumongoUtil;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
@@ -30,6 +36,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
@@ -99,6 +106,44 @@ public class MongoDocumentStorage implements DocumentStorage {
 	public void storeSourceDocument(String uniqueId, long timeStamp, Document document, List<Metadata> metaDataList) throws Exception {
 		MongoDatabase db = mongoClient.getDatabase(database);
 		MongoCollection<Document> coll = db.getCollection(rawCollectionName);
+		Document mongoDocument = createSourceDocument(uniqueId, timeStamp, document, metaDataList);
+
+		Document query = new Document(MongoConstants.StandardFields._ID, uniqueId);
+
+		coll.replaceOne(query, mongoDocument, new UpdateOptions().upsert(true));
+	}
+
+	@Override
+	public void storeSourceDocuments(List<StoreRequest> storeRequests, long timeStamp) throws Exception {
+		List<WriteModel<Document>> writes = new ArrayList<>(storeRequests.size());
+
+		UpdateOptions upsert = new UpdateOptions().upsert(true);
+		for (StoreRequest storeRequest : storeRequests) {
+			if (storeRequest.hasResultDocument()) {
+				ResultDocument resultDocument = storeRequest.getResultDocument();
+				Document document;
+				if (resultDocument.hasDocument()) {
+					document = LumongoUtil.byteArrayToMongoDocument(resultDocument.getDocument().toByteArray());
+				}
+				else {
+					document = new Document();
+				}
+
+				String uniqueId = storeRequest.getUniqueId();
+				Document mongoDocument = createSourceDocument(uniqueId, timeStamp, document, resultDocument.getMetadataList());
+				writes.add(new ReplaceOneModel<>(new Document(MongoConstants.StandardFields._ID, uniqueId), mongoDocument, upsert));
+			}
+		}
+
+		if (!writes.isEmpty()) {
+			MongoDatabase db = mongoClient.getDatabase(database);
+			MongoCollection<Document> coll = db.getCollection(rawCollectionName);
+			//ordered so the last request for a unique id in the batch wins
+			coll.bulkWrite(writes, new BulkWriteOptions().ordered(true));
+		}
+	}
+
+	private Document createSourceDocument(String uniqueId, long timeStamp, Document document, List<Metadata> metaDataList) {
 		Document mongoDocument = new Document();
 		mongoDocument.putAll(document);
 
@@ -112,10 +157,7 @@ public class MongoDocumentStorage implements DocumentStorage {
 
 		mongoDocument.put(TIMESTAMP, timeStamp);
 		mongoDocument.put(MongoConstants.StandardFields._ID, uniqueId);
-
-		Document query = new Document(MongoConstants.StandardFields._ID, uniqueId);
-
-		coll.replaceOne(query, mongoDocument, new UpdateOptions().upsert(true));
+		return mongoDocument;
 	}
 
 	@Override
@@ -167,6 +209,16 @@ public class MongoDocumentStorage implements DocumentStorage {
 		coll.deleteOne(search);
 	}
 
+	@Override
+	public void deleteSourceDocuments(Collection<String> uniqueIds) throws Exception {
+		if (uniqueIds.isEmpty()) {
+			return;
+		}
+		MongoDatabase db = mongoClient.getDatabase(database);
+		MongoCollection<Document> coll = db.getCollection(rawCollectionName);
+		coll.deleteMany(Filters.in(MongoConstants.StandardFields._ID, uniqueIds));
+	}
+
 	@Override
 	public void deleteAllDocuments() {
 		GridFSBucket gridFS = createGridFSConnection();
@@ -391,4 +443,14 @@ public class MongoDocumentStorage implements DocumentStorage {
 				.forEach((Block<com.mongodb.client.gridfs.model.GridFSFile>) gridFSFile -> gridFS.delete(gridFSFile.getObjectId()));
 	}
 
+	@Override
+	public void deleteAssociatedDocuments(Collection<String> uniqueIds) {
+		if (uniqueIds.isEmpty()) {
+			return;
+		}
+		GridFSBucket gridFS = createGridFSConnection();
+		gridFS.find(Filters.in(ASSOCIATED_METADATA + "." + DOCUMENT_UNIQUE_ID_KEY, uniqueIds))
+				.forEach((Block<com.mongodb.client.gridfs.model.GridFSFile>) gridFSFile -> gridFS.delete(gridFSFile.getObjectId()));
+	}
+
 }
@@ -0,0 +1,154 @@
+package org.lumongo.test.cluster;
+
+import org.lumongo.cluster.message.Lumongo.CountRequest;
+import org.lumongo.cluster.message.Lumongo.FacetCount;
+import org.lumongo.cluster.message.Lumongo.FacetGroup;
+import org.lumongo.cluster.message.Lumongo.FacetRequest;
+import org.lumongo.cluster.message.Lumongo.IndexSegmentResponse;
+import org.lumongo.cluster.message.Lumongo.InternalQueryResponse;
+import org.lumongo.cluster.message.Lumongo.LMFacet;
+import org.lumongo.cluster.message.Lumongo.QueryRequest;
+import org.lumongo.cluster.message.Lumongo.SegmentFacetRefinement;
+import org.lumongo.cluster.message.Lumongo.SegmentResponse;
+import org.lumongo.server.search.FacetRefiner;
+import org.testng.annotations.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class FacetRefinerTest {
+
+	private static final String INDEX = "myTestIndex";
+
+	@Test
+	public void testIsComplete() throws Exception {
+		CountRequest countRequest = countRequest(10, -1);
+
+		//a single segment returns the max facets
+		assertEquals(10, FacetRefiner.getSegmentFacets(countRequest, 1));
+		assertTrue(FacetRefiner.isComplete(countRequest, 1, 9));
+		assertFalse(FacetRefiner.isComplete(countRequest, 1, 10));
+
+		//many segments return more facets each unless segment facets is given
+		assertEquals(80, FacetRefiner.getSegmentFacets(countRequest, 4));
+		assertTrue(FacetRefiner.isComplete(countRequest, 4, 79));
+		assertFalse(FacetRefiner.isComplete(countRequest, 4, 80));
+
+		CountRequest segmentFacetsRequest = countRequest(10, 3);
+		assertEquals(3, FacetRefiner.getSegmentFacets(segmentFacetsRequest, 4));
+		assertTrue(FacetRefiner.isComplete(segmentFacetsRequest, 4, 2));
+		assertFalse(FacetRefiner.isComplete(segmentFacetsRequest, 4, 3));
+
+		//segment facets of 0 returns every facet
+		assertTrue(FacetRefiner.isComplete(countRequest(10, 0), 4, 1000));
+	}
+
+	@Test
+	public void testRefinements() throws Exception {
+		CountRequest countRequest = countRequest(2, 3);
+
+		InternalQueryResponse response = InternalQueryResponse.newBuilder().addIndexSegmentResponse(
+				IndexSegmentResponse.newBuilder().setIndexName(INDEX)
+						.addSegmentReponse(segmentResponse(0, countRequest, "a", 20, "b", 15, "d", 2))
+						.addSegmentReponse(segmentResponse(1, countRequest, "a", 18, "c", 13, "f", 12))
+						//returned fewer than its segment facets so it has no other facets
+						.addSegmentReponse(segmentResponse(2, countRequest, "a", 5))
+						//returned no facets for the count request
+						.addSegmentReponse(SegmentResponse.newBuilder().setIndexName(INDEX).setSegmentNumber(3).setTotalHits(0))).build();
+
+		FacetRefiner facetRefiner = new FacetRefiner(queryRequest(countRequest), Collections.singletonMap(INDEX, 4));
+		assertTrue(facetRefiner.isRefining());
+
+		Map<String, Map<Integer, SegmentFacetRefinement.Builder>> refinements = facetRefiner.getRefinements(Collections.singletonList(response));
+		Map<Integer, SegmentFacetRefinement.Builder> indexRefinements = refinements.get(INDEX);
+
+		//the threshold is the 2nd highest count, b with 15.  A facet is refined on the incomplete segments that did not return it when its count
+		//plus the smallest count each of those segments returned reaches the threshold.
+		//b: 15 + 12 from segment 1, c: 13 + 2 from segment 0 equals the threshold, f: 12 + 2 and d: 2 + 12 fall short
+		assertEquals(new HashSet<>(Arrays.asList(0, 1)), indexRefinements.keySet());
+		assertEquals(Collections.singleton("c"), getRefinedFacets(indexRefinements.get(0), countRequest));
+		assertEquals(Collections.singleton("b"), getRefinedFacets(indexRefinements.get(1), countRequest));
+
+		//complete segments and segments that returned nothing are never refined
+		assertNull(indexRefinements.get(2));
+		assertNull(indexRefinements.get(3));
+	}
+
+	@Test
+	public void testRefinementsBelowMaxFacets() throws Exception {
+		CountRequest countRequest = countRequest(10, 2);
+
+		InternalQueryResponse response = InternalQueryResponse.newBuilder().addIndexSegmentResponse(
+				IndexSegmentResponse.newBuilder().setIndexName(INDEX).addSegmentReponse(segmentResponse(0, countRequest, "a", 100, "b", 90))
+						.addSegmentReponse(segmentResponse(1, countRequest, "c", 2, "d", 1))).build();
+
+		FacetRefiner facetRefiner = new FacetRefiner(queryRequest(countRequest), Collections.singletonMap(INDEX, 2));
+		Map<Integer, SegmentFacetRefinement.Builder> indexRefinements = facetRefiner.getRefinements(Collections.singletonList(response)).get(INDEX);
+
+		//fewer facets than max facets were returned so every facet could be returned and is refined on the segments that did not return it
+		assertEquals(new HashSet<>(Arrays.asList("c", "d")), getRefinedFacets(indexRefinements.get(0), countRequest));
+		assertEquals(new HashSet<>(Arrays.asList("a", "b")), getRefinedFacets(indexRefinements.get(1), countRequest));
+	}
+
+	@Test
+	public void testNoRefinementsWhenComplete() throws Exception {
+		CountRequest countRequest = countRequest(2, 3);
+
+		InternalQueryResponse response = InternalQueryResponse.newBuilder().addIndexSegmentResponse(
+				IndexSegmentResponse.newBuilder().setIndexName(INDEX).addSegmentReponse(segmentResponse(0, countRequest, "a", 20, "b", 15))
+						.addSegmentReponse(segmentResponse(1, countRequest, "c", 13))).build();
+
+		FacetRefiner facetRefiner = new FacetRefiner(queryRequest(countRequest), Collections.singletonMap(INDEX, 2));
+		assertTrue(facetRefiner.getRefinements(Collections.singletonList(response)).isEmpty());
+
+		CountRequest notRefiningRequest = countRequest.toBuilder().setRefine(false).build();
+		FacetRefiner notRefining = new FacetRefiner(queryRequest(notRefiningRequest), Collections.singletonMap(INDEX, 2));
+		assertFalse(notRefining.isRefining());
+	}
+
+	private static CountRequest countRequest(int maxFacets, int segmentFacets) {
+		CountRequest.Builder countRequest = CountRequest.newBuilder().setFacetField(LMFacet.newBuilder().setLabel("issn")).setMaxFacets(maxFacets)
+				.setRefine(true);
+		if (segmentFacets >= 0) {
+			countRequest.setSegmentFacets(segmentFacets);
+		}
+		return countRequest.build();
+	}
+
+	private static QueryRequest queryRequest(CountRequest countRequest) {
+		FacetRequest facetRequest = FacetRequest.newBuilder().addCountRequest(countRequest).build();
+		return QueryRequest.newBuilder().addIndex(INDEX).setAmount(10).setFacetRequest(facetRequest).build();
+	}
+
+	/**
+	 * @param facetsAndCounts - facet labels each followed by its count, in count descending order
+	 */
+	private static SegmentResponse segmentResponse(int segmentNumber, CountRequest countRequest, Object... facetsAndCounts) {
+		FacetGroup.Builder facetGroup = FacetGroup.newBuilder().setCountRequest(countRequest);
+		for (int i = 0; i < facetsAndCounts.length; i += 2) {
+			facetGroup.addFacetCount(FacetCount.newBuilder().setFacet((String) facetsAndCounts[i]).setCount((Integer) facetsAndCounts[i + 1]));
+		}
+		return SegmentResponse.newBuilder().setIndexName(INDEX).setSegmentNumber(segmentNumber).setTotalHits(100).addFacetGroup(facetGroup).build();
+	}
+
+	private static Set<String> getRefinedFacets(SegmentFacetRefinement.Builder refinement, CountRequest countRequest) {
+		Set<String> facets = new HashSet<>();
+		List<FacetGroup> facetGroups = refinement.build().getFacetGroupList();
+		for (FacetGroup facetGroup : facetGroups) {
+			assertEquals(countRequest, facetGroup.getCountRequest());
+			for (FacetCount facetCount : facetGroup.getFacetCountList()) {
+				facets.add(facetCount.getFacet());
+			}
+		}
+		return facets;
+	}
+}
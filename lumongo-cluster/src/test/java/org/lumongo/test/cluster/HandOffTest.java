@@ -0,0 +1,146 @@
+package org.lumongo.test.cluster;
+
+import com.hazelcast.core.Member;
+import org.bson.Document;
+import org.lumongo.DefaultAnalyzers;
+import org.lumongo.client.command.FetchDocument;
+import org.lumongo.client.command.Query;
+import org.lumongo.client.command.QueryStream;
+import org.lumongo.client.command.Store;
+import org.lumongo.client.config.IndexConfig;
+import org.lumongo.client.pool.LumongoWorkPool;
+import org.lumongo.client.result.FetchResult;
+import org.lumongo.client.result.QueryStreamResult;
+import org.lumongo.cluster.message.LumongoIndex.FieldConfig.FieldType;
+import org.lumongo.doc.ResultDocBuilder;
+import org.lumongo.fields.FieldConfigBuilder;
+import org.lumongo.server.index.LumongoIndex;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class HandOffTest extends ServerTestBase {
+	public static final String HAND_OFF_TEST_INDEX = "handOffTestIndex";
+
+	private static final int NUMBER_OF_SEGMENTS = 4;
+
+	//more than a query stream page on each segment so the stream pages each segment across the handoff
+	private static final int DOCUMENT_COUNT = 4000;
+
+	private static final long HAND_OFF_WAIT_MS = 30000;
+
+	@BeforeClass
+	public void test01Start() throws Exception {
+		startSuite(2);
+	}
+
+	@Test
+	public void test02Init() throws Exception {
+		IndexConfig indexConfig = new IndexConfig("title");
+		indexConfig.addFieldConfig(FieldConfigBuilder.create("title", FieldType.STRING).indexAs(DefaultAnalyzers.STANDARD));
+		indexConfig.addFieldConfig(FieldConfigBuilder.create("uid", FieldType.STRING).indexAs(DefaultAnalyzers.LC_KEYWORD));
+
+		getLumongoWorkPool().createIndex(HAND_OFF_TEST_INDEX, NUMBER_OF_SEGMENTS, indexConfig);
+
+		for (int i = 0; i < DOCUMENT_COUNT; i++) {
+			Document document = new Document();
+			document.put("uid", "myId-" + i);
+			document.put("title", "hand off userguide");
+
+			Store s = new Store("myId-" + i, HAND_OFF_TEST_INDEX);
+			s.setResultDocument(ResultDocBuilder.newBuilder().setDocument(document));
+			getLumongoWorkPool().store(s);
+		}
+	}
+
+	@Test
+	public void test03StreamAcrossHandOff() throws Exception {
+		LumongoWorkPool lumongoWorkPool = getLumongoWorkPool();
+
+		LumongoIndex index = getIndexManager(0).getIndex(HAND_OFF_TEST_INDEX);
+		Map<Integer, Member> segmentToMemberMap = index.getSegmentToMemberMap();
+		Set<Member> members = new HashSet<>(segmentToMemberMap.values());
+		assertEquals(2, members.size());
+
+		//every segment moves to the other member
+		Map<Member, Set<Integer>> newMemberToSegmentMap = new HashMap<>();
+		for (Integer segmentNumber : segmentToMemberMap.keySet()) {
+			for (Member m : members) {
+				if (!m.equals(segmentToMemberMap.get(segmentNumber))) {
+					newMemberToSegmentMap.computeIfAbsent(m, k -> new TreeSet<>()).add(segmentNumber);
+				}
+			}
+		}
+
+		AtomicReference<Exception> failure = new AtomicReference<>();
+		Thread handOff = new Thread(() -> {
+			try {
+				index.handOffSegments(members, newMemberToSegmentMap);
+			}
+			catch (Exception e) {
+				failure.set(e);
+			}
+		});
+
+		Set<String> streamedIds = new HashSet<>();
+		QueryStream queryStream = new QueryStream(new Query(HAND_OFF_TEST_INDEX, "title:userguide", 0), scoredResult -> {
+			assertTrue("Document <" + scoredResult.getUniqueId() + "> was streamed twice", streamedIds.add(scoredResult.getUniqueId()));
+
+			//the rest of the stream is read after every member routes to the new map and the old owners are draining the segments
+			if (streamedIds.size() == 1) {
+				handOff.start();
+				long end = System.currentTimeMillis() + HAND_OFF_WAIT_MS;
+				while (!hasSegmentMap(newMemberToSegmentMap)) {
+					assertTrue("Segment map was not updated within <" + HAND_OFF_WAIT_MS + "ms>", System.currentTimeMillis() < end);
+					Thread.sleep(10);
+				}
+			}
+		});
+
+		QueryStreamResult queryStreamResult = lumongoWorkPool.queryStream(queryStream);
+		handOff.join();
+
+		assertNull("Hand off failed: " + failure.get(), failure.get());
+		assertEquals(DOCUMENT_COUNT, queryStreamResult.getTotalHits());
+		assertEquals(DOCUMENT_COUNT, queryStreamResult.getStreamed());
+		assertEquals(DOCUMENT_COUNT, streamedIds.size());
+
+		//the new owners serve the segments
+		assertEquals(DOCUMENT_COUNT, lumongoWorkPool.getNumberOfDocs(HAND_OFF_TEST_INDEX).getNumberOfDocs());
+		assertEquals(DOCUMENT_COUNT, lumongoWorkPool.query(new Query(HAND_OFF_TEST_INDEX, "title:userguide", 10)).getTotalHits());
+		for (int i = 0; i < DOCUMENT_COUNT; i += 100) {
+			FetchResult fetchResult = lumongoWorkPool.fetch(new FetchDocument("myId-" + i, HAND_OFF_TEST_INDEX));
+			assertTrue("Document <myId-" + i + "> is missing after the handoff", fetchResult.hasResultDocument());
+		}
+	}
+
+	private boolean hasSegmentMap(Map<Member, Set<Integer>> memberToSegmentMap) {
+		for (int instance = 0; instance < 2; instance++) {
+			Map<Integer, Member> segmentToMemberMap = getIndexManager(instance).getIndex(HAND_OFF_TEST_INDEX).getSegmentToMemberMap();
+			for (Member m : memberToSegmentMap.keySet()) {
+				for (Integer segmentNumber : memberToSegmentMap.get(m)) {
+					if (!m.equals(segmentToMemberMap.get(segmentNumber))) {
+						return false;
+					}
+				}
+			}
+		}
+		return true;
+	}
+
+	@AfterClass
+	public void test04Shutdown() throws Exception {
+		stopSuite();
+	}
+}
@@ -0,0 +1,196 @@
+package org.lumongo.test.cluster;
+
+import org.bson.Document;
+import org.lumongo.DefaultAnalyzers;
+import org.lumongo.client.command.DeleteFull;
+import org.lumongo.client.command.FetchDocument;
+import org.lumongo.client.command.Query;
+import org.lumongo.client.command.Reshard;
+import org.lumongo.client.command.Store;
+import org.lumongo.client.config.IndexConfig;
+import org.lumongo.client.pool.LumongoWorkPool;
+import org.lumongo.client.result.FetchResult;
+import org.lumongo.client.result.GetNumberOfDocsResult;
+import org.lumongo.client.result.QueryResult;
+import org.lumongo.client.result.ReshardResult;
+import org.lumongo.cluster.message.Lumongo.ScoredResult;
+import org.lumongo.cluster.message.LumongoIndex.FieldConfig.FieldType;
+import org.lumongo.doc.ResultDocBuilder;
+import org.lumongo.fields.FieldConfigBuilder;
+import org.lumongo.server.hazelcast.ReshardTask;
+import org.lumongo.server.index.LumongoIndex;
+import org.lumongo.server.index.LumongoIndexManager;
+import org.lumongo.util.SegmentUtil;
+import org.testng.annotations.AfterClass;
+import org.testng.annotations.BeforeClass;
+import org.testng.annotations.Test;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertNull;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class ReshardTest extends ServerTestBase {
+	public static final String RESHARD_TEST_INDEX = "reshardTestIndex";
+
+	public static final String ABORT_TEST_INDEX = "abortTestIndex";
+
+	private static final int NUMBER_OF_SEGMENTS = 4;
+
+	private static final int DOCUMENT_COUNT = 1000;
+
+	@BeforeClass
+	public void test01Start() throws Exception {
+		startSuite(1);
+	}
+
+	@Test
+	public void test02Init() throws Exception {
+		LumongoWorkPool lumongoWorkPool = getLumongoWorkPool();
+
+		IndexConfig indexConfig = new IndexConfig("title");
+		indexConfig.addFieldConfig(FieldConfigBuilder.create("title", FieldType.STRING).indexAs(DefaultAnalyzers.STANDARD));
+		indexConfig.addFieldConfig(FieldConfigBuilder.create("uid", FieldType.STRING).indexAs(DefaultAnalyzers.LC_KEYWORD));
+		indexConfig.addFieldConfig(FieldConfigBuilder.create("n", FieldType.NUMERIC_INT).index());
+
+		lumongoWorkPool.createIndex(RESHARD_TEST_INDEX, NUMBER_OF_SEGMENTS, indexConfig);
+		lumongoWorkPool.createIndex(ABORT_TEST_INDEX, NUMBER_OF_SEGMENTS, indexConfig);
+
+		for (int i = 0; i < DOCUMENT_COUNT; i++) {
+			store(RESHARD_TEST_INDEX, "myId-" + i, i);
+			store(ABORT_TEST_INDEX, "myId-" + i, i);
+		}
+	}
+
+	@Test
+	public void test03Reshard() throws Exception {
+		LumongoWorkPool lumongoWorkPool = getLumongoWorkPool();
+
+		Set<String> concurrentIds = ConcurrentHashMap.newKeySet();
+		AtomicBoolean running = new AtomicBoolean(true);
+		AtomicReference<Exception> failure = new AtomicReference<>();
+
+		//documents are stored and every other one deleted again while the index reshards
+		Thread writer = new Thread(() -> {
+			try {
+				for (int i = 0; running.get(); i++) {
+					String uniqueId = "concurrentId-" + i;
+					store(RESHARD_TEST_INDEX, uniqueId, DOCUMENT_COUNT + i);
+					concurrentIds.add(uniqueId);
+
+					if (i % 2 == 1) {
+						String deleteId = "concurrentId-" + (i - 1);
+						lumongoWorkPool.delete(new DeleteFull(deleteId, RESHARD_TEST_INDEX));
+						concurrentIds.remove(deleteId);
+					}
+				}
+			}
+			catch (Exception e) {
+				failure.set(e);
+			}
+		});
+		writer.start();
+
+		ReshardResult reshardResult;
+		try {
+			reshardResult = lumongoWorkPool.reshard(new Reshard(RESHARD_TEST_INDEX, NUMBER_OF_SEGMENTS * 2));
+		}
+		finally {
+			running.set(false);
+			writer.join();
+		}
+
+		assertNull("Concurrent store or delete failed: " + failure.get(), failure.get());
+		assertEquals(NUMBER_OF_SEGMENTS * 2, reshardResult.getNumberOfSegments());
+
+		GetNumberOfDocsResult numberOfDocsResult = lumongoWorkPool.getNumberOfDocs(RESHARD_TEST_INDEX);
+		assertEquals(NUMBER_OF_SEGMENTS * 2, numberOfDocsResult.getSegmentCountResponseCount());
+		assertEquals(DOCUMENT_COUNT + concurrentIds.size(), numberOfDocsResult.getNumberOfDocs());
+
+		for (int i = 0; i < DOCUMENT_COUNT; i++) {
+			assertFetch(RESHARD_TEST_INDEX, "myId-" + i, i);
+		}
+		for (String uniqueId : concurrentIds) {
+			FetchResult fetchResult = lumongoWorkPool.fetch(new FetchDocument(uniqueId, RESHARD_TEST_INDEX));
+			assertTrue("Document <" + uniqueId + "> stored during the reshard is missing", fetchResult.hasResultDocument());
+		}
+
+		assertSegments(RESHARD_TEST_INDEX, DOCUMENT_COUNT + concurrentIds.size(), NUMBER_OF_SEGMENTS * 2);
+	}
+
+	@Test
+	public void test04AbortReshard() throws Exception {
+		LumongoWorkPool lumongoWorkPool = getLumongoWorkPool();
+
+		LumongoIndexManager indexManager = getIndexManager(0);
+		LumongoIndex index = indexManager.getIndex(ABORT_TEST_INDEX);
+
+		//aborted while splitting, before any segment cut over
+		index.storeReshard(NUMBER_OF_SEGMENTS * 2);
+		indexManager.reshard(ABORT_TEST_INDEX, NUMBER_OF_SEGMENTS * 2, ReshardTask.Phase.PREPARE);
+		indexManager.reshard(ABORT_TEST_INDEX, NUMBER_OF_SEGMENTS * 2, ReshardTask.Phase.ABORT);
+		index.deleteReshard();
+
+		assertEquals(NUMBER_OF_SEGMENTS, lumongoWorkPool.getNumberOfDocs(ABORT_TEST_INDEX).getSegmentCountResponseCount());
+		assertEquals(DOCUMENT_COUNT, lumongoWorkPool.getNumberOfDocs(ABORT_TEST_INDEX).getNumberOfDocs());
+
+		//aborted after every segment cut over so the new segments are merged back
+		index.storeReshard(NUMBER_OF_SEGMENTS * 2);
+		indexManager.reshard(ABORT_TEST_INDEX, NUMBER_OF_SEGMENTS * 2, ReshardTask.Phase.PREPARE);
+		indexManager.reshard(ABORT_TEST_INDEX, NUMBER_OF_SEGMENTS * 2, ReshardTask.Phase.CUT_OVER);
+		assertEquals(NUMBER_OF_SEGMENTS * 2, lumongoWorkPool.getNumberOfDocs(ABORT_TEST_INDEX).getSegmentCountResponseCount());
+		indexManager.reshard(ABORT_TEST_INDEX, NUMBER_OF_SEGMENTS * 2, ReshardTask.Phase.ABORT);
+		index.deleteReshard();
+
+		GetNumberOfDocsResult numberOfDocsResult = lumongoWorkPool.getNumberOfDocs(ABORT_TEST_INDEX);
+		assertEquals(NUMBER_OF_SEGMENTS, numberOfDocsResult.getSegmentCountResponseCount());
+		assertEquals(DOCUMENT_COUNT, numberOfDocsResult.getNumberOfDocs());
+
+		for (int i = 0; i < DOCUMENT_COUNT; i++) {
+			assertFetch(ABORT_TEST_INDEX, "myId-" + i, i);
+		}
+
+		assertSegments(ABORT_TEST_INDEX, DOCUMENT_COUNT, NUMBER_OF_SEGMENTS);
+
+		//the index takes changes again after the roll back
+		store(ABORT_TEST_INDEX, "myId-" + DOCUMENT_COUNT, DOCUMENT_COUNT);
+		assertEquals(DOCUMENT_COUNT + 1, lumongoWorkPool.getNumberOfDocs(ABORT_TEST_INDEX).getNumberOfDocs());
+	}
+
+	private void store(String indexName, String uniqueId, int n) throws Exception {
+		Document document = new Document();
+		document.put("uid", uniqueId);
+		document.put("title", "reshard userguide");
+		document.put("n", n);
+
+		Store s = new Store(uniqueId, indexName);
+		s.setResultDocument(ResultDocBuilder.newBuilder().setDocument(document));
+		getLumongoWorkPool().store(s);
+	}
+
+	private void assertFetch(String indexName, String uniqueId, int n) throws Exception {
+		FetchResult fetchResult = getLumongoWorkPool().fetch(new FetchDocument(uniqueId, indexName));
+		assertTrue("Document <" + uniqueId + "> is missing", fetchResult.hasResultDocument());
+		assertEquals(n, fetchResult.getDocument().get("n"));
+	}
+
+	private void assertSegments(String indexName, int totalHits, int numberOfSegments) throws Exception {
+		QueryResult qr = getLumongoWorkPool().query(new Query(indexName, "title:userguide", totalHits));
+		assertEquals(totalHits, qr.getTotalHits());
+		for (ScoredResult sr : qr.getResults()) {
+			int expectedSegment = SegmentUtil.findSegmentForUniqueId(sr.getUniqueId(), numberOfSegments);
+			assertEquals("Document <" + sr.getUniqueId() + "> is in the wrong segment", expectedSegment, sr.getSegment());
+		}
+		assertFalse(qr.getResults().isEmpty());
+	}
+
+	@AfterClass
+	public void test05Shutdown() throws Exception {
+		stopSuite();
+	}
+}
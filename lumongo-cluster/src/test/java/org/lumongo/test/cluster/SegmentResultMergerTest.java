@@ -0,0 +1,164 @@
+package org.lumongo.test.cluster;
+
+import org.lumongo.cluster.message.Lumongo.FieldSort;
+import org.lumongo.cluster.message.Lumongo.ScoredResult;
+import org.lumongo.cluster.message.Lumongo.SortValue;
+import org.lumongo.cluster.message.Lumongo.SortValues;
+import org.lumongo.cluster.message.LumongoIndex.FieldConfig.FieldType;
+import org.lumongo.server.search.ScoreCompare;
+import org.lumongo.server.search.SegmentResultMerger;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class SegmentResultMergerTest {
+
+	@Test
+	public void testScoreMerge() throws Exception {
+		List<List<ScoredResult>> segmentResults = new ArrayList<>();
+		segmentResults.add(Arrays.asList(scored("a", 9.0f, 0, 0), scored("b", 5.0f, 3, 0), scored("c", 1.0f, 6, 0)));
+		segmentResults.add(Arrays.asList(scored("d", 7.0f, 1, 1), scored("e", 5.0f, 2, 1)));
+		segmentResults.add(Collections.emptyList());
+		segmentResults.add(Arrays.asList(scored("f", 5.0f, 4, 3), scored("g", 2.0f, 5, 3)));
+
+		SegmentResultMerger merger = new SegmentResultMerger(Collections.emptyList(), Collections.emptyMap());
+
+		//equal scores are ordered by result index
+		assertEquals(Arrays.asList("a", "d", "e", "b", "f", "g", "c"), getUniqueIds(merger.merge(segmentResults, 10)));
+		assertEquals(Arrays.asList("a", "d", "e", "b"), getUniqueIds(merger.merge(segmentResults, 4)));
+		assertTrue(merger.merge(segmentResults, 0).isEmpty());
+		assertTrue(merger.merge(new ArrayList<>(), 10).isEmpty());
+	}
+
+	@Test
+	public void testScoreMergeMatchesFullSort() throws Exception {
+		Random random = new Random(1234);
+
+		List<List<ScoredResult>> segmentResults = new ArrayList<>();
+		List<ScoredResult> all = new ArrayList<>();
+		int resultIndex = 0;
+		for (int s = 0; s < 16; s++) {
+			List<ScoredResult> results = new ArrayList<>();
+			int count = random.nextInt(50);
+			for (int i = 0; i < count; i++) {
+				//few distinct scores so many results tie across segments
+				results.add(scored("id-" + resultIndex, random.nextInt(10), resultIndex++, s));
+			}
+			results.sort(new ScoreCompare());
+			segmentResults.add(results);
+			all.addAll(results);
+		}
+		all.sort(new ScoreCompare());
+
+		SegmentResultMerger merger = new SegmentResultMerger(Collections.emptyList(), Collections.emptyMap());
+		assertEquals(getUniqueIds(all.subList(0, 100)), getUniqueIds(merger.merge(segmentResults, 100)));
+		assertEquals(getUniqueIds(all), getUniqueIds(merger.merge(segmentResults, all.size() + 10)));
+	}
+
+	@Test
+	public void testSortMerge() throws Exception {
+		List<FieldSort> fieldSorts = Arrays.asList(FieldSort.newBuilder().setSortField("an").setDirection(FieldSort.Direction.DESCENDING).build(),
+				FieldSort.newBuilder().setSortField("title").setDirection(FieldSort.Direction.ASCENDING).build(),
+				FieldSort.newBuilder().setSortField("date").setDirection(FieldSort.Direction.ASCENDING).build());
+		Map<String, FieldType> sortTypeMap = new HashMap<>();
+		sortTypeMap.put("an", FieldType.NUMERIC_INT);
+		sortTypeMap.put("title", FieldType.STRING);
+		sortTypeMap.put("date", FieldType.DATE);
+
+		List<List<ScoredResult>> segmentResults = new ArrayList<>();
+		segmentResults.add(Arrays.asList(sorted("a", 0, 30, "apple", 10), sorted("b", 0, 20, "pear", 10), sorted("c", 0, 10, "apple", 10)));
+		segmentResults.add(Arrays.asList(sorted("d", 1, 30, "banana", 10), sorted("e", 1, 20, "apple", 20), sorted("f", 1, 20, "pear", 5)));
+		segmentResults.add(Arrays.asList(sorted("g", 2, 25, "apple", 10), sorted("h", 2, 20, "apple", 15)));
+
+		SegmentResultMerger merger = new SegmentResultMerger(fieldSorts, sortTypeMap);
+
+		//an descending, ties on an by title, ties on an and title by date
+		assertEquals(Arrays.asList("a", "d", "g", "h", "e", "f", "b", "c"), getUniqueIds(merger.merge(segmentResults, 10)));
+		assertEquals(Arrays.asList("a", "d", "g"), getUniqueIds(merger.merge(segmentResults, 3)));
+	}
+
+	@Test
+	public void testSortMergeTies() throws Exception {
+		List<FieldSort> fieldSorts = Collections
+				.singletonList(FieldSort.newBuilder().setSortField("rank").setDirection(FieldSort.Direction.ASCENDING).build());
+		Map<String, FieldType> sortTypeMap = Collections.singletonMap("rank", FieldType.NUMERIC_DOUBLE);
+
+		List<List<ScoredResult>> segmentResults = new ArrayList<>();
+		segmentResults.add(Arrays.asList(sorted("a", 0, 1.5), sorted("b", 0, 2.5)));
+		segmentResults.add(Arrays.asList(sorted("c", 1, 1.5), sorted("d", 1, 2.5)));
+		segmentResults.add(Arrays.asList(sorted("e", 2, 0.5), sorted("f", 2, 1.5)));
+
+		List<String> merged = getUniqueIds(new SegmentResultMerger(fieldSorts, sortTypeMap).merge(segmentResults, 10));
+		assertEquals(6, merged.size());
+		assertEquals("e", merged.get(0));
+		//results with equal sort values may merge in any order but come before every greater value
+		assertEquals(new HashSet<>(Arrays.asList("a", "c", "f")), new HashSet<>(merged.subList(1, 4)));
+		assertEquals(new HashSet<>(Arrays.asList("b", "d")), new HashSet<>(merged.subList(4, 6)));
+	}
+
+	@Test
+	public void testPagingAfterLastResults() throws Exception {
+		List<List<ScoredResult>> segmentResults = new ArrayList<>();
+		segmentResults.add(Arrays.asList(scored("a", 9.0f, 0, 0), scored("b", 6.0f, 3, 0), scored("c", 3.0f, 6, 0), scored("d", 1.0f, 9, 0)));
+		segmentResults.add(Arrays.asList(scored("e", 8.0f, 1, 1), scored("f", 6.0f, 4, 1), scored("g", 2.0f, 7, 1)));
+		segmentResults.add(Arrays.asList(scored("h", 7.0f, 2, 2), scored("i", 4.0f, 5, 2), scored("j", 2.0f, 8, 2)));
+
+		SegmentResultMerger merger = new SegmentResultMerger(Collections.emptyList(), Collections.emptyMap());
+
+		List<ScoredResult> firstPage = merger.merge(segmentResults, 4);
+		assertEquals(Arrays.asList("a", "e", "h", "b"), getUniqueIds(firstPage));
+
+		//each segment searches after the last of its results returned, as the last result of the query records
+		List<List<ScoredResult>> afterResults = new ArrayList<>();
+		for (List<ScoredResult> results : segmentResults) {
+			int after = 0;
+			for (int i = 0; i < results.size(); i++) {
+				if (firstPage.contains(results.get(i))) {
+					after = i + 1;
+				}
+			}
+			afterResults.add(results.subList(after, results.size()));
+		}
+
+		List<ScoredResult> secondPage = merger.merge(afterResults, 4);
+		assertEquals(Arrays.asList("f", "i", "c", "g"), getUniqueIds(secondPage));
+
+		List<ScoredResult> bothPages = new ArrayList<>(firstPage);
+		bothPages.addAll(secondPage);
+		assertEquals(getUniqueIds(merger.merge(segmentResults, 8)), getUniqueIds(bothPages));
+	}
+
+	private static ScoredResult scored(String uniqueId, float score, int resultIndex, int segment) {
+		return ScoredResult.newBuilder().setUniqueId(uniqueId).setScore(score).setResultIndex(resultIndex).setSegment(segment).build();
+	}
+
+	private static ScoredResult sorted(String uniqueId, int segment, int an, String title, long date) {
+		SortValues sortValues = SortValues.newBuilder().addSortValue(SortValue.newBuilder().setExists(true).setIntegerValue(an))
+				.addSortValue(SortValue.newBuilder().setExists(true).setStringValue(title))
+				.addSortValue(SortValue.newBuilder().setExists(true).setDateValue(date)).build();
+		return ScoredResult.newBuilder().setUniqueId(uniqueId).setSegment(segment).setSortValues(sortValues).build();
+	}
+
+	private static ScoredResult sorted(String uniqueId, int segment, double rank) {
+		SortValues sortValues = SortValues.newBuilder().addSortValue(SortValue.newBuilder().setExists(true).setDoubleValue(rank)).build();
+		return ScoredResult.newBuilder().setUniqueId(uniqueId).setSegment(segment).setSortValues(sortValues).build();
+	}
+
+	private static List<String> getUniqueIds(List<ScoredResult> results) {
+		List<String> uniqueIds = new ArrayList<>();
+		for (ScoredResult sr : results) {
+			uniqueIds.add(sr.getUniqueId());
+		}
+		return uniqueIds;
+	}
+}
@@ -9,6 +9,7 @@ import org.lumongo.server.LumongoNode;
 import org.lumongo.server.config.ClusterConfig;
 import org.lumongo.server.config.LocalNodeConfig;
 import org.lumongo.server.config.MongoConfig;
+import org.lumongo.server.index.LumongoIndexManager;
 import org.lumongo.util.ClusterHelper;
 import org.lumongo.util.LogUtil;
 import org.lumongo.util.ServerNameHelper;
@@ -151,5 +152,9 @@ public class ServerTestBase {
 	public LumongoWorkPool getLumongoWorkPool() {
 		return lumongoWorkPool;
 	}
+
+	public LumongoIndexManager getIndexManager(int instance) {
+		return luceneNodes.get(instance).getIndexManager();
+	}
 	
 }
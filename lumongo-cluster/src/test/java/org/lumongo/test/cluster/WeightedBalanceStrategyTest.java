@@ -0,0 +1,189 @@
+package org.lumongo.test.cluster;
+
+import com.hazelcast.core.Member;
+import com.hazelcast.instance.MemberImpl;
+import com.hazelcast.nio.Address;
+import com.hazelcast.version.MemberVersion;
+import org.lumongo.server.index.balance.SegmentLoad;
+import org.lumongo.server.index.balance.SegmentMove;
+import org.lumongo.server.index.balance.WeightedBalanceStrategy;
+import org.testng.annotations.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import static org.testng.AssertJUnit.assertEquals;
+import static org.testng.AssertJUnit.assertFalse;
+import static org.testng.AssertJUnit.assertTrue;
+
+public class WeightedBalanceStrategyTest {
+
+	private static final String INDEX = "myTestIndex";
+
+	private static final String OTHER_INDEX = "otherTestIndex";
+
+	@Test
+	public void testMaxSegmentsPerMember() throws Exception {
+		List<Member> members = createMembers(3);
+
+		Map<String, Map<Member, Set<Integer>>> indexSegmentMaps = new TreeMap<>();
+		indexSegmentMaps.put(INDEX, new HashMap<>());
+		indexSegmentMaps.get(INDEX).put(members.get(0), segments(0, 10));
+		indexSegmentMaps.put(OTHER_INDEX, new HashMap<>());
+		indexSegmentMaps.get(OTHER_INDEX).put(members.get(1), segments(0, 5));
+		indexSegmentMaps.get(OTHER_INDEX).put(members.get(2), segments(5, 7));
+
+		Map<String, Map<Integer, SegmentLoad>> segmentLoads = new HashMap<>();
+		for (int segmentNumber = 0; segmentNumber < 10; segmentNumber++) {
+			//the segments of the other index are far heavier so load alone would leave them on fewer members
+			addLoad(segmentLoads, INDEX, segmentNumber, 100, 1000, 0, 0);
+		}
+		for (int segmentNumber = 0; segmentNumber < 7; segmentNumber++) {
+			addLoad(segmentLoads, OTHER_INDEX, segmentNumber, 100000, 10000000, 50, 50);
+		}
+
+		List<SegmentMove> moves = new WeightedBalanceStrategy().balance(new LinkedHashSet<>(members), indexSegmentMaps, segmentLoads);
+		assertFalse(moves.isEmpty());
+
+		applyMoves(indexSegmentMaps, moves);
+
+		assertAllAssigned(indexSegmentMaps.get(INDEX), members, 10);
+		assertAllAssigned(indexSegmentMaps.get(OTHER_INDEX), members, 7);
+		for (Member m : members) {
+			assertTrue(getSegments(indexSegmentMaps.get(INDEX), m).size() <= 4);
+			assertTrue(getSegments(indexSegmentMaps.get(OTHER_INDEX), m).size() <= 3);
+		}
+	}
+
+	@Test
+	public void testHeavyMemberShedsLoad() throws Exception {
+		List<Member> members = createMembers(4);
+
+		Map<String, Map<Member, Set<Integer>>> indexSegmentMaps = new TreeMap<>();
+		indexSegmentMaps.put(INDEX, new HashMap<>());
+		indexSegmentMaps.get(INDEX).put(members.get(0), segments(0, 2));
+		indexSegmentMaps.get(INDEX).put(members.get(1), segments(2, 4));
+		indexSegmentMaps.get(INDEX).put(members.get(2), segments(4, 6));
+
+		Map<String, Map<Integer, SegmentLoad>> segmentLoads = new HashMap<>();
+		addLoad(segmentLoads, INDEX, 0, 1000000, 100000000, 100, 100);
+		addLoad(segmentLoads, INDEX, 1, 1000000, 100000000, 100, 100);
+		for (int segmentNumber = 2; segmentNumber < 6; segmentNumber++) {
+			addLoad(segmentLoads, INDEX, segmentNumber, 0, 0, 0, 0);
+		}
+
+		List<SegmentMove> moves = new WeightedBalanceStrategy().balance(new LinkedHashSet<>(members), indexSegmentMaps, segmentLoads);
+		assertFalse(moves.isEmpty());
+		for (SegmentMove move : moves) {
+			assertEquals(members.get(0), move.getFromMember());
+			assertTrue(move.getSegmentNumber() < 2);
+		}
+
+		applyMoves(indexSegmentMaps, moves);
+
+		assertAllAssigned(indexSegmentMaps.get(INDEX), members, 6);
+		Set<Integer> heavySegments = new HashSet<>(getSegments(indexSegmentMaps.get(INDEX), members.get(0)));
+		heavySegments.retainAll(segments(0, 2));
+		assertEquals(1, heavySegments.size());
+	}
+
+	@Test
+	public void testBalancedMapHasNoMoves() throws Exception {
+		List<Member> members = createMembers(2);
+
+		Map<String, Map<Member, Set<Integer>>> indexSegmentMaps = new TreeMap<>();
+		indexSegmentMaps.put(INDEX, new HashMap<>());
+		indexSegmentMaps.get(INDEX).put(members.get(0), segments(0, 4));
+		indexSegmentMaps.get(INDEX).put(members.get(1), segments(4, 8));
+
+		Map<String, Map<Integer, SegmentLoad>> segmentLoads = new HashMap<>();
+		for (int segmentNumber = 0; segmentNumber < 8; segmentNumber++) {
+			addLoad(segmentLoads, INDEX, segmentNumber, 5000, 500000, 10, 10);
+		}
+
+		assertTrue(new WeightedBalanceStrategy().balance(new LinkedHashSet<>(members), indexSegmentMaps, segmentLoads).isEmpty());
+
+		//loads that are not reported weigh every segment the same
+		assertTrue(new WeightedBalanceStrategy().balance(new LinkedHashSet<>(members), indexSegmentMaps, new HashMap<>()).isEmpty());
+	}
+
+	@Test
+	public void testRemovedMemberSegmentsReassigned() throws Exception {
+		List<Member> members = createMembers(3);
+		Member removed = members.remove(2);
+
+		Map<String, Map<Member, Set<Integer>>> indexSegmentMaps = new TreeMap<>();
+		indexSegmentMaps.put(INDEX, new HashMap<>());
+		indexSegmentMaps.get(INDEX).put(members.get(0), segments(0, 2));
+		indexSegmentMaps.get(INDEX).put(members.get(1), segments(2, 4));
+		indexSegmentMaps.get(INDEX).put(removed, segments(4, 6));
+
+		List<SegmentMove> moves = new WeightedBalanceStrategy().balance(new LinkedHashSet<>(members), indexSegmentMaps, new HashMap<>());
+		assertEquals(2, moves.size());
+		for (SegmentMove move : moves) {
+			assertEquals(removed, move.getFromMember());
+			assertTrue(members.contains(move.getToMember()));
+		}
+
+		applyMoves(indexSegmentMaps, moves);
+
+		assertTrue(getSegments(indexSegmentMaps.get(INDEX), removed).isEmpty());
+		assertAllAssigned(indexSegmentMaps.get(INDEX), members, 6);
+		assertEquals(3, getSegments(indexSegmentMaps.get(INDEX), members.get(0)).size());
+		assertEquals(3, getSegments(indexSegmentMaps.get(INDEX), members.get(1)).size());
+	}
+
+	private static List<Member> createMembers(int count) throws Exception {
+		List<Member> members = new ArrayList<>();
+		for (int i = 0; i < count; i++) {
+			members.add(new MemberImpl(new Address("127.0.0.1", 5701 + i), MemberVersion.UNKNOWN, false, "member-" + i, null));
+		}
+		return members;
+	}
+
+	private static Set<Integer> segments(int from, int to) {
+		Set<Integer> segments = new TreeSet<>();
+		for (int segmentNumber = from; segmentNumber < to; segmentNumber++) {
+			segments.add(segmentNumber);
+		}
+		return segments;
+	}
+
+	private static void addLoad(Map<String, Map<Integer, SegmentLoad>> segmentLoads, String indexName, int segmentNumber, long numberOfDocs,
+			long sizeInBytes, double queryRate, double indexRate) {
+		segmentLoads.computeIfAbsent(indexName, k -> new HashMap<>())
+				.put(segmentNumber, new SegmentLoad(indexName, segmentNumber, numberOfDocs, sizeInBytes, queryRate, indexRate));
+	}
+
+	/**
+	 * Applies the moves to the segment maps the way the index manager does
+	 */
+	private static void applyMoves(Map<String, Map<Member, Set<Integer>>> indexSegmentMaps, List<SegmentMove> moves) {
+		for (SegmentMove move : moves) {
+			Map<Member, Set<Integer>> memberToSegmentMap = indexSegmentMaps.get(move.getIndexName());
+			assertTrue(memberToSegmentMap.get(move.getFromMember()).remove(move.getSegmentNumber()));
+			memberToSegmentMap.computeIfAbsent(move.getToMember(), k -> new HashSet<>()).add(move.getSegmentNumber());
+		}
+	}
+
+	private static Set<Integer> getSegments(Map<Member, Set<Integer>> memberToSegmentMap, Member m) {
+		return memberToSegmentMap.getOrDefault(m, new HashSet<>());
+	}
+
+	private static void assertAllAssigned(Map<Member, Set<Integer>> memberToSegmentMap, List<Member> members, int numberOfSegments) {
+		Set<Integer> assigned = new TreeSet<>();
+		for (Member m : members) {
+			for (Integer segmentNumber : getSegments(memberToSegmentMap, m)) {
+				assertTrue("Segment <" + segmentNumber + "> is assigned twice", assigned.add(segmentNumber));
+			}
+		}
+		assertEquals(segments(0, numberOfSegments), assigned);
+	}
+}
@@ -25,6 +25,7 @@ public class LumongoConstants {
 	public static final String INDEXES_URL = "indexes";
 	public static final String MEMBERS_URL = "members";
 	public static final String STATS_URL = "stats";
+	public static final String DELETE_BY_QUERY_URL = "deleteByQuery";
 
 	public static final String QUERY = "q";
 	public static final String QUERY_FIELD = "qf";
@@ -61,6 +62,7 @@ public class LumongoConstants {
 	public static final String INCLUDE_TERM = "includeTerm";
 
 	public static final String FORMAT = "format";
+	public static final String DELETE_ASSOCIATED = "deleteAssociated";
 
 	//General
 	public static final String UTF8 = "UTF-8";
@@ -79,6 +81,8 @@ public class LumongoConstants {
 	public static final String ANALYZE_JSON = "alJson";
 	public static final String FUZZY_TERM_JSON = "fuzzyTermJson";
 	public static final String COS_SIM_JSON = "cosSimJson";
+	public static final String STAT = "stat";
+	public static final String RANGE_JSON = "rangeJson";
 
 	public static final String DONT_CACHE = "dontCache";
 	public static final String BATCH = "batch";
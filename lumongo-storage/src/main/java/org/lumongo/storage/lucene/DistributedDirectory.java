@@ -33,15 +33,33 @@ public class DistributedDirectory extends BaseDirectory {
 	/** Used to generate temp file names in {@link #createTempOutput}. */
 	private final AtomicLong nextTempFileCounter = new AtomicLong();
 
+	public static final int DEFAULT_READ_AHEAD_BLOCKS = 8;
+
 	protected NosqlDirectory nosqlDirectory;
 
+	private final int readAheadBlocks;
+
 	public DistributedDirectory(NosqlDirectory nosqlDirectory) throws IOException {
-		this(nosqlDirectory, new SingleInstanceLockFactory());
+		this(nosqlDirectory, DEFAULT_READ_AHEAD_BLOCKS);
+	}
+
+	/**
+	 * @param nosqlDirectory - directory to store the files in
+	 * @param readAheadBlocks - number of blocks fetched at once on sequential reads, 0 to disable read ahead
+	 * @throws IOException
+	 */
+	public DistributedDirectory(NosqlDirectory nosqlDirectory, int readAheadBlocks) throws IOException {
+		this(nosqlDirectory, new SingleInstanceLockFactory(), readAheadBlocks);
 	}
 
 	public DistributedDirectory(NosqlDirectory nosqlDirectory, LockFactory lockFactory) throws IOException {
+		this(nosqlDirectory, lockFactory, DEFAULT_READ_AHEAD_BLOCKS);
+	}
+
+	public DistributedDirectory(NosqlDirectory nosqlDirectory, LockFactory lockFactory, int readAheadBlocks) throws IOException {
 		super(lockFactory);
 		this.nosqlDirectory = nosqlDirectory;
+		this.readAheadBlocks = readAheadBlocks;
 	}
 
 	/**
@@ -87,13 +105,15 @@ public class DistributedDirectory extends BaseDirectory {
 	}
 
 	/**
-	 * ignore IOContext
+	 * merges and read once inputs read the whole file sequentially so they read ahead from the start,
+	 * other inputs read ahead only after sequential access is detected
 	 */
 	@Override
 	public IndexInput openInput(String name, IOContext context) throws IOException {
 		ensureOpen();
 		NosqlFile nosqlFile = nosqlDirectory.getFileHandle(name);
-		return new DistributedIndexInput(nosqlFile.getFileName(), nosqlFile);
+		boolean alwaysReadAhead = context.readOnce || IOContext.Context.MERGE.equals(context.context);
+		return new DistributedIndexInput(nosqlFile.getFileName(), nosqlFile, readAheadBlocks, alwaysReadAhead);
 	}
 
 	@Override
@@ -23,21 +23,89 @@ import java.io.EOFException;
 import java.io.IOException;
 
 public class DistributedIndexInput extends IndexInput {
+
+	/**
+	 * number of sequential block changes before read ahead starts when it is not always on
+	 */
+	private static final int SEQUENTIAL_BLOCKS_BEFORE_READ_AHEAD = 2;
+
 	private final NosqlFile nosqlFile;
 
 	protected long position;
 	protected long sliceOffset;
 	protected long length;
 
+	private final int readAheadBlocks;
+	private final boolean alwaysReadAhead;
+
+	private int currentBlock;
+	private long currentBlockStart;
+	private long currentBlockEnd;
+	private int sequentialBlocks;
+	private int readAheadUntil;
+
 	public DistributedIndexInput(String name, NosqlFile nosqlFile) {
-		this(name, nosqlFile, 0, nosqlFile.getFileLength());
+		this(name, nosqlFile, 0, false);
+	}
+
+	/**
+	 * @param name - name of the input
+	 * @param nosqlFile - file to read from
+	 * @param readAheadBlocks - number of blocks to fetch at once when reading sequentially, 0 to disable read ahead
+	 * @param alwaysReadAhead - read ahead from the first read instead of waiting for sequential access to be detected
+	 */
+	public DistributedIndexInput(String name, NosqlFile nosqlFile, int readAheadBlocks, boolean alwaysReadAhead) {
+		this(name, nosqlFile, 0, nosqlFile.getFileLength(), readAheadBlocks, alwaysReadAhead);
 	}
 
 	public DistributedIndexInput(String name, NosqlFile nosqlFile, long sliceOffset, long length) {
+		this(name, nosqlFile, sliceOffset, length, 0, false);
+	}
+
+	public DistributedIndexInput(String name, NosqlFile nosqlFile, long sliceOffset, long length, int readAheadBlocks, boolean alwaysReadAhead) {
 		super(DistributedIndexInput.class.getSimpleName() + "(" + name + ")");
 		this.nosqlFile = nosqlFile;
 		this.sliceOffset = sliceOffset;
 		this.length = length;
+		this.readAheadBlocks = readAheadBlocks;
+		this.alwaysReadAhead = alwaysReadAhead;
+		this.currentBlock = -1;
+		this.currentBlockStart = -1;
+		this.currentBlockEnd = -1;
+	}
+
+	/**
+	 * Tracks which blocks are being read and prefetches the following blocks in one request once reads are sequential
+	 * @param start - absolute file position of the first byte read
+	 * @param end - absolute file position after the last byte read
+	 * @throws IOException
+	 */
+	private void readAhead(long start, long end) throws IOException {
+		if (readAheadBlocks <= 0 || (start >= currentBlockStart && end <= currentBlockEnd)) {
+			return;
+		}
+
+		int blockSize = nosqlFile.getBlockSize();
+		int firstBlock = (int) (start / blockSize);
+		int lastBlock = (int) ((Math.max(end, start + 1) - 1) / blockSize);
+
+		if (firstBlock == currentBlock + 1 || (firstBlock == currentBlock && lastBlock > currentBlock)) {
+			sequentialBlocks++;
+		}
+		else {
+			sequentialBlocks = 0;
+		}
+
+		currentBlock = lastBlock;
+		currentBlockStart = (long) lastBlock * blockSize;
+		currentBlockEnd = currentBlockStart + blockSize;
+
+		if ((alwaysReadAhead || sequentialBlocks >= SEQUENTIAL_BLOCKS_BEFORE_READ_AHEAD) && lastBlock >= readAheadUntil) {
+			int fromBlock = Math.max(firstBlock, readAheadUntil);
+			int count = Math.max(lastBlock - fromBlock + 1, readAheadBlocks);
+			nosqlFile.prefetchBlocks(fromBlock, count);
+			readAheadUntil = fromBlock + count;
+		}
 	}
 
 	@Override
@@ -67,6 +135,7 @@ public class DistributedIndexInput extends IndexInput {
 			throw new EOFException("read past EOF: " + this);
 		}
 
+		readAhead(position + sliceOffset, position + sliceOffset + 1);
 		byte result = nosqlFile.readByte(position + sliceOffset);
 		position += 1;
 		return result;
@@ -74,6 +143,7 @@ public class DistributedIndexInput extends IndexInput {
 
 	@Override
 	public int readInt() throws IOException {
+		readAhead(position + sliceOffset, position + sliceOffset + 4);
 		int result = nosqlFile.readInt(position + sliceOffset);
 		position += 4;
 		return result;
@@ -81,6 +151,7 @@ public class DistributedIndexInput extends IndexInput {
 
 	@Override
 	public long readLong() throws IOException {
+		readAhead(position + sliceOffset, position + sliceOffset + 8);
 		long result = nosqlFile.readLong(position + sliceOffset);
 		position += 8;
 		return result;
@@ -93,6 +164,7 @@ public class DistributedIndexInput extends IndexInput {
 			throw new EOFException("read past EOF: " + this);
 		}
 
+		readAhead(position + sliceOffset, position + sliceOffset + length);
 		nosqlFile.readBytes(position + sliceOffset, b, offset, length);
 		position += length;
 	}
@@ -102,13 +174,14 @@ public class DistributedIndexInput extends IndexInput {
 		if (sliceOffset < 0 || length < 0 || sliceOffset + length > this.length) {
 			throw new IllegalArgumentException("slice() " + sliceDescription + " out of bounds: "  + this);
 		}
-		final DistributedIndexInput dii = new DistributedIndexInput(getFullSliceDescription(sliceDescription), nosqlFile, this.sliceOffset + sliceOffset, length);
+		final DistributedIndexInput dii = new DistributedIndexInput(getFullSliceDescription(sliceDescription), nosqlFile, this.sliceOffset + sliceOffset, length,
+				readAheadBlocks, alwaysReadAhead);
 		return dii;
 	}
 
 	@Override
 	public IndexInput clone() {
-		IndexInput ii = new DistributedIndexInput(getFullSliceDescription(null), nosqlFile, sliceOffset, length);
+		IndexInput ii = new DistributedIndexInput(getFullSliceDescription(null), nosqlFile, sliceOffset, length, readAheadBlocks, alwaysReadAhead);
 		try {
 			ii.seek(getFilePointer());
 		}
@@ -1,5 +1,7 @@
 package org.lumongo.storage.lucene;
 
+import java.nio.ByteBuffer;
+
 /**
  * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
  * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
@@ -21,14 +23,17 @@ public class MongoBlock {
 
 	protected final Object lock;
 
-	protected byte[] bytes;
+	/**
+	 * heap or direct buffer holding the block, only absolute gets and puts are used so it can be shared between threads
+	 */
+	protected final ByteBuffer buffer;
 
 	private boolean dirty;
 
-	public MongoBlock(MongoFile mongoFile, int blockNumber, byte[] bytes) {
+	public MongoBlock(MongoFile mongoFile, int blockNumber, ByteBuffer buffer) {
 		this.mongoFile = mongoFile;
 		this.blockNumber = blockNumber;
-		this.bytes = bytes;
+		this.buffer = buffer;
 		this.dirty = false;
 		this.blockKey = computeBlockKey(mongoFile, blockNumber);
 		this.lock = new Object();
@@ -53,12 +58,65 @@ public class MongoBlock {
 
 	}
 
+	public int getCapacity() {
+		return buffer.capacity();
+	}
+
+	public void readBytes(int blockOffset, byte[] b, int offset, int length) {
+		if (buffer.hasArray()) {
+			System.arraycopy(buffer.array(), buffer.arrayOffset() + blockOffset, b, offset, length);
+		}
+		else {
+			ByteBuffer view = buffer.duplicate();
+			view.position(blockOffset);
+			view.get(b, offset, length);
+		}
+	}
+
+	public void writeBytes(int blockOffset, byte[] b, int offset, int length) {
+		if (buffer.hasArray()) {
+			System.arraycopy(b, offset, buffer.array(), buffer.arrayOffset() + blockOffset, length);
+		}
+		else {
+			ByteBuffer view = buffer.duplicate();
+			view.position(blockOffset);
+			view.put(b, offset, length);
+		}
+	}
+
+	/**
+	 * @return the contents of the block as an array for storage, the backing array is returned without copying for heap blocks
+	 */
+	public byte[] getBytes() {
+		if (buffer.hasArray() && buffer.arrayOffset() == 0 && buffer.array().length == buffer.capacity()) {
+			return buffer.array();
+		}
+		byte[] bytes = new byte[buffer.capacity()];
+		readBytes(0, bytes, 0, bytes.length);
+		return bytes;
+	}
+
 	public void markDirty() {
 		synchronized (lock) {
 			dirty = true;
 		}
 	}
 
+	/**
+	 * Marks the block clean and returns its contents if it was dirty.  A write after this call marks the block dirty again so it
+	 * is stored by a later flush.
+	 * @return the block contents to store or null if the block is not dirty
+	 */
+	protected byte[] takeDirtyBytes() {
+		synchronized (lock) {
+			if (dirty) {
+				dirty = false;
+				return getBytes();
+			}
+			return null;
+		}
+	}
+
 	public void flushIfDirty() {
 		synchronized (lock) {
 			if (dirty) {
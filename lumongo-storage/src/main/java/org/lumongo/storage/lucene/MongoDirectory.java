@@ -59,6 +59,10 @@ public class MongoDirectory implements NosqlDirectory {
 		MongoFile.setMaxIndexBlocks(blocks);
 	}
 
+	public static void setOffHeapCacheSize(long maxBytes) {
+		MongoFile.setOffHeapCacheSize(maxBytes);
+	}
+
 	/**
 	 * Removes an index from a database
 	 * @param mongo
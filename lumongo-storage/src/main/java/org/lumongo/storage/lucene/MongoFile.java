@@ -4,17 +4,29 @@ import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.RemovalListener;
 import com.mongodb.client.MongoCollection;
+import com.mongodb.client.model.BulkWriteOptions;
+import com.mongodb.client.model.ReplaceOneModel;
 import com.mongodb.client.model.UpdateOptions;
+import com.mongodb.client.model.WriteModel;
 import org.bson.Document;
 import org.bson.types.Binary;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Set;
 import java.util.concurrent.Callable;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.zip.CRC32;
 
 /**
@@ -32,6 +44,12 @@ import java.util.zip.CRC32;
 
 public class MongoFile implements NosqlFile {
 
+	/**
+	 * number of dirty blocks stored in one unordered bulk write
+	 */
+	public static final int FLUSH_BATCH_SIZE = 32;
+	public static final int FLUSH_THREADS = 4;
+
 	private final MongoDirectory mongoDirectory;
 
 	protected final short indexNumber;
@@ -46,15 +64,33 @@ public class MongoFile implements NosqlFile {
 	private MongoBlock currentReadBlock;
 	private MongoBlock currentWriteBlock;
 
-	private ConcurrentMap<Long, Boolean> dirtyBlocks;
+	//blocks to store on the next flush, kept here so a block evicted from the cache before it is stored is not lost
+	private ConcurrentMap<Long, MongoBlock> dirtyBlocks;
 
 	private final CRC32 crc;
 
 	private static Cache<Long, MongoBlock> cache;
 	private static RemovalListener<Long, MongoBlock> removalListener;
+	private static volatile boolean offHeap;
+	private static volatile long maxCacheBytes;
+
+	private static final ExecutorService flusherPool;
+
+	private static final AtomicLong flushCount = new AtomicLong();
+	private static final AtomicLong flushedBlocks = new AtomicLong();
+	private static final AtomicLong flushedBytes = new AtomicLong();
+	private static final AtomicLong flushTimeMs = new AtomicLong();
+	private static final AtomicLong maxFlushTimeMs = new AtomicLong();
 
 	static {
 
+		AtomicInteger flusherCount = new AtomicInteger();
+		flusherPool = Executors.newFixedThreadPool(FLUSH_THREADS, r -> {
+			Thread t = new Thread(r, "mongoFileFlusher-" + flusherCount.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		});
+
 		createCache();
 
 	}
@@ -76,6 +112,8 @@ public class MongoFile implements NosqlFile {
 			}
 			*/
 		};
+		offHeap = false;
+		maxCacheBytes = 0;
 		cache = CacheBuilder.newBuilder().concurrencyLevel(32).maximumSize(MongoDirectory.DEFAULT_BLOCK_MAX).removalListener(removalListener).build();
 	}
 
@@ -87,12 +125,77 @@ public class MongoFile implements NosqlFile {
 		return cache.size();
 	}
 
+	/**
+	 * @return number of file flushes that stored at least one block
+	 */
+	public static long getFlushCount() {
+		return flushCount.get();
+	}
+
+	public static long getFlushedBlocks() {
+		return flushedBlocks.get();
+	}
+
+	public static long getFlushedBytes() {
+		return flushedBytes.get();
+	}
+
+	public static long getFlushTimeMs() {
+		return flushTimeMs.get();
+	}
+
+	public static long getMaxFlushTimeMs() {
+		return maxFlushTimeMs.get();
+	}
+
+	public static boolean isOffHeap() {
+		return offHeap;
+	}
+
+	public static long getMaxCacheBytes() {
+		return maxCacheBytes;
+	}
+
 	public static void setMaxIndexBlocks(int blocks) {
 		Cache<Long, MongoBlock> oldCache = cache;
 		cache = CacheBuilder.newBuilder().concurrencyLevel(32).maximumSize(blocks).removalListener(removalListener).build();
+		offHeap = false;
+		maxCacheBytes = 0;
 		cache.putAll(oldCache.asMap());
 	}
 
+	/**
+	 * Keeps newly loaded blocks in direct buffers outside of the java heap and limits the cache by the total bytes of the cached blocks
+	 * instead of the number of blocks.  Evicted blocks are flushed if dirty and their memory is released when the buffer is collected,
+	 * so -XX:MaxDirectMemorySize must allow for the cache size plus blocks still referenced by open readers.
+	 * @param maxBytes - maximum total size of the cached blocks in bytes
+	 */
+	public static void setOffHeapCacheSize(long maxBytes) {
+		Cache<Long, MongoBlock> oldCache = cache;
+		cache = CacheBuilder.newBuilder().concurrencyLevel(32).maximumWeight(maxBytes).weigher((Long key, MongoBlock block) -> block.getCapacity())
+				.removalListener(removalListener).build();
+		offHeap = true;
+		maxCacheBytes = maxBytes;
+		cache.putAll(oldCache.asMap());
+	}
+
+	private static ByteBuffer allocate(int size) {
+		if (offHeap) {
+			return ByteBuffer.allocateDirect(size);
+		}
+		return ByteBuffer.wrap(new byte[size]);
+	}
+
+	private static ByteBuffer allocate(byte[] bytes) {
+		if (offHeap) {
+			ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+			buffer.put(bytes);
+			buffer.clear();
+			return buffer;
+		}
+		return ByteBuffer.wrap(bytes);
+	}
+
 	protected MongoFile(MongoDirectory mongoDirectory, String fileName, short fileNumber, int blockSize) {
 
 		this.crc = new CRC32();
@@ -154,7 +257,7 @@ public class MongoFile implements NosqlFile {
 			currentReadBlock = mb = getMongoBlock(block);
 		}
 
-		return mb.bytes[blockOffset];
+		return mb.buffer.get(blockOffset);
 
 	}
 
@@ -162,7 +265,11 @@ public class MongoFile implements NosqlFile {
 
 		long blockKey = MongoBlock.computeBlockKey(this, block);
 
-		Callable<MongoBlock> loadBlockIfNeeded = () -> fetchBlock(block, true);
+		//a block evicted before its store succeeded is still waiting to be flushed and is newer than the stored block
+		Callable<MongoBlock> loadBlockIfNeeded = () -> {
+			MongoBlock dirtyBlock = dirtyBlocks.get(blockKey);
+			return dirtyBlock != null ? dirtyBlock : fetchBlock(block, true);
+		};
 		try {
 			return cache.get(blockKey, loadBlockIfNeeded);
 		}
@@ -186,7 +293,7 @@ public class MongoFile implements NosqlFile {
 				currentReadBlock = mb = getMongoBlock(block);
 			}
 
-			System.arraycopy(mb.bytes, blockOffset, b, offset, readSize);
+			mb.readBytes(blockOffset, b, offset, readSize);
 
 			position += readSize;
 			offset += readSize;
@@ -212,7 +319,7 @@ public class MongoFile implements NosqlFile {
 			currentWriteBlock = mb = getMongoBlock(block);
 		}
 
-		mb.bytes[blockOffset] = b;
+		mb.buffer.put(blockOffset, b);
 		mb.markDirty();
 
 		fileLength = Math.max(position + 1, fileLength);
@@ -238,7 +345,7 @@ public class MongoFile implements NosqlFile {
 				currentWriteBlock = mb = getMongoBlock(block);
 			}
 
-			System.arraycopy(b, offset, mb.bytes, blockOffset, writeSize);
+			mb.writeBytes(blockOffset, b, offset, writeSize);
 			mb.markDirty();
 			position += writeSize;
 			offset += writeSize;
@@ -251,35 +358,131 @@ public class MongoFile implements NosqlFile {
 	private void markDirty(MongoBlock mb) {
 		mb.markDirty();
 		cache.put(mb.blockKey, mb);
-		dirtyBlocks.put(mb.blockKey, true);
+		dirtyBlocks.put(mb.blockKey, mb);
 	}
 
+	/**
+	 * Stores the dirty blocks of the file in batches of unordered bulk upserts on the flusher pool and waits for them to complete
+	 * before the file metadata is updated
+	 */
 	@Override
 	public void flush() throws IOException {
 
-		if (currentWriteBlock != null) {
-			currentWriteBlock.flushIfDirty();
+		long start = System.currentTimeMillis();
+
+		Set<MongoBlock> blocksToFlush = new LinkedHashSet<>();
+
+		MongoBlock writeBlock = currentWriteBlock;
+		if (writeBlock != null) {
+			blocksToFlush.add(writeBlock);
 		}
 
 		if (!dirtyBlocks.isEmpty()) {
 			Set<Long> dirtyBlockKeys = new HashSet<>(dirtyBlocks.keySet());
 
 			for (Long key : dirtyBlockKeys) {
-
-				dirtyBlocks.remove(key);
-
-				MongoBlock mb = cache.getIfPresent(key);
+				//blocks evicted from the cache are flushed too, blocks the removal listener already stored are no longer dirty and are skipped
+				MongoBlock mb = dirtyBlocks.remove(key);
 				if (mb != null) {
-					mb.flushIfDirty();
+					blocksToFlush.add(mb);
 				}
 			}
 
 		}
 
+		List<Future<Integer>> batches = new ArrayList<>();
+		List<MongoBlock> batch = new ArrayList<>(FLUSH_BATCH_SIZE);
+		for (MongoBlock mb : blocksToFlush) {
+			batch.add(mb);
+			if (batch.size() == FLUSH_BATCH_SIZE) {
+				List<MongoBlock> fullBatch = batch;
+				batches.add(flusherPool.submit(() -> storeBlocks(fullBatch)));
+				batch = new ArrayList<>(FLUSH_BATCH_SIZE);
+			}
+		}
+		if (!batch.isEmpty()) {
+			List<MongoBlock> lastBatch = batch;
+			batches.add(flusherPool.submit(() -> storeBlocks(lastBatch)));
+		}
+
+		int blockCount = 0;
+		IOException exception = null;
+		for (Future<Integer> f : batches) {
+			try {
+				blockCount += f.get();
+			}
+			catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				exception = new IOException("Interrupted flushing blocks for file <" + fileName + "> of index <" + indexName + ">", e);
+			}
+			catch (ExecutionException e) {
+				exception = new IOException("Failed to flush blocks for file <" + fileName + "> of index <" + indexName + ">", e.getCause());
+			}
+		}
+
+		if (exception != null) {
+			throw exception;
+		}
+
+		if (blockCount > 0) {
+			long time = System.currentTimeMillis() - start;
+			flushCount.incrementAndGet();
+			flushedBlocks.addAndGet(blockCount);
+			flushedBytes.addAndGet((long) blockCount * blockSize);
+			flushTimeMs.addAndGet(time);
+			maxFlushTimeMs.accumulateAndGet(time, Math::max);
+		}
+
 		mongoDirectory.updateFileMetadata(this);
 
 	}
 
+	/**
+	 * Stores the blocks that are still dirty with a single unordered bulk write, blocks are marked dirty again if the write fails
+	 * @param blocks - blocks of this file to store
+	 * @return number of blocks stored
+	 */
+	private int storeBlocks(List<MongoBlock> blocks) {
+
+		List<WriteModel<Document>> writes = new ArrayList<>(blocks.size());
+		List<MongoBlock> storedBlocks = new ArrayList<>(blocks.size());
+
+		UpdateOptions upsert = new UpdateOptions().upsert(true);
+		for (MongoBlock mb : blocks) {
+			byte[] blockBytes = mb.takeDirtyBytes();
+			if (blockBytes != null) {
+				Document query = new Document();
+				query.put(MongoDirectory.FILE_NUMBER, fileNumber);
+				query.put(MongoDirectory.BLOCK_NUMBER, mb.blockNumber);
+
+				Document object = new Document();
+				object.put(MongoDirectory.FILE_NUMBER, fileNumber);
+				object.put(MongoDirectory.BLOCK_NUMBER, mb.blockNumber);
+				object.put(MongoDirectory.BYTES, new Binary(blockBytes));
+
+				writes.add(new ReplaceOneModel<>(query, object, upsert));
+				storedBlocks.add(mb);
+			}
+		}
+
+		if (writes.isEmpty()) {
+			return 0;
+		}
+
+		try {
+			mongoDirectory.getBlocksCollection().bulkWrite(writes, new BulkWriteOptions().ordered(false));
+		}
+		catch (RuntimeException e) {
+			for (MongoBlock mb : storedBlocks) {
+				mb.markDirty();
+				dirtyBlocks.put(mb.blockKey, mb);
+			}
+			throw e;
+		}
+
+		return storedBlocks.size();
+	}
+
 	private MongoBlock fetchBlock(Integer blockNumber, boolean createIfNotExist) throws IOException {
 
 		MongoCollection<Document> c = mongoDirectory.getBlocksCollection();
@@ -290,15 +493,13 @@ public class MongoFile implements NosqlFile {
 
 		Document result = c.find(query).first();
 
-		byte[] bytes;
 		if (result != null) {
-			bytes = ((Binary) result.get(MongoDirectory.BYTES)).getData();
-			return new MongoBlock(this, blockNumber, bytes);
+			byte[] bytes = ((Binary) result.get(MongoDirectory.BYTES)).getData();
+			return new MongoBlock(this, blockNumber, allocate(bytes));
 		}
 
 		if (createIfNotExist) {
-			bytes = new byte[blockSize];
-			MongoBlock mongoBlock = new MongoBlock(this, blockNumber, bytes);
+			MongoBlock mongoBlock = new MongoBlock(this, blockNumber, allocate(blockSize));
 			storeBlock(mongoBlock);
 			return mongoBlock;
 		}
@@ -307,6 +508,44 @@ public class MongoFile implements NosqlFile {
 
 	}
 
+	@Override
+	public void prefetchBlocks(int startBlock, int count) throws IOException {
+		if (fileLength == 0) {
+			return;
+		}
+
+		int lastBlockInFile = (int) ((fileLength - 1) / blockSize);
+		int endBlock = Math.min(startBlock + count - 1, lastBlockInFile);
+
+		ConcurrentMap<Long, MongoBlock> cacheMap = cache.asMap();
+
+		//only fetch from the first to the last block that is not already cached
+		while (startBlock <= endBlock && cacheMap.containsKey(MongoBlock.computeBlockKey(this, startBlock))) {
+			startBlock++;
+		}
+		while (endBlock >= startBlock && cacheMap.containsKey(MongoBlock.computeBlockKey(this, endBlock))) {
+			endBlock--;
+		}
+
+		if (startBlock > endBlock) {
+			return;
+		}
+
+		MongoCollection<Document> c = mongoDirectory.getBlocksCollection();
+
+		Document query = new Document();
+		query.put(MongoDirectory.FILE_NUMBER, fileNumber);
+		query.put(MongoDirectory.BLOCK_NUMBER, new Document("$gte", startBlock).append("$lte", endBlock));
+
+		for (Document result : c.find(query)) {
+			int blockNumber = ((Number) result.get(MongoDirectory.BLOCK_NUMBER)).intValue();
+			byte[] bytes = ((Binary) result.get(MongoDirectory.BYTES)).getData();
+			MongoBlock mongoBlock = new MongoBlock(this, blockNumber, allocate(bytes));
+			cacheMap.putIfAbsent(mongoBlock.blockKey, mongoBlock);
+		}
+
+	}
+
 	public static void storeBlock(MongoBlock mongoBlock) {
 		// System.out.println("Store: " + mongoBlock.getBlockNumber());
 
@@ -319,7 +558,7 @@ public class MongoFile implements NosqlFile {
 		Document object = new Document();
 		object.put(MongoDirectory.FILE_NUMBER, mongoBlock.mongoFile.fileNumber);
 		object.put(MongoDirectory.BLOCK_NUMBER, mongoBlock.blockNumber);
-		object.put(MongoDirectory.BYTES, new Binary(mongoBlock.bytes));
+		object.put(MongoDirectory.BYTES, new Binary(mongoBlock.getBytes()));
 
 		c.replaceOne(query, object, new UpdateOptions().upsert(true));
 
@@ -373,9 +612,7 @@ public class MongoFile implements NosqlFile {
 		}
 
 		if (readSize == 4) {
-			byte[] buffer = mb.bytes;
-			return ((buffer[blockOffset++] & 0xFF) << 24) | ((buffer[blockOffset++] & 0xFF) << 16) | ((buffer[blockOffset++] & 0xFF) << 8) | (
-					buffer[blockOffset++] & 0xFF);
+			return mb.buffer.getInt(blockOffset);
 		}
 		return ((readByte(position++) & 0xFF) << 24) | ((readByte(position++) & 0xFF) << 16) | ((readByte(position++) & 0xFF) << 8) | (readByte(position++)
 				& 0xFF);
@@ -395,12 +632,7 @@ public class MongoFile implements NosqlFile {
 		}
 
 		if (readSize == 8) {
-			byte[] buffer = mb.bytes;
-			final int i1 = ((buffer[blockOffset++] & 0xff) << 24) | ((buffer[blockOffset++] & 0xff) << 16) | ((buffer[blockOffset++] & 0xff) << 8) | (
-					buffer[blockOffset++] & 0xff);
-			final int i2 = ((buffer[blockOffset++] & 0xff) << 24) | ((buffer[blockOffset++] & 0xff) << 16) | ((buffer[blockOffset++] & 0xff) << 8) | (
-					buffer[blockOffset++] & 0xff);
-			return (((long) i1) << 32) | (i2 & 0xFFFFFFFFL);
+			return mb.buffer.getLong(blockOffset);
 		}
 		return (((long) readInt(position)) << 32) | (readInt(position + 4) & 0xFFFFFFFFL);
 	}
@@ -49,6 +49,14 @@ public interface NosqlFile {
 
 	long readLong(long position) throws IOException;
 
+	/**
+	 * Loads a range of blocks into the block cache with a single request, skipping blocks that are already cached
+	 * @param startBlock - first block to load
+	 * @param count - number of blocks to load
+	 * @throws IOException
+	 */
+	void prefetchBlocks(int startBlock, int count) throws IOException;
+
 	int getBlockSize();
 
 	long getChecksum();
@@ -0,0 +1,209 @@
+package org.lumongo.storage.lucene;
+
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one or more contributor license agreements. See the NOTICE
+ * file distributed with this work for additional information regarding copyright ownership. The ASF licenses this file
+ * to You under the Apache License, Version 2.0 (the "License"); you may not use this file except in compliance with the
+ * License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License is distributed on
+ * an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations under the License.
+ */
+
+import org.apache.lucene.codecs.CodecUtil;
+import org.apache.lucene.store.Directory;
+import org.apache.lucene.store.FilterDirectory;
+import org.apache.lucene.store.IOContext;
+import org.apache.lucene.store.IndexInput;
+
+import java.io.IOException;
+import java.nio.file.NoSuchFileException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Writes through to a durable directory (i.e. a {@link DistributedDirectory} over {@link MongoDirectory}) and mirrors the files into a local
+ * cache directory (i.e. {@link org.apache.lucene.store.MMapDirectory}) when they are synced.  Reads are served from the local copy.
+ * Files missing from the cache or that no longer match the durable copy (i.e. after a segment moved between nodes) are copied again on open.
+ */
+public class TieredDirectory extends FilterDirectory {
+
+	private final Directory cache;
+
+	private final ConcurrentHashMap<String, Boolean> cachedFiles;
+	private final ConcurrentHashMap<String, Object> copyLocks;
+
+	/**
+	 * @param durable - directory all writes go to and that is the source of truth for the files
+	 * @param cache - local directory that holds copies of the durable files
+	 * @throws IOException
+	 */
+	public TieredDirectory(Directory durable, Directory cache) throws IOException {
+		super(durable);
+		this.cache = cache;
+		this.cachedFiles = new ConcurrentHashMap<>();
+		this.copyLocks = new ConcurrentHashMap<>();
+
+		//remove files left in the cache that were deleted while this node did not have the directory open
+		Set<String> durableFiles = new HashSet<>(Arrays.asList(durable.listAll()));
+		for (String name : cache.listAll()) {
+			if (!durableFiles.contains(name)) {
+				deleteFromCache(name);
+			}
+		}
+	}
+
+	public Directory getCache() {
+		return cache;
+	}
+
+	@Override
+	public IndexInput openInput(String name, IOContext context) throws IOException {
+		ensureOpen();
+		if (ensureCached(name)) {
+			return cache.openInput(name, context);
+		}
+		return in.openInput(name, context);
+	}
+
+	/**
+	 * syncs the files in the durable directory and then copies them to the cache so the committed files are read locally
+	 */
+	@Override
+	public void sync(Collection<String> names) throws IOException {
+		in.sync(names);
+		for (String name : names) {
+			ensureCached(name);
+		}
+		cache.sync(cachedNames(names));
+	}
+
+	@Override
+	public void rename(String source, String dest) throws IOException {
+		in.rename(source, dest);
+
+		Object lock = copyLocks.computeIfAbsent(dest, k -> new Object());
+		synchronized (lock) {
+			cachedFiles.remove(dest);
+			deleteFromCache(dest);
+			if (cachedFiles.remove(source) != null) {
+				try {
+					cache.rename(source, dest);
+					cachedFiles.put(dest, true);
+				}
+				catch (IOException e) {
+					//dest will be copied from the durable directory when it is opened
+					deleteFromCache(source);
+				}
+			}
+		}
+		copyLocks.remove(source);
+	}
+
+	@Override
+	public void syncMetaData() throws IOException {
+		in.syncMetaData();
+		cache.syncMetaData();
+	}
+
+	@Override
+	public void deleteFile(String name) throws IOException {
+		in.deleteFile(name);
+		cachedFiles.remove(name);
+		deleteFromCache(name);
+		copyLocks.remove(name);
+	}
+
+	@Override
+	public void close() throws IOException {
+		try {
+			in.close();
+		}
+		finally {
+			cache.close();
+		}
+	}
+
+	/**
+	 * Copies a file from the durable directory to the cache unless the cache already holds the same file
+	 * @param name - name of the file
+	 * @return true if the file can be read from the cache
+	 */
+	private boolean ensureCached(String name) {
+		if (cachedFiles.containsKey(name)) {
+			return true;
+		}
+
+		Object lock = copyLocks.computeIfAbsent(name, k -> new Object());
+		synchronized (lock) {
+			if (cachedFiles.containsKey(name)) {
+				return true;
+			}
+
+			try {
+				if (!isCurrent(name)) {
+					deleteFromCache(name);
+					cache.copyFrom(in, name, name, IOContext.READONCE);
+				}
+				cachedFiles.put(name, true);
+				return true;
+			}
+			catch (IOException e) {
+				//the durable directory is always complete so fall back to it
+				deleteFromCache(name);
+				return false;
+			}
+		}
+	}
+
+	/**
+	 * @return true if the cache has a file with the same length and checksum footer as the durable file
+	 */
+	private boolean isCurrent(String name) throws IOException {
+		try {
+			if (cache.fileLength(name) != in.fileLength(name)) {
+				return false;
+			}
+		}
+		catch (NoSuchFileException e) {
+			return false;
+		}
+
+		try (IndexInput cached = cache.openInput(name, IOContext.READONCE); IndexInput durable = in.openInput(name, IOContext.READONCE)) {
+			return CodecUtil.retrieveChecksum(cached) == CodecUtil.retrieveChecksum(durable);
+		}
+		catch (IOException e) {
+			return false;
+		}
+	}
+
+	private Collection<String> cachedNames(Collection<String> names) {
+		Set<String> cached = new HashSet<>();
+		for (String name : names) {
+			if (cachedFiles.containsKey(name)) {
+				cached.add(name);
+			}
+		}
+		return cached;
+	}
+
+	private void deleteFromCache(String name) {
+		try {
+			cache.deleteFile(name);
+		}
+		catch (IOException e) {
+			//not in the cache
+		}
+	}
+
+	@Override
+	public String toString() {
+		return "TieredDirectory{" + "durable=" + in + ", cache=" + cache + '}';
+	}
+}
@@ -1,5 +1,9 @@
 package org.lumongo.util;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.TreeMap;
 import java.util.concurrent.locks.ReadWriteLock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -23,6 +27,20 @@ public class LockHandler {
 		return readWriteLock[index];
 	}
 
+	/**
+	 * Returns the distinct locks for a group of unique ids in a consistent order so callers locking all of them cannot deadlock each other
+	 * @param uniqueIds - unique ids to get locks for
+	 * @return locks ordered by their position in the lock array
+	 */
+	public List<ReadWriteLock> getLocks(Collection<String> uniqueIds) {
+		TreeMap<Integer, ReadWriteLock> locks = new TreeMap<>();
+		for (String uniqueId : uniqueIds) {
+			int index = segmentIndexer.getIndex(uniqueId.hashCode());
+			locks.put(index, readWriteLock[index]);
+		}
+		return new ArrayList<>(locks.values());
+	}
+
 	public ReadWriteLock getLock(long uniqueId) {
 		int h = Long.hashCode(uniqueId);
 		int index = segmentIndexer.getIndex(h);